@@ -0,0 +1,84 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.datamodel
+
+import android.accounts.Account
+import android.content.Context
+import androidx.test.platform.app.InstrumentationRegistry
+import com.uteknoid.drive.MainApp
+import com.uteknoid.drive.utils.FileStorageUtils
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+
+class FileDataStorageManagerTest {
+
+    private lateinit var context: Context
+    private lateinit var storageManager: FileDataStorageManager
+    private lateinit var localFile: File
+
+    private val account = Account(ACCOUNT_NAME, MainApp.accountType)
+
+    @Before
+    fun setUp() {
+        context = InstrumentationRegistry.getInstrumentation().targetContext
+        storageManager = FileDataStorageManager(context, account, context.contentResolver)
+
+        val root = storageManager.getFileByPath(OCFile.ROOT_PATH)!!
+        storageManager.saveFile(OCFile(REMOTE_PATH).apply {
+            parentId = root.fileId
+            mimetype = "text/plain"
+            modificationTimestamp = SERVER_MODIFICATION_TIMESTAMP
+        })
+
+        localFile = File(FileStorageUtils.getSavePath(ACCOUNT_NAME) + REMOTE_PATH)
+        localFile.parentFile?.mkdirs()
+        localFile.writeText("content")
+    }
+
+    @After
+    fun tearDown() {
+        storageManager.getFileByPath(REMOTE_PATH)?.let { storageManager.removeFile(it, true, true) }
+        localFile.delete()
+    }
+
+    @Test
+    fun rebound_file_is_not_reported_as_locally_changed() {
+        assertEquals(1, storageManager.bindOrphanedLocalFiles())
+
+        val file = storageManager.getFileByPath(REMOTE_PATH)
+        assertNotNull(file)
+        assertEquals(localFile.absolutePath, file!!.storagePath)
+        // Same condition SynchronizeFileOperation uses to decide if the file changed in the device
+        assertFalse(file.localModificationTimestamp > file.lastSyncDateForData)
+        // Same value SynchronizeFileOperation compares with the server to decide if the file changed there
+        assertEquals(SERVER_MODIFICATION_TIMESTAMP, file.modificationTimestampAtLastSyncForData)
+    }
+
+    companion object {
+        private const val ACCOUNT_NAME = "rebind@demo.owncloud.com"
+        private const val REMOTE_PATH = "/rebound.txt"
+        private const val SERVER_MODIFICATION_TIMESTAMP = 1_600_000_000_000L
+    }
+}
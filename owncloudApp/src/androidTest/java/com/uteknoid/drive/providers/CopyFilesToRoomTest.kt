@@ -0,0 +1,119 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.providers
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import androidx.room.Room
+import androidx.test.platform.app.InstrumentationRegistry
+import com.uteknoid.drive.data.OwncloudDatabase
+import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Before
+import org.junit.Test
+
+class CopyFilesToRoomTest {
+
+    private lateinit var legacyDb: SQLiteDatabase
+    private lateinit var roomDb: OwncloudDatabase
+
+    @Before
+    fun setUp() {
+        legacyDb = SQLiteDatabase.create(null)
+        legacyDb.execSQL(
+            "CREATE TABLE ${ProviderTableMeta.FILE_TABLE_NAME} (" +
+                    "${ProviderTableMeta._ID} INTEGER PRIMARY KEY, " +
+                    "${ProviderTableMeta.FILE_PARENT} INTEGER, " +
+                    "${ProviderTableMeta.FILE_NAME} TEXT, " +
+                    "${ProviderTableMeta.FILE_PATH} TEXT, " +
+                    "${ProviderTableMeta.FILE_ACCOUNT_OWNER} TEXT, " +
+                    "${ProviderTableMeta.FILE_CONTENT_TYPE} TEXT, " +
+                    "${ProviderTableMeta.FILE_ETAG} TEXT, " +
+                    "${ProviderTableMeta.FILE_PUBLIC_LINK} TEXT);"
+        )
+        roomDb = Room.inMemoryDatabaseBuilder(
+            InstrumentationRegistry.getInstrumentation().targetContext,
+            OwncloudDatabase::class.java
+        ).build()
+    }
+
+    @After
+    fun tearDown() {
+        legacyDb.close()
+        roomDb.close()
+    }
+
+    @Test
+    fun populated_rows_are_copied_to_room() {
+        insertLegacyFile(1, null, "/", "/")
+        insertLegacyFile(2, 1, "Documents", "/Documents/")
+        insertLegacyFile(3, 2, "notes.txt", "/Documents/notes.txt", mimeType = "text/plain", etag = "5ff0")
+
+        val copied = FileContentProvider.copyFilesToRoom(legacyDb, roomDb.openHelper.writableDatabase)
+
+        assertEquals(3, copied)
+        val notes = roomDb.fileDao().getFileByPath("/Documents/notes.txt", ACCOUNT_NAME)
+        assertNotNull(notes)
+        assertEquals(3L, notes!!.id)
+        assertEquals(2L, notes.parentId)
+        assertEquals("notes.txt", notes.name)
+        assertEquals("text/plain", notes.mimeType)
+        assertEquals("5ff0", notes.etag)
+        assertEquals(1L, roomDb.fileDao().getFileByPath("/Documents/", ACCOUNT_NAME)!!.parentId)
+    }
+
+    @Test
+    fun rows_without_path_or_account_are_dropped() {
+        insertLegacyFile(1, null, "/", "/")
+        insertLegacyFile(2, 1, "orphan.txt", null)
+        insertLegacyFile(3, 1, "ownerless.txt", "/ownerless.txt", owner = null)
+
+        val copied = FileContentProvider.copyFilesToRoom(legacyDb, roomDb.openHelper.writableDatabase)
+
+        assertEquals(1, copied)
+        assertNotNull(roomDb.fileDao().getFileByPath("/", ACCOUNT_NAME))
+    }
+
+    private fun insertLegacyFile(
+        id: Long,
+        parentId: Long?,
+        name: String,
+        path: String?,
+        owner: String? = ACCOUNT_NAME,
+        mimeType: String = "DIR",
+        etag: String = "",
+    ) {
+        legacyDb.insert(ProviderTableMeta.FILE_TABLE_NAME, null, ContentValues().apply {
+            put(ProviderTableMeta._ID, id)
+            put(ProviderTableMeta.FILE_PARENT, parentId)
+            put(ProviderTableMeta.FILE_NAME, name)
+            put(ProviderTableMeta.FILE_PATH, path)
+            put(ProviderTableMeta.FILE_ACCOUNT_OWNER, owner)
+            put(ProviderTableMeta.FILE_CONTENT_TYPE, mimeType)
+            put(ProviderTableMeta.FILE_ETAG, etag)
+        })
+    }
+
+    companion object {
+        private const val ACCOUNT_NAME = "admin@demo.owncloud.com"
+    }
+}
@@ -31,6 +31,9 @@ import android.content.pm.PackageInfo
 import android.content.pm.PackageManager
 import android.os.Build
 import android.os.Bundle
+import android.os.Looper
+import android.os.SystemClock
+import android.os.Trace
 import android.view.WindowManager
 import androidx.core.content.pm.PackageInfoCompat
 import com.uteknoid.drive.authentication.AccountUtils
@@ -68,6 +71,7 @@ import org.koin.android.ext.koin.androidContext
 import org.koin.core.context.startKoin
 import org.koin.core.context.stopKoin
 import timber.log.Timber
+import java.util.concurrent.atomic.AtomicBoolean
 
 /**
  * Main Application of the project
@@ -79,23 +83,28 @@ import timber.log.Timber
 class MainApp : Application() {
 
     override fun onCreate() {
+        val startTime = SystemClock.elapsedRealtime()
+        Trace.beginSection("MainApp.onCreate")
         super.onCreate()
 
         appContext = applicationContext
 
         startLogsIfEnabled()
 
-        DebugInjector.injectDebugTools(appContext)
-
-        createNotificationChannels()
+        // Once per process instead of once per activity; the preferences are already loaded to start the logs
+        PreferenceManager.migrateFingerprintToBiometricKey(applicationContext)
+        PreferenceManager.deleteOldSettingsPreferences(applicationContext)
 
         SingleSessionManager.setUserAgent(userAgent)
 
-        // initialise thumbnails cache on background thread
-        ThumbnailsCacheManager.InitDiskCacheTask().execute()
-
         initDependencyInjection()
 
+        // Not needed to draw the first frame, so run when the main thread gets idle for the first time
+        Looper.myQueue().addIdleHandler {
+            runDeferredStartupWork()
+            false
+        }
+
         // register global protection with pass code, pattern lock and biometric lock
         registerActivityLifecycleCallbacks(object : ActivityLifecycleCallbacks {
             override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {
@@ -121,8 +130,6 @@ class MainApp : Application() {
                     }
                 }
 
-                PreferenceManager.migrateFingerprintToBiometricKey(applicationContext)
-                PreferenceManager.deleteOldSettingsPreferences(applicationContext)
             }
 
             override fun onActivityStarted(activity: Activity) {
@@ -160,6 +167,23 @@ class MainApp : Application() {
             }
         })
 
+        Trace.endSection()
+        Timber.d("MainApp.onCreate took ${SystemClock.elapsedRealtime() - startTime} ms")
+    }
+
+    private fun runDeferredStartupWork() {
+        val startTime = SystemClock.elapsedRealtime()
+        Trace.beginSection("MainApp.runDeferredStartupWork")
+
+        DebugInjector.injectDebugTools(appContext)
+
+        createNotificationChannels()
+
+        // initialise thumbnails cache on background thread; readers start it themselves if they come first
+        ThumbnailsCacheManager.initDiskCache()
+
+        Trace.endSection()
+        Timber.d("Deferred startup work took ${SystemClock.elapsedRealtime() - startTime} ms")
     }
 
     private fun startLogsIfEnabled() {
@@ -190,47 +214,6 @@ class MainApp : Application() {
         return mdmProvider.getBrandingBoolean(CONFIGURATION_ALLOW_SCREENSHOTS, R.bool.allow_screenshots)
     }
 
-    private fun createNotificationChannels() {
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
-            return
-        }
-
-        createNotificationChannel(
-            id = DOWNLOAD_NOTIFICATION_CHANNEL_ID,
-            name = getString(R.string.download_notification_channel_name),
-            description = getString(R.string.download_notification_channel_description),
-            importance = IMPORTANCE_LOW
-        )
-
-        createNotificationChannel(
-            id = UPLOAD_NOTIFICATION_CHANNEL_ID,
-            name = getString(R.string.upload_notification_channel_name),
-            description = getString(R.string.upload_notification_channel_description),
-            importance = IMPORTANCE_LOW
-        )
-
-        createNotificationChannel(
-            id = MEDIA_SERVICE_NOTIFICATION_CHANNEL_ID,
-            name = getString(R.string.media_service_notification_channel_name),
-            description = getString(R.string.media_service_notification_channel_description),
-            importance = IMPORTANCE_LOW
-        )
-
-        createNotificationChannel(
-            id = FILE_SYNC_CONFLICT_CHANNEL_ID,
-            name = getString(R.string.file_sync_notification_channel_name),
-            description = getString(R.string.file_sync_notification_channel_description),
-            importance = IMPORTANCE_LOW
-        )
-
-        createNotificationChannel(
-            id = FILE_SYNC_NOTIFICATION_CHANNEL_ID,
-            name = getString(R.string.file_sync_notification_channel_name),
-            description = getString(R.string.file_sync_notification_channel_description),
-            importance = IMPORTANCE_LOW
-        )
-    }
-
     private fun isFirstRun(): Boolean {
         if (getLastSeenVersionCode() != 0) {
             return false
@@ -248,6 +231,56 @@ class MainApp : Application() {
 
         const val PREFERENCE_KEY_LAST_SEEN_VERSION_CODE = "lastSeenVersionCode"
 
+        private val notificationChannelsCreated = AtomicBoolean(false)
+
+        /**
+         * Creates the notification channels once per process. It's deferred at startup, so it's also called before
+         * building any notification, in case one is posted before.
+         */
+        fun createNotificationChannels() {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+                return
+            }
+            if (!notificationChannelsCreated.compareAndSet(false, true)) {
+                return
+            }
+
+            appContext.createNotificationChannel(
+                id = DOWNLOAD_NOTIFICATION_CHANNEL_ID,
+                name = appContext.getString(R.string.download_notification_channel_name),
+                description = appContext.getString(R.string.download_notification_channel_description),
+                importance = IMPORTANCE_LOW
+            )
+
+            appContext.createNotificationChannel(
+                id = UPLOAD_NOTIFICATION_CHANNEL_ID,
+                name = appContext.getString(R.string.upload_notification_channel_name),
+                description = appContext.getString(R.string.upload_notification_channel_description),
+                importance = IMPORTANCE_LOW
+            )
+
+            appContext.createNotificationChannel(
+                id = MEDIA_SERVICE_NOTIFICATION_CHANNEL_ID,
+                name = appContext.getString(R.string.media_service_notification_channel_name),
+                description = appContext.getString(R.string.media_service_notification_channel_description),
+                importance = IMPORTANCE_LOW
+            )
+
+            appContext.createNotificationChannel(
+                id = FILE_SYNC_CONFLICT_CHANNEL_ID,
+                name = appContext.getString(R.string.file_sync_notification_channel_name),
+                description = appContext.getString(R.string.file_sync_notification_channel_description),
+                importance = IMPORTANCE_LOW
+            )
+
+            appContext.createNotificationChannel(
+                id = FILE_SYNC_NOTIFICATION_CHANNEL_ID,
+                name = appContext.getString(R.string.file_sync_notification_channel_name),
+                description = appContext.getString(R.string.file_sync_notification_channel_description),
+                importance = IMPORTANCE_LOW
+            )
+        }
+
         /**
          * Next methods give access in code to some constants that need to be defined in string resources to be referred
          * in AndroidManifest.xml file or other xml resource files; or that need to be easy to modify in build time.
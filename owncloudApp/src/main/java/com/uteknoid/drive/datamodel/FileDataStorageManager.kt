@@ -84,6 +84,7 @@ import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_IS_DOWNLOADING
 import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_KEEP_IN_SYNC
 import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_LAST_SYNC_DATE
 import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA
+import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_LAST_USAGE
 import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_MODIFIED
 import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA
 import com.uteknoid.drive.db.ProviderMeta.ProviderTableMeta.FILE_NAME
@@ -102,11 +103,12 @@ import com.uteknoid.drive.domain.capabilities.model.CapabilityBooleanType
 import com.uteknoid.drive.domain.capabilities.model.OCCapability
 import com.uteknoid.drive.domain.files.MIME_DIR
 import com.uteknoid.drive.extensions.getIntFromColumnOrThrow
-import com.uteknoid.drive.extensions.getLongFromColumnOrThrow
 import com.uteknoid.drive.extensions.getStringFromColumnOrEmpty
 import com.uteknoid.drive.extensions.getStringFromColumnOrThrow
 import com.uteknoid.drive.lib.resources.status.RemoteCapability
+import com.uteknoid.drive.providers.WorkManagerProvider
 import com.uteknoid.drive.utils.FileStorageUtils
+import org.koin.java.KoinJavaComponent.get
 import timber.log.Timber
 import java.io.File
 import java.io.FileInputStream
@@ -116,7 +118,9 @@ import java.io.InputStream
 import java.io.OutputStream
 import java.util.ArrayList
 import java.util.HashSet
+import java.util.UUID
 import java.util.Vector
+import java.util.concurrent.Executors
 
 class FileDataStorageManager {
 
@@ -164,10 +168,11 @@ class FileDataStorageManager {
             if (cursorOnKeptInSync != null && cursorOnKeptInSync.moveToFirst()) {
                 var file: OCFile?
                 var accountName: String
+                val columns = FileColumns(cursorOnKeptInSync)
+                val accountNameColumn = cursorOnKeptInSync.getColumnIndexOrThrow(FILE_ACCOUNT_OWNER)
                 do {
-                    file = createFileInstance(cursorOnKeptInSync)
-                    accountName =
-                        cursorOnKeptInSync.getStringFromColumnOrEmpty(FILE_ACCOUNT_OWNER)
+                    file = createFileInstance(cursorOnKeptInSync, columns)
+                    accountName = cursorOnKeptInSync.getString(accountNameColumn).orEmpty()
                     if (!file!!.isFolder && AccountUtils.exists(accountName, mContext)) {
                         result.add(Pair(file, accountName))
                     }
@@ -213,8 +218,9 @@ class FileDataStorageManager {
 
                 if (cursorOnKeptInSync != null && cursorOnKeptInSync.moveToFirst()) {
                     var file: OCFile?
+                    val columns = FileColumns(cursorOnKeptInSync)
                     do {
-                        file = createFileInstance(cursorOnKeptInSync)
+                        file = createFileInstance(cursorOnKeptInSync, columns)
                         result.add(file)
                     } while (cursorOnKeptInSync.moveToNext())
                 } else {
@@ -245,8 +251,9 @@ class FileDataStorageManager {
                 )
                 if (cursorOnShared != null && cursorOnShared.moveToFirst()) {
                     var file: OCFile?
+                    val columns = FileColumns(cursorOnShared)
                     do {
-                        file = createFileInstance(cursorOnShared)
+                        file = createFileInstance(cursorOnShared, columns)
                         allSharedFiles.add(file)
                     } while (cursorOnShared.moveToNext())
                 }
@@ -335,30 +342,7 @@ class FileDataStorageManager {
 
     fun saveFile(file: OCFile): Boolean {
         var overridden = false
-        val cv = ContentValues().apply {
-            put(FILE_MODIFIED, file.modificationTimestamp)
-            put(FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA, file.modificationTimestampAtLastSyncForData)
-            put(FILE_CREATION, file.creationTimestamp)
-            put(FILE_CONTENT_LENGTH, file.fileLength)
-            put(FILE_CONTENT_TYPE, file.mimetype)
-            put(FILE_NAME, file.fileName)
-            put(FILE_PARENT, file.parentId)
-            put(FILE_PATH, file.remotePath)
-            if (!file.isFolder) put(FILE_STORAGE_PATH, file.storagePath)
-            put(FILE_ACCOUNT_OWNER, account.name)
-            put(FILE_LAST_SYNC_DATE, file.lastSyncDateForProperties)
-            put(FILE_LAST_SYNC_DATE_FOR_DATA, file.lastSyncDateForData)
-            put(FILE_ETAG, file.etag)
-            put(FILE_TREE_ETAG, file.treeEtag)
-            put(FILE_SHARED_VIA_LINK, if (file.isSharedViaLink) 1 else 0)
-            put(FILE_SHARED_WITH_SHAREE, if (file.isSharedWithSharee) 1 else 0)
-            put(FILE_PERMISSIONS, file.permissions)
-            put(FILE_REMOTE_ID, file.remoteId)
-            put(FILE_UPDATE_THUMBNAIL, file.needsUpdateThumbnail())
-            put(FILE_IS_DOWNLOADING, file.isDownloading)
-            put(FILE_ETAG_IN_CONFLICT, file.etagInConflict)
-            put(FILE_PRIVATE_LINK, file.privateLink)
-        }
+        val cv = getContentValues(file)
 
         val sameRemotePath = fileExists(file.remotePath)
         if (sameRemotePath || fileExists(file.fileId)) {  // for renamed files; no more delete and create
@@ -402,6 +386,31 @@ class FileDataStorageManager {
         return overridden
     }
 
+    private fun getContentValues(file: OCFile) = ContentValues().apply {
+        put(FILE_MODIFIED, file.modificationTimestamp)
+        put(FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA, file.modificationTimestampAtLastSyncForData)
+        put(FILE_CREATION, file.creationTimestamp)
+        put(FILE_CONTENT_LENGTH, file.fileLength)
+        put(FILE_CONTENT_TYPE, file.mimetype)
+        put(FILE_NAME, file.fileName)
+        put(FILE_PARENT, file.parentId)
+        put(FILE_PATH, file.remotePath)
+        if (!file.isFolder) put(FILE_STORAGE_PATH, file.storagePath)
+        put(FILE_ACCOUNT_OWNER, account.name)
+        put(FILE_LAST_SYNC_DATE, file.lastSyncDateForProperties)
+        put(FILE_LAST_SYNC_DATE_FOR_DATA, file.lastSyncDateForData)
+        put(FILE_ETAG, file.etag)
+        put(FILE_TREE_ETAG, file.treeEtag)
+        put(FILE_SHARED_VIA_LINK, if (file.isSharedViaLink) 1 else 0)
+        put(FILE_SHARED_WITH_SHAREE, if (file.isSharedWithSharee) 1 else 0)
+        put(FILE_PERMISSIONS, file.permissions)
+        put(FILE_REMOTE_ID, file.remoteId)
+        put(FILE_UPDATE_THUMBNAIL, file.needsUpdateThumbnail())
+        put(FILE_IS_DOWNLOADING, file.isDownloading)
+        put(FILE_ETAG_IN_CONFLICT, file.etagInConflict)
+        put(FILE_PRIVATE_LINK, file.privateLink)
+    }
+
     /**
      * Inserts or updates the list of files contained in a given folder.
      *
@@ -599,8 +608,9 @@ class FileDataStorageManager {
 
         cursor?.let { allFilesCursor ->
             if (allFilesCursor.moveToFirst()) {
+                val columns = FileColumns(allFilesCursor)
                 do {
-                    val ocFile = createFileInstance(allFilesCursor)
+                    val ocFile = createFileInstance(allFilesCursor, columns)
                     ocFile?.let {
                         if (it.storagePath != null) {
                             filesToUpdatePath.add(it)
@@ -748,35 +758,50 @@ class FileDataStorageManager {
         }
     }
 
+    /**
+     * Removes the local copy of a folder. The database is updated for the whole subtree in a single statement,
+     * and the local folder is moved to the trash to be deleted in the background, so that the files are shown
+     * as removed right away whatever their number.
+     */
     private fun removeLocalFolder(folder: OCFile): Boolean {
-        var success = true
-        val localFolderPath = FileStorageUtils.getDefaultSavePathFor(account.name, folder)
-        val localFolder = File(localFolderPath)
-        if (localFolder.exists()) {
-            // stage 1: remove the local files already registered in the files database
-            val files = getFolderContent(folder.fileId)
-            for (file in files) {
-                if (file.isFolder) {
-                    success = success and removeLocalFolder(file)
-                } else {
-                    if (file.isDown) {
-                        val localFile = File(file.storagePath)
-                        success = success and localFile.delete()
-                        if (success) {
-                            file.storagePath = null
-                            saveFile(file)
-                        }
-                    }
-                }
-            }
+        val localFolder = File(FileStorageUtils.getDefaultSavePathFor(account.name, folder))
+        val success = !localFolder.exists() || moveToTrash(localFolder) || removeLocalFolder(localFolder)
 
-            // stage 2: remove the folder itself and any local file inside out of sync;
-            //          for instance, after clearing the app cache or reinstalling
-            success = success and removeLocalFolder(localFolder)
+        val cv = ContentValues().apply {
+            putNull(FILE_STORAGE_PATH)
+            put(FILE_LAST_SYNC_DATE_FOR_DATA, 0)
+        }
+        val selectDescendants = selectionForAllDescendantsOf(folder)
+        try {
+            performUpdate(
+                uri = CONTENT_URI,
+                contentValues = cv,
+                where = "${selectDescendants.first} AND $FILE_STORAGE_PATH IS NOT NULL",
+                selectionArgs = selectDescendants.second
+            )
+        } catch (e: RemoteException) {
+            Timber.e(e, "Fail clearing local copies in ${folder.remotePath}")
+            return false
         }
         return success
     }
 
+    /**
+     * Moves a local folder to the trash of the account, and schedules the deletion of its content.
+     *
+     * @return 'false' if the folder could not be moved, for instance if the trash is in a different storage.
+     */
+    private fun moveToTrash(localFolder: File): Boolean {
+        val trashFolder = File(FileStorageUtils.getTrashPath(account.name))
+        val target = File(trashFolder, UUID.randomUUID().toString())
+        if (!(trashFolder.isDirectory || trashFolder.mkdirs()) || !localFolder.renameTo(target)) {
+            return false
+        }
+        val workManagerProvider: WorkManagerProvider = get(WorkManagerProvider::class.java)
+        workManagerProvider.enqueueTrashCleanupWorker(account.name)
+        return true
+    }
+
     private fun removeLocalFolder(localFolder: File): Boolean {
         var success = true
         val localFiles = localFolder.listFiles()
@@ -794,98 +819,289 @@ class FileDataStorageManager {
     }
 
     /**
-     * Updates database and file system for a file or folder that was moved to a different location.
+     * Removes files and folders from the database in a single transaction, and then their local copies.
      *
-     * TODO explore better (faster) implementations
-     * TODO throw exceptions up !
+     * @return files that could not be removed completely
      */
-    fun moveLocalFile(file: OCFile?, targetPath: String, targetParentPath: String) {
-
-        if (file != null && file.fileExists() && ROOT_PATH != file.fileName) {
+    fun removeFiles(files: List<OCFile>): List<OCFile> {
+        val where = "$FILE_ACCOUNT_OWNER=? AND $FILE_PATH=?"
+        val operations = ArrayList<ContentProviderOperation>(files.size)
+        for (file in files) {
+            val uri = if (file.isFolder) {
+                // URI for recursive deletion
+                ContentUris.withAppendedId(CONTENT_URI_DIR, file.fileId)
+            } else {
+                ContentUris.withAppendedId(CONTENT_URI_FILE, file.fileId)
+            }
+            operations.add(
+                ContentProviderOperation.newDelete(uri).withSelection(where, arrayOf(account.name, file.remotePath)).build()
+            )
+        }
+        if (!applyBatch(operations)) {
+            return files
+        }
 
-            val targetParent = getFileByPath(targetParentPath)
-                ?: throw IllegalStateException(
-                    "Parent folder of the target path does not exist!!"
-                )
+        val notRemoved = ArrayList<OCFile>()
+        for (file in files) {
+            val localRemoved = if (file.isFolder) {
+                val localFolder = File(FileStorageUtils.getDefaultSavePathFor(account.name, file))
+                !localFolder.exists() || moveToTrash(localFolder) || removeLocalFolder(localFolder)
+            } else {
+                !file.isDown || file.storagePath == null || File(file.storagePath).delete()
+            }
+            if (!localRemoved) {
+                notRemoved.add(file)
+            }
+        }
+        return notRemoved
+    }
 
-            /// 1. get all the descendants of the moved element in a single QUERY
-            val c: Cursor? =
+    /**
+     * Binds local copies found in the folder of the account to the files in the database missing them, for
+     * instance after reinstalling the app. The cost depends on the number of local files, not on the size
+     * of the database.
+     *
+     * Do not call this method from the main thread.
+     *
+     * @return number of files bound to their local copy
+     */
+    fun bindOrphanedLocalFiles(): Int {
+        val accountFolder = File(FileStorageUtils.getSavePath(account.name))
+        val localFiles = HashMap<String, File>()
+        collectLocalFiles(accountFolder, accountFolder.absolutePath.length, localFiles)
+        if (localFiles.isEmpty()) return 0
+
+        val operations = ArrayList<ContentProviderOperation>()
+        localFiles.keys.chunked(MAX_SELECTION_ARGS).forEach { remotePaths ->
+            val cursor =
                 try {
                     performQuery(
                         uri = CONTENT_URI,
-                        projection = null,
-                        selection = "$FILE_ACCOUNT_OWNER=? AND $FILE_PATH LIKE ? ",
-                        selectionArgs = arrayOf(account.name, "${file.remotePath}%"),
-                        sortOrder = "$FILE_PATH ASC "
+                        projection = arrayOf(_ID, FILE_PATH, FILE_MODIFIED),
+                        selection = "$FILE_ACCOUNT_OWNER=? AND $FILE_STORAGE_PATH IS NULL AND " +
+                                "$FILE_PATH IN (${remotePaths.joinToString(",") { "?" }})",
+                        selectionArgs = arrayOf(account.name) + remotePaths,
+                        sortOrder = null
                     )
                 } catch (e: RemoteException) {
                     Timber.e(e)
                     null
                 }
+            cursor?.use { c ->
+                val idColumn = c.getColumnIndexOrThrow(_ID)
+                val pathColumn = c.getColumnIndexOrThrow(FILE_PATH)
+                val modifiedColumn = c.getColumnIndexOrThrow(FILE_MODIFIED)
+                while (c.moveToNext()) {
+                    val localFile = localFiles[c.getString(pathColumn)] ?: continue
+                    // Synced as of now, or the next synchronization would take it for a local change. The
+                    // modification time at last sync is the one in the server, as known by the database
+                    val cv = ContentValues().apply {
+                        put(FILE_STORAGE_PATH, localFile.absolutePath)
+                        put(FILE_LAST_SYNC_DATE_FOR_DATA, localFile.lastModified())
+                        put(FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA, c.getLong(modifiedColumn))
+                    }
+                    operations.add(
+                        ContentProviderOperation.newUpdate(CONTENT_URI).withValues(cv).withSelection(
+                            "$_ID=?", arrayOf(c.getLong(idColumn).toString())
+                        ).build()
+                    )
+                }
+            }
+        }
 
-            val defaultSavePath = FileStorageUtils.getSavePath(account.name)
+        if (!applyBatch(operations)) return 0
+        Timber.d("Bound ${operations.size} local files to their database entries")
+        return operations.size
+    }
 
-            /// 2. prepare a batch of update operations to change all the descendants
-            if (c != null) {
-                val operations = ArrayList<ContentProviderOperation>(c.count)
-                if (c.moveToFirst()) {
-                    val lengthOfOldPath = file.remotePath.length
-                    val lengthOfOldStoragePath = defaultSavePath.length + lengthOfOldPath
-                    do {
-                        val cv = ContentValues() // keep construction in the loop
-                        val child = createFileInstance(c)
-                        cv.put(FILE_PATH, targetPath + child!!.remotePath.substring(lengthOfOldPath))
-                        if (child.storagePath != null && child.storagePath.startsWith(defaultSavePath)) {
-                            // update link to downloaded content - but local move is not done here!
-                            val targetLocalPath = defaultSavePath + targetPath +
-                                    child.storagePath.substring(lengthOfOldStoragePath)
+    /**
+     * Collects the regular files under [folder], by the remote path they would have.
+     */
+    private fun collectLocalFiles(folder: File, accountFolderPathLength: Int, localFiles: MutableMap<String, File>) {
+        folder.listFiles()?.forEach { localFile ->
+            if (localFile.isDirectory) {
+                collectLocalFiles(localFile, accountFolderPathLength, localFiles)
+            } else {
+                localFiles[localFile.absolutePath.substring(accountFolderPathLength)] = localFile
+            }
+        }
+    }
 
-                            cv.put(FILE_STORAGE_PATH, targetLocalPath)
+    /**
+     * Marks the local copy of a file as used now, so that it is among the last ones to be evicted when the
+     * downloaded files exceed the storage limit.
+     */
+    fun updateLastUsage(file: OCFile) {
+        updateLastUsage(file, System.currentTimeMillis())
+    }
 
-                        }
-                        if (targetParent.availableOfflineStatus != NOT_AVAILABLE_OFFLINE) {
-                            // moving to an available offline subfolder
-                            cv.put(FILE_KEEP_IN_SYNC, AVAILABLE_OFFLINE_PARENT.value)
-                        } else {
-                            // moving to a not available offline subfolder - with care
-                            if (file.availableOfflineStatus == AVAILABLE_OFFLINE_PARENT) {
-                                cv.put(FILE_KEEP_IN_SYNC, NOT_AVAILABLE_OFFLINE.value)
-                            }
-                        }
+    /**
+     * Same as [updateLastUsage], without waiting for the database; to be called from the main thread.
+     */
+    fun updateLastUsageInBackground(file: OCFile) {
+        val lastUsage = System.currentTimeMillis()
+        lastUsageExecutor.execute { updateLastUsage(file, lastUsage) }
+    }
 
-                        if (child.remotePath == file.remotePath) {
-                            cv.put(FILE_PARENT, targetParent.fileId)
-                        }
-                        operations.add(
-                            ContentProviderOperation.newUpdate(CONTENT_URI).withValues(cv).withSelection(
-                                "$_ID=?",
-                                arrayOf(child.fileId.toString())
-                            )
-                                .build()
-                        )
+    private fun updateLastUsage(file: OCFile, lastUsage: Long) {
+        val cv = ContentValues().apply { put(FILE_LAST_USAGE, lastUsage) }
+        try {
+            performUpdate(
+                uri = ContentUris.withAppendedId(CONTENT_URI_FILE, file.fileId),
+                contentValues = cv,
+                where = "$_ID=?",
+                selectionArgs = arrayOf(file.fileId.toString())
+            )
+        } catch (e: RemoteException) {
+            Timber.e(e, "Fail updating last usage of ${file.remotePath}")
+        }
+    }
 
-                    } while (c.moveToNext())
+    /**
+     * Space taken by the downloaded files of the account, as registered in the database.
+     */
+    fun getDownloadedFilesSize(): Long {
+        var size = 0L
+        try {
+            performQuery(
+                uri = CONTENT_URI,
+                projection = arrayOf(FILE_CONTENT_LENGTH),
+                selection = "$FILE_ACCOUNT_OWNER=? AND $FILE_STORAGE_PATH IS NOT NULL AND $FILE_CONTENT_TYPE!=?",
+                selectionArgs = arrayOf(account.name, MIME_DIR),
+                sortOrder = null
+            )?.use { c ->
+                while (c.moveToNext()) {
+                    size += c.getLong(0)
                 }
-                c.close()
+            }
+        } catch (e: RemoteException) {
+            Timber.e(e)
+        }
+        return size
+    }
 
-                /// 3. apply updates in batch
-                try {
-                    if (contentResolver != null) {
-                        contentResolver!!.applyBatch(MainApp.authority, operations)
+    /**
+     * Downloaded files of the account that may be evicted to free space, least recently used first. Files
+     * available offline or in conflict are never returned, nor files used after [usedBefore].
+     */
+    fun getEvictableFiles(usedBefore: Long): List<OCFile> {
+        val files = ArrayList<OCFile>()
+        try {
+            performQuery(
+                uri = CONTENT_URI,
+                projection = null,
+                selection = "$FILE_ACCOUNT_OWNER=? AND $FILE_STORAGE_PATH IS NOT NULL AND $FILE_CONTENT_TYPE!=? AND " +
+                        "$FILE_KEEP_IN_SYNC=? AND $FILE_ETAG_IN_CONFLICT IS NULL AND $LAST_USAGE_OR_DOWNLOAD<?",
+                selectionArgs = arrayOf(account.name, MIME_DIR, NOT_AVAILABLE_OFFLINE.value.toString(), usedBefore.toString()),
+                sortOrder = LAST_USAGE_OR_DOWNLOAD
+            )?.use { c ->
+                val columns = FileColumns(c)
+                while (c.moveToNext()) {
+                    createFileInstance(c, columns)?.let { files.add(it) }
+                }
+            }
+        } catch (e: RemoteException) {
+            Timber.e(e)
+        }
+        return files
+    }
 
-                    } else {
-                        contentProviderClient!!.applyBatch(operations)
-                    }
+    /**
+     * Removes the local copies of some files, keeping them in the database as not downloaded.
+     *
+     * The database is updated first, and only the files whose row still pointed to the same local copy are
+     * deleted, so a file is never missing while the database says it is downloaded. Rows of files that could
+     * not be deleted are restored.
+     *
+     * @return files whose local copy was removed
+     */
+    fun removeLocalCopies(files: List<OCFile>): List<OCFile> {
+        val candidates = files.filter { it.storagePath != null }
+        val cv = ContentValues().apply {
+            putNull(FILE_STORAGE_PATH)
+            put(FILE_LAST_SYNC_DATE_FOR_DATA, 0)
+        }
+        val operations = candidates.mapTo(ArrayList(candidates.size)) { file ->
+            ContentProviderOperation.newUpdate(ContentUris.withAppendedId(CONTENT_URI_FILE, file.fileId))
+                .withValues(cv)
+                .withSelection("$_ID=? AND $FILE_STORAGE_PATH=?", arrayOf(file.fileId.toString(), file.storagePath))
+                .build()
+        }
+        val results = applyBatchForResults(operations) ?: return emptyList()
 
-                } catch (e: Exception) {
-                    Timber.e(e, "Fail to update ${file.fileId} and descendants in database")
-                }
+        // Rows changed meanwhile, e.g. by a new download, keep their local copy
+        val committed = candidates.filterIndexed { index, _ -> (results[index].count ?: 0) > 0 }
+        val (removed, notRemoved) = committed.partition { file ->
+            val localFile = File(file.storagePath)
+            !localFile.exists() || localFile.delete()
+        }
 
+        if (notRemoved.isNotEmpty()) {
+            val restoreOperations = notRemoved.mapTo(ArrayList(notRemoved.size)) { file ->
+                ContentProviderOperation.newUpdate(ContentUris.withAppendedId(CONTENT_URI_FILE, file.fileId))
+                    .withValues(ContentValues().apply {
+                        put(FILE_STORAGE_PATH, file.storagePath)
+                        put(FILE_LAST_SYNC_DATE_FOR_DATA, file.lastSyncDateForData)
+                    })
+                    .withSelection("$_ID=? AND $FILE_STORAGE_PATH IS NULL", arrayOf(file.fileId.toString()))
+                    .build()
+            }
+            if (!applyBatch(restoreOperations)) {
+                Timber.e("Fail to restore ${notRemoved.size} local copies that could not be deleted")
             }
+        }
+
+        removed.forEach { file ->
+            file.storagePath = null
+            file.lastSyncDateForData = 0
+        }
+        return removed
+    }
+
+    /**
+     * Updates database and file system for a file or folder that was moved to a different location.
+     *
+     * TODO explore better (faster) implementations
+     * TODO throw exceptions up !
+     */
+    fun moveLocalFile(file: OCFile?, targetPath: String, targetParentPath: String) {
+        if (file != null) {
+            moveLocalFiles(listOf(file), listOf(targetPath), targetParentPath)
+        }
+    }
 
-            /// 4. move in local file system
-            val originalLocalPath = FileStorageUtils.getDefaultSavePathFor(account.name, file)
-            val targetLocalPath = defaultSavePath + targetPath
+    /**
+     * Updates database and file system for files or folders moved to the same target folder. Database
+     * changes of all of them and their descendants are applied in a single transaction.
+     *
+     * @param targetPaths   new remote path of every file, in the same order as [files]
+     */
+    fun moveLocalFiles(files: List<OCFile>, targetPaths: List<String>, targetParentPath: String) {
+        val targetParent = getFileByPath(targetParentPath)
+            ?: throw IllegalStateException(
+                "Parent folder of the target path does not exist!!"
+            )
+        val defaultSavePath = FileStorageUtils.getSavePath(account.name)
+
+        /// 1. prepare a batch of update operations to change all the moved elements and descendants
+        val operations = ArrayList<ContentProviderOperation>()
+        val movedFiles = ArrayList<Pair<OCFile, String>>(files.size)
+        files.forEachIndexed { index, file ->
+            if (file.fileExists() && ROOT_PATH != file.fileName) {
+                operations.addAll(getMoveOperations(file, targetPaths[index], targetParent, defaultSavePath))
+                movedFiles.add(Pair(file, targetPaths[index]))
+            }
+        }
+
+        /// 2. apply updates in batch
+        if (!applyBatch(operations)) {
+            Timber.e("Fail to update ${movedFiles.size} moved files and descendants in database")
+        }
+
+        /// 3. move in local file system
+        for (movedFile in movedFiles) {
+            val originalLocalPath = FileStorageUtils.getDefaultSavePathFor(account.name, movedFile.first)
+            val targetLocalPath = defaultSavePath + movedFile.second
             val localFile = File(originalLocalPath)
             if (localFile.exists()) {
                 val targetFile = File(targetLocalPath)
@@ -898,25 +1114,117 @@ class FileDataStorageManager {
         }
     }
 
+    private fun getMoveOperations(
+        file: OCFile,
+        targetPath: String,
+        targetParent: OCFile,
+        defaultSavePath: String
+    ): List<ContentProviderOperation> {
+        /// get all the descendants of the moved element in a single QUERY
+        val c: Cursor =
+            try {
+                performQuery(
+                    uri = CONTENT_URI,
+                    projection = MOVE_PROJECTION,
+                    selection = "$FILE_ACCOUNT_OWNER=? AND $FILE_PATH GLOB ? ",
+                    selectionArgs = arrayOf(account.name, "${escapeForGlob(file.remotePath)}*"),
+                    sortOrder = "$FILE_PATH ASC "
+                )
+            } catch (e: RemoteException) {
+                Timber.e(e)
+                null
+            } ?: return emptyList()
+
+        val operations = ArrayList<ContentProviderOperation>(c.count)
+        if (c.moveToFirst()) {
+            val lengthOfOldPath = file.remotePath.length
+            val lengthOfOldStoragePath = defaultSavePath.length + lengthOfOldPath
+            val columns = FileColumns(c)
+            do {
+                val cv = ContentValues() // keep construction in the loop
+                val child = createFileInstance(c, columns)
+                cv.put(FILE_PATH, targetPath + child!!.remotePath.substring(lengthOfOldPath))
+                if (child.storagePath != null && child.storagePath.startsWith(defaultSavePath)) {
+                    // update link to downloaded content - but local move is not done here!
+                    val targetLocalPath = defaultSavePath + targetPath +
+                            child.storagePath.substring(lengthOfOldStoragePath)
+
+                    cv.put(FILE_STORAGE_PATH, targetLocalPath)
+
+                }
+                if (targetParent.availableOfflineStatus != NOT_AVAILABLE_OFFLINE) {
+                    // moving to an available offline subfolder
+                    cv.put(FILE_KEEP_IN_SYNC, AVAILABLE_OFFLINE_PARENT.value)
+                } else {
+                    // moving to a not available offline subfolder - with care
+                    if (file.availableOfflineStatus == AVAILABLE_OFFLINE_PARENT) {
+                        cv.put(FILE_KEEP_IN_SYNC, NOT_AVAILABLE_OFFLINE.value)
+                    }
+                }
+
+                if (child.remotePath == file.remotePath) {
+                    cv.put(FILE_PARENT, targetParent.fileId)
+                }
+                operations.add(
+                    ContentProviderOperation.newUpdate(CONTENT_URI).withValues(cv).withSelection(
+                        "$_ID=?",
+                        arrayOf(child.fileId.toString())
+                    )
+                        .build()
+                )
+
+            } while (c.moveToNext())
+        }
+        c.close()
+        return operations
+    }
+
     fun copyLocalFile(originalFile: OCFile?, targetPath: String, targetFileRemoteId: String) {
-        if (originalFile != null && originalFile.fileExists() && ROOT_PATH != originalFile.fileName) {
-            // 1. Copy in database
-            val ocTargetFile = OCFile(targetPath)
-            val parentId = getFileByPath(FileStorageUtils.getParentPath(targetPath))!!.fileId
-            ocTargetFile.parentId = parentId
-            ocTargetFile.remoteId = targetFileRemoteId
-            ocTargetFile.fileLength = originalFile.fileLength
-            ocTargetFile.mimetype = originalFile.mimetype
-            ocTargetFile.modificationTimestamp = System.currentTimeMillis()
-            saveFile(ocTargetFile)
-
-            // 2. Copy in local file system
+        if (originalFile != null) {
+            copyLocalFiles(listOf(originalFile), listOf(targetPath), listOf(targetFileRemoteId))
+        }
+    }
+
+    /**
+     * Registers copies of files in the database in a single transaction, and copies their local content.
+     *
+     * @param targetPaths           remote path of every copy, in the same order as [originalFiles]
+     * @param targetFileRemoteIds   remote id of every copy, in the same order as [originalFiles]
+     */
+    fun copyLocalFiles(originalFiles: List<OCFile>, targetPaths: List<String>, targetFileRemoteIds: List<String>) {
+        // 1. Copy in database
+        val operations = ArrayList<ContentProviderOperation>(originalFiles.size)
+        val copiedFiles = ArrayList<Pair<OCFile, String>>(originalFiles.size)
+        val parentIds = HashMap<String, Long>()
+        originalFiles.forEachIndexed { index, originalFile ->
+            if (originalFile.fileExists() && ROOT_PATH != originalFile.fileName) {
+                val targetPath = targetPaths[index]
+                val parentPath = FileStorageUtils.getParentPath(targetPath)
+                val ocTargetFile = OCFile(targetPath)
+                ocTargetFile.parentId = parentIds.getOrPut(parentPath) { getFileByPath(parentPath)!!.fileId }
+                ocTargetFile.remoteId = targetFileRemoteIds[index]
+                ocTargetFile.fileLength = originalFile.fileLength
+                ocTargetFile.mimetype = originalFile.mimetype
+                ocTargetFile.modificationTimestamp = System.currentTimeMillis()
+
+                val cv = getContentValues(ocTargetFile)
+                setInitialAvailableOfflineStatus(ocTargetFile, cv)
+                operations.add(ContentProviderOperation.newInsert(CONTENT_URI_FILE).withValues(cv).build())
+                copiedFiles.add(Pair(originalFile, targetPath))
+            }
+        }
+        if (!applyBatch(operations)) {
+            Timber.e("Fail to insert ${copiedFiles.size} copied files in database")
+        }
+
+        // 2. Copy in local file system
+        val defaultSavePath = FileStorageUtils.getSavePath(account.name)
+        for (copiedFile in copiedFiles) {
             var copied = false
-            val localPath = FileStorageUtils.getDefaultSavePathFor(account.name, originalFile)
+            val localPath = FileStorageUtils.getDefaultSavePathFor(account.name, copiedFile.first)
             val localFile = File(localPath)
-            val defaultSavePath = FileStorageUtils.getSavePath(account.name)
             if (localFile.exists()) {
-                val targetFile = File(defaultSavePath + targetPath)
+                val targetFile = File(defaultSavePath + copiedFile.second)
                 val targetFolder = targetFile.parentFile
                 if (targetFolder != null && !targetFolder.exists()) {
                     targetFolder.mkdirs()
@@ -928,6 +1236,32 @@ class FileDataStorageManager {
         }
     }
 
+    /**
+     * Applies the operations in a single transaction.
+     *
+     * @return false if the batch could not be applied
+     */
+    private fun applyBatch(operations: ArrayList<ContentProviderOperation>): Boolean =
+        applyBatchForResults(operations) != null
+
+    /**
+     * @return result of every operation, in the same order, or null if the batch failed
+     */
+    private fun applyBatchForResults(operations: ArrayList<ContentProviderOperation>): Array<ContentProviderResult>? {
+        if (operations.isEmpty()) return emptyArray()
+        return try {
+            if (contentResolver != null) {
+                contentResolver!!.applyBatch(MainApp.authority, operations)
+            } else {
+                contentProviderClient!!.applyBatch(operations)
+            }
+        } catch (e: Exception) {
+            // Providers may also throw IllegalArgumentException, SQLiteException and the like
+            Timber.e(e, "Exception in batch of operations ${e.message}")
+            null
+        }
+    }
+
     private fun copyFile(src: File, target: File): Boolean {
         var ret = true
 
@@ -990,8 +1324,9 @@ class FileDataStorageManager {
 
         c?.let {
             if (it.moveToFirst()) {
+                val columns = FileColumns(it)
                 do {
-                    val child = createFileInstance(it)
+                    val child = createFileInstance(it, columns)
                     ret.add(child)
                 } while (it.moveToNext())
             }
@@ -1041,7 +1376,7 @@ class FileDataStorageManager {
             try {
                 performQuery(
                     uri = CONTENT_URI,
-                    projection = null,
+                    projection = arrayOf(_ID),
                     selection = "$cmp_key=? AND $FILE_ACCOUNT_OWNER=?",
                     selectionArgs = arrayOf(value, account.name),
                     sortOrder = null
@@ -1071,41 +1406,70 @@ class FileDataStorageManager {
             null
         }
 
-    private fun createFileInstance(c: Cursor?): OCFile? = c?.let {
-        OCFile(it.getStringFromColumnOrThrow(FILE_PATH)).apply {
-            fileId = it.getLongFromColumnOrThrow(_ID)
-            parentId = it.getLongFromColumnOrThrow(FILE_PARENT)
-            mimetype = it.getStringFromColumnOrThrow(FILE_CONTENT_TYPE)
-            if (!isFolder) {
-                storagePath = it.getStringFromColumnOrThrow(FILE_STORAGE_PATH)
-                if (storagePath == null) {
-                    // try to find existing file and bind it with current account;
-                    // with the current update of SynchronizeFolderOperation, this won't be
-                    // necessary anymore after a full synchronization of the account
-                    val f = File(FileStorageUtils.getDefaultSavePathFor(account.name, this))
-                    if (f.exists()) {
-                        storagePath = f.absolutePath
-                        lastSyncDateForData = f.lastModified()
-                    }
-                }
+    /**
+     * Indices of the file columns in a cursor, resolved once and reused for every row. Columns out of the
+     * projection of the cursor are -1 and keep their default value in the [OCFile].
+     */
+    private class FileColumns(c: Cursor) {
+        val path = c.getColumnIndexOrThrow(FILE_PATH)
+        val id = c.getColumnIndexOrThrow(_ID)
+        val parent = c.getColumnIndex(FILE_PARENT)
+        val contentType = c.getColumnIndex(FILE_CONTENT_TYPE)
+        val storagePath = c.getColumnIndex(FILE_STORAGE_PATH)
+        val contentLength = c.getColumnIndex(FILE_CONTENT_LENGTH)
+        val creation = c.getColumnIndex(FILE_CREATION)
+        val modified = c.getColumnIndex(FILE_MODIFIED)
+        val modifiedAtLastSyncForData = c.getColumnIndex(FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)
+        val lastSyncDate = c.getColumnIndex(FILE_LAST_SYNC_DATE)
+        val lastSyncDateForData = c.getColumnIndex(FILE_LAST_SYNC_DATE_FOR_DATA)
+        val keepInSync = c.getColumnIndex(FILE_KEEP_IN_SYNC)
+        val etag = c.getColumnIndex(FILE_ETAG)
+        val treeEtag = c.getColumnIndex(FILE_TREE_ETAG)
+        val sharedViaLink = c.getColumnIndex(FILE_SHARED_VIA_LINK)
+        val sharedWithSharee = c.getColumnIndex(FILE_SHARED_WITH_SHAREE)
+        val permissions = c.getColumnIndex(FILE_PERMISSIONS)
+        val remoteId = c.getColumnIndex(FILE_REMOTE_ID)
+        val updateThumbnail = c.getColumnIndex(FILE_UPDATE_THUMBNAIL)
+        val isDownloading = c.getColumnIndex(FILE_IS_DOWNLOADING)
+        val etagInConflict = c.getColumnIndex(FILE_ETAG_IN_CONFLICT)
+        val privateLink = c.getColumnIndex(FILE_PRIVATE_LINK)
+    }
+
+    /**
+     * Creates an [OCFile] from the current row of the cursor.
+     *
+     * @param columns   column indices of the cursor; pass the same instance for every row when iterating
+     */
+    private fun createFileInstance(c: Cursor?, columns: FileColumns? = c?.let { FileColumns(it) }): OCFile? {
+        if (c == null || columns == null) return null
+        return OCFile(c.getString(columns.path)).apply {
+            fileId = c.getLong(columns.id)
+            if (columns.parent >= 0) parentId = c.getLong(columns.parent)
+            if (columns.contentType >= 0) mimetype = c.getString(columns.contentType)
+            if (!isFolder && columns.storagePath >= 0) {
+                // Local copies not registered in the database are bound by bindOrphanedLocalFiles, not here,
+                // so that reading a row never touches the file system
+                storagePath = c.getString(columns.storagePath)
             }
-            fileLength = it.getLongFromColumnOrThrow(FILE_CONTENT_LENGTH)
-            creationTimestamp = it.getLongFromColumnOrThrow(FILE_CREATION)
-            modificationTimestamp = it.getLongFromColumnOrThrow(FILE_MODIFIED)
-            modificationTimestampAtLastSyncForData = it.getLongFromColumnOrThrow(FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)
-            lastSyncDateForProperties = it.getLongFromColumnOrThrow(FILE_LAST_SYNC_DATE)
-            lastSyncDateForData = it.getLongFromColumnOrThrow(FILE_LAST_SYNC_DATE_FOR_DATA)
-            availableOfflineStatus = fromValue(it.getIntFromColumnOrThrow(FILE_KEEP_IN_SYNC))
-            etag = it.getStringFromColumnOrThrow(FILE_ETAG)
-            treeEtag = it.getStringFromColumnOrThrow(FILE_TREE_ETAG)
-            isSharedViaLink = it.getIntFromColumnOrThrow(FILE_SHARED_VIA_LINK) == 1
-            isSharedWithSharee = it.getIntFromColumnOrThrow(FILE_SHARED_WITH_SHAREE) == 1
-            permissions = it.getStringFromColumnOrThrow(FILE_PERMISSIONS)
-            remoteId = it.getStringFromColumnOrThrow(FILE_REMOTE_ID)
-            setNeedsUpdateThumbnail(it.getIntFromColumnOrThrow(FILE_UPDATE_THUMBNAIL) == 1)
-            isDownloading = it.getIntFromColumnOrThrow(FILE_IS_DOWNLOADING) == 1
-            etagInConflict = it.getStringFromColumnOrThrow(FILE_ETAG_IN_CONFLICT)
-            privateLink = it.getStringFromColumnOrThrow(FILE_PRIVATE_LINK)
+            if (columns.contentLength >= 0) fileLength = c.getLong(columns.contentLength)
+            if (columns.creation >= 0) creationTimestamp = c.getLong(columns.creation)
+            if (columns.modified >= 0) modificationTimestamp = c.getLong(columns.modified)
+            if (columns.modifiedAtLastSyncForData >= 0) {
+                modificationTimestampAtLastSyncForData = c.getLong(columns.modifiedAtLastSyncForData)
+            }
+            if (columns.lastSyncDate >= 0) lastSyncDateForProperties = c.getLong(columns.lastSyncDate)
+            if (columns.lastSyncDateForData >= 0) lastSyncDateForData = c.getLong(columns.lastSyncDateForData)
+            if (columns.keepInSync >= 0) availableOfflineStatus = fromValue(c.getInt(columns.keepInSync))
+            if (columns.etag >= 0) etag = c.getString(columns.etag)
+            if (columns.treeEtag >= 0) treeEtag = c.getString(columns.treeEtag)
+            if (columns.sharedViaLink >= 0) isSharedViaLink = c.getInt(columns.sharedViaLink) == 1
+            if (columns.sharedWithSharee >= 0) isSharedWithSharee = c.getInt(columns.sharedWithSharee) == 1
+            if (columns.permissions >= 0) permissions = c.getString(columns.permissions)
+            if (columns.remoteId >= 0) remoteId = c.getString(columns.remoteId)
+            if (columns.updateThumbnail >= 0) setNeedsUpdateThumbnail(c.getInt(columns.updateThumbnail) == 1)
+            if (columns.isDownloading >= 0) isDownloading = c.getInt(columns.isDownloading) == 1
+            if (columns.etagInConflict >= 0) etagInConflict = c.getString(columns.etagInConflict)
+            if (columns.privateLink >= 0) privateLink = c.getString(columns.privateLink)
         }
     }
 
@@ -1178,14 +1542,14 @@ class FileDataStorageManager {
                     val whereForDescendantsInConflict = FILE_ETAG_IN_CONFLICT + " IS NOT NULL AND " +
                             FILE_CONTENT_TYPE + " != 'DIR' AND " +
                             FILE_ACCOUNT_OWNER + " = ? AND " +
-                            FILE_PATH + " LIKE ?"
+                            FILE_PATH + " GLOB ?"
                     val descendantsInConflict: Cursor? =
                         try {
                             performQuery(
                                 uri = CONTENT_URI_FILE,
                                 projection = arrayOf(_ID),
                                 selection = whereForDescendantsInConflict,
-                                selectionArgs = arrayOf(account.name, "$parentPath%"),
+                                selectionArgs = arrayOf(account.name, "${escapeForGlob(parentPath)}*"),
                                 sortOrder = null
                             )
                         } catch (e: RemoteException) {
@@ -1373,11 +1737,17 @@ class FileDataStorageManager {
     }
 
     private fun selectionForAllDescendantsOf(file: OCFile): Pair<String, Array<String>> {
-        val selection = "$FILE_ACCOUNT_OWNER=? AND $FILE_PATH LIKE ? "
-        val selectionArgs = arrayOf(account.name, "${file.remotePath}_%") // one or more characters after remote path
+        val selection = "$FILE_ACCOUNT_OWNER=? AND $FILE_PATH GLOB ? "
+        val selectionArgs = arrayOf(account.name, "${escapeForGlob(file.remotePath)}?*") // one or more characters after remote path
         return Pair(selection, selectionArgs)
     }
 
+    /**
+     * Escapes the wildcards of GLOB in a path, to match paths starting with it. GLOB is case sensitive on its
+     * own, unlike LIKE, so it doesn't depend on the connection settings of the provider.
+     */
+    private fun escapeForGlob(path: String): String = path.replace(GLOB_SPECIAL_CHARACTERS) { "[${it.value}]" }
+
     private fun performQuery(
         uri: Uri,
         projection: Array<String>?,
@@ -1443,5 +1813,19 @@ class FileDataStorageManager {
         private const val pathAudio = "audio/"
         private const val pathVideo = "video/"
         private const val pathImage = "image/"
+
+        // Below the SQLite limit of host parameters in a single statement
+        private const val MAX_SELECTION_ARGS = 500
+
+        // Only what is needed to rewrite the paths of moved files and their descendants
+        private val MOVE_PROJECTION = arrayOf(_ID, FILE_PATH, FILE_CONTENT_TYPE, FILE_STORAGE_PATH)
+
+        private val GLOB_SPECIAL_CHARACTERS = Regex("[*?\\[]")
+
+        // Last usage updates requested from the main thread, applied in order
+        private val lastUsageExecutor = Executors.newSingleThreadExecutor()
+
+        // Files downloaded before the last usage was recorded count as used when they were downloaded
+        private const val LAST_USAGE_OR_DOWNLOAD = "IFNULL($FILE_LAST_USAGE, $FILE_LAST_SYNC_DATE_FOR_DATA)"
     }
 }
@@ -32,6 +32,8 @@ import android.graphics.drawable.Drawable;
 import android.media.ThumbnailUtils;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
 import android.widget.ImageView;
 
 import androidx.core.content.ContextCompat;
@@ -50,7 +52,19 @@ import java.io.File;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manager for concurrent access to thumbnails cache.
@@ -62,14 +76,48 @@ public class ThumbnailsCacheManager {
     private static final Object mThumbnailsDiskCacheLock = new Object();
     private static DiskLruImageCache mThumbnailCache = null;
     private static boolean mThumbnailCacheStarting = true;
+    private static final AtomicBoolean mThumbnailCacheInitRequested = new AtomicBoolean(false);
 
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 10; // 10MB
     private static final CompressFormat mCompressFormat = CompressFormat.JPEG;
     private static final int mCompressQuality = 70;
-    private static OwnCloudClient mClient = null;
 
     private static final String PREVIEW_URI = "%s/remote.php/dav/files/%s%s?x=%d&y=%d&c=%s&preview=1";
 
+    private static final String SCREEN_PREVIEW_URI = "%s/remote.php/dav/files/%s%s?x=%d&y=%d&a=1&c=%s&preview=1";
+    private static final String PREVIEW_CACHE_FOLDER = "previewCache";
+    private static final int PREVIEW_DISK_CACHE_SIZE = 1024 * 1024 * 50; // 50MB
+
+    private static final Object mPreviewDiskCacheLock = new Object();
+    private static DiskLruImageCache mPreviewDiskCache = null;
+    private static final LruCache<String, Bitmap> mPreviewMemoryCache =
+            new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 8)) {
+                @Override
+                protected int sizeOf(String key, Bitmap value) {
+                    return value.getByteCount();
+                }
+            };
+    private static final ThreadPoolExecutor mPreviewPrefetchExecutor = new ThreadPoolExecutor(
+            1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>()
+    );
+
+    // Files with a preview prefetch queued or running, so swiping back and forth doesn't queue them again
+    private static final Set<Long> mPendingPreviewPrefetches = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // Versions, as "remoteId:etag", the server could not provide a preview for
+    private static final int FAILED_PREVIEWS_MAX_ENTRIES = 200;
+    private static final LruCache<String, Boolean> mFailedPreviews = new LruCache<>(FAILED_PREVIEWS_MAX_ENTRIES);
+
+    static {
+        mPreviewPrefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final int THUMBNAIL_POOL_SIZE = 3;
+    private static final ThumbnailExecutor mThumbnailExecutor = new ThumbnailExecutor(THUMBNAIL_POOL_SIZE);
+    // Thumbnails downloaded during this session, as "remoteId:etag"; no need to ask the server again.
+    // Only the most recent ones are kept, older versions are checked against the server as usual.
+    private static final int FRESH_THUMBNAILS_MAX_ENTRIES = 2000;
+    private static final LruCache<String, Boolean> mFreshThumbnails = new LruCache<>(FRESH_THUMBNAILS_MAX_ENTRIES);
+
     public static Bitmap mDefaultImg =
             BitmapFactory.decodeResource(
                     MainApp.Companion.getAppContext().getResources(),
@@ -110,6 +158,16 @@ public class ThumbnailsCacheManager {
         }
     }
 
+    /**
+     * Starts the initialization of the disk cache, unless it was already started. Readers of the cache
+     * call it too, so they never wait for an initialization nobody started.
+     */
+    public static void initDiskCache() {
+        if (mThumbnailCacheInitRequested.compareAndSet(false, true)) {
+            new InitDiskCacheTask().executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+    }
+
     public static void addBitmapToCache(String key, Bitmap bitmap) {
         synchronized (mThumbnailsDiskCacheLock) {
             if (mThumbnailCache != null) {
@@ -127,6 +185,7 @@ public class ThumbnailsCacheManager {
     }
 
     public static Bitmap getBitmapFromDiskCache(String key) {
+        initDiskCache();
         synchronized (mThumbnailsDiskCacheLock) {
             // Wait while disk cache is started from background thread
             while (mThumbnailCacheStarting) {
@@ -143,11 +202,158 @@ public class ThumbnailsCacheManager {
         return null;
     }
 
+    public static boolean isBitmapInDiskCache(String key) {
+        initDiskCache();
+        synchronized (mThumbnailsDiskCacheLock) {
+            // Wait while disk cache is started from background thread
+            while (mThumbnailCacheStarting) {
+                try {
+                    mThumbnailsDiskCacheLock.wait();
+                } catch (InterruptedException e) {
+                    Timber.e(e, "Wait in mThumbnailsDiskCacheLock was interrupted");
+                }
+            }
+            return mThumbnailCache != null && mThumbnailCache.containsKey(key);
+        }
+    }
+
+    /**
+     * @return screen-sized server preview of the file if it is in memory, null otherwise. Safe to
+     * call from the main thread.
+     */
+    public static Bitmap getScreenPreviewFromMemoryCache(OCFile file) {
+        return mPreviewMemoryCache.get(getVersionKey(file));
+    }
+
+    /**
+     * Gets a preview of the file fitting the screen, from the memory cache, the disk cache or the
+     * server, in that order. Blocking, do not call it from the main thread.
+     *
+     * @return preview of the image, or null if the server could not provide it
+     */
+    public static Bitmap getScreenPreview(OCFile file, Account account) {
+        final String key = getVersionKey(file);
+        Bitmap preview = mPreviewMemoryCache.get(key);
+        if (preview != null) {
+            return preview;
+        }
+
+        DiskLruImageCache diskCache = getPreviewDiskCache();
+        if (diskCache != null) {
+            synchronized (mPreviewDiskCacheLock) {
+                preview = diskCache.getBitmap(key);
+            }
+        }
+
+        if (preview == null) {
+            preview = downloadScreenPreview(file, account);
+            if (preview == null) {
+                mFailedPreviews.put(key, Boolean.TRUE);
+            } else if (diskCache != null) {
+                synchronized (mPreviewDiskCacheLock) {
+                    diskCache.put(key, preview);
+                }
+            }
+        }
+
+        if (preview != null) {
+            mFailedPreviews.remove(key);
+            mPreviewMemoryCache.put(key, preview);
+        }
+        return preview;
+    }
+
+    /**
+     * @return true if the last request of a preview for the current version of the file failed, so
+     * it makes no sense to wait for it
+     */
+    public static boolean hasScreenPreviewFailed(OCFile file) {
+        return mFailedPreviews.get(getVersionKey(file)) != null;
+    }
+
+    /**
+     * Fetches screen-sized previews of the given files in background, so they are ready to be
+     * shown when the user swipes to them.
+     */
+    public static void prefetchScreenPreviews(List<OCFile> files, Account account) {
+        for (OCFile file : files) {
+            if (!file.isDown() && file.getRemoteId() != null &&
+                    mPreviewMemoryCache.get(getVersionKey(file)) == null &&
+                    !hasScreenPreviewFailed(file) &&
+                    mPendingPreviewPrefetches.add(file.getFileId())) {
+                mPreviewPrefetchExecutor.execute(() -> {
+                    try {
+                        getScreenPreview(file, account);
+                    } finally {
+                        mPendingPreviewPrefetches.remove(file.getFileId());
+                    }
+                });
+            }
+        }
+    }
+
+    private static DiskLruImageCache getPreviewDiskCache() {
+        synchronized (mPreviewDiskCacheLock) {
+            if (mPreviewDiskCache == null) {
+                try {
+                    final File diskCacheDir = new File(
+                            MainApp.Companion.getAppContext().getExternalCacheDir(), PREVIEW_CACHE_FOLDER
+                    );
+                    mPreviewDiskCache = new DiskLruImageCache(
+                            diskCacheDir,
+                            PREVIEW_DISK_CACHE_SIZE,
+                            mCompressFormat,
+                            mCompressQuality
+                    );
+                } catch (Exception e) {
+                    Timber.e(e, "Preview cache could not be opened");
+                }
+            }
+            return mPreviewDiskCache;
+        }
+    }
+
+    private static Bitmap downloadScreenPreview(OCFile file, Account account) {
+        try {
+            OwnCloudAccount ocAccount = new OwnCloudAccount(account, MainApp.Companion.getAppContext());
+            OwnCloudClient client = SingleSessionManager.getDefaultSingleton().
+                    getClientFor(ocAccount, MainApp.Companion.getAppContext());
+
+            DisplayMetrics metrics = MainApp.Companion.getAppContext().getResources().getDisplayMetrics();
+            int px = Math.max(metrics.widthPixels, metrics.heightPixels);
+            String uri = String.format(Locale.ROOT,
+                    SCREEN_PREVIEW_URI,
+                    client.getBaseUri(),
+                    account.name.split("@")[0],
+                    Uri.encode(file.getRemotePath(), "/"),
+                    px,
+                    px,
+                    file.getEtag());
+            Timber.d("URI: %s", uri);
+
+            GetMethod get = new GetMethod(new URL(uri));
+            int status = client.executeHttpMethod(get);
+            if (status == HttpConstants.HTTP_OK) {
+                return BitmapFactory.decodeStream(get.getResponseBodyAsStream());
+            }
+            client.exhaustResponse(get.getResponseBodyAsStream());
+        } catch (Throwable t) {
+            // the app should never break due to a problem with previews
+            Timber.e(t, "Download of preview for %s failed", file.getRemotePath());
+            if (t instanceof OutOfMemoryError) {
+                System.gc();
+            }
+        }
+        return null;
+    }
+
     public static class ThumbnailGenerationTask extends AsyncTask<Object, Void, Bitmap> {
         private final WeakReference<ImageView> mImageViewReference;
-        private static Account mAccount;
+        private Account mAccount;
+        private OwnCloudClient mClient;
         private Object mFile;
         private FileDataStorageManager mStorageManager;
+        private int mPosition = ThumbnailExecutor.NO_POSITION;
 
         public ThumbnailGenerationTask(ImageView imageView, Account account) {
             // Use a WeakReference to ensure the ImageView can be garbage collected
@@ -160,6 +366,20 @@ public class ThumbnailsCacheManager {
             mImageViewReference = new WeakReference<>(imageView);
         }
 
+        /**
+         * Runs the task in the bounded thumbnail pool, prioritized by its position in the list.
+         * Requests in the visible range run first, then those ahead in the scroll direction;
+         * requests that scrolled out of range before starting are dropped.
+         *
+         * @param position  adapter position of the view the thumbnail is generated for
+         * @param file      {@link OCFile} or {@link File} to generate the thumbnail for
+         */
+        public void executeForPosition(int position, Object file) {
+            mPosition = position;
+            mFile = file;
+            executeOnExecutor(mThumbnailExecutor.forTask(this), file);
+        }
+
         @Override
         protected Bitmap doInBackground(Object... params) {
             Bitmap thumbnail = null;
@@ -191,6 +411,13 @@ public class ThumbnailsCacheManager {
                 }
             }
 
+            if (thumbnail == null && mFile instanceof OCFile) {
+                // Let a later bind or prefetch try again instead of trusting a failed request
+                OCFile file = (OCFile) mFile;
+                mFreshThumbnails.remove(getVersionKey(file));
+                mThumbnailExecutor.unmarkPrefetched(file);
+            }
+
             return thumbnail;
         }
 
@@ -223,7 +450,8 @@ public class ThumbnailsCacheManager {
          */
         private Bitmap addThumbnailToCache(String imageKey, Bitmap bitmap, String path, int px) {
 
-            Bitmap thumbnail = ThumbnailUtils.extractThumbnail(bitmap, px, px);
+            // The decoded bitmap is not needed once cropped, free it before rotating
+            Bitmap thumbnail = ThumbnailUtils.extractThumbnail(bitmap, px, px, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
 
             // Rotate image, obeying exif tag
             thumbnail = BitmapUtils.rotateImage(thumbnail, path);
@@ -265,7 +493,7 @@ public class ThumbnailsCacheManager {
             Bitmap thumbnail = getBitmapFromDiskCache(imageKey);
 
             // Not found in disk cache
-            if (thumbnail == null || file.needsUpdateThumbnail()) {
+            if (thumbnail == null || isThumbnailOutdated(file)) {
 
                 int px = getThumbnailDimension();
 
@@ -280,7 +508,8 @@ public class ThumbnailsCacheManager {
                         if (status == HttpConstants.HTTP_OK) {
                             InputStream inputStream = get.getResponseBodyAsStream();
                             Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                            thumbnail = ThumbnailUtils.extractThumbnail(bitmap, px, px);
+                            thumbnail = ThumbnailUtils.extractThumbnail(
+                                    bitmap, px, px, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
 
                             // Handle PNG
                             if (file.getMimetype().equalsIgnoreCase("image/png")) {
@@ -290,6 +519,7 @@ public class ThumbnailsCacheManager {
                             // Add thumbnail to cache
                             if (thumbnail != null) {
                                 addBitmapToCache(imageKey, thumbnail);
+                                mFreshThumbnails.put(getVersionKey(file), Boolean.TRUE);
                             }
                         } else {
                             mClient.exhaustResponse(get.getResponseBodyAsStream());
@@ -341,6 +571,48 @@ public class ThumbnailsCacheManager {
 
     }
 
+    /**
+     * Updates the range of list positions currently on screen, so pending thumbnail requests are
+     * reordered and the ones that are no longer close to the viewport are cancelled.
+     *
+     * @param firstVisible  first visible adapter position
+     * @param visibleCount  number of visible positions
+     */
+    public static void setVisibleRange(int firstVisible, int visibleCount) {
+        mThumbnailExecutor.setVisibleRange(firstVisible, visibleCount);
+    }
+
+    /**
+     * Downloads thumbnails for files that are about to be shown into the disk cache, so they are
+     * ready when their rows are bound. Files already cached and up to date are skipped.
+     *
+     * @param files     files in the order they will become visible
+     * @param account   account the files belong to
+     * @param firstPosition adapter position of the first file in the list
+     */
+    public static void prefetchThumbnails(List<OCFile> files, Account account, int firstPosition) {
+        int position = firstPosition;
+        for (OCFile file : files) {
+            if (!file.isFolder() && file.getRemoteId() != null && isThumbnailOutdated(file) &&
+                    mThumbnailExecutor.markPrefetched(file)) {
+                new ThumbnailGenerationTask(null, account).executeForPosition(position, file);
+            }
+            position++;
+        }
+    }
+
+    /**
+     * @return true if the thumbnail of the file has to be requested to the server, false if the
+     * cached one is valid for its current version
+     */
+    public static boolean isThumbnailOutdated(OCFile file) {
+        return file.needsUpdateThumbnail() && mFreshThumbnails.get(getVersionKey(file)) == null;
+    }
+
+    private static String getVersionKey(OCFile file) {
+        return file.getRemoteId() + ":" + file.getEtag();
+    }
+
     public static boolean cancelPotentialThumbnailWork(Object file, ImageView imageView) {
         final ThumbnailGenerationTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
 
@@ -386,4 +658,148 @@ public class ThumbnailsCacheManager {
             return bitmapWorkerTaskReference.get();
         }
     }
+
+    /**
+     * Bounded pool for {@link ThumbnailGenerationTask}s, prioritized by distance to the viewport.
+     *
+     * Tasks without a position (e.g. details view, uploads list) always run first. Tasks inside
+     * the visible range run next in top-down order, then those in the scroll direction; pending
+     * tasks that end up more than one screen away from the viewport are cancelled before they
+     * reach the network.
+     */
+    static class ThumbnailExecutor {
+
+        static final int NO_POSITION = -1;
+        private static final int PREFETCHED_MAX_ENTRIES = 500;
+
+        private final ThreadPoolExecutor mExecutor;
+        private final AtomicLong mSequence = new AtomicLong();
+        private final LruCache<String, Boolean> mPrefetched = new LruCache<>(PREFETCHED_MAX_ENTRIES);
+
+        private volatile int mFirstVisible = 0;
+        private volatile int mVisibleCount = 0;
+        private volatile boolean mScrollingDown = true;
+
+        ThumbnailExecutor(int poolSize) {
+            mExecutor = new ThreadPoolExecutor(
+                    poolSize,
+                    poolSize,
+                    30,
+                    TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<>()
+            );
+            mExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        Executor forTask(ThumbnailGenerationTask task) {
+            return runnable -> mExecutor.execute(
+                    new ThumbnailRequest(task, runnable, mSequence.getAndIncrement())
+            );
+        }
+
+        /**
+         * @return true if the thumbnail for the given file version was not requested by a prefetch yet
+         */
+        boolean markPrefetched(OCFile file) {
+            return mPrefetched.put(getVersionKey(file), Boolean.TRUE) == null;
+        }
+
+        void unmarkPrefetched(OCFile file) {
+            mPrefetched.remove(getVersionKey(file));
+        }
+
+        synchronized void setVisibleRange(int firstVisible, int visibleCount) {
+            if (firstVisible == mFirstVisible && visibleCount == mVisibleCount) {
+                return;
+            }
+            if (firstVisible != mFirstVisible) {
+                mScrollingDown = firstVisible > mFirstVisible;
+            }
+            mFirstVisible = firstVisible;
+            mVisibleCount = visibleCount;
+
+            // Priorities are computed on insertion, so pending requests need to be queued again
+            List<Runnable> pending = new ArrayList<>();
+            mExecutor.getQueue().drainTo(pending);
+            for (Runnable runnable : pending) {
+                ThumbnailRequest request = (ThumbnailRequest) runnable;
+                if (isStale(request.mPosition)) {
+                    request.cancel();
+                } else {
+                    mExecutor.getQueue().offer(request.requeue());
+                }
+            }
+        }
+
+        private boolean isStale(int position) {
+            if (position == NO_POSITION || mVisibleCount == 0) {
+                return false;
+            }
+            return position < mFirstVisible - mVisibleCount ||
+                    position > mFirstVisible + 2 * mVisibleCount;
+        }
+
+        /**
+         * Lower values run first: untracked requests, then the visible range, then the next screen
+         * in the scroll direction, then anything else.
+         */
+        private int rank(int position) {
+            if (position == NO_POSITION) {
+                return Integer.MIN_VALUE;
+            }
+            int lastVisible = mFirstVisible + mVisibleCount - 1;
+            if (position >= mFirstVisible && position <= lastVisible) {
+                return position - mFirstVisible;
+            }
+            int ahead = mScrollingDown ? position - lastVisible : mFirstVisible - position;
+            if (ahead > 0) {
+                return mVisibleCount + ahead;
+            }
+            return 3 * mVisibleCount - ahead;
+        }
+
+        private class ThumbnailRequest implements Runnable, Comparable<ThumbnailRequest> {
+            private final ThumbnailGenerationTask mTask;
+            private final Runnable mRunnable;
+            private final long mSequence;
+            private final int mPosition;
+            private int mRank;
+
+            ThumbnailRequest(ThumbnailGenerationTask task, Runnable runnable, long sequence) {
+                mTask = task;
+                mRunnable = runnable;
+                mSequence = sequence;
+                mPosition = task.mPosition;
+                mRank = rank(mPosition);
+            }
+
+            ThumbnailRequest requeue() {
+                mRank = rank(mPosition);
+                return this;
+            }
+
+            void cancel() {
+                // AsyncTask delivers onCancelled itself; its runnable is never started
+                mTask.cancel(false);
+                if (mTask.mFile instanceof OCFile) {
+                    unmarkPrefetched((OCFile) mTask.mFile);
+                }
+            }
+
+            @Override
+            public void run() {
+                if (!mTask.isCancelled() && isStale(mPosition)) {
+                    cancel();
+                    return;
+                }
+                mRunnable.run();
+            }
+
+            @Override
+            public int compareTo(ThumbnailRequest other) {
+                int byRank = Integer.compare(mRank, other.mRank);
+                return byRank != 0 ? byRank : Long.compare(mSequence, other.mSequence);
+            }
+        }
+    }
 }
@@ -36,10 +36,6 @@ import timber.log.Timber;
 import java.util.Calendar;
 import java.util.Observable;
 
-import static com.uteknoid.drive.extensions.CursorExtKt.getIntFromColumnOrThrow;
-import static com.uteknoid.drive.extensions.CursorExtKt.getLongFromColumnOrThrow;
-import static com.uteknoid.drive.extensions.CursorExtKt.getStringFromColumnOrThrow;
-
 /**
  * Database helper for storing list of files to be uploaded, including status
  * information for each file.
@@ -169,11 +165,12 @@ public class UploadsStorageManager extends Observable {
     private int updateUploadInternal(Cursor c, UploadStatus status, UploadResult result, String remotePath,
                                      String localPath) {
         int r = 0;
+        UploadColumns columns = new UploadColumns(c);
         while (c.moveToNext()) {
             // read upload object and update
-            OCUpload upload = createOCUploadFromCursor(c);
+            OCUpload upload = createOCUploadFromCursor(c, columns);
 
-            String path = getStringFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_LOCAL_PATH);
+            String path = upload.getLocalPath();
             Timber.v("Updating " + path + " with status:" + status + " and result:" + (result == null ? "null" :
                     result.toString()) + " (old:" + upload.toFormattedString() + ")");
 
@@ -318,8 +315,9 @@ public class UploadsStorageManager extends Observable {
         );
         OCUpload[] list = new OCUpload[c.getCount()];
         if (c.moveToFirst()) {
+            UploadColumns columns = new UploadColumns(c);
             do {
-                OCUpload upload = createOCUploadFromCursor(c);
+                OCUpload upload = createOCUploadFromCursor(c, columns);
                 if (upload == null) {
                     Timber.e("OCUpload could not be created from cursor");
                 } else {
@@ -332,24 +330,59 @@ public class UploadsStorageManager extends Observable {
         return list;
     }
 
-    private OCUpload createOCUploadFromCursor(Cursor c) {
+    /**
+     * Indices of the upload columns in a cursor, resolved once and reused for every row.
+     */
+    private static class UploadColumns {
+        final int mLocalPath;
+        final int mRemotePath;
+        final int mAccountName;
+        final int mFileSize;
+        final int mId;
+        final int mStatus;
+        final int mLocalBehaviour;
+        final int mForceOverwrite;
+        final int mIsCreateRemoteFolder;
+        final int mUploadEndTimestamp;
+        final int mLastResult;
+        final int mCreatedBy;
+        final int mTransferId;
+
+        UploadColumns(Cursor c) {
+            mLocalPath = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_LOCAL_PATH);
+            mRemotePath = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_REMOTE_PATH);
+            mAccountName = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_ACCOUNT_NAME);
+            mFileSize = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_FILE_SIZE);
+            mId = c.getColumnIndexOrThrow(ProviderTableMeta._ID);
+            mStatus = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_STATUS);
+            mLocalBehaviour = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_LOCAL_BEHAVIOUR);
+            mForceOverwrite = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_FORCE_OVERWRITE);
+            mIsCreateRemoteFolder = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_IS_CREATE_REMOTE_FOLDER);
+            mUploadEndTimestamp = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP);
+            mLastResult = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_LAST_RESULT);
+            mCreatedBy = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_CREATED_BY);
+            mTransferId = c.getColumnIndexOrThrow(ProviderTableMeta.UPLOADS_TRANSFER_ID);
+        }
+    }
+
+    private OCUpload createOCUploadFromCursor(Cursor c, UploadColumns columns) {
         OCUpload upload = null;
         if (c != null) {
-            String localPath = getStringFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_LOCAL_PATH);
-            String remotePath = getStringFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_REMOTE_PATH);
-            String accountName = getStringFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_ACCOUNT_NAME);
+            String localPath = c.getString(columns.mLocalPath);
+            String remotePath = c.getString(columns.mRemotePath);
+            String accountName = c.getString(columns.mAccountName);
             upload = new OCUpload(localPath, remotePath, accountName);
 
-            upload.setFileSize(getLongFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_FILE_SIZE));
-            upload.setUploadId(getLongFromColumnOrThrow(c, ProviderTableMeta._ID));
-            upload.setUploadStatus(UploadStatus.fromValue(getIntFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_STATUS)));
-            upload.setLocalAction(getIntFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_LOCAL_BEHAVIOUR));
-            upload.setForceOverwrite(getIntFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_FORCE_OVERWRITE) == 1);
-            upload.setCreateRemoteFolder(getIntFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_IS_CREATE_REMOTE_FOLDER) == 1);
-            upload.setUploadEndTimestamp(getLongFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_UPLOAD_END_TIMESTAMP));
-            upload.setLastResult(UploadResult.fromValue(getIntFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_LAST_RESULT)));
-            upload.setCreatedBy(getIntFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_CREATED_BY));
-            upload.setTransferId(getStringFromColumnOrThrow(c, ProviderTableMeta.UPLOADS_TRANSFER_ID));
+            upload.setFileSize(c.getLong(columns.mFileSize));
+            upload.setUploadId(c.getLong(columns.mId));
+            upload.setUploadStatus(UploadStatus.fromValue(c.getInt(columns.mStatus)));
+            upload.setLocalAction(c.getInt(columns.mLocalBehaviour));
+            upload.setForceOverwrite(c.getInt(columns.mForceOverwrite) == 1);
+            upload.setCreateRemoteFolder(c.getInt(columns.mIsCreateRemoteFolder) == 1);
+            upload.setUploadEndTimestamp(c.getLong(columns.mUploadEndTimestamp));
+            upload.setLastResult(UploadResult.fromValue(c.getInt(columns.mLastResult)));
+            upload.setCreatedBy(c.getInt(columns.mCreatedBy));
+            upload.setTransferId(c.getString(columns.mTransferId));
         }
         return upload;
     }
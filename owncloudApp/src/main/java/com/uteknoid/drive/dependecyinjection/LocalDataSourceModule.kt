@@ -48,6 +48,7 @@ val localDataSourceModule = module {
     single { OwncloudDatabase.getDatabase(androidContext()).shareDao() }
     single { OwncloudDatabase.getDatabase(androidContext()).userDao() }
     single { OwncloudDatabase.getDatabase(androidContext()).folderBackUpDao() }
+    single { OwncloudDatabase.getDatabase(androidContext()).uploadedContentDao() }
 
     single<SharedPreferencesProvider> { SharedPreferencesProviderImpl(get()) }
     single<LocalStorageProvider> { ScopedStorageProvider(dataFolder, androidContext()) }
@@ -46,6 +46,7 @@ import com.uteknoid.drive.domain.sharing.shares.usecases.EditPublicShareAsyncUse
 import com.uteknoid.drive.domain.sharing.shares.usecases.GetShareAsLiveDataUseCase
 import com.uteknoid.drive.domain.sharing.shares.usecases.GetSharesAsLiveDataUseCase
 import com.uteknoid.drive.domain.sharing.shares.usecases.RefreshSharesFromServerAsyncUseCase
+import com.uteknoid.drive.domain.sharing.shares.usecases.RefreshSharesOfFolderFromServerAsyncUseCase
 import com.uteknoid.drive.domain.user.usecases.GetStoredQuotaUseCase
 import com.uteknoid.drive.domain.user.usecases.GetUserAvatarAsyncUseCase
 import com.uteknoid.drive.domain.user.usecases.GetUserInfoAsyncUseCase
@@ -74,6 +75,7 @@ val useCaseModule = module {
     factory { GetSharesAsLiveDataUseCase(get()) }
     factory { GetShareAsLiveDataUseCase(get()) }
     factory { RefreshSharesFromServerAsyncUseCase(get()) }
+    factory { RefreshSharesOfFolderFromServerAsyncUseCase(get()) }
     factory { CreatePrivateShareAsyncUseCase(get()) }
     factory { EditPrivateShareAsyncUseCase(get()) }
     factory { CreatePublicShareAsyncUseCase(get()) }
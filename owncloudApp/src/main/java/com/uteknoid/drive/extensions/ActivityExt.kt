@@ -228,9 +228,9 @@ fun Activity.openFileWithIntent(intentForSavedMimeType: Intent, intentForGuessed
     }
 }
 
-fun AppCompatActivity.sendFile(file: File?) {
+fun AppCompatActivity.sendFile(file: File?, mimeType: String? = null) {
     if (file != null) {
-        val sendIntent: Intent = makeIntent(file, this)
+        val sendIntent: Intent = makeIntent(file, mimeType, this)
         // Show dialog, without the own app
         val packagesToExclude = arrayOf<String>(this.packageName)
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
@@ -250,11 +250,11 @@ fun AppCompatActivity.sendFile(file: File?) {
     }
 }
 
-private fun makeIntent(file: File?, context: Context): Intent {
+private fun makeIntent(file: File?, mimeType: String?, context: Context): Intent {
     val sendIntent = Intent(Intent.ACTION_SEND)
     if (file != null) {
         // set MimeType
-        sendIntent.type = MimetypeIconUtil.getBestMimeTypeByFilename(file.name)
+        sendIntent.type = mimeType ?: MimetypeIconUtil.getBestMimeTypeByFilename(file.name)
         sendIntent.putExtra(
             Intent.EXTRA_STREAM,
             getExposedFileUri(context, file.path)
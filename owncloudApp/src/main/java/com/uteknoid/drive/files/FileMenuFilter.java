@@ -57,6 +57,14 @@ public class FileMenuFilter {
     private Account mAccount;
     private Context mContext;
 
+    // Properties of the whole selection, gathered in a single pass over it
+    private boolean mContainsFolder;
+    private boolean mAnyFileDown;
+    private boolean mAllFilesDown;
+    private boolean mAnyFavorite;
+    private boolean mAnyUnfavorite;
+    private boolean mAnyFileSharedWithMe;
+
     /**
      * Constructor
      *
@@ -71,6 +79,23 @@ public class FileMenuFilter {
         mAccount = account;
         mComponentsGetter = cg;
         mContext = context;
+        if (mFiles != null) {
+            gatherSelectionProperties();
+        }
+    }
+
+    private void gatherSelectionProperties() {
+        mAllFilesDown = true;
+        for (OCFile file : mFiles) {
+            mContainsFolder |= file.isFolder();
+            boolean down = file.isDown();
+            mAnyFileDown |= down;
+            mAllFilesDown &= down;
+            OCFile.AvailableOfflineStatus availableOfflineStatus = file.getAvailableOfflineStatus();
+            mAnyFavorite |= availableOfflineStatus == OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE;
+            mAnyUnfavorite |= availableOfflineStatus == OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE;
+            mAnyFileSharedWithMe |= file.isSharedWithMe();
+        }
     }
 
     /**
@@ -147,7 +172,7 @@ public class FileMenuFilter {
 
         boolean videoPreviewing = anyFileVideoPreviewing();
 
-        boolean videoStreaming = !anyFileDown() && anyFileVideoPreviewing();
+        boolean videoStreaming = !anyFileDown() && videoPreviewing;
 
         /// decision is taken for each possible action on a file in the menu
 
@@ -286,33 +311,15 @@ public class FileMenuFilter {
     }
 
     private boolean anyFileSynchronizing(OperationsServiceBinder opsBinder) {
-        boolean synchronizing = false;
-        if (opsBinder != null) {
-            for (int i = 0; !synchronizing && i < mFiles.size(); i++) {
-                synchronizing = opsBinder.isSynchronizing(mAccount, mFiles.get(i));
-            }
-        }
-        return synchronizing;
+        return opsBinder != null && opsBinder.isAnySynchronizing(mAccount, mFiles);
     }
 
     private boolean anyFileDownloading(FileDownloaderBinder downloaderBinder) {
-        boolean downloading = false;
-        if (downloaderBinder != null) {
-            for (int i = 0; !downloading && i < mFiles.size(); i++) {
-                downloading = downloaderBinder.isDownloading(mAccount, mFiles.get(i));
-            }
-        }
-        return downloading;
+        return downloaderBinder != null && downloaderBinder.isAnyDownloading(mAccount, mFiles);
     }
 
     private boolean anyFileUploading(FileUploaderBinder uploaderBinder) {
-        boolean uploading = false;
-        if (uploaderBinder != null) {
-            for (int i = 0; !uploading && i < mFiles.size(); i++) {
-                uploading = uploaderBinder.isUploading(mAccount, mFiles.get(i));
-            }
-        }
-        return uploading;
+        return uploaderBinder != null && uploaderBinder.isAnyUploading(mAccount, mFiles);
     }
 
     private boolean anyFileVideoPreviewing() {
@@ -338,56 +345,26 @@ public class FileMenuFilter {
     }
 
     private boolean areDownloaded() {
-        for (OCFile file : mFiles) {
-            if (!file.isDown()) {
-                return false;
-            }
-        }
-        return true;
+        return mAllFilesDown;
     }
 
     private boolean containsFolder() {
-        for (OCFile file : mFiles) {
-            if (file.isFolder()) {
-                return true;
-            }
-        }
-        return false;
+        return mContainsFolder;
     }
 
     private boolean anyFileDown() {
-        for (OCFile file : mFiles) {
-            if (file.isDown()) {
-                return true;
-            }
-        }
-        return false;
+        return mAnyFileDown;
     }
 
     private boolean anyFavorite() {
-        for (OCFile file : mFiles) {
-            if (file.getAvailableOfflineStatus() == OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE) {
-                return true;
-            }
-        }
-        return false;
+        return mAnyFavorite;
     }
 
     private boolean anyUnfavorite() {
-        for (OCFile file : mFiles) {
-            if (file.getAvailableOfflineStatus() == OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE) {
-                return true;
-            }
-        }
-        return false;
+        return mAnyUnfavorite;
     }
 
     private boolean anyFileSharedWithMe() {
-        for (OCFile file : mFiles) {
-            if (file.isSharedWithMe()) {
-                return true;
-            }
-        }
-        return false;
+        return mAnyFileSharedWithMe;
     }
 }
@@ -28,6 +28,7 @@ import android.accounts.OnAccountsUpdateListener;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Build;
@@ -64,6 +65,7 @@ import timber.log.Timber;
 import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.AbstractList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
@@ -89,6 +91,10 @@ public class FileDownloader extends Service
     private FileDataStorageManager mStorageManager;
 
     private final IndexedForest<DownloadFileOperation> mPendingDownloads = new IndexedForest<>();
+    // Downloads run outside of this service, e.g. by AvailableOfflineFolderWorker
+    private static final IndexedForest<DownloadFileOperation> sExternalDownloads = new IndexedForest<>();
+    // Queue of the running service, checked before registering an external download
+    private static volatile IndexedForest<DownloadFileOperation> sPendingDownloads = null;
 
     private DownloadFileOperation mCurrentDownload = null;
 
@@ -106,6 +112,40 @@ public class FileDownloader extends Service
         return FileDownloader.class.getName() + DOWNLOAD_FINISH_MESSAGE;
     }
 
+    /**
+     * Registers a download run outside of this service, so that the binder reports it as any other and
+     * interested activities are told when it is added.
+     *
+     * @return false if the file is already queued in this service or registered by someone else; the download
+     * must not be run then, nor unregistered.
+     */
+    public static boolean registerExternalDownload(Context context, DownloadFileOperation download) {
+        IndexedForest<DownloadFileOperation> pendingDownloads = sPendingDownloads;
+        if (pendingDownloads != null &&
+                pendingDownloads.contains(download.getAccount().name, download.getRemotePath())) {
+            return false;
+        }
+        Pair<String, String> putResult = sExternalDownloads.putIfAbsent(
+                download.getAccount().name, download.getRemotePath(), download);
+        if (putResult == null) {
+            return false;
+        }
+        sendBroadcastNewDownload(LocalBroadcastManager.getInstance(context), download, putResult.second);
+        return true;
+    }
+
+    /**
+     * Unregisters a download added with {@link #registerExternalDownload(Context, DownloadFileOperation)} once
+     * it is over, and tells interested activities about its result.
+     */
+    public static void unregisterExternalDownload(Context context, DownloadFileOperation download,
+                                                  RemoteOperationResult downloadResult) {
+        Pair<DownloadFileOperation, String> removeResult = sExternalDownloads.removePayload(
+                download.getAccount().name, download.getRemotePath());
+        sendBroadcastDownloadFinished(LocalBroadcastManager.getInstance(context), download, downloadResult,
+                removeResult.second);
+    }
+
     /**
      * Service initialization
      */
@@ -127,6 +167,8 @@ public class FileDownloader extends Service
 
         // create manager for local broadcasts
         mLocalBroadcastManager = LocalBroadcastManager.getInstance(this);
+
+        sPendingDownloads = mPendingDownloads;
     }
 
     /**
@@ -135,6 +177,7 @@ public class FileDownloader extends Service
     @Override
     public void onDestroy() {
         Timber.v("Destroying service");
+        sPendingDownloads = null;
         mBinder = null;
         mServiceHandler = null;
         mServiceLooper.quit();
@@ -189,7 +232,7 @@ public class FileDownloader extends Service
                 if (putResult != null) {
                     String downloadKey = putResult.first;
                     requestedDownloads.add(downloadKey);
-                    sendBroadcastNewDownload(newDownload, putResult.second);
+                    sendBroadcastNewDownload(mLocalBroadcastManager, newDownload, putResult.second);
                 }   // else, file already in the queue of downloads; don't repeat the request
 
             } catch (IllegalArgumentException e) {
@@ -309,7 +352,23 @@ public class FileDownloader extends Service
             if (account == null || file == null) {
                 return false;
             }
-            return (mPendingDownloads.contains(account.name, file.getRemotePath()));
+            return (mPendingDownloads.contains(account.name, file.getRemotePath()) ||
+                    sExternalDownloads.contains(account.name, file.getRemotePath()));
+        }
+
+        /**
+         * Returns True when any of 'files' is downloading or waiting to download, as
+         * {@link #isDownloading(Account, OCFile)} would for each of them.
+         *
+         * @param account ownCloud account where the remote files are stored.
+         * @param files   Files that could be in the queue of downloads.
+         */
+        public boolean isAnyDownloading(Account account, Collection<OCFile> files) {
+            if (account == null || files == null) {
+                return false;
+            }
+            return (mPendingDownloads.containsAny(account.name, files) ||
+                    sExternalDownloads.containsAny(account.name, files));
         }
 
         /**
@@ -441,7 +500,7 @@ public class FileDownloader extends Service
                 /// perform the download
                 downloadResult = mCurrentDownload.execute(mDownloadClient);
                 if (downloadResult.isSuccess()) {
-                    saveDownloadedFile();
+                    mCurrentDownload.saveDownloadedFile(mStorageManager);
                 }
 
             } catch (Exception e) {
@@ -484,34 +543,13 @@ public class FileDownloader extends Service
                 /// notify result
                 notifyDownloadResult(mCurrentDownload, downloadResult);
 
-                sendBroadcastDownloadFinished(mCurrentDownload, downloadResult, removeResult.second);
+                sendBroadcastDownloadFinished(mLocalBroadcastManager, mCurrentDownload, downloadResult,
+                        removeResult.second);
             }
 
         }
     }
 
-    /**
-     * Updates the OC File after a successful download.
-     * <p>
-     * TODO move to DownloadFileOperation
-     */
-    private void saveDownloadedFile() {
-        OCFile file = mStorageManager.getFileById(mCurrentDownload.getFile().getFileId());
-        long syncDate = System.currentTimeMillis();
-        file.setLastSyncDateForProperties(syncDate);
-        file.setLastSyncDateForData(syncDate);
-        file.setNeedsUpdateThumbnail(true);
-        file.setModificationTimestamp(mCurrentDownload.getModificationTimestamp());
-        file.setModificationTimestampAtLastSyncForData(mCurrentDownload.getModificationTimestamp());
-        file.setEtag(mCurrentDownload.getEtag());
-        file.setMimetype(mCurrentDownload.getMimeType());
-        file.setStoragePath(mCurrentDownload.getSavePath());
-        file.setFileLength((new File(mCurrentDownload.getSavePath()).length()));
-        file.setRemoteId(mCurrentDownload.getFile().getRemoteId());
-        mStorageManager.saveFile(file);
-        mStorageManager.saveConflict(file, null);
-    }
-
     /**
      * Creates a status notification to show the download progress
      *
@@ -632,11 +670,13 @@ public class FileDownloader extends Service
      * Sends a broadcast when a download finishes in order to the interested activities can
      * update their view
      *
+     * @param localBroadcastManager  Manager used to send the broadcast
      * @param download               Finished download operation
      * @param downloadResult         Result of the download operation
      * @param unlinkedFromRemotePath Path in the downloads tree where the download was unlinked from
      */
-    private void sendBroadcastDownloadFinished(
+    private static void sendBroadcastDownloadFinished(
+            LocalBroadcastManager localBroadcastManager,
             DownloadFileOperation download,
             RemoteOperationResult downloadResult,
             String unlinkedFromRemotePath) {
@@ -649,23 +689,25 @@ public class FileDownloader extends Service
         if (unlinkedFromRemotePath != null) {
             end.putExtra(Extras.EXTRA_LINKED_TO_PATH, unlinkedFromRemotePath);
         }
-        mLocalBroadcastManager.sendBroadcast(end);
+        localBroadcastManager.sendBroadcast(end);
     }
 
     /**
      * Sends a broadcast when a new download is added to the queue.
      *
+     * @param localBroadcastManager Manager used to send the broadcast
      * @param download           Added download operation
      * @param linkedToRemotePath Path in the downloads tree where the download was linked to
      */
-    private void sendBroadcastNewDownload(DownloadFileOperation download,
-                                          String linkedToRemotePath) {
+    private static void sendBroadcastNewDownload(LocalBroadcastManager localBroadcastManager,
+                                                 DownloadFileOperation download,
+                                                 String linkedToRemotePath) {
         Intent added = new Intent(getDownloadAddedMessage());
         added.putExtra(Extras.EXTRA_ACCOUNT_NAME, download.getAccount().name);
         added.putExtra(Extras.EXTRA_REMOTE_PATH, download.getRemotePath());
         added.putExtra(Extras.EXTRA_FILE_PATH, download.getSavePath());
         added.putExtra(Extras.EXTRA_LINKED_TO_PATH, linkedToRemotePath);
-        mLocalBroadcastManager.sendBroadcast(added);
+        localBroadcastManager.sendBroadcast(added);
     }
 
     /**
@@ -70,12 +70,14 @@ import com.uteknoid.drive.ui.activity.UploadListActivity;
 import com.uteknoid.drive.ui.errorhandling.ErrorMessageAdapter;
 import com.uteknoid.drive.utils.Extras;
 import com.uteknoid.drive.utils.NotificationUtils;
+import com.uteknoid.drive.utils.RemoteFileUtils;
 import com.uteknoid.drive.utils.SecurityUtils;
 import timber.log.Timber;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
 import java.util.AbstractList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -374,6 +376,7 @@ public class FileUploader extends Service
                 boolean isChunkingAllowed =
                         capabilitiesForAccount != null && capabilitiesForAccount.isChunkingAllowed();
                 Timber.d("Chunking is allowed: %s", isChunkingAllowed);
+                RemoteFileUtils.UploadBatch uploadBatch = new RemoteFileUtils.UploadBatch();
                 for (OCFile ocFile : files) {
 
                     OCUpload ocUpload = new OCUpload(ocFile, account);
@@ -410,6 +413,7 @@ public class FileUploader extends Service
                     }
 
                     newUploadFileOperation.setCreatedBy(createdBy);
+                    newUploadFileOperation.setUploadBatch(uploadBatch);
                     if (isCreateRemoteFolder) {
                         newUploadFileOperation.setRemoteFolderToBeCreated();
                     }
@@ -645,6 +649,20 @@ public class FileUploader extends Service
             return (mPendingUploads.contains(account.name, file.getRemotePath()));
         }
 
+        /**
+         * Returns True when any of 'files' is uploading or waiting to upload, as
+         * {@link #isUploading(Account, OCFile)} would for each of them.
+         *
+         * @param account Owncloud account where the remote files will be stored.
+         * @param files   Files that could be in the queue of pending uploads.
+         */
+        public boolean isAnyUploading(Account account, Collection<OCFile> files) {
+            if (account == null || files == null) {
+                return false;
+            }
+            return (mPendingUploads.containsAny(account.name, files));
+        }
+
         public boolean isUploadingNow(OCUpload upload) {
             return (
                     upload != null &&
@@ -25,7 +25,7 @@ import android.util.Pair;
 import com.uteknoid.drive.datamodel.OCFile;
 import timber.log.Timber;
 
-import java.io.File;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -38,16 +38,24 @@ import java.util.concurrent.ConcurrentMap;
  *  A map provides the indexation based in hashing.
  *
  *  A tree is created per account.
+ *
+ *  Changes are serialized, while queries are answered without locking from the map and from the count of
+ *  pending values kept in every node, so the UI can ask about files and folders while the services
+ *  add and remove transfers.
  */
 public class IndexedForest<V> {
 
+    private static final char SEPARATOR = '/';
+
     private ConcurrentMap<String, Node<V>> mMap = new ConcurrentHashMap<String, Node<V>>();
 
     private class Node<V> {
         String mKey = null;
         Node<V> mParent = null;
-        Set<Node<V>> mChildren = new HashSet<Node<V>>();    // TODO be careful with hash()
+        Set<Node<V>> mChildren = new HashSet<Node<V>>();    // only accessed while holding the forest lock
         V mPayload = null;
+        // values in the subtree of the node, including itself
+        volatile int mPendingCount = 0;
 
         // payload is optional
         public Node(String key, V payload) {
@@ -96,7 +104,7 @@ public class IndexedForest<V> {
         }
     }
 
-    public /* synchronized */ Pair<String, String> putIfAbsent(String accountName, String remotePath, V value) {
+    public synchronized Pair<String, String> putIfAbsent(String accountName, String remotePath, V value) {
         String targetKey = buildKey(accountName, remotePath);
 
         Node<V> valuedNode = new Node(targetKey, value);
@@ -114,10 +122,7 @@ public class IndexedForest<V> {
             Node<V> currentNode = valuedNode, parentNode = null;
             boolean linked = false;
             while (!OCFile.ROOT_PATH.equals(currentPath) && !linked) {
-                parentPath = new File(currentPath).getParent();
-                if (!parentPath.endsWith(File.separator)) {
-                    parentPath += File.separator;
-                }
+                parentPath = getParentPath(currentPath);
                 parentKey = buildKey(accountName, parentPath);
                 parentNode = mMap.get(parentKey);
                 if (parentNode == null) {
@@ -131,6 +136,9 @@ public class IndexedForest<V> {
                 currentPath = parentPath;
                 currentNode = parentNode;
             }
+            if (value != null) {
+                updatePendingCount(valuedNode, 1);
+            }
 
             String linkedTo = OCFile.ROOT_PATH;
             if (linked) {
@@ -141,11 +149,14 @@ public class IndexedForest<V> {
         }
     }
 
-    public Pair<V, String> removePayload(String accountName, String remotePath) {
+    public synchronized Pair<V, String> removePayload(String accountName, String remotePath) {
         String targetKey = buildKey(accountName, remotePath);
         Node<V> target = mMap.get(targetKey);
         if (target != null) {
-            target.clearPayload();
+            if (target.getPayload() != null) {
+                target.clearPayload();
+                updatePendingCount(target, -1);
+            }
             if (!target.hasChildren()) {
                 return remove(accountName, remotePath);
             }
@@ -153,7 +164,7 @@ public class IndexedForest<V> {
         return new Pair<V, String>(null, null);
     }
 
-    public /* synchronized */ Pair<V, String> remove(String accountName, String remotePath) {
+    public synchronized Pair<V, String> remove(String accountName, String remotePath) {
         String targetKey = buildKey(accountName, remotePath);
         Node<V> firstRemoved = mMap.remove(targetKey);
         String unlinkedFrom = null;
@@ -162,13 +173,15 @@ public class IndexedForest<V> {
             /// remove children
             removeDescendants(firstRemoved);
 
+            /// discount the whole subtree from the ancestors that stay
+            updatePendingCount(firstRemoved, -firstRemoved.mPendingCount);
+
             /// remove ancestors if only here due to firstRemoved
             Node<V> removed = firstRemoved;
             Node<V> parent = removed.getParent();
-            boolean unlinked = false;
             while (parent != null) {
                 parent.removeChild(removed);
-                if (!parent.hasChildren()) {
+                if (!parent.hasChildren() && parent.getPayload() == null) {
                     removed = mMap.remove(parent.getKey());
                     parent = removed.getParent();
                 } else {
@@ -196,12 +209,49 @@ public class IndexedForest<V> {
         }
     }
 
+    /**
+     * Adds delta to the count of pending values of a node and all its ancestors.
+     */
+    private void updatePendingCount(Node<V> node, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        for (Node<V> current = node; current != null; current = current.getParent()) {
+            current.mPendingCount += delta;
+        }
+    }
+
+    /**
+     * @return true if there is a value for the file in 'remotePath', or for any of its descendants if it's a folder.
+     */
     public boolean contains(String accountName, String remotePath) {
-        String targetKey = buildKey(accountName, remotePath);
-        return mMap.containsKey(targetKey);
+        return getPendingCount(accountName, remotePath) > 0;
     }
 
-    public /* synchronized */ V get(String key) {
+    /**
+     * @return true if {@link #contains(String, String)} is true for any of the given files.
+     */
+    public boolean containsAny(String accountName, Collection<OCFile> files) {
+        if (mMap.isEmpty()) {
+            return false;
+        }
+        for (OCFile file : files) {
+            if (contains(accountName, file.getRemotePath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of values for the file in 'remotePath' and, if it's a folder, all its descendants.
+     */
+    public int getPendingCount(String accountName, String remotePath) {
+        Node<V> node = mMap.get(buildKey(accountName, remotePath));
+        return (node != null) ? node.mPendingCount : 0;
+    }
+
+    public V get(String key) {
         Node<V> node = mMap.get(key);
         if (node != null) {
             return node.getPayload();
@@ -219,7 +269,7 @@ public class IndexedForest<V> {
      * Remove the elements that contains account as a part of its key
      * @param accountName
      */
-    public void remove(String accountName) {
+    public synchronized void remove(String accountName) {
         Iterator<String> it = mMap.keySet().iterator();
         while (it.hasNext()) {
             String key = it.next();
@@ -239,4 +289,15 @@ public class IndexedForest<V> {
     public String buildKey(String accountName, String remotePath) {
         return accountName + remotePath;
     }
+
+    /**
+     * @return path of the folder containing 'remotePath', ending with a separator.
+     */
+    private static String getParentPath(String remotePath) {
+        int end = (remotePath.charAt(remotePath.length() - 1) == SEPARATOR) ?
+                remotePath.length() - 1 :
+                remotePath.length();
+        int lastSeparator = remotePath.lastIndexOf(SEPARATOR, end - 1);
+        return remotePath.substring(0, lastSeparator + 1);
+    }
 }
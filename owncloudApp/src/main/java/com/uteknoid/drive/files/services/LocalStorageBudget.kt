@@ -0,0 +1,83 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.files.services
+
+import com.uteknoid.drive.data.preferences.datasources.SharedPreferencesProvider
+import com.uteknoid.drive.datamodel.FileDataStorageManager
+import com.uteknoid.drive.presentation.ui.settings.fragments.SettingsAdvancedFragment.Companion.PREF_LOCAL_STORAGE_LIMIT
+import com.uteknoid.drive.providers.WorkManagerProvider
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.inject
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Keeps the space taken by the downloaded files of each account within the limit set in the settings.
+ *
+ * The usage of an account is read from the database the first time it is needed, and then updated with every
+ * download, so checking it does not touch the database nor the file system. Removed files are not discounted,
+ * so the usage may be overestimated until the eviction reads it again from the database.
+ */
+object LocalStorageBudget : KoinComponent {
+
+    private val preferencesProvider: SharedPreferencesProvider by inject()
+    private val workManagerProvider: WorkManagerProvider by inject()
+
+    private val usageByAccount = ConcurrentHashMap<String, AtomicLong>()
+
+    /**
+     * @return maximum space in bytes for the downloaded files of each account, 0 if there is no limit.
+     */
+    @JvmStatic
+    fun getLimit(): Long {
+        val limitInMegabytes = preferencesProvider.getString(PREF_LOCAL_STORAGE_LIMIT, null)?.toLongOrNull() ?: 0
+        return limitInMegabytes * BYTES_PER_MEGABYTE
+    }
+
+    /**
+     * Adds a downloaded file to the usage of its account, and schedules the eviction of the least recently used
+     * files if the limit is exceeded.
+     *
+     * @param previousLength size of the previous local copy of the file, 0 if there was none.
+     * @param length         size of the downloaded file.
+     */
+    @JvmStatic
+    fun onFileDownloaded(storageManager: FileDataStorageManager, previousLength: Long, length: Long) {
+        val accountName = storageManager.account.name
+        val trackedUsage = usageByAccount[accountName]?.addAndGet(length - previousLength)
+
+        val limit = getLimit()
+        if (limit <= 0) return
+
+        // The file is already saved, so reading the usage from the database accounts for it
+        val usage = trackedUsage ?: storageManager.getDownloadedFilesSize().also { setUsage(accountName, it) }
+        if (usage > limit) {
+            workManagerProvider.enqueueLocalStorageEvictionWorker(accountName)
+        }
+    }
+
+    /**
+     * Replaces the tracked usage of an account with the one read from the database.
+     */
+    fun setUsage(accountName: String, usage: Long) {
+        usageByAccount[accountName] = AtomicLong(usage)
+    }
+
+    private const val BYTES_PER_MEGABYTE = 1024L * 1024L
+}
@@ -38,10 +38,13 @@ import com.uteknoid.drive.datamodel.OCFile;
 import com.uteknoid.drive.datamodel.OCUpload;
 import com.uteknoid.drive.datamodel.UploadsStorageManager;
 import com.uteknoid.drive.db.UploadResult;
+import com.uteknoid.drive.domain.camerauploads.model.FolderBackUpConfiguration;
 import com.uteknoid.drive.usecases.RetryUploadFromContentUriUseCase;
+import com.uteknoid.drive.usecases.UploadFileFromContentUriUseCase;
 import com.uteknoid.drive.utils.ConnectivityUtils;
 import com.uteknoid.drive.utils.Extras;
 import com.uteknoid.drive.utils.PowerUtils;
+import com.uteknoid.drive.utils.UriUtils;
 import timber.log.Timber;
 
 import java.net.SocketTimeoutException;
@@ -117,6 +120,44 @@ public class TransferRequester {
         );
     }
 
+    /**
+     * Call to upload a new single file reading it straight from a content URI, without a local copy. The permission
+     * to read the URI has to be kept until the upload is done, since it may run later in the background.
+     *
+     * @return The upload stored for the file, to follow or cancel it.
+     */
+    public OCUpload uploadNewFileFromContentUri(Context context, Account account, Uri contentUri, String remotePath,
+                                            int createdBy) {
+        DocumentFile documentFile = DocumentFile.fromSingleUri(context, contentUri);
+        long lastModified = documentFile != null ? documentFile.lastModified() : 0;
+        if (lastModified <= 0) {
+            lastModified = System.currentTimeMillis();
+        }
+
+        OCUpload ocUpload = new OCUpload(contentUri.toString(), remotePath, account.name);
+        ocUpload.setFileSize(documentFile != null ? documentFile.length() : 0);
+        ocUpload.setForceOverwrite(false);
+        ocUpload.setCreatedBy(createdBy);
+        ocUpload.setLocalAction(FileUploader.LOCAL_BEHAVIOUR_FORGET);
+        ocUpload.setUploadStatus(UploadsStorageManager.UploadStatus.UPLOAD_IN_PROGRESS);
+        long uploadId = new UploadsStorageManager(context.getContentResolver()).storeUpload(ocUpload);
+
+        new UploadFileFromContentUriUseCase(WorkManager.getInstance(context)).execute(
+                new UploadFileFromContentUriUseCase.Params(
+                        account.name,
+                        contentUri,
+                        String.valueOf(lastModified / 1000),
+                        FolderBackUpConfiguration.Behavior.COPY.name(),
+                        remotePath,
+                        uploadId,
+                        false,
+                        false,
+                        createdBy
+                )
+        );
+        return ocUpload;
+    }
+
     /**
      * Call to update multiple files already uploaded
      */
@@ -212,7 +253,7 @@ public class TransferRequester {
             return;
         }
 
-        if (isContentUri(context, upload)) {
+        if (UriUtils.isContentUri(upload.getLocalPath())) {
             enqueueRetryFromContentUri(upload, context);
         } else {
             Intent intent = new Intent(context, FileUploader.class);
@@ -239,10 +280,6 @@ public class TransferRequester {
         }
     }
 
-    private Boolean isContentUri(Context context, OCUpload upload) {
-        return DocumentFile.isDocumentUri(context, Uri.parse(upload.getLocalPath()));
-    }
-
     private void enqueueRetryFromContentUri(OCUpload upload, Context context) {
         new RetryUploadFromContentUriUseCase(WorkManager.getInstance(context)).execute(
                 new RetryUploadFromContentUriUseCase.Params(
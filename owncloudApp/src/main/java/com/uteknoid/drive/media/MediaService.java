@@ -41,6 +41,7 @@ import android.os.PowerManager;
 import android.widget.Toast;
 
 import androidx.core.app.NotificationCompat;
+import com.uteknoid.drive.MainApp;
 import com.uteknoid.drive.R;
 import com.uteknoid.drive.authentication.AccountUtils;
 import com.uteknoid.drive.datamodel.OCFile;
@@ -237,6 +238,7 @@ public class MediaService extends Service implements OnCompletionListener, OnPre
 
         mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
 
+        MainApp.Companion.createNotificationChannels();
         mNotificationBuilder = new NotificationCompat.Builder(this);
         mNotificationBuilder.setColor(this.getResources().getColor(R.color.primary));
         mAudioManager = (AudioManager) getSystemService(AUDIO_SERVICE);
@@ -0,0 +1,68 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations
+
+import com.uteknoid.drive.data.preferences.datasources.SharedPreferencesProvider
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.inject
+import java.util.concurrent.TimeUnit
+
+/**
+ * Decides when the data of an account that rarely changes, such as capabilities, profile or avatar, has to be
+ * fetched again from the server. Refreshing the root folder only triggers the requests whose data is older than
+ * their time to live, instead of repeating all of them every time.
+ */
+object AccountDataRefreshPolicy : KoinComponent {
+
+    private val preferencesProvider: SharedPreferencesProvider by inject()
+
+    enum class AccountData(val timeToLive: Long) {
+        CAPABILITIES(TimeUnit.MINUTES.toMillis(30)),
+        PROFILE(TimeUnit.MINUTES.toMillis(15)),
+        AVATAR(TimeUnit.HOURS.toMillis(24))
+    }
+
+    /**
+     * @return 'true' if the data was never fetched for the account, or its time to live expired.
+     */
+    @JvmStatic
+    fun isRefreshNeeded(accountName: String, data: AccountData): Boolean {
+        val lastRefresh = preferencesProvider.getLong(getKey(accountName, data), 0)
+        val now = System.currentTimeMillis()
+        // A last refresh in the future means the clock was changed; refresh to be safe
+        return lastRefresh > now || now - lastRefresh >= data.timeToLive
+    }
+
+    @JvmStatic
+    fun onRefreshed(accountName: String, data: AccountData) {
+        preferencesProvider.putLong(getKey(accountName, data), System.currentTimeMillis())
+    }
+
+    /**
+     * Forces the next refresh of every data of the account, for instance after its credentials change.
+     */
+    @JvmStatic
+    fun invalidate(accountName: String) {
+        AccountData.values().forEach { preferencesProvider.removePreference(getKey(accountName, it)) }
+    }
+
+    private fun getKey(accountName: String, data: AccountData) = "${PREFIX_LAST_REFRESH}${data.name.lowercase()}_$accountName"
+
+    private const val PREFIX_LAST_REFRESH = "last_refresh_"
+}
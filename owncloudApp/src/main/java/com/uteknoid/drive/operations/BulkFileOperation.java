@@ -0,0 +1,217 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations;
+
+import com.uteknoid.drive.datamodel.OCFile;
+import com.uteknoid.drive.lib.common.OwnCloudClient;
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult;
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode;
+import com.uteknoid.drive.operations.common.SyncOperation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Operation over a whole selection of files, queued as a single operation.
+ *
+ * Remote requests run in parallel, up to {@link #REMOTE_PARALLELISM} at a time, and the local
+ * bookkeeping of the files processed in the server is applied in batches of
+ * {@link #LOCAL_BATCH_SIZE}, one database transaction each.
+ *
+ * The result of every file is kept; the result of the operation is OK only if every file succeeded,
+ * or the first failure otherwise.
+ */
+public abstract class BulkFileOperation extends SyncOperation {
+
+    private static final int REMOTE_PARALLELISM = 4;
+    private static final int LOCAL_BATCH_SIZE = 500;
+
+    /**
+     * A file of the selection, and what happened to it.
+     */
+    protected static class Item {
+        final String mRemotePath;
+        OCFile mFile;
+        String mTargetRemotePath;
+        String mTargetRemoteId;
+        RemoteOperationResult mResult;
+
+        Item(String remotePath) {
+            mRemotePath = remotePath;
+        }
+    }
+
+    private final List<Item> mItems;
+
+    protected BulkFileOperation(List<String> remotePaths) {
+        mItems = new ArrayList<>(remotePaths.size());
+        for (String remotePath : remotePaths) {
+            mItems.add(new Item(remotePath));
+        }
+    }
+
+    /**
+     * Checks the operation can be performed on a file, before any request is sent.
+     *
+     * @return null if valid, or the failed result for the file otherwise.
+     */
+    protected RemoteOperationResult checkValidity(Item item) {
+        return null;
+    }
+
+    /**
+     * Decides where a file goes before any request is sent. Called serially, in selection order, so that
+     * different files of the selection never get the same target.
+     */
+    protected void resolveTarget(OwnCloudClient client, Item item) {
+    }
+
+    /**
+     * Performs the remote part of the operation for a single file. Called concurrently for different
+     * items; must not access the database.
+     */
+    protected abstract RemoteOperationResult runRemote(OwnCloudClient client, Item item);
+
+    /**
+     * @return true if the local data of the file must be updated after the remote result.
+     */
+    protected boolean needsLocalUpdate(RemoteOperationResult remoteResult) {
+        return remoteResult.isSuccess();
+    }
+
+    /**
+     * Updates the local data of a batch of files whose remote part succeeded, replacing the result of the
+     * items that fail locally.
+     */
+    protected abstract void updateLocal(List<Item> items);
+
+    @Override
+    protected RemoteOperationResult run(OwnCloudClient client) {
+        /// 1. resolve and check the selection
+        List<Item> pending = new ArrayList<>(mItems.size());
+        for (Item item : mItems) {
+            item.mFile = getStorageManager().getFileByPath(item.mRemotePath);
+            if (item.mFile == null) {
+                item.mResult = new RemoteOperationResult<>(ResultCode.FILE_NOT_FOUND);
+                continue;
+            }
+            item.mResult = checkValidity(item);
+            if (item.mResult == null) {
+                pending.add(item);
+            }
+        }
+
+        /// 2. targets, one after the other
+        for (Item item : pending) {
+            resolveTarget(client, item);
+        }
+
+        /// 3. remote requests, in parallel
+        runRemoteInParallel(client, pending);
+
+        /// 4. local bookkeeping, in batches
+        List<Item> toUpdate = new ArrayList<>(LOCAL_BATCH_SIZE);
+        for (Item item : pending) {
+            if (needsLocalUpdate(item.mResult)) {
+                toUpdate.add(item);
+                if (toUpdate.size() == LOCAL_BATCH_SIZE) {
+                    updateLocal(toUpdate);
+                    toUpdate.clear();
+                }
+            }
+        }
+        if (!toUpdate.isEmpty()) {
+            updateLocal(toUpdate);
+        }
+
+        for (Item item : mItems) {
+            if (!item.mResult.isSuccess()) {
+                return item.mResult;
+            }
+        }
+        return new RemoteOperationResult<>(ResultCode.OK);
+    }
+
+    private void runRemoteInParallel(OwnCloudClient client, List<Item> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(REMOTE_PARALLELISM, items.size()));
+        try {
+            List<Future<RemoteOperationResult>> futures = new ArrayList<>(items.size());
+            for (Item item : items) {
+                futures.add(executor.submit(() -> runRemote(client, item)));
+            }
+            for (int i = 0; i < items.size(); i++) {
+                try {
+                    items.get(i).mResult = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    items.get(i).mResult = new RemoteOperationResult<>(cause instanceof Exception ? (Exception) cause : e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Item item : items) {
+                if (item.mResult == null) {
+                    item.mResult = new RemoteOperationResult<>(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getFileCount() {
+        return mItems.size();
+    }
+
+    /**
+     * @return remote path and result of every file that could not be processed, in selection order.
+     */
+    public Map<String, RemoteOperationResult> getFailedResults() {
+        Map<String, RemoteOperationResult> failed = new LinkedHashMap<>();
+        for (Item item : mItems) {
+            if (item.mResult != null && !item.mResult.isSuccess()) {
+                failed.put(item.mRemotePath, item.mResult);
+            }
+        }
+        return Collections.unmodifiableMap(failed);
+    }
+
+    /**
+     * @return files successfully processed, as they were before the operation.
+     */
+    public List<OCFile> getProcessedFiles() {
+        List<OCFile> processed = new ArrayList<>();
+        for (Item item : mItems) {
+            if (item.mResult != null && item.mResult.isSuccess()) {
+                processed.add(item.mFile);
+            }
+        }
+        return processed;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.operations
+
+import android.content.ContentResolver
+import android.net.Uri
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaTypeOrNull
+import okhttp3.RequestBody
+import okio.BufferedSink
+import java.io.FileInputStream
+import java.io.FileNotFoundException
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import kotlin.math.min
+
+/**
+ * Request body with a range of the bytes of a document, read straight from its file descriptor.
+ *
+ * Seekable descriptors are positioned at the start of the range. Those that are not, like pipes, are read
+ * and discarded up to it.
+ */
+class ContentUriChunkRequestBody(
+    private val contentResolver: ContentResolver,
+    private val contentUri: Uri,
+    private val offset: Long,
+    private val chunkLength: Long,
+) : RequestBody() {
+
+    override fun contentType(): MediaType? = CHUNK_MEDIA_TYPE.toMediaTypeOrNull()
+
+    override fun contentLength(): Long = chunkLength
+
+    override fun writeTo(sink: BufferedSink) {
+        val parcelFileDescriptor = contentResolver.openFileDescriptor(contentUri, "r")
+            ?: throw FileNotFoundException("Cannot open $contentUri")
+
+        parcelFileDescriptor.use {
+            FileInputStream(it.fileDescriptor).channel.use { channel ->
+                if (it.statSize >= 0) {
+                    channel.position(offset)
+                } else {
+                    skipFully(channel)
+                }
+                copy(channel, sink)
+            }
+        }
+    }
+
+    private fun skipFully(channel: FileChannel) {
+        val buffer = ByteBuffer.allocate(BUFFER_SIZE)
+        var skipped = 0L
+        while (skipped < offset) {
+            buffer.clear()
+            buffer.limit(min(BUFFER_SIZE.toLong(), offset - skipped).toInt())
+            val read = channel.read(buffer)
+            if (read == -1) throw IOException("$contentUri ended before the chunk starting at $offset")
+            skipped += read
+        }
+    }
+
+    private fun copy(channel: FileChannel, sink: BufferedSink) {
+        val buffer = ByteBuffer.allocate(BUFFER_SIZE)
+        var remaining = chunkLength
+        while (remaining > 0) {
+            buffer.clear()
+            buffer.limit(min(BUFFER_SIZE.toLong(), remaining).toInt())
+            val read = channel.read(buffer)
+            if (read == -1) throw IOException("$contentUri ended before the end of the chunk starting at $offset")
+            buffer.flip()
+            sink.write(buffer)
+            remaining -= read
+        }
+    }
+
+    companion object {
+        private const val CHUNK_MEDIA_TYPE = "application/octet-stream"
+        private const val BUFFER_SIZE = 64 * 1024
+    }
+}
@@ -23,7 +23,9 @@ package com.uteknoid.drive.operations;
 import android.accounts.Account;
 import android.webkit.MimeTypeMap;
 
+import com.uteknoid.drive.datamodel.FileDataStorageManager;
 import com.uteknoid.drive.datamodel.OCFile;
+import com.uteknoid.drive.files.services.LocalStorageBudget;
 import com.uteknoid.drive.lib.common.OwnCloudClient;
 import com.uteknoid.drive.lib.common.network.OnDatatransferProgressListener;
 import com.uteknoid.drive.lib.common.operations.OperationCancelledException;
@@ -178,6 +180,31 @@ public class DownloadFileOperation extends RemoteOperation {
         return result;
     }
 
+    /**
+     * Updates the OC File after a successful download.
+     *
+     * @param storageManager Storage manager of the account of the download.
+     */
+    public void saveDownloadedFile(FileDataStorageManager storageManager) {
+        OCFile file = storageManager.getFileById(mFile.getFileId());
+        long previousLength = file.getStoragePath() != null ? file.getFileLength() : 0;
+        long syncDate = System.currentTimeMillis();
+        file.setLastSyncDateForProperties(syncDate);
+        file.setLastSyncDateForData(syncDate);
+        file.setNeedsUpdateThumbnail(true);
+        file.setModificationTimestamp(getModificationTimestamp());
+        file.setModificationTimestampAtLastSyncForData(getModificationTimestamp());
+        file.setEtag(getEtag());
+        file.setMimetype(getMimeType());
+        file.setStoragePath(getSavePath());
+        file.setFileLength((new File(getSavePath()).length()));
+        file.setRemoteId(mFile.getRemoteId());
+        storageManager.saveFile(file);
+        storageManager.saveConflict(file, null);
+        storageManager.updateLastUsage(file);
+        LocalStorageBudget.onFileDownloaded(storageManager, previousLength, file.getFileLength());
+    }
+
     public void cancel() {
         mCancellationRequested.set(true);   // atomic set; there is no need of synchronizing it
         if (mDownloadOperation != null) {
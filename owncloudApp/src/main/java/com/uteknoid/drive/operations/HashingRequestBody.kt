@@ -0,0 +1,71 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations
+
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okio.Buffer
+import okio.BufferedSink
+import okio.ForwardingSink
+import okio.buffer
+import java.io.OutputStream
+import java.security.MessageDigest
+
+/**
+ * Request body sending [delegate] while hashing the bytes sent, so that a content is hashed in the same pass
+ * that uploads it.
+ *
+ * The hash goes on from [initialDigest], which is not modified, so that the chunks of a document can be hashed
+ * one after the other. It starts over from it if the body is written again, as on retries.
+ */
+class HashingRequestBody(
+    private val delegate: RequestBody,
+    private val initialDigest: MessageDigest,
+) : RequestBody() {
+
+    /**
+     * [initialDigest] updated with the bytes of the last complete write, or null if the body was not written.
+     */
+    var digest: MessageDigest? = null
+        private set
+
+    override fun contentType(): MediaType? = delegate.contentType()
+
+    override fun contentLength(): Long = delegate.contentLength()
+
+    override fun writeTo(sink: BufferedSink) {
+        digest = null
+        val runningDigest = initialDigest.clone() as MessageDigest
+        val digestStream = object : OutputStream() {
+            override fun write(b: Int) = runningDigest.update(b.toByte())
+
+            override fun write(b: ByteArray, off: Int, len: Int) = runningDigest.update(b, off, len)
+        }
+        val hashingSink = object : ForwardingSink(sink) {
+            override fun write(source: Buffer, byteCount: Long) {
+                source.copyTo(digestStream, 0, byteCount)
+                super.write(source, byteCount)
+            }
+        }.buffer()
+
+        delegate.writeTo(hashingSink)
+        hashingSink.emit()
+        digest = runningDigest
+    }
+}
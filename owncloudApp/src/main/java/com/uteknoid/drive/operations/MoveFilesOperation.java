@@ -0,0 +1,91 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations;
+
+import com.uteknoid.drive.datamodel.OCFile;
+import com.uteknoid.drive.lib.common.OwnCloudClient;
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult;
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode;
+import com.uteknoid.drive.lib.resources.files.MoveRemoteFileOperation;
+import com.uteknoid.drive.utils.RemoteFileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operation moving a selection of {@link OCFile}s to a different folder.
+ */
+public class MoveFilesOperation extends BulkFileOperation {
+
+    private String mTargetParentPath;
+    // Listing of the target folder and targets already picked for other files of the selection
+    private final RemoteFileUtils.UploadBatch mTargetNames = new RemoteFileUtils.UploadBatch();
+
+    /**
+     * Constructor
+     *
+     * @param srcPaths          Remote paths of the {@link OCFile}s to move.
+     * @param targetParentPath  Path to the folder where the files will be moved into.
+     */
+    public MoveFilesOperation(List<String> srcPaths, String targetParentPath) {
+        super(srcPaths);
+        mTargetParentPath = targetParentPath;
+        if (!mTargetParentPath.endsWith(File.separator)) {
+            mTargetParentPath += File.separator;
+        }
+    }
+
+    @Override
+    protected RemoteOperationResult checkValidity(Item item) {
+        if (mTargetParentPath.startsWith(item.mRemotePath)) {
+            return new RemoteOperationResult<>(ResultCode.INVALID_MOVE_INTO_DESCENDANT);
+        }
+        return null;
+    }
+
+    @Override
+    protected void resolveTarget(OwnCloudClient client, Item item) {
+        // Check if target remote path already exists on server or in the selection, or add suffix (2), (3) ... otherwise
+        String finalRemotePath = RemoteFileUtils.Companion.getAvailableRemotePathInFolder(
+                client, mTargetParentPath + item.mFile.getFileName(), mTargetNames
+        );
+        if (item.mFile.isFolder()) {
+            finalRemotePath += File.separator;
+        }
+        item.mTargetRemotePath = finalRemotePath;
+    }
+
+    @Override
+    protected RemoteOperationResult runRemote(OwnCloudClient client, Item item) {
+        String finalRemotePath = item.mTargetRemotePath;
+        return new MoveRemoteFileOperation(item.mRemotePath, finalRemotePath, false).execute(client);
+    }
+
+    @Override
+    protected void updateLocal(List<Item> items) {
+        List<OCFile> files = new ArrayList<>(items.size());
+        List<String> targetPaths = new ArrayList<>(items.size());
+        for (Item item : items) {
+            files.add(item.mFile);
+            targetPaths.add(item.mTargetRemotePath);
+        }
+        getStorageManager().moveLocalFiles(files, targetPaths, mTargetParentPath);
+    }
+}
@@ -31,7 +31,7 @@ import com.uteknoid.drive.lib.common.OwnCloudClient;
 import com.uteknoid.drive.lib.common.operations.RemoteOperationResult;
 import com.uteknoid.drive.lib.resources.files.RemoteFile;
 import com.uteknoid.drive.lib.resources.status.OwnCloudVersion;
-import com.uteknoid.drive.lib.resources.status.RemoteCapability;
+import com.uteknoid.drive.operations.AccountDataRefreshPolicy.AccountData;
 import com.uteknoid.drive.operations.common.SyncOperation;
 import com.uteknoid.drive.syncadapter.FileSyncAdapter;
 import timber.log.Timber;
@@ -127,9 +127,10 @@ public class RefreshFolderOperation extends SyncOperation<ArrayList<RemoteFile>>
                     + getStorageManager().getAccount().name + " Let's try to synchronize it anyway");
         }
 
-        // only in root folder: sync server version and user profile
+        // only in root folder: sync server version and user profile, in parallel with the list of files
         if (OCFile.ROOT_PATH.equals(mLocalFolder.getRemotePath()) && syncVersionAndProfileEnabled) {
-            serverVersion = syncCapabilitiesAndGetServerVersion();
+            serverVersion = AccountUtils.getServerVersion(mAccount);
+            syncCapabilities();
             syncUserProfile();
         }
 
@@ -167,18 +168,23 @@ public class RefreshFolderOperation extends SyncOperation<ArrayList<RemoteFile>>
         this.syncVersionAndProfileEnabled = syncVersionAndProfileEnabled;
     }
 
-    private OwnCloudVersion syncCapabilitiesAndGetServerVersion() {
-        OwnCloudVersion serverVersion;
-        SyncCapabilitiesOperation getCapabilities = new SyncCapabilitiesOperation();
-        RemoteOperationResult<RemoteCapability> result = getCapabilities.execute(getStorageManager(), mContext);
-        if (result.isSuccess()) {
-            RemoteCapability capability = result.getData();
-            serverVersion = new OwnCloudVersion(capability.getVersionString());
-        } else {
-            // get whatever was stored before for the version
-            serverVersion = AccountUtils.getServerVersion(mAccount);
+    /**
+     * Capabilities and server version are refreshed in the background if their time to live expired, so that the
+     * list of files does not wait for them. The version sent with the events is the one stored before, which only
+     * changes with server upgrades.
+     */
+    private void syncCapabilities() {
+        if (!AccountDataRefreshPolicy.isRefreshNeeded(mAccount.name, AccountData.CAPABILITIES)) {
+            return;
         }
-        return serverVersion;
+        SyncCapabilitiesOperation getCapabilities = new SyncCapabilitiesOperation();
+        getCapabilities.execute(getStorageManager(), mContext, (operation, result) -> {
+            if (result.isSuccess()) {
+                AccountDataRefreshPolicy.onRefreshed(mAccount.name, AccountData.CAPABILITIES);
+            } else {
+                Timber.w("Capabilities of account " + mAccount.name + " could not be synchronized");
+            }
+        }, null);
     }
 
     /**
@@ -0,0 +1,110 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations;
+
+import com.uteknoid.drive.datamodel.OCFile;
+import com.uteknoid.drive.lib.common.OwnCloudClient;
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult;
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode;
+import com.uteknoid.drive.lib.resources.files.RemoveRemoteFileOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removal of a selection of files and folders, in the server or only their local copies.
+ */
+public class RemoveFilesOperation extends BulkFileOperation {
+
+    private final boolean mOnlyLocalCopy;
+
+    /**
+     * Constructor
+     *
+     * @param remotePaths   Remote paths of the files and folders to remove.
+     * @param onlyLocalCopy When 'true', only the local copies are removed.
+     */
+    public RemoveFilesOperation(List<String> remotePaths, boolean onlyLocalCopy) {
+        super(remotePaths);
+        mOnlyLocalCopy = onlyLocalCopy;
+    }
+
+    @Override
+    protected RemoteOperationResult runRemote(OwnCloudClient client, Item item) {
+        if (mOnlyLocalCopy) {
+            return new RemoteOperationResult<>(ResultCode.OK);
+        }
+        return new RemoveRemoteFileOperation(item.mRemotePath).execute(client);
+    }
+
+    @Override
+    protected boolean needsLocalUpdate(RemoteOperationResult remoteResult) {
+        // Already removed in the server by someone else; clean it up locally as well
+        return remoteResult.isSuccess() || remoteResult.getCode() == ResultCode.FILE_NOT_FOUND;
+    }
+
+    @Override
+    protected void updateLocal(List<Item> items) {
+        if (mOnlyLocalCopy) {
+            removeLocalCopies(items);
+            return;
+        }
+
+        List<OCFile> files = new ArrayList<>(items.size());
+        for (Item item : items) {
+            files.add(item.mFile);
+        }
+        List<OCFile> notRemoved = getStorageManager().removeFiles(files);
+        for (Item item : items) {
+            item.mResult = new RemoteOperationResult<>(
+                    notRemoved.contains(item.mFile) ? ResultCode.LOCAL_STORAGE_NOT_REMOVED : ResultCode.OK
+            );
+        }
+    }
+
+    /**
+     * Local copies of files are removed in a single transaction. Folders, and files in conflict whose conflict has to
+     * be cleared up to their ancestors, are removed one by one.
+     */
+    private void removeLocalCopies(List<Item> items) {
+        List<OCFile> files = new ArrayList<>(items.size());
+        for (Item item : items) {
+            if (item.mFile.isFolder() || item.mFile.getEtagInConflict() != null) {
+                boolean removed = getStorageManager().removeFile(item.mFile, false, true);
+                item.mResult = new RemoteOperationResult<>(removed ? ResultCode.OK : ResultCode.LOCAL_STORAGE_NOT_REMOVED);
+            } else if (item.mFile.getStoragePath() != null) {
+                files.add(item.mFile);
+            } else {
+                item.mResult = new RemoteOperationResult<>(ResultCode.OK);
+            }
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+
+        List<OCFile> removed = getStorageManager().removeLocalCopies(files);
+        for (Item item : items) {
+            if (files.contains(item.mFile)) {
+                item.mResult = new RemoteOperationResult<>(
+                        removed.contains(item.mFile) ? ResultCode.OK : ResultCode.LOCAL_STORAGE_NOT_REMOVED
+                );
+            }
+        }
+    }
+}
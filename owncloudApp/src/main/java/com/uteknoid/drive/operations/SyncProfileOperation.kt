@@ -27,6 +27,7 @@ import com.uteknoid.drive.domain.user.usecases.GetUserAvatarAsyncUseCase
 import com.uteknoid.drive.domain.user.usecases.GetUserInfoAsyncUseCase
 import com.uteknoid.drive.domain.user.usecases.RefreshUserQuotaFromServerAsyncUseCase
 import com.uteknoid.drive.lib.common.accounts.AccountUtils
+import com.uteknoid.drive.operations.AccountDataRefreshPolicy.AccountData
 import com.uteknoid.drive.presentation.manager.AvatarManager
 import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
@@ -42,54 +43,72 @@ import timber.log.Timber
  * Second: Synchronize user quota
  * Third: Synchronize user avatar
  *
- * If one step fails, next one is not performed since it may fail too.
+ * If one step fails, next one is not performed since it may fail too. Steps are skipped while the data
+ * fetched by their last run is fresh enough, see [AccountDataRefreshPolicy].
  */
 class SyncProfileOperation(
     private val account: Account
 ) : KoinComponent {
     fun syncUserProfile() {
+        val profileRefreshNeeded = AccountDataRefreshPolicy.isRefreshNeeded(account.name, AccountData.PROFILE)
+        val avatarRefreshNeeded = AccountDataRefreshPolicy.isRefreshNeeded(account.name, AccountData.AVATAR)
+        if (!profileRefreshNeeded && !avatarRefreshNeeded) {
+            Timber.d("User profile of account ${account.name} is up to date")
+            return
+        }
         try {
             CoroutineScope(Dispatchers.IO).launch {
-                val getUserInfoAsyncUseCase: GetUserInfoAsyncUseCase by inject()
-                val userInfoResult = getUserInfoAsyncUseCase.execute(GetUserInfoAsyncUseCase.Params(account.name))
-                userInfoResult.getDataOrNull()?.let { userInfo ->
-                    Timber.d("User info synchronized for account ${account.name}")
+                if (profileRefreshNeeded && !syncUserInfoAndQuota()) {
+                    Timber.d("User profile was not synchronized")
+                    return@launch
+                }
+                if (avatarRefreshNeeded) {
+                    syncUserAvatar()
+                }
+            }
+        } catch (e: Exception) {
+            Timber.e(e, "Exception while getting user profile")
+        }
+    }
 
-                    AccountManager.get(appContext).run {
-                        setUserData(account, AccountUtils.Constants.KEY_DISPLAY_NAME, userInfo.displayName)
-                        setUserData(account, AccountUtils.Constants.KEY_ID, userInfo.id)
-                    }
+    private fun syncUserInfoAndQuota(): Boolean {
+        val getUserInfoAsyncUseCase: GetUserInfoAsyncUseCase by inject()
+        val userInfo = getUserInfoAsyncUseCase.execute(GetUserInfoAsyncUseCase.Params(account.name)).getDataOrNull() ?: return false
+        Timber.d("User info synchronized for account ${account.name}")
 
-                    val refreshUserQuotaFromServerAsyncUseCase: RefreshUserQuotaFromServerAsyncUseCase by inject()
-                    val userQuotaResult =
-                        refreshUserQuotaFromServerAsyncUseCase.execute(
-                            RefreshUserQuotaFromServerAsyncUseCase.Params(
-                                account.name
-                            )
-                        )
-                    userQuotaResult.getDataOrNull()?.let {
-                        Timber.d("User quota synchronized for account ${account.name}")
+        AccountManager.get(appContext).run {
+            setUserData(account, AccountUtils.Constants.KEY_DISPLAY_NAME, userInfo.displayName)
+            setUserData(account, AccountUtils.Constants.KEY_ID, userInfo.id)
+        }
+
+        val refreshUserQuotaFromServerAsyncUseCase: RefreshUserQuotaFromServerAsyncUseCase by inject()
+        val userQuotaResult =
+            refreshUserQuotaFromServerAsyncUseCase.execute(
+                RefreshUserQuotaFromServerAsyncUseCase.Params(
+                    account.name
+                )
+            )
+        userQuotaResult.getDataOrNull() ?: return false
+        Timber.d("User quota synchronized for account ${account.name}")
+        AccountDataRefreshPolicy.onRefreshed(account.name, AccountData.PROFILE)
+        return true
+    }
 
-                        val getStoredCapabilitiesUseCase: GetStoredCapabilitiesUseCase by inject()
+    private fun syncUserAvatar() {
+        val getStoredCapabilitiesUseCase: GetStoredCapabilitiesUseCase by inject()
 
-                        val storedCapabilities = getStoredCapabilitiesUseCase.execute(GetStoredCapabilitiesUseCase.Params(account.name))
-                        val shouldFetchAvatar = storedCapabilities?.isFetchingAvatarAllowed() ?: true
+        val storedCapabilities = getStoredCapabilitiesUseCase.execute(GetStoredCapabilitiesUseCase.Params(account.name))
+        val shouldFetchAvatar = storedCapabilities?.isFetchingAvatarAllowed() ?: true
 
-                        if (shouldFetchAvatar) {
-                            val getUserAvatarAsyncUseCase: GetUserAvatarAsyncUseCase by inject()
-                            val userAvatarResult = getUserAvatarAsyncUseCase.execute(GetUserAvatarAsyncUseCase.Params(account.name))
-                            AvatarManager().handleAvatarUseCaseResult(account, userAvatarResult)
-                            if (userAvatarResult.isSuccess) {
-                                Timber.d("Avatar synchronized for account ${account.name}")
-                            }
-                        } else {
-                            Timber.d("Avatar for this account: ${account.name} won't be synced due to capabilities ")
-                        }
-                    }
-                } ?: Timber.d("User profile was not synchronized")
+        if (shouldFetchAvatar) {
+            val getUserAvatarAsyncUseCase: GetUserAvatarAsyncUseCase by inject()
+            val userAvatarResult = getUserAvatarAsyncUseCase.execute(GetUserAvatarAsyncUseCase.Params(account.name))
+            if (AvatarManager().updateCachedAvatar(account, userAvatarResult)) {
+                Timber.d("Avatar synchronized for account ${account.name}")
+                AccountDataRefreshPolicy.onRefreshed(account.name, AccountData.AVATAR)
             }
-        } catch (e: Exception) {
-            Timber.e(e, "Exception while getting user profile")
+        } else {
+            Timber.d("Avatar for this account: ${account.name} won't be synced due to capabilities ")
         }
     }
 }
@@ -33,6 +33,8 @@ import com.uteknoid.drive.datamodel.FileDataStorageManager;
 import com.uteknoid.drive.datamodel.OCFile;
 import com.uteknoid.drive.datamodel.OCUpload;
 import com.uteknoid.drive.datamodel.UploadsStorageManager;
+import com.uteknoid.drive.domain.UseCaseResult;
+import com.uteknoid.drive.domain.sharing.shares.usecases.RefreshSharesOfFolderFromServerAsyncUseCase;
 import com.uteknoid.drive.lib.common.OwnCloudClient;
 import com.uteknoid.drive.lib.common.operations.OperationCancelledException;
 import com.uteknoid.drive.lib.common.operations.RemoteOperationResult;
@@ -42,6 +44,9 @@ import com.uteknoid.drive.lib.resources.files.RemoteFile;
 import com.uteknoid.drive.operations.common.SyncOperation;
 import com.uteknoid.drive.services.OperationsService;
 import com.uteknoid.drive.utils.FileStorageUtils;
+import kotlin.Lazy;
+import kotlin.Unit;
+import org.jetbrains.annotations.NotNull;
 import timber.log.Timber;
 
 import java.io.File;
@@ -52,6 +57,8 @@ import java.util.Map;
 import java.util.Vector;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.koin.java.KoinJavaComponent.inject;
+
 /**
  * Operation performing the synchronization of the list of files contained
  * in a folder identified with its remote path.
@@ -127,6 +134,14 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
      */
     private final boolean mSyncContentOfRegularFiles;
 
+    /**
+     * 'True' means that the files whose contents must be downloaded are collected in mFilesToDownload
+     * instead of being synchronized one by one, so that the caller can download them in bulk.
+     */
+    private final boolean mCollectFilesToDownload;
+
+    private final List<OCFile> mFilesToDownload;
+
     /**
      * Creates a new instance of {@link SynchronizeFolderOperation}.
      *
@@ -150,6 +165,26 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
             boolean pushOnly,
             boolean syncFullAccount,
             boolean syncContentOfRegularFiles
+    ) {
+        this(context, remotePath, account, currentSyncTime, pushOnly, syncFullAccount, syncContentOfRegularFiles, false);
+    }
+
+    /**
+     * Creates a new instance of {@link SynchronizeFolderOperation}.
+     *
+     * @param collectFilesToDownload When 'true', files that need to be downloaded are not synchronized but
+     *                               returned by {@link #getFilesToDownload()}.
+     * @see #SynchronizeFolderOperation(Context, String, Account, long, boolean, boolean, boolean)
+     */
+    public SynchronizeFolderOperation(
+            Context context,
+            String remotePath,
+            Account account,
+            long currentSyncTime,
+            boolean pushOnly,
+            boolean syncFullAccount,
+            boolean syncContentOfRegularFiles,
+            boolean collectFilesToDownload
     ) {
         mRemotePath = remotePath;
         mCurrentSyncTime = currentSyncTime;
@@ -161,6 +196,8 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         mPushOnly = pushOnly;
         mSyncFullAccount = syncFullAccount;
         mSyncContentOfRegularFiles = syncContentOfRegularFiles;
+        mCollectFilesToDownload = collectFilesToDownload;
+        mFilesToDownload = new Vector<>();
     }
 
     public int getConflictsFound() {
@@ -182,6 +219,15 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         return mFoldersToVisit;
     }
 
+    /**
+     * Returns the files in the folder whose contents are missing or outdated, when created to collect them.
+     *
+     * @return Files to download, with the local state they had when the folder was synchronized.
+     */
+    public List<OCFile> getFilesToDownload() {
+        return mFilesToDownload;
+    }
+
     /**
      * Performs the synchronization.
      * <p>
@@ -322,6 +368,7 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         // loop to synchronize every child
         OCFile remoteFile, localFile, updatedLocalFile;
         int foldersToExpand = 0;
+        boolean sharesChanged = false;
         for (int i = 1; i < remoteFolderAndFiles.size(); i++) {
             /// new OCFile instance with the data from the server
             remoteFile = FileStorageUtils.createOCFileFromRemoteFile(remoteFolderAndFiles.get(i));
@@ -370,6 +417,9 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
                 foldersToExpand++;
             }
 
+            // shares removed since the last sync have to be removed locally too
+            sharesChanged |= isShared(updatedLocalFile) || (localFile != null && isShared(localFile));
+
             updatedFiles.add(updatedLocalFile);
         }
 
@@ -379,6 +429,28 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
             // TODO - propagate up
         }
         storageManager.saveFolder(updatedFolder, updatedFiles, localFilesMap.values());
+
+        if (mSyncFullAccount && sharesChanged) {
+            refreshSharesOfFolderContent();
+        }
+    }
+
+    private boolean isShared(OCFile file) {
+        return file.isSharedViaLink() || file.isSharedWithSharee();
+    }
+
+    /**
+     * Synchronizes the shares of all the children of the folder with a single request, instead of one per file.
+     */
+    private void refreshSharesOfFolderContent() {
+        @NotNull Lazy<RefreshSharesOfFolderFromServerAsyncUseCase> refreshSharesOfFolderUseCase =
+                inject(RefreshSharesOfFolderFromServerAsyncUseCase.class);
+        UseCaseResult<Unit> result = refreshSharesOfFolderUseCase.getValue().execute(
+                new RefreshSharesOfFolderFromServerAsyncUseCase.Params(mRemotePath, mAccount.name)
+        );
+        if (result.isError()) {
+            Timber.w(result.getThrowableOrNull(), "Shares in " + mAccount.name + mRemotePath + " could not be synchronized");
+        }
     }
 
     private void preparePushOfLocalChanges() {
@@ -434,16 +506,21 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
             serverUnchanged = (remoteFile == null) || localFile.getEtag().equals(remoteFile.getEtag());
 
             if (shouldSyncContents && !isBlockedForAutomatedSync(localFile)) {
-                /// synchronization for files
-                SynchronizeFileOperation operation = new SynchronizeFileOperation(
-                        localFile,
-                        remoteFile,
-                        mAccount,
-                        serverUnchanged,
-                        mContext,
-                        false
-                );
-                mFilesToSyncContents.add(operation);
+                if (mCollectFilesToDownload && (!localFile.isDown() || !serverUnchanged) && !hasLocalChanges(localFile)) {
+                    /// left to the caller; changed local copies are still synchronized to detect conflicts
+                    mFilesToDownload.add(localFile);
+                } else {
+                    /// synchronization for files
+                    SynchronizeFileOperation operation = new SynchronizeFileOperation(
+                            localFile,
+                            remoteFile,
+                            mAccount,
+                            serverUnchanged,
+                            mContext,
+                            false
+                    );
+                    mFilesToSyncContents.add(operation);
+                }
             }
         }
 
@@ -531,6 +608,10 @@ public class SynchronizeFolderOperation extends SyncOperation<ArrayList<RemoteFi
         return FileStorageUtils.getDefaultSavePathFor(mAccount.name, mLocalFolder);
     }
 
+    private boolean hasLocalChanges(OCFile file) {
+        return file.isDown() && file.getLocalModificationTimestamp() > file.getLastSyncDateForData();
+    }
+
     /**
      * Checks the last upload of a file and determines if automated synchronization needs to wait for
      * user action or not.
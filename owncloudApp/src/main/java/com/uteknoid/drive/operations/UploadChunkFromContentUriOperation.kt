@@ -0,0 +1,65 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.operations
+
+import com.uteknoid.drive.lib.common.OwnCloudClient
+import com.uteknoid.drive.lib.common.http.HttpConstants
+import com.uteknoid.drive.lib.common.http.methods.webdav.PutMethod
+import com.uteknoid.drive.lib.common.operations.RemoteOperation
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode
+import okhttp3.RequestBody
+import java.net.URL
+import java.util.concurrent.TimeUnit
+
+/**
+ * Sends one chunk of a content URI to the chunks folder of its transfer, named after its index as the
+ * chunked uploads of local files do.
+ */
+class UploadChunkFromContentUriOperation(
+    private val transferId: String,
+    private val chunkIndex: Long,
+    private val isLastChunk: Boolean,
+    private val requestBody: RequestBody,
+) : RemoteOperation<Unit>() {
+
+    override fun run(client: OwnCloudClient): RemoteOperationResult<Unit> = try {
+        val putMethod = PutMethod(URL("${client.uploadsWebDavUri}/$transferId/$chunkIndex"), requestBody)
+        if (isLastChunk) {
+            // The server may assemble the whole file when it gets the last chunk
+            putMethod.setReadTimeout(LAST_CHUNK_TIMEOUT, TimeUnit.MILLISECONDS)
+        }
+        val status = client.executeHttpMethod(putMethod)
+        if (isSuccess(status)) {
+            RemoteOperationResult<Unit>(ResultCode.OK).apply { data = Unit }
+        } else {
+            RemoteOperationResult(putMethod)
+        }
+    } catch (exception: Exception) {
+        RemoteOperationResult(exception)
+    }
+
+    private fun isSuccess(status: Int) =
+        status == HttpConstants.HTTP_OK || status == HttpConstants.HTTP_CREATED || status == HttpConstants.HTTP_NO_CONTENT
+
+    companion object {
+        private const val LAST_CHUNK_TIMEOUT = 900_000L
+    }
+}
@@ -109,6 +109,7 @@ public class UploadFileOperation extends SyncOperation {
     private boolean mForceOverwrite;
     private int mLocalBehaviour;
     private int mCreatedBy;
+    private RemoteFileUtils.UploadBatch mUploadBatch;
 
     private boolean mWasRenamed = false;
     private long mOCUploadId;
@@ -213,6 +214,14 @@ public class UploadFileOperation extends SyncOperation {
         mRemoteFolderToBeCreated = true;
     }
 
+    /**
+     * @param uploadBatch   Batch of uploads requested together, sharing what is known about the names taken in
+     *                      their target folders.
+     */
+    public void setUploadBatch(RemoteFileUtils.UploadBatch uploadBatch) {
+        mUploadBatch = uploadBatch;
+    }
+
     public boolean wasRenamed() {
         return mWasRenamed;
     }
@@ -302,7 +311,8 @@ public class UploadFileOperation extends SyncOperation {
             /// automatic rename of file to upload in case of name collision in server
             Timber.d("Checking name collision in server");
             if (!mForceOverwrite) {
-                String remotePath = RemoteFileUtils.Companion.getAvailableRemotePath(client, mRemotePath);
+                String remotePath =
+                        RemoteFileUtils.Companion.getAvailableRemotePathForUpload(client, mRemotePath, mUploadBatch);
                 mWasRenamed = !mRemotePath.equals(remotePath);
                 if (mWasRenamed) {
                     createNewOCFile(remotePath);
@@ -399,8 +409,8 @@ public class UploadFileOperation extends SyncOperation {
         RemoteOperationResult result;
 
         try {
-            mUploadOperation = new UploadRemoteFileOperation(mFile.getStoragePath(), mFile.getRemotePath(),
-                    mFile.getMimetype(), mFile.getEtagInConflict(), timeStamp);
+            mUploadOperation = new UploadRemoteFileKeepingMetadataOperation(mFile.getStoragePath(),
+                    mFile.getRemotePath(), mFile.getMimetype(), mFile.getEtagInConflict(), timeStamp);
 
             for (OnDatatransferProgressListener dataTransferListener : mDataTransferListeners) {
                 mUploadOperation.addDatatransferProgressListener(dataTransferListener);
@@ -698,9 +708,9 @@ public class UploadFileOperation extends SyncOperation {
     /**
      * Saves a OC File after a successful upload.
      * <p>
-     * A PROPFIND is necessary to keep the props in the local database
-     * synchronized with the server, specially the modification time and Etag
-     * (where available)
+     * The props in the local database are synchronized with the server, specially the modification time and Etag,
+     * from the headers of the response to the PUT. A PROPFIND is only needed when the server did not send them, or
+     * the file was uploaded in chunks.
      */
     private void saveUploadedFile(OwnCloudClient client) {
         OCFile file = mFile;
@@ -710,17 +720,21 @@ public class UploadFileOperation extends SyncOperation {
         long syncDate = System.currentTimeMillis();
         file.setLastSyncDateForData(syncDate);
 
-        // new PROPFIND to keep data consistent with server
-        // in theory, should return the same we already have
-        // TODO from the appropriate OC server version, get data from last PUT response headers, instead
-        // TODO     of a new PROPFIND; the latter may fail, specially for chunked uploads
-        ReadRemoteFileOperation operation = new ReadRemoteFileOperation(getRemotePath());
-        RemoteOperationResult<RemoteFile> result = operation.execute(client);
-        if (result.isSuccess()) {
-            updateOCFile(file, result.getData());
+        if (mUploadOperation instanceof UploadRemoteFileKeepingMetadataOperation &&
+                ((UploadRemoteFileKeepingMetadataOperation) mUploadOperation).hasMetadata()) {
+            updateOCFile(file, (UploadRemoteFileKeepingMetadataOperation) mUploadOperation);
             file.setLastSyncDateForProperties(syncDate);
         } else {
-            Timber.e("Error reading properties of file after successful upload; this is gonna hurt...");
+            // new PROPFIND to keep data consistent with server
+            // in theory, should return the same we already have
+            ReadRemoteFileOperation operation = new ReadRemoteFileOperation(getRemotePath());
+            RemoteOperationResult<RemoteFile> result = operation.execute(client);
+            if (result.isSuccess()) {
+                updateOCFile(file, result.getData());
+                file.setLastSyncDateForProperties(syncDate);
+            } else {
+                Timber.e("Error reading properties of file after successful upload; this is gonna hurt...");
+            }
         }
 
         if (mWasRenamed) {
@@ -749,6 +763,19 @@ public class UploadFileOperation extends SyncOperation {
         file.setRemoteId(remoteFile.getRemoteId());
     }
 
+    private void updateOCFile(OCFile file, UploadRemoteFileKeepingMetadataOperation uploadOperation) {
+        if (file.getCreationTimestamp() == 0) {
+            // The server keeps the creation time of files it already had
+            file.setCreationTimestamp(uploadOperation.getCreationTimestamp());
+        }
+        file.setFileLength(uploadOperation.getLength());
+        file.setMimetype(uploadOperation.getMimeType());
+        file.setModificationTimestamp(uploadOperation.getModificationTimestamp());
+        file.setModificationTimestampAtLastSyncForData(uploadOperation.getModificationTimestamp());
+        file.setEtag(uploadOperation.getEtag());
+        file.setRemoteId(uploadOperation.getRemoteId());
+    }
+
     public interface OnRenameListener {
         void onRenameUpload();
     }
@@ -0,0 +1,62 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations
+
+import com.uteknoid.drive.lib.common.OwnCloudClient
+import com.uteknoid.drive.lib.common.http.HttpConstants
+import com.uteknoid.drive.lib.common.network.WebdavUtils
+import com.uteknoid.drive.lib.common.http.methods.webdav.PutMethod
+import com.uteknoid.drive.lib.common.operations.RemoteOperation
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode
+import java.net.URL
+
+/**
+ * Sends a content URI in a single PUT, as UploadFileFromContentUriOperation does, with a request body hashing
+ * the bytes sent.
+ */
+class UploadHashedContentUriOperation(
+    private val uploadPath: String,
+    private val lastModified: String,
+    private val requestBody: HashingRequestBody,
+) : RemoteOperation<Unit>() {
+
+    override fun run(client: OwnCloudClient): RemoteOperationResult<Unit> = try {
+        val url = URL(client.userFilesWebDavUri.toString() + WebdavUtils.encodePath(uploadPath))
+        val putMethod = PutMethod(url, requestBody)
+        putMethod.addRequestHeader(HEADER_OC_TOTAL_LENGTH, requestBody.contentLength().toString())
+        putMethod.addRequestHeader(HEADER_OC_MTIME, lastModified)
+        val status = client.executeHttpMethod(putMethod)
+        if (isSuccess(status)) {
+            RemoteOperationResult<Unit>(ResultCode.OK).apply { data = Unit }
+        } else {
+            RemoteOperationResult(putMethod)
+        }
+    } catch (exception: Exception) {
+        RemoteOperationResult(exception)
+    }
+
+    private fun isSuccess(status: Int) =
+        status == HttpConstants.HTTP_OK || status == HttpConstants.HTTP_CREATED || status == HttpConstants.HTTP_NO_CONTENT
+
+    companion object {
+        private const val HEADER_OC_TOTAL_LENGTH = "OC-Total-Length"
+        private const val HEADER_OC_MTIME = "X-OC-Mtime"
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.operations;
+
+import android.os.Build;
+
+import androidx.annotation.VisibleForTesting;
+import com.uteknoid.drive.lib.common.OwnCloudClient;
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult;
+import com.uteknoid.drive.lib.resources.files.UploadRemoteFileOperation;
+import com.uteknoid.drive.utils.MimetypeIconUtil;
+import timber.log.Timber;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * {@link UploadRemoteFileOperation} that keeps the metadata sent back by the server in the response to the PUT,
+ * so that the uploaded file does not need to be read again with a PROPFIND.
+ */
+public class UploadRemoteFileKeepingMetadataOperation extends UploadRemoteFileOperation {
+
+    private static final String HEADER_OC_ETAG = "OC-ETag";
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_OC_FILE_ID = "OC-FileId";
+    private static final String HEADER_OC_MTIME = "X-OC-MTime";
+    private static final String OC_MTIME_ACCEPTED = "accepted";
+
+    private final String mLocalFilePath;
+    private final String mMimeType;
+    private final String mFileLastModifTimestamp;
+
+    private long mLength;
+    private long mCreationTimestamp;
+    private String mEtag;
+    private String mRemoteId;
+    private boolean mModificationTimestampAccepted;
+
+    public UploadRemoteFileKeepingMetadataOperation(String localPath, String remotePath, String mimeType,
+                                                    String requiredEtag, String fileLastModifTimestamp) {
+        super(localPath, remotePath, mimeType, requiredEtag, fileLastModifTimestamp);
+        mLocalFilePath = localPath;
+        mMimeType = mimeType;
+        mFileLastModifTimestamp = fileLastModifTimestamp;
+    }
+
+    @Override
+    protected RemoteOperationResult run(OwnCloudClient client) {
+        // The local file may be moved or forgotten once uploaded
+        readLocalFile();
+        RemoteOperationResult result = super.run(client);
+        if (result.isSuccess() && mPutMethod != null) {
+            keepResponseHeaders(
+                    mPutMethod.getResponseHeader(HEADER_OC_ETAG),
+                    mPutMethod.getResponseHeader(HEADER_ETAG),
+                    mPutMethod.getResponseHeader(HEADER_OC_FILE_ID),
+                    mPutMethod.getResponseHeader(HEADER_OC_MTIME)
+            );
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    void readLocalFile() {
+        File localFile = new File(mLocalFilePath);
+        mLength = localFile.length();
+        // Creation time is only known from Android 8; before, the closest is the modification time
+        mCreationTimestamp = localFile.lastModified();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            try {
+                mCreationTimestamp = Files.readAttributes(localFile.toPath(), BasicFileAttributes.class)
+                        .creationTime().toMillis();
+            } catch (IOException | UnsupportedOperationException e) {
+                Timber.d(e, "Creation time of %s could not be read", mLocalFilePath);
+            }
+        }
+    }
+
+    /**
+     * Keeps the metadata in the headers of the response to the PUT; any of them may be missing.
+     */
+    @VisibleForTesting
+    void keepResponseHeaders(String ocEtag, String etag, String remoteId, String modificationTimestampResult) {
+        String anyEtag = ocEtag != null ? ocEtag : etag;
+        mEtag = anyEtag != null ? anyEtag.replace("\"", "") : null;
+        mRemoteId = remoteId;
+        mModificationTimestampAccepted = OC_MTIME_ACCEPTED.equals(modificationTimestampResult);
+    }
+
+    /**
+     * @return 'true' if the server sent back everything needed to update the uploaded file without a PROPFIND.
+     */
+    public boolean hasMetadata() {
+        return mEtag != null && !mEtag.isEmpty() && mRemoteId != null && !mRemoteId.isEmpty() &&
+                mModificationTimestampAccepted;
+    }
+
+    public long getLength() {
+        return mLength;
+    }
+
+    /**
+     * @return Creation time of the local file, in milliseconds.
+     */
+    public long getCreationTimestamp() {
+        return mCreationTimestamp;
+    }
+
+    /**
+     * @return MIME type the file was uploaded with, or the best guess from its name if none was given.
+     */
+    public String getMimeType() {
+        if (mMimeType != null && !mMimeType.isEmpty()) {
+            return mMimeType;
+        }
+        return MimetypeIconUtil.getBestMimeTypeByFilename(mLocalFilePath);
+    }
+
+    public String getEtag() {
+        return mEtag;
+    }
+
+    public String getRemoteId() {
+        return mRemoteId;
+    }
+
+    /**
+     * @return Modification time set to the uploaded file, in milliseconds.
+     */
+    public long getModificationTimestamp() {
+        return Long.parseLong(mFileLastModifTimestamp) * 1000;
+    }
+}
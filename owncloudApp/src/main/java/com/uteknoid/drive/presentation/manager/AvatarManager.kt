@@ -25,6 +25,7 @@ import android.graphics.drawable.Drawable
 import android.media.ThumbnailUtils
 import com.uteknoid.drive.MainApp.Companion.appContext
 import com.uteknoid.drive.R
+import com.uteknoid.drive.data.preferences.datasources.SharedPreferencesProvider
 import com.uteknoid.drive.datamodel.ThumbnailsCacheManager
 import com.uteknoid.drive.domain.UseCaseResult
 import com.uteknoid.drive.domain.capabilities.usecases.GetStoredCapabilitiesUseCase
@@ -50,6 +51,8 @@ import kotlin.math.roundToInt
  */
 class AvatarManager : KoinComponent {
 
+    private val preferencesProvider: SharedPreferencesProvider by inject()
+
     fun getAvatarForAccount(
         account: Account,
         fetchIfNotCached: Boolean,
@@ -103,6 +106,35 @@ class AvatarManager : KoinComponent {
 
     private fun getImageKeyForAccount(account: Account) = "a_${account.name}"
 
+    /**
+     * Updates the cached avatar with the one fetched by a synchronization of the profile. The image is only
+     * decoded and cached again if its ETag changed since the last time, or it is not in the cache anymore.
+     *
+     * @return 'true' if the cached avatar matches the one in the server.
+     */
+    fun updateCachedAvatar(
+        account: Account,
+        useCaseResult: UseCaseResult<UserAvatar>
+    ): Boolean {
+        val imageKey = getImageKeyForAccount(account)
+        val eTagKey = "$PREFIX_AVATAR_ETAG${account.name}"
+        val eTag = useCaseResult.getDataOrNull()?.eTag
+
+        if (!eTag.isNullOrEmpty() && eTag == preferencesProvider.getString(eTagKey, null) &&
+            ThumbnailsCacheManager.isBitmapInDiskCache(imageKey)
+        ) {
+            Timber.d("Cached avatar with imageKey $imageKey is up to date")
+            return true
+        }
+
+        if (handleAvatarUseCaseResult(account, useCaseResult) != null) {
+            eTag?.let { preferencesProvider.putString(eTagKey, it) }
+            return true
+        }
+        preferencesProvider.removePreference(eTagKey)
+        return useCaseResult.getThrowableOrNull() is FileNotFoundException
+    }
+
     /**
      * If [GetUserAvatarAsyncUseCase] is success, add avatar to cache and return a circular drawable.
      * If there is no avatar available in server, remove it from cache.
@@ -142,4 +174,8 @@ class AvatarManager : KoinComponent {
         }
         return null
     }
+
+    companion object {
+        private const val PREFIX_AVATAR_ETAG = "avatar_etag_"
+    }
 }
@@ -0,0 +1,129 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.presentation.providers.sharing
+
+import android.os.SystemClock
+import com.uteknoid.drive.domain.sharing.sharees.model.OCSharee
+import java.util.Locale
+
+/**
+ * Keeps sharee searches from hitting the server once per keystroke.
+ *
+ * - Debounce: a query waits until the user stops typing for [debounceMillis].
+ * - Cancellation: a query superseded by newer text for the same account is dropped before reaching the
+ * server, and its results are not shown if it was already running.
+ * - Prefix cache: results are kept for [cacheTtlMillis]. When a query extends a cached one whose results were
+ * complete, the cached results are filtered locally instead of asking the server again.
+ */
+class ShareeSearchThrottler(
+    private val debounceMillis: Long = DEBOUNCE_MILLIS,
+    private val cacheTtlMillis: Long = CACHE_TTL_MILLIS,
+    private val clock: () -> Long = { SystemClock.elapsedRealtime() },
+    private val sleep: (Long) -> Unit = { Thread.sleep(it) },
+) {
+
+    private class TypedQuery(val query: String, val typedAt: Long)
+
+    private class CachedResult(val sharees: List<OCSharee>, val complete: Boolean, val storedAt: Long)
+
+    private val latestTyped = HashMap<String, TypedQuery>()
+    private val cache = HashMap<String, LinkedHashMap<String, CachedResult>>()
+
+    /**
+     * To be called from the UI every time the search text changes, before the query reaches the provider.
+     */
+    @Synchronized
+    fun onQueryTyped(accountName: String, query: String) {
+        latestTyped[accountName] = TypedQuery(normalize(query), clock())
+    }
+
+    /**
+     * Blocks until the user has stopped typing for [debounceMillis].
+     *
+     * @return false if the query has been superseded by newer text and shouldn't be sent to the server
+     */
+    fun awaitQuiet(accountName: String, query: String): Boolean {
+        while (true) {
+            val remaining = synchronized(this) {
+                val typed = latestTyped[accountName] ?: return true
+                if (typed.query != normalize(query)) return false
+                typed.typedAt + debounceMillis - clock()
+            }
+            if (remaining <= 0) return true
+            sleep(remaining)
+        }
+    }
+
+    /**
+     * @return true if newer text has been typed for the account since the query was started
+     */
+    @Synchronized
+    fun isSuperseded(accountName: String, query: String): Boolean {
+        val typed = latestTyped[accountName] ?: return false
+        return typed.query != normalize(query)
+    }
+
+    /**
+     * @return results for the query, exact or filtered from a cached shorter query, or null if a request is needed
+     */
+    @Synchronized
+    fun getCached(accountName: String, query: String): List<OCSharee>? {
+        val accountCache = cache[accountName] ?: return null
+        val normalizedQuery = normalize(query)
+        val now = clock()
+        accountCache.values.removeAll { now - it.storedAt > cacheTtlMillis }
+
+        accountCache[normalizedQuery]?.let { return it.sharees }
+
+        // Longest cached prefix with every match included; anything matching the query is in there
+        val prefixResult = accountCache.entries
+            .filter { (cachedQuery, result) -> result.complete && normalizedQuery.startsWith(cachedQuery) }
+            .maxByOrNull { it.key.length }
+            ?.value ?: return null
+
+        return prefixResult.sharees.filter { it.matches(normalizedQuery) }
+    }
+
+    /**
+     * @param complete true if the server returned every match, i.e. less results than the page size
+     */
+    @Synchronized
+    fun putCached(accountName: String, query: String, sharees: List<OCSharee>, complete: Boolean) {
+        val accountCache = cache.getOrPut(accountName) {
+            object : LinkedHashMap<String, CachedResult>(MAX_CACHED_QUERIES, 0.75f, true) {
+                override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, CachedResult>?) =
+                    size > MAX_CACHED_QUERIES
+            }
+        }
+        accountCache[normalize(query)] = CachedResult(sharees, complete, clock())
+    }
+
+    private fun OCSharee.matches(normalizedQuery: String): Boolean =
+        normalize(label).contains(normalizedQuery) ||
+                normalize(shareWith).contains(normalizedQuery) ||
+                normalize(additionalInfo).contains(normalizedQuery)
+
+    private fun normalize(text: String) = text.lowercase(Locale.getDefault())
+
+    companion object {
+        private const val DEBOUNCE_MILLIS = 300L
+        private const val CACHE_TTL_MILLIS = 60_000L
+        private const val MAX_CACHED_QUERIES = 50
+    }
+}
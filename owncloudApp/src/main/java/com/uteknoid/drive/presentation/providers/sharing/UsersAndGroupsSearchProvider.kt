@@ -56,6 +56,9 @@ import java.util.Locale
 class UsersAndGroupsSearchProvider : ContentProvider() {
     private lateinit var uriMatcher: UriMatcher
 
+    private val getStoredCapabilitiesUseCase: GetStoredCapabilitiesUseCase by inject()
+    private val getShareesAsyncUseCase: GetShareesAsyncUseCase by inject()
+
     override fun getType(uri: Uri): String? {
         // TODO implement
         return null
@@ -127,7 +130,11 @@ class UsersAndGroupsSearchProvider : ContentProvider() {
         /// directly started by our code, but from SearchView implementation
         val account = AccountUtils.getCurrentOwnCloudAccount(context)
 
-        val getStoredCapabilitiesUseCase: GetStoredCapabilitiesUseCase by inject()
+        // Wait until the user stops typing; a newer query will come if the text changed meanwhile
+        if (!searchThrottler.awaitQuiet(account.name, userQuery)) {
+            Timber.d("Query superseded before being sent")
+            return null
+        }
 
         val capabilities = getStoredCapabilitiesUseCase.execute(
             GetStoredCapabilitiesUseCase.Params(
@@ -135,27 +142,14 @@ class UsersAndGroupsSearchProvider : ContentProvider() {
             )
         )
 
-        val getShareesAsyncUseCase: GetShareesAsyncUseCase by inject()
+        val names = searchThrottler.getCached(account.name, userQuery) ?: fetchSharees(account.name, userQuery)
 
-        val getShareesResult = getShareesAsyncUseCase.execute(
-            GetShareesAsyncUseCase.Params(
-                userQuery,
-                REQUESTED_PAGE,
-                RESULTS_PER_PAGE
-            )
-        )
-
-        if (getShareesResult.isError) {
-            context?.let {
-                showErrorMessage(
-                    it.resources.getString(R.string.get_sharees_error),
-                    getShareesResult.getThrowableOrNull()
-                )
-            }
+        // Results of an old query would replace those of the current text
+        if (searchThrottler.isSuperseded(account.name, userQuery)) {
+            Timber.d("Query superseded while running, discarding its results")
+            return null
         }
 
-        val names = getShareesResult.getDataOrNull()
-
         // convert the responses from the OC server to the expected format
         if (!names.isNullOrEmpty()) {
             response = MatrixCursor(COLUMNS)
@@ -247,6 +241,33 @@ class UsersAndGroupsSearchProvider : ContentProvider() {
         return response
     }
 
+    private fun fetchSharees(accountName: String, userQuery: String): List<OCSharee>? {
+        val getShareesResult = getShareesAsyncUseCase.execute(
+            GetShareesAsyncUseCase.Params(
+                userQuery,
+                REQUESTED_PAGE,
+                RESULTS_PER_PAGE
+            )
+        )
+
+        if (getShareesResult.isError) {
+            if (!searchThrottler.isSuperseded(accountName, userQuery)) {
+                context?.let {
+                    showErrorMessage(
+                        it.resources.getString(R.string.get_sharees_error),
+                        getShareesResult.getThrowableOrNull()
+                    )
+                }
+            }
+            return null
+        }
+
+        return getShareesResult.getDataOrNull()?.also { sharees ->
+            // Less results than a page means every match is there, so longer queries can be filtered locally
+            searchThrottler.putCached(accountName, userQuery, sharees, complete = sharees.size < RESULTS_PER_PAGE)
+        }
+    }
+
     override fun insert(uri: Uri, values: ContentValues?): Uri? {
         // TODO implementation
         return null
@@ -301,6 +322,11 @@ class UsersAndGroupsSearchProvider : ContentProvider() {
         const val DATA_GROUP_SUFFIX = ".data.group"
         const val DATA_REMOTE_SUFFIX = ".data.remote"
 
+        /**
+         * Shared with the search UI, which reports the text typed so superseded queries can be dropped.
+         */
+        val searchThrottler = ShareeSearchThrottler()
+
         private var suggestAuthority: String? = null
         var suggestIntentAction: String? = null
             private set
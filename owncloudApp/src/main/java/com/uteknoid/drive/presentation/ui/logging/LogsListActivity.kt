@@ -26,6 +26,7 @@ import androidx.appcompat.app.AppCompatActivity
 import androidx.appcompat.widget.Toolbar
 import androidx.constraintlayout.widget.ConstraintLayout
 import androidx.core.view.isVisible
+import androidx.lifecycle.lifecycleScope
 import androidx.recyclerview.widget.DefaultItemAnimator
 import androidx.recyclerview.widget.DividerItemDecoration
 import androidx.recyclerview.widget.LinearLayoutManager
@@ -33,10 +34,17 @@ import com.uteknoid.drive.R
 import com.uteknoid.drive.databinding.LogsListActivityBinding
 import com.uteknoid.drive.extensions.openFile
 import com.uteknoid.drive.extensions.sendFile
+import com.uteknoid.drive.extensions.showMessageInSnackbar
 import com.uteknoid.drive.presentation.adapters.logging.RecyclerViewLogsAdapter
 import com.uteknoid.drive.presentation.viewmodels.logging.LogListViewModel
+import com.uteknoid.drive.utils.AsyncFileLoggingTree
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import org.koin.androidx.viewmodel.ext.android.viewModel
+import timber.log.Timber
 import java.io.File
+import java.io.IOException
 
 class LogsListActivity : AppCompatActivity() {
 
@@ -47,7 +55,12 @@ class LogsListActivity : AppCompatActivity() {
 
     private val recyclerViewLogsAdapter = RecyclerViewLogsAdapter(object : RecyclerViewLogsAdapter.Listener {
         override fun share(file: File) {
-            sendFile(file)
+            // Compressed logs are sent as they are, which is far smaller than a plain copy
+            if (AsyncFileLoggingTree.isCompressed(file)) {
+                sendFile(file, AsyncFileLoggingTree.COMPRESSED_MIME_TYPE)
+            } else {
+                sendFile(file)
+            }
         }
 
         override fun delete(file: File) {
@@ -56,10 +69,33 @@ class LogsListActivity : AppCompatActivity() {
         }
 
         override fun open(file: File) {
-            openFile(file)
+            withUncompressed(file) { openFile(it) }
         }
     }, context = this)
 
+    /**
+     * Closed log files are compressed; apps opening them get a plain copy, with a text mime type.
+     */
+    private fun withUncompressed(file: File, action: (File) -> Unit) {
+        lifecycleScope.launch {
+            val uncompressedFile = withContext(Dispatchers.IO) {
+                try {
+                    // Somewhere the file provider exposes
+                    val targetDirectory = File(externalCacheDir ?: filesDir, UNCOMPRESSED_LOGS_FOLDER)
+                    AsyncFileLoggingTree.uncompressed(file, targetDirectory)
+                } catch (ioException: IOException) {
+                    Timber.e(ioException, "Log ${file.name} could not be uncompressed")
+                    null
+                }
+            }
+            if (uncompressedFile != null) {
+                action(uncompressedFile)
+            } else {
+                showMessageInSnackbar(message = getString(R.string.common_error_unknown))
+            }
+        }
+    }
+
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         _binding = LogsListActivityBinding.inflate(layoutInflater)
@@ -105,4 +141,8 @@ class LogsListActivity : AppCompatActivity() {
 
         recyclerViewLogsAdapter.setData(items)
     }
+
+    companion object {
+        private const val UNCOMPRESSED_LOGS_FOLDER = "logs"
+    }
 }
@@ -75,8 +75,21 @@ class StorageMigrationActivity : AppCompatActivity() {
 
         const val PREFERENCE_ALREADY_MIGRATED_TO_SCOPED_STORAGE = "MIGRATED_TO_SCOPED_STORAGE"
 
-        private fun hasDataInLegacyStorage(): Boolean =
-            legacyStorageFolder.exists() && !legacyStorageFolder.listFiles().isNullOrEmpty()
+        // Nothing is written to the legacy storage anymore, so once it is found empty it is not listed again
+        @Volatile
+        private var legacyStorageEmpty = false
+
+        private fun hasDataInLegacyStorage(): Boolean {
+            if (legacyStorageEmpty) return false
+            if (!legacyStorageFolder.exists()) {
+                legacyStorageEmpty = true
+                return false
+            }
+            // Null when the folder could not be listed, e.g. without permission yet; that is not cached
+            val content = legacyStorageFolder.list() ?: return false
+            legacyStorageEmpty = content.isEmpty()
+            return content.isNotEmpty()
+        }
 
         private fun hasAccessToLegacyStorage(): Boolean =
             legacyStorageFolder.canRead() && legacyStorageFolder.canWrite()
@@ -21,11 +21,14 @@ package com.uteknoid.drive.presentation.ui.settings.fragments
 
 import android.os.Bundle
 import android.view.View
+import androidx.preference.ListPreference
 import androidx.preference.Preference
 import androidx.preference.PreferenceFragmentCompat
 import androidx.preference.SwitchPreferenceCompat
 import com.uteknoid.drive.R
+import com.uteknoid.drive.authentication.AccountUtils
 import com.uteknoid.drive.presentation.viewmodels.settings.SettingsAdvancedViewModel
+import com.uteknoid.drive.utils.DisplayUtils
 import org.koin.androidx.viewmodel.ext.android.viewModel
 
 class SettingsAdvancedFragment : PreferenceFragmentCompat() {
@@ -34,11 +37,22 @@ class SettingsAdvancedFragment : PreferenceFragmentCompat() {
     private val advancedViewModel by viewModel<SettingsAdvancedViewModel>()
 
     private var prefShowHiddenFiles: SwitchPreferenceCompat? = null
+    private var prefLocalStorageLimit: ListPreference? = null
 
     override fun onCreatePreferences(savedInstanceState: Bundle?, rootKey: String?) {
         setPreferencesFromResource(R.xml.settings_advanced, rootKey)
 
         prefShowHiddenFiles = findPreference(PREF_SHOW_HIDDEN_FILES)
+        prefLocalStorageLimit = findPreference<ListPreference>(PREF_LOCAL_STORAGE_LIMIT)?.apply {
+            entries = LOCAL_STORAGE_LIMITS_IN_MEGABYTES.map { limit ->
+                if (limit == 0L) {
+                    getString(R.string.prefs_local_storage_limit_entries_no_limit)
+                } else {
+                    DisplayUtils.bytesToHumanReadable(limit * 1024 * 1024, requireContext())
+                }
+            }.toTypedArray()
+            entryValues = LOCAL_STORAGE_LIMITS_IN_MEGABYTES.map { it.toString() }.toTypedArray()
+        }
 
         initPreferenceListeners()
     }
@@ -54,9 +68,18 @@ class SettingsAdvancedFragment : PreferenceFragmentCompat() {
             advancedViewModel.setShowHiddenFiles(newValue as Boolean)
             true
         }
+        prefLocalStorageLimit?.setOnPreferenceChangeListener { _: Preference?, newValue: Any ->
+            val accountNames = AccountUtils.getAccounts(requireContext()).map { it.name }
+            advancedViewModel.setLocalStorageLimit(newValue as String, accountNames)
+            true
+        }
     }
 
     companion object {
         const val PREF_SHOW_HIDDEN_FILES = "show_hidden_files"
+        const val PREF_LOCAL_STORAGE_LIMIT = "local_storage_limit"
+        const val PREF_SKIP_ALREADY_UPLOADED_CONTENTS = "skip_already_uploaded_contents"
+
+        private val LOCAL_STORAGE_LIMITS_IN_MEGABYTES = listOf(0L, 1024L, 2048L, 5120L, 10240L, 20480L)
     }
 }
\ No newline at end of file
@@ -47,6 +47,7 @@ import com.uteknoid.drive.domain.sharing.shares.model.ShareType
 import com.uteknoid.drive.domain.utils.Event
 import com.uteknoid.drive.presentation.UIResult
 import com.uteknoid.drive.presentation.adapters.sharing.ShareUserListAdapter
+import com.uteknoid.drive.presentation.providers.sharing.UsersAndGroupsSearchProvider
 import com.uteknoid.drive.presentation.viewmodels.sharing.OCShareViewModel
 import com.uteknoid.drive.utils.PreferenceUtils
 import org.koin.androidx.viewmodel.ext.android.viewModel
@@ -133,6 +134,7 @@ class SearchShareesFragment : Fragment(),
             }
 
             override fun onQueryTextChange(newText: String): Boolean {
+                account?.let { UsersAndGroupsSearchProvider.searchThrottler.onQueryTyped(it.name, newText) }
                 return false   // let it for the parent listener in the hierarchy / default behaviour
             }
         })
@@ -21,10 +21,13 @@ package com.uteknoid.drive.presentation.viewmodels.settings
 
 import androidx.lifecycle.ViewModel
 import com.uteknoid.drive.data.preferences.datasources.SharedPreferencesProvider
+import com.uteknoid.drive.presentation.ui.settings.fragments.SettingsAdvancedFragment.Companion.PREF_LOCAL_STORAGE_LIMIT
 import com.uteknoid.drive.presentation.ui.settings.fragments.SettingsAdvancedFragment.Companion.PREF_SHOW_HIDDEN_FILES
+import com.uteknoid.drive.providers.WorkManagerProvider
 
 class SettingsAdvancedViewModel(
-    private val preferencesProvider: SharedPreferencesProvider
+    private val preferencesProvider: SharedPreferencesProvider,
+    private val workManagerProvider: WorkManagerProvider,
 ) : ViewModel() {
 
     fun isHiddenFilesShown(): Boolean {
@@ -34,4 +37,14 @@ class SettingsAdvancedViewModel(
     fun setShowHiddenFiles(hide: Boolean) {
         preferencesProvider.putBoolean(PREF_SHOW_HIDDEN_FILES, hide)
     }
-}
\ No newline at end of file
+
+    /**
+     * Saves the new limit and evicts downloaded files of the accounts that exceed it.
+     */
+    fun setLocalStorageLimit(limitInMegabytes: String, accountNames: List<String>) {
+        preferencesProvider.putString(PREF_LOCAL_STORAGE_LIMIT, limitInMegabytes)
+        if ((limitInMegabytes.toLongOrNull() ?: 0) > 0) {
+            accountNames.forEach { workManagerProvider.enqueueLocalStorageEvictionWorker(it) }
+        }
+    }
+}
@@ -37,6 +37,7 @@ import android.content.UriMatcher
 import android.database.Cursor
 import android.database.SQLException
 import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteDoneException
 import android.database.sqlite.SQLiteOpenHelper
 import android.database.sqlite.SQLiteQueryBuilder
 import android.net.Uri
@@ -44,8 +45,10 @@ import android.os.CancellationSignal
 import android.os.ParcelFileDescriptor
 import android.provider.BaseColumns
 import android.text.TextUtils
+import androidx.annotation.VisibleForTesting
 import androidx.sqlite.db.SupportSQLiteDatabase
 import androidx.sqlite.db.SupportSQLiteQueryBuilder
+import androidx.sqlite.db.SupportSQLiteStatement
 import com.uteknoid.drive.MainApp
 import com.uteknoid.drive.R
 import com.uteknoid.drive.data.Executors
@@ -82,21 +85,61 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
 
     private lateinit var uriMatcher: UriMatcher
 
+    /** Changes to notify when the batch being applied in the thread ends; not set outside batches. */
+    private val pendingNotifications = ThreadLocal<MutableSet<Uri>>()
+
+    private val filesDatabase: OwncloudDatabase
+        get() = OwncloudDatabase.getDatabase(MainApp.appContext)
+
+    /**
+     * Database holding the table of files, moved to Room. The old database is opened first, so that files still
+     * to be copied from it on upgrade are there before they are accessed.
+     */
+    private val filesDb: SupportSQLiteDatabase
+        get() {
+            dbHelper.writableDatabase
+            return filesDatabase.openHelper.writableDatabase
+        }
+
+    /**
+     * Lookup of a file id by path and account, compiled once. Only used inside write transactions, which
+     * run one at a time.
+     */
+    private val fileIdByPathStatement: SupportSQLiteStatement by lazy {
+        filesDb.compileStatement(
+            "SELECT ${ProviderTableMeta._ID} FROM ${ProviderTableMeta.FILE_TABLE_NAME} WHERE " +
+                    "${ProviderTableMeta.FILE_PATH}=? AND ${ProviderTableMeta.FILE_ACCOUNT_OWNER}=?"
+        )
+    }
+
     override fun delete(uri: Uri, where: String?, whereArgs: Array<String>?): Int {
-        val count: Int
+        val count = inTransaction(uri) {
+            delete(dbHelper.writableDatabase, uri, where, whereArgs)
+        }
+        notifyChange(listOf(uri))
+        return count
+    }
+
+    /**
+     * Runs [block] in a transaction of the database holding the table of [uri].
+     */
+    private fun <T> inTransaction(uri: Uri, block: () -> T): T {
+        if (isFileUri(uri)) {
+            val db = filesDb
+            db.beginTransaction()
+            try {
+                return block().also { db.setTransactionSuccessful() }
+            } finally {
+                db.endTransaction()
+            }
+        }
         val db = dbHelper.writableDatabase
         db.beginTransaction()
         try {
-            count = delete(db, uri, where, whereArgs)
-            db.setTransactionSuccessful()
+            return block().also { db.setTransactionSuccessful() }
         } finally {
             db.endTransaction()
         }
-        context?.contentResolver?.notifyChange(
-            uri,
-            null
-        )
-        return count
     }
 
     private fun delete(db: SQLiteDatabase, uri: Uri, where: String?, whereArgs: Array<String>?): Int {
@@ -106,15 +149,9 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
         var count = 0
         when (uriMatcher.match(uri)) {
             SINGLE_FILE -> {
-                val c = query(uri, null, where, whereArgs, null)
-                var remoteId: String? = ""
-                if (c.moveToFirst()) {
-                    remoteId = c.getStringFromColumnOrThrow(ProviderTableMeta.FILE_REMOTE_ID)
-                    c.close()
-                }
-                Timber.d("Removing FILE $remoteId")
+                Timber.d("Removing FILE ${uri.pathSegments[1]}")
 
-                count = db.delete(
+                count = filesDb.delete(
                     ProviderTableMeta.FILE_TABLE_NAME,
                     ProviderTableMeta._ID +
                             "=" +
@@ -127,7 +164,9 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
             }
             DIRECTORY -> {
                 // deletion of folder is recursive
-                val children = query(uri, null, null, null, null)
+                val children = query(
+                    uri, arrayOf(ProviderTableMeta._ID, ProviderTableMeta.FILE_CONTENT_TYPE), null, null, null
+                )
                 if (children.moveToFirst()) {
                     var childId: Long
                     var isDir: Boolean
@@ -149,7 +188,7 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
                     }
                     children.close()
                 }
-                count += db.delete(
+                count += filesDb.delete(
                     ProviderTableMeta.FILE_TABLE_NAME,
                     ProviderTableMeta._ID + "=" +
                             uri.pathSegments[1] +
@@ -160,7 +199,7 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
                 )
             }
             ROOT_DIRECTORY ->
-                count = db.delete(ProviderTableMeta.FILE_TABLE_NAME, where, whereArgs)
+                count = filesDb.delete(ProviderTableMeta.FILE_TABLE_NAME, where, whereArgs)
             SHARES -> count =
                 OwncloudDatabase.getDatabase(MainApp.appContext).shareDao().deleteShare(uri.pathSegments[1])
             CAPABILITIES -> count = db.delete(ProviderTableMeta.CAPABILITIES_TABLE_NAME, where, whereArgs)
@@ -181,16 +220,10 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
     }
 
     override fun insert(uri: Uri, values: ContentValues?): Uri? {
-        val newUri: Uri?
-        val db = dbHelper.writableDatabase
-        db.beginTransaction()
-        try {
-            newUri = insert(db, uri, values)
-            db.setTransactionSuccessful()
-        } finally {
-            db.endTransaction()
+        val newUri = inTransaction(uri) {
+            insert(dbHelper.writableDatabase, uri, values)
         }
-        context?.contentResolver?.notifyChange(newUri!!, null)
+        notifyChange(listOfNotNull(newUri, if (isFileUri(uri)) getParentUri(values) else null))
         return newUri
     }
 
@@ -199,32 +232,19 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
             ROOT_DIRECTORY, SINGLE_FILE -> {
                 val remotePath = values?.getAsString(ProviderTableMeta.FILE_PATH)
                 val accountName = values?.getAsString(ProviderTableMeta.FILE_ACCOUNT_OWNER)
-                val projection =
-                    arrayOf(ProviderTableMeta._ID, ProviderTableMeta.FILE_PATH, ProviderTableMeta.FILE_ACCOUNT_OWNER)
-                val where = "${ProviderTableMeta.FILE_PATH}=? AND ${ProviderTableMeta.FILE_ACCOUNT_OWNER}=?"
-                val whereArgs = arrayOf<String>()
-
-                arrayListOf<String>().apply {
-                    remotePath?.let { add(it) }
-                    accountName?.let { add(it) }
-                }.toArray(whereArgs)
 
-                val doubleCheck = query(uri, projection, where, whereArgs, null)
                 // ugly patch; serious refactorization is needed to reduce work in
                 // FileDataStorageManager and bring it to FileContentProvider
-                return if (!doubleCheck.moveToFirst()) {
-                    doubleCheck.close()
-                    val fileId = db.insert(ProviderTableMeta.FILE_TABLE_NAME, null, values)
+                val insertedFileId = if (remotePath != null && accountName != null) {
+                    findFileId(remotePath, accountName)
+                } else null
+                return if (insertedFileId == null) {
+                    val fileId = filesDb.insert(ProviderTableMeta.FILE_TABLE_NAME, SQLiteDatabase.CONFLICT_NONE, values)
                     if (fileId <= 0) throw SQLException("ERROR $uri")
                     ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_FILE, fileId)
                 } else {
                     // file is already inserted; race condition, let's avoid a duplicated entry
-                    val insertedFileUri = ContentUris.withAppendedId(
-                        ProviderTableMeta.CONTENT_URI_FILE,
-                        doubleCheck.getLongFromColumnOrThrow(ProviderTableMeta._ID)
-                    )
-                    doubleCheck.close()
-                    insertedFileUri
+                    ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_FILE, insertedFileId)
                 }
             }
             SHARES -> {
@@ -277,6 +297,19 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
 
     }
 
+    private fun findFileId(remotePath: String, accountName: String): Long? =
+        synchronized(fileIdByPathStatement) {
+            fileIdByPathStatement.bindString(1, remotePath)
+            fileIdByPathStatement.bindString(2, accountName)
+            try {
+                fileIdByPathStatement.simpleQueryForLong()
+            } catch (e: SQLiteDoneException) {
+                null
+            } finally {
+                fileIdByPathStatement.clearBindings()
+            }
+        }
+
     override fun onCreate(): Boolean {
         dbHelper = DataBaseHelper(context)
 
@@ -312,8 +345,6 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
             throw IllegalArgumentException("Selection not allowed, use parameterized queries")
         }
 
-        val db: SQLiteDatabase = dbHelper.writableDatabase
-
         val sqlQuery = SQLiteQueryBuilder()
 
         sqlQuery.isStrict = true
@@ -397,13 +428,36 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
             sortOrder
         }
 
-        // DB case_sensitive
-        db.execSQL("PRAGMA case_sensitive_like = true")
-        val c = sqlQuery.query(db, projection, selection, selectionArgs, null, null, order)
+        val c = if (isFileUri(uri)) {
+            validateStrictSelection(sqlQuery, projection, selection, order)
+            filesDb.query(
+                sqlQuery.buildQuery(projection, selection, null, null, order, null),
+                selectionArgs ?: emptyArray()
+            )
+        } else {
+            sqlQuery.query(dbHelper.writableDatabase, projection, selection, selectionArgs, null, null, order)
+        }
         c.setNotificationUri(context?.contentResolver, uri)
         return c
     }
 
+    /**
+     * Same check [SQLiteQueryBuilder.query] runs in strict mode, which is skipped when the query is only built:
+     * the selection is compiled wrapped in parentheses, so it can not escape its WHERE clause. Columns out of
+     * the projection map are already rejected by [SQLiteQueryBuilder.buildQuery].
+     */
+    private fun validateStrictSelection(
+        sqlQuery: SQLiteQueryBuilder,
+        projection: Array<String>?,
+        selection: String?,
+        order: String?
+    ) {
+        if (!sqlQuery.isStrict || selection.isNullOrEmpty()) return
+        filesDb.compileStatement(
+            sqlQuery.buildQuery(projection, "($selection)", null, null, order, null)
+        ).close()
+    }
+
     private fun computeProjection(projectionIn: Array<String>?): Array<String?> {
         if (!projectionIn.isNullOrEmpty()) {
             val projection = arrayOfNulls<String>(projectionIn.size)
@@ -442,19 +496,57 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
     }
 
     override fun update(uri: Uri, values: ContentValues?, selection: String?, selectionArgs: Array<String>?): Int {
-        val count: Int
-        val db = dbHelper.writableDatabase
-        db.beginTransaction()
-        try {
-            count = update(db, uri, values, selection, selectionArgs)
-            db.setTransactionSuccessful()
-        } finally {
-            db.endTransaction()
+        val count = inTransaction(uri) {
+            update(dbHelper.writableDatabase, uri, values, selection, selectionArgs)
         }
-        context?.contentResolver?.notifyChange(uri, null)
+        notifyChange(listOf(getUpdatedUri(uri, values)))
         return count
     }
 
+    private fun isFileUri(uri: Uri) = when (uriMatcher.match(uri)) {
+        ROOT_DIRECTORY, SINGLE_FILE, DIRECTORY -> true
+        else -> false
+    }
+
+    private fun getParentUri(values: ContentValues?): Uri? =
+        values?.getAsLong(ProviderTableMeta.FILE_PARENT)?.let {
+            ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, it)
+        }
+
+    /**
+     * Narrows the notification of an update of files to the folder containing them. Only done for complete
+     * rows, which are written by saves that never change the parent; partial updates, such as moves, may
+     * take a file out of a folder that is not known here.
+     */
+    private fun getUpdatedUri(uri: Uri, values: ContentValues?): Uri {
+        if (uriMatcher.match(uri) != ROOT_DIRECTORY || values?.containsKey(ProviderTableMeta.FILE_ACCOUNT_OWNER) != true) {
+            return uri
+        }
+        return getParentUri(values) ?: uri
+    }
+
+    /**
+     * Notifies the changes, or keeps them until the end of the batch being applied in the current thread.
+     */
+    private fun notifyChange(uris: Collection<Uri>) {
+        val batchNotifications = pendingNotifications.get()
+        if (batchNotifications != null) {
+            batchNotifications.addAll(uris)
+            return
+        }
+        refreshObservedFiles(uris)
+        uris.forEach { context?.contentResolver?.notifyChange(it, null) }
+    }
+
+    /**
+     * Files are written out of Room transactions, so Room observers of files need to be told about changes.
+     */
+    private fun refreshObservedFiles(uris: Collection<Uri>) {
+        if (uris.any { isFileUri(it) }) {
+            filesDatabase.invalidationTracker.refreshVersionsAsync()
+        }
+    }
+
     private fun update(
         db: SQLiteDatabase,
         uri: Uri,
@@ -479,8 +571,8 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
             }
             CAMERA_UPLOADS_SYNC -> return db.update(ProviderTableMeta.CAMERA_UPLOADS_SYNC_TABLE_NAME, values, selection, selectionArgs)
             QUOTAS -> return db.update(ProviderTableMeta.USER_QUOTAS_TABLE_NAME, values, selection, selectionArgs)
-            else -> return db.update(
-                ProviderTableMeta.FILE_TABLE_NAME, values, selection, selectionArgs
+            else -> return filesDb.update(
+                ProviderTableMeta.FILE_TABLE_NAME, SQLiteDatabase.CONFLICT_NONE, values, selection, selectionArgs
             )
         }
     }
@@ -492,17 +584,30 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
         var i = 0
 
         val db = dbHelper.writableDatabase
+        val roomDb = filesDb
+        val batchNotifications = LinkedHashSet<Uri>()
+        pendingNotifications.set(batchNotifications)
         db.beginTransaction()  // it's supposed that transactions can be nested
+        roomDb.beginTransaction()
         try {
             for (operation in operations) {
                 results[i] = operation.apply(this, results, i)
                 i++
             }
+            roomDb.setTransactionSuccessful()
             db.setTransactionSuccessful()
         } finally {
+            roomDb.endTransaction()
             db.endTransaction()
+            pendingNotifications.remove()
         }
         Timber.d("applied batch in provider $this")
+        refreshObservedFiles(batchNotifications)
+
+        // Once per batch and URI, after the changes are visible; single files merged into one notification
+        batchNotifications
+            .mapTo(LinkedHashSet()) { if (uriMatcher.match(it) == SINGLE_FILE) ProviderTableMeta.CONTENT_URI_FILE else it }
+            .forEach { context?.contentResolver?.notifyChange(it, null) }
         return results
     }
 
@@ -514,10 +619,27 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
             ProviderMeta.DB_VERSION
         ) {
 
+        init {
+            // Readers don't wait for the writes of a synchronization, and writes don't wait for readers
+            setWriteAheadLoggingEnabled(true)
+        }
+
+        /**
+         * Connection settings, applied once when the database is opened instead of before each statement.
+         */
+        override fun onConfigure(db: SQLiteDatabase) {
+            super.onConfigure(db)
+            // Safe with write-ahead logging; only the last commits may be lost on a power failure
+            db.execSQL("PRAGMA synchronous = NORMAL")
+            db.execSQL("PRAGMA cache_size = -$CACHE_SIZE_KIB")
+            db.execSQL("PRAGMA temp_store = MEMORY")
+            // Returns the new value, so it can't go through execSQL
+            db.rawQuery("PRAGMA mmap_size = $MMAP_SIZE_BYTES", null).use { it.moveToFirst() }
+        }
+
         override fun onCreate(db: SQLiteDatabase) {
-            // files table
             Timber.i("SQL : Entering in onCreate")
-            createFilesTable(db)
+            // files table is created in Room
 
             // Create capabilities table
             createCapabilitiesTable(db)
@@ -1038,44 +1160,28 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
                 }
             }
 
+            if (oldVersion < 37 && newVersion >= 37) {
+                Timber.i("SQL : Entering in #37 to migrate files from SQLite to Room")
+                db.beginTransaction()
+                try {
+                    // Opening the Room database creates its table of files if needed
+                    val copied = copyFilesToRoom(db, filesDatabase.openHelper.writableDatabase)
+                    Timber.i("SQL : $copied files copied to Room")
+                    // Drop old files table from old database
+                    db.execSQL("DROP TABLE IF EXISTS " + ProviderTableMeta.FILE_TABLE_NAME + ";")
+                    db.setTransactionSuccessful()
+                    upgraded = true
+                } finally {
+                    db.endTransaction()
+                }
+            }
+
             if (!upgraded) {
                 Timber.i("SQL : OUT of the ADD in onUpgrade; oldVersion == $oldVersion, newVersion == $newVersion")
             }
         }
     }
 
-    private fun createFilesTable(db: SQLiteDatabase) {
-        db.execSQL(
-            "CREATE TABLE " + ProviderTableMeta.FILE_TABLE_NAME + "(" +
-                    ProviderTableMeta._ID + " INTEGER PRIMARY KEY, " +
-                    ProviderTableMeta.FILE_NAME + " TEXT, " +
-                    ProviderTableMeta.FILE_PATH + " TEXT, " +
-                    ProviderTableMeta.FILE_PARENT + " INTEGER, " +
-                    ProviderTableMeta.FILE_CREATION + " INTEGER, " +
-                    ProviderTableMeta.FILE_MODIFIED + " INTEGER, " +
-                    ProviderTableMeta.FILE_CONTENT_TYPE + " TEXT, " +
-                    ProviderTableMeta.FILE_CONTENT_LENGTH + " INTEGER, " +
-                    ProviderTableMeta.FILE_STORAGE_PATH + " TEXT, " +
-                    ProviderTableMeta.FILE_ACCOUNT_OWNER + " TEXT, " +
-                    ProviderTableMeta.FILE_LAST_SYNC_DATE + " INTEGER, " +
-                    ProviderTableMeta.FILE_KEEP_IN_SYNC + " INTEGER, " +
-                    ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA + " INTEGER, " +
-                    ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA + " INTEGER, " +
-                    ProviderTableMeta.FILE_ETAG + " TEXT, " +
-                    ProviderTableMeta.FILE_TREE_ETAG + " TEXT, " +
-                    ProviderTableMeta.FILE_SHARED_VIA_LINK + " INTEGER, " +
-                    ProviderTableMeta.FILE_PUBLIC_LINK + " TEXT, " +
-                    ProviderTableMeta.FILE_PERMISSIONS + " TEXT null," +
-                    ProviderTableMeta.FILE_REMOTE_ID + " TEXT null," +
-                    ProviderTableMeta.FILE_UPDATE_THUMBNAIL + " INTEGER," + //boolean
-                    ProviderTableMeta.FILE_IS_DOWNLOADING + " INTEGER," + //boolean
-
-                    ProviderTableMeta.FILE_ETAG_IN_CONFLICT + " TEXT," +
-                    ProviderTableMeta.FILE_SHARED_WITH_SHAREE + " INTEGER," +
-                    ProviderTableMeta.FILE_PRIVATE_LINK + " TEXT );"
-        )
-    }
-
     private fun createOCSharesTable(db: SQLiteDatabase) {
         // Create ocshares table
         db.execSQL(
@@ -1353,6 +1459,9 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
 
     companion object {
 
+        private const val CACHE_SIZE_KIB = 8 * 1024
+        private const val MMAP_SIZE_BYTES = 32L * 1024 * 1024
+
         private const val SINGLE_FILE = 1
         private const val DIRECTORY = 2
         private const val ROOT_DIRECTORY = 3
@@ -1366,6 +1475,36 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
 
         private val fileProjectionMap = HashMap<String, String>()
 
+        /**
+         * Copies every file of the old database into the table of files in Room, in a single transaction. Files
+         * without path or account are dropped.
+         *
+         * @return number of files copied
+         */
+        @VisibleForTesting
+        fun copyFilesToRoom(db: SQLiteDatabase, roomDb: SupportSQLiteDatabase): Int {
+            val columns = fileProjectionMap.keys + ProviderTableMeta.FILE_PUBLIC_LINK
+            var copied = 0
+            roomDb.beginTransaction()
+            try {
+                db.query(ProviderTableMeta.FILE_TABLE_NAME, null, null, null, null, null, null).use { cursor ->
+                    val indices = columns.associateWith { cursor.getColumnIndex(it) }.filterValues { it >= 0 }
+                    val values = ContentValues()
+                    while (cursor.moveToNext()) {
+                        values.clear()
+                        indices.forEach { (column, index) -> values.put(column, cursor.getString(index)) }
+                        if (roomDb.insert(ProviderTableMeta.FILE_TABLE_NAME, SQLiteDatabase.CONFLICT_IGNORE, values) > 0) {
+                            copied++
+                        }
+                    }
+                }
+                roomDb.setTransactionSuccessful()
+            } finally {
+                roomDb.endTransaction()
+            }
+            return copied
+        }
+
         init {
 
             fileProjectionMap[ProviderTableMeta._ID] = ProviderTableMeta._ID
@@ -1394,6 +1533,7 @@ class FileContentProvider(val executors: Executors = Executors()) : ContentProvi
             fileProjectionMap[ProviderTableMeta.FILE_IS_DOWNLOADING] = ProviderTableMeta.FILE_IS_DOWNLOADING
             fileProjectionMap[ProviderTableMeta.FILE_ETAG_IN_CONFLICT] = ProviderTableMeta.FILE_ETAG_IN_CONFLICT
             fileProjectionMap[ProviderTableMeta.FILE_PRIVATE_LINK] = ProviderTableMeta.FILE_PRIVATE_LINK
+            fileProjectionMap[ProviderTableMeta.FILE_LAST_USAGE] = ProviderTableMeta.FILE_LAST_USAGE
         }
 
         private val shareProjectionMap = HashMap<String, String>()
@@ -25,7 +25,7 @@ import com.uteknoid.drive.MainApp
 import com.uteknoid.drive.data.preferences.datasources.implementation.SharedPreferencesProviderImpl
 import com.uteknoid.drive.data.storage.ScopedStorageProvider
 import com.uteknoid.drive.lib.common.http.LogInterceptor
-import com.uteknoid.drive.lib.common.utils.LoggingHelper
+import com.uteknoid.drive.utils.AsyncFileLoggingTree
 import timber.log.Timber
 import java.io.File
 
@@ -39,17 +39,24 @@ class LogsProvider(
         val localStorageProvider = ScopedStorageProvider(dataFolder, context)
 
         // Set folder for store logs
-        LoggingHelper.startLogging(
-            directory = File(localStorageProvider.getLogsPath()),
-            storagePath = dataFolder
-        )
+        synchronized(LogsProvider::class.java) {
+            if (fileLoggingTree == null) {
+                fileLoggingTree = AsyncFileLoggingTree(File(localStorageProvider.getLogsPath())).also { Timber.plant(it) }
+            }
+        }
         Timber.d("${BuildConfig.BUILD_TYPE} start logging ${BuildConfig.VERSION_NAME} ${BuildConfig.COMMIT_SHA1}")
 
         initHttpLogs()
     }
 
     fun stopLogging() {
-        LoggingHelper.stopLogging()
+        synchronized(LogsProvider::class.java) {
+            fileLoggingTree?.let {
+                Timber.uproot(it)
+                it.stop()
+            }
+            fileLoggingTree = null
+        }
     }
 
     fun initHttpLogs() {
@@ -64,5 +71,7 @@ class LogsProvider(
 
     companion object {
         private const val PREFERENCE_LOG_HTTP = "set_httpLogs"
+
+        private var fileLoggingTree: AsyncFileLoggingTree? = null
     }
 }
@@ -36,10 +36,12 @@ import timber.log.Timber
 class MdmProvider(
     private val context: Context
 ) {
-    private val restrictionsManager = context.getSystemService(Context.RESTRICTIONS_SERVICE) as RestrictionsManager
-    private val restrictions = restrictionsManager.applicationRestrictions
+    // Restrictions and reporter involve calls to the system, only needed to cache restrictions, not to read them
+    private val restrictions by lazy {
+        (context.getSystemService(Context.RESTRICTIONS_SERVICE) as RestrictionsManager).applicationRestrictions
+    }
     private val preferencesProvider = SharedPreferencesProviderImpl(context)
-    private val restrictionsReporter = KeyedAppStatesReporter.create(context)
+    private val restrictionsReporter by lazy { KeyedAppStatesReporter.create(context) }
 
     fun cacheStringRestriction(key: String, idMessageFeedback: Int) {
         if (!restrictions.containsKey(key)) {
@@ -22,11 +22,18 @@ package com.uteknoid.drive.providers
 import android.content.Context
 import androidx.work.Constraints
 import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.ExistingWorkPolicy
 import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
 import androidx.work.PeriodicWorkRequestBuilder
 import androidx.work.WorkManager
+import androidx.work.workDataOf
+import com.uteknoid.drive.workers.AvailableOfflineFolderWorker
 import com.uteknoid.drive.workers.CameraUploadsWorker
+import com.uteknoid.drive.workers.LocalFilesReconciliationWorker
+import com.uteknoid.drive.workers.LocalStorageEvictionWorker
 import com.uteknoid.drive.workers.OldLogsCollectorWorker
+import com.uteknoid.drive.workers.TrashCleanupWorker
 
 class WorkManagerProvider(
     val context: Context
@@ -56,4 +63,74 @@ class WorkManagerProvider(
         WorkManager.getInstance(context)
             .enqueueUniquePeriodicWork(OldLogsCollectorWorker.OLD_LOGS_COLLECTOR_WORKER, ExistingPeriodicWorkPolicy.REPLACE, oldLogsCollectorWorker)
     }
+
+    fun enqueueLocalFilesReconciliationWorker(accountName: String) {
+        val localFilesReconciliationWorker = OneTimeWorkRequestBuilder<LocalFilesReconciliationWorker>()
+            .setInputData(workDataOf(LocalFilesReconciliationWorker.KEY_ACCOUNT_NAME to accountName))
+            .addTag(LocalFilesReconciliationWorker.LOCAL_FILES_RECONCILIATION_WORKER)
+            .build()
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(
+                LocalFilesReconciliationWorker.LOCAL_FILES_RECONCILIATION_WORKER + accountName,
+                ExistingWorkPolicy.KEEP,
+                localFilesReconciliationWorker
+            )
+    }
+
+    fun enqueueLocalStorageEvictionWorker(accountName: String) {
+        val localStorageEvictionWorker = OneTimeWorkRequestBuilder<LocalStorageEvictionWorker>()
+            .setInputData(workDataOf(LocalStorageEvictionWorker.KEY_ACCOUNT_NAME to accountName))
+            .addTag(LocalStorageEvictionWorker.LOCAL_STORAGE_EVICTION_WORKER)
+            .build()
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(
+                LocalStorageEvictionWorker.LOCAL_STORAGE_EVICTION_WORKER + accountName,
+                ExistingWorkPolicy.KEEP,
+                localStorageEvictionWorker
+            )
+    }
+
+    fun enqueueAvailableOfflineFolderWorker(accountName: String, remotePath: String) {
+        val constraintsRequired = Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build()
+
+        val availableOfflineFolderWorker = OneTimeWorkRequestBuilder<AvailableOfflineFolderWorker>()
+            .setInputData(
+                workDataOf(
+                    AvailableOfflineFolderWorker.KEY_ACCOUNT_NAME to accountName,
+                    AvailableOfflineFolderWorker.KEY_REMOTE_PATH to remotePath
+                )
+            )
+            .addTag(AvailableOfflineFolderWorker.AVAILABLE_OFFLINE_FOLDER_WORKER)
+            .setConstraints(constraintsRequired)
+            .build()
+
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(
+                AvailableOfflineFolderWorker.AVAILABLE_OFFLINE_FOLDER_WORKER + accountName + remotePath,
+                ExistingWorkPolicy.KEEP,
+                availableOfflineFolderWorker
+            )
+    }
+
+    fun cancelAvailableOfflineFolderWorker(accountName: String, remotePath: String) {
+        WorkManager.getInstance(context)
+            .cancelUniqueWork(AvailableOfflineFolderWorker.AVAILABLE_OFFLINE_FOLDER_WORKER + accountName + remotePath)
+    }
+
+    fun enqueueTrashCleanupWorker(accountName: String) {
+        val trashCleanupWorker = OneTimeWorkRequestBuilder<TrashCleanupWorker>()
+            .setInputData(workDataOf(TrashCleanupWorker.KEY_ACCOUNT_NAME to accountName))
+            .addTag(TrashCleanupWorker.TRASH_CLEANUP_WORKER)
+            .build()
+
+        // Folders moved to the trash while a cleanup is running are deleted by the next one
+        WorkManager.getInstance(context)
+            .enqueueUniqueWork(
+                TrashCleanupWorker.TRASH_CLEANUP_WORKER + accountName,
+                ExistingWorkPolicy.APPEND_OR_REPLACE,
+                trashCleanupWorker
+            )
+    }
 }
@@ -51,9 +51,12 @@ import com.uteknoid.drive.lib.common.operations.RemoteOperationResult;
 import com.uteknoid.drive.lib.resources.status.OwnCloudVersion;
 import com.uteknoid.drive.operations.CheckCurrentCredentialsOperation;
 import com.uteknoid.drive.operations.CopyFileOperation;
+import com.uteknoid.drive.operations.CopyFilesOperation;
 import com.uteknoid.drive.operations.CreateFolderOperation;
 import com.uteknoid.drive.operations.MoveFileOperation;
+import com.uteknoid.drive.operations.MoveFilesOperation;
 import com.uteknoid.drive.operations.RemoveFileOperation;
+import com.uteknoid.drive.operations.RemoveFilesOperation;
 import com.uteknoid.drive.operations.RenameFileOperation;
 import com.uteknoid.drive.operations.SynchronizeFileOperation;
 import com.uteknoid.drive.operations.SynchronizeFolderOperation;
@@ -61,6 +64,8 @@ import com.uteknoid.drive.operations.common.SyncOperation;
 import timber.log.Timber;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
@@ -70,6 +75,7 @@ public class OperationsService extends Service {
     public static final String EXTRA_ACCOUNT = "ACCOUNT";
     public static final String EXTRA_SERVER_URL = "SERVER_URL";
     public static final String EXTRA_REMOTE_PATH = "REMOTE_PATH";
+    public static final String EXTRA_REMOTE_PATHS = "REMOTE_PATHS";
     public static final String EXTRA_NEWNAME = "NEWNAME";
     public static final String EXTRA_REMOVE_ONLY_LOCAL = "REMOVE_LOCAL_COPY";
     public static final String EXTRA_CREATE_FULL_PATH = "CREATE_FULL_PATH";
@@ -88,6 +94,9 @@ public class OperationsService extends Service {
     public static final String ACTION_SYNC_FOLDER = "SYNC_FOLDER";
     public static final String ACTION_MOVE_FILE = "MOVE_FILE";
     public static final String ACTION_COPY_FILE = "COPY_FILE";
+    public static final String ACTION_REMOVE_FILES = "REMOVE_FILES";
+    public static final String ACTION_MOVE_FILES = "MOVE_FILES";
+    public static final String ACTION_COPY_FILES = "COPY_FILES";
     public static final String ACTION_CHECK_CURRENT_CREDENTIALS = "CHECK_CURRENT_CREDENTIALS";
 
     public static final String ACTION_OPERATION_ADDED = OperationsService.class.getName() + ".OPERATION_ADDED";
@@ -320,6 +329,13 @@ public class OperationsService extends Service {
             return mSyncFolderHandler.isSynchronizing(account, file.getRemotePath());
         }
 
+        /**
+         * Returns True when {@link #isSynchronizing(Account, OCFile)} is true for any of 'files'.
+         */
+        public boolean isAnySynchronizing(Account account, Collection<OCFile> files) {
+            return mSyncFolderHandler.isAnySynchronizing(account, files);
+        }
+
     }
 
     /**
@@ -527,6 +543,30 @@ public class OperationsService extends Service {
 
                             break;
                         }
+                        case ACTION_REMOVE_FILES: {
+                            // Remove a selection of files and folders
+                            List<String> remotePaths = operationIntent.getStringArrayListExtra(EXTRA_REMOTE_PATHS);
+                            boolean onlyLocalCopy = operationIntent.getBooleanExtra(EXTRA_REMOVE_ONLY_LOCAL, false);
+                            operation = new RemoveFilesOperation(remotePaths, onlyLocalCopy);
+
+                            break;
+                        }
+                        case ACTION_MOVE_FILES: {
+                            // Move a selection of files and folders
+                            List<String> remotePaths = operationIntent.getStringArrayListExtra(EXTRA_REMOTE_PATHS);
+                            String newParentPath = operationIntent.getStringExtra(EXTRA_NEW_PARENT_PATH);
+                            operation = new MoveFilesOperation(remotePaths, newParentPath);
+
+                            break;
+                        }
+                        case ACTION_COPY_FILES: {
+                            // Copy a selection of files and folders
+                            List<String> remotePaths = operationIntent.getStringArrayListExtra(EXTRA_REMOTE_PATHS);
+                            String newParentPath = operationIntent.getStringExtra(EXTRA_NEW_PARENT_PATH);
+                            operation = new CopyFilesOperation(remotePaths, newParentPath);
+
+                            break;
+                        }
                         case ACTION_CHECK_CURRENT_CREDENTIALS:
                             // Check validity of currently stored credentials for a given account
                             operation = new CheckCurrentCredentialsOperation(account);
@@ -41,6 +41,7 @@ import com.uteknoid.drive.utils.FileStorageUtils;
 import timber.log.Timber;
 
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * SyncFolder worker. Performs the pending operations in the order they were requested.
@@ -85,6 +86,19 @@ class SyncFolderHandler extends Handler {
         return (mPendingOperations.contains(account.name, remotePath));
     }
 
+    /**
+     * Returns True when {@link #isSynchronizing(Account, String)} is true for any of 'files'.
+     *
+     * @param account ownCloud account where the remote folders are stored.
+     * @param files   Folders that could be in the queue of synchronizations.
+     */
+    public boolean isAnySynchronizing(Account account, Collection<OCFile> files) {
+        if (account == null || files == null) {
+            return false;
+        }
+        return (mPendingOperations.containsAny(account.name, files));
+    }
+
     @Override
     public void handleMessage(Message msg) {
         Pair<Account, String> itemSyncKey = (Pair<Account, String>) msg.obj;
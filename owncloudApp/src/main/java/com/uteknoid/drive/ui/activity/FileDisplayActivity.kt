@@ -69,15 +69,20 @@ import com.uteknoid.drive.lib.common.operations.RemoteOperation
 import com.uteknoid.drive.lib.common.operations.RemoteOperationResult
 import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode
 import com.uteknoid.drive.lib.resources.status.OwnCloudVersion
+import com.uteknoid.drive.operations.BulkFileOperation
 import com.uteknoid.drive.operations.CopyFileOperation
+import com.uteknoid.drive.operations.CopyFilesOperation
 import com.uteknoid.drive.operations.CreateFolderOperation
 import com.uteknoid.drive.operations.MoveFileOperation
+import com.uteknoid.drive.operations.MoveFilesOperation
 import com.uteknoid.drive.operations.RefreshFolderOperation
 import com.uteknoid.drive.operations.RemoveFileOperation
+import com.uteknoid.drive.operations.RemoveFilesOperation
 import com.uteknoid.drive.operations.RenameFileOperation
 import com.uteknoid.drive.operations.SynchronizeFileOperation
 import com.uteknoid.drive.operations.UploadFileOperation
 import com.uteknoid.drive.presentation.ui.security.bayPassUnlockOnce
+import com.uteknoid.drive.providers.WorkManagerProvider
 import com.uteknoid.drive.syncadapter.FileSyncAdapter
 import com.uteknoid.drive.ui.errorhandling.ErrorMessageAdapter
 import com.uteknoid.drive.ui.fragment.FileDetailFragment
@@ -98,6 +103,7 @@ import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.launch
+import org.koin.android.ext.android.inject
 import timber.log.Timber
 import java.io.File
 import kotlin.coroutines.CoroutineContext
@@ -131,6 +137,8 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
 
     private var localBroadcastManager: LocalBroadcastManager? = null
 
+    private val workManagerProvider: WorkManagerProvider by inject()
+
     var filesUploadHelper: FilesUploadHelper? = null
         internal set
 
@@ -268,6 +276,8 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
 
             if (!stateWasRecovered) {
                 Timber.d("Initializing Fragments in onAccountChanged..")
+                // Listings don't look for unregistered local copies; bind them in the background
+                workManagerProvider.enqueueLocalFilesReconciliationWorker(account.name)
                 initFragmentsWithFile()
                 file?.isFolder?.let { isFolder ->
                     if (isFolder) {
@@ -1196,6 +1206,7 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
             is CreateFolderOperation -> onCreateFolderOperationFinish(operation, result)
             is MoveFileOperation -> onMoveFileOperationFinish(operation, result)
             is CopyFileOperation -> onCopyFileOperationFinish(operation, result)
+            is BulkFileOperation -> onBulkFileOperationFinish(operation, result)
         }
     }
 
@@ -1244,6 +1255,58 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
         }
     }
 
+    /**
+     * Updates the view associated to the activity after the finish of an operation over a selection of
+     * files. Failures are reported together, with the detail of each one in the log.
+     *
+     * @param operation Remove, move or copy operation performed.
+     * @param result    Result of the operation; the first failure if any file failed.
+     */
+    private fun onBulkFileOperationFinish(
+        operation: BulkFileOperation,
+        result: RemoteOperationResult<*>
+    ) {
+        val failedResults = operation.failedResults
+        if (failedResults.isNotEmpty()) {
+            failedResults.forEach { (remotePath, fileResult) ->
+                Timber.w("Could not process %s: %s", remotePath, fileResult.code)
+            }
+            val partialFailMessage = when (operation) {
+                is RemoveFilesOperation -> R.string.remove_files_partial_fail_msg
+                is MoveFilesOperation -> R.string.move_files_partial_fail_msg
+                is CopyFilesOperation -> R.string.copy_files_partial_fail_msg
+                else -> null
+            }
+            val message = if (failedResults.size == operation.fileCount || partialFailMessage == null) {
+                ErrorMessageAdapter.getResultMessage(result, operation, resources)
+            } else {
+                getString(partialFailMessage, failedResults.size, operation.fileCount)
+            }
+            showMessageInSnackbar(R.id.list_layout, message)
+
+            if (result.isSslRecoverableException) {
+                lastSslUntrustedServerResult = result
+                showUntrustedCertDialog(lastSslUntrustedServerResult)
+            }
+        }
+
+        val processedFiles = operation.processedFiles
+        if (processedFiles.isNotEmpty()) {
+            val second = secondFragment
+            if (operation is RemoveFilesOperation && second != null && processedFiles.contains(second.file)) {
+                if (second is PreviewAudioFragment) {
+                    second.stopPreview()
+                } else if (second is PreviewVideoFragment) {
+                    second.releasePlayer()
+                }
+                file = storageManager.getFileById(second.file.parentId)
+                cleanSecondFragment()
+            }
+            refreshListOfFilesFragment(true)
+            invalidateOptionsMenu()
+        }
+    }
+
     /**
      * Updates the view associated to the activity after the finish of an operation trying to move a
      * file.
@@ -1509,6 +1572,7 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
      * @param file Image [OCFile] to show.
      */
     fun startImagePreview(file: OCFile) {
+        if (file.isDown) storageManager.updateLastUsageInBackground(file)
         val showDetailsIntent = Intent(this, PreviewImageActivity::class.java)
         showDetailsIntent.putExtra(EXTRA_FILE, file)
         showDetailsIntent.putExtra(EXTRA_ACCOUNT, account)
@@ -1524,6 +1588,7 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
      * in milliseconds.
      */
     fun startAudioPreview(file: OCFile, startPlaybackPosition: Int) {
+        storageManager.updateLastUsageInBackground(file)
         val mediaFragment = PreviewAudioFragment.newInstance(
             file,
             account,
@@ -1544,6 +1609,7 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
      * in milliseconds.
      */
     fun startVideoPreview(file: OCFile, startPlaybackPosition: Int) {
+        storageManager.updateLastUsageInBackground(file)
         val mediaFragment = PreviewVideoFragment.newInstance(
             file,
             account,
@@ -1562,6 +1628,7 @@ class FileDisplayActivity : FileActivity(), FileFragment.ContainerActivity, OnEn
      * @param file Text [OCFile] to preview.
      */
     fun startTextPreview(file: OCFile?) {
+        file?.let { storageManager.updateLastUsageInBackground(it) }
         val textPreviewFragment = PreviewTextFragment.newInstance(
             file,
             account
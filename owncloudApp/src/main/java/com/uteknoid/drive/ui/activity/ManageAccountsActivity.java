@@ -49,6 +49,7 @@ import com.uteknoid.drive.authentication.AccountUtils;
 import com.uteknoid.drive.datamodel.FileDataStorageManager;
 import com.uteknoid.drive.files.services.FileDownloader;
 import com.uteknoid.drive.files.services.FileUploader;
+import com.uteknoid.drive.operations.AccountDataRefreshPolicy;
 import com.uteknoid.drive.presentation.ui.authentication.AuthenticatorConstants;
 import com.uteknoid.drive.presentation.ui.authentication.LoginActivity;
 import com.uteknoid.drive.services.OperationsService;
@@ -330,6 +331,8 @@ public class ManageAccountsActivity extends FileActivity
                 }
                 CancelUploadFromAccountUseCase cancelUploadFromAccountUseCase = new CancelUploadFromAccountUseCase(WorkManager.getInstance(getBaseContext()));
                 cancelUploadFromAccountUseCase.execute(new CancelUploadFromAccountUseCase.Params(account.name));
+                // An account added again with the same name has to fetch its data right away
+                AccountDataRefreshPolicy.invalidate(account.name);
             }
 
             mAccountListAdapter = new AccountListAdapter(this, getAccountListItems(), mTintedCheck);
@@ -135,6 +135,8 @@ public class ReceiveExternalFilesActivity extends FileActivity
     // this is inited lazily, when an account is selected. If no account is selected but an instance of this would
     // be crated it would result in an null pointer exception.
     private ReceiveExternalFilesAdapter mAdapter = null;
+    // uploader of the shared files read from their temporary grant, while any of them is pending
+    private UriUploader mTemporaryGrantUploader = null;
     private ListView mListView;
     private boolean mSyncInProgress = false;
     private boolean mAccountSelected;
@@ -266,6 +268,16 @@ public class ReceiveExternalFilesActivity extends FileActivity
         Timber.v("onSaveInstanceState() end");
     }
 
+    @Override
+    protected void onStop() {
+        // The permission to read the shared files is lost once this activity is finished, which may happen anytime
+        // after the user leaves it
+        if (!isChangingConfigurations()) {
+            finishTemporaryGrantUploads();
+        }
+        super.onStop();
+    }
+
     @Override
     protected void onDestroy() {
         if (mSyncBroadcastReceiver != null) {
@@ -570,6 +582,7 @@ public class ReceiveExternalFilesActivity extends FileActivity
                 true, // Show waiting dialog while file is being copied from private storage
                 this  // Copy temp task listener
         );
+        uploader.setStreamFromTemporaryGrant(true);
 
         UriUploader.UriUploaderResultCode resultCode = uploader.uploadUris();
 
@@ -578,6 +591,10 @@ public class ReceiveExternalFilesActivity extends FileActivity
 
         if (resultCode == UriUploader.UriUploaderResultCode.OK) {
             finish();
+        } else if (resultCode == UriUploader.UriUploaderResultCode.STREAM_FROM_TEMPORARY_GRANT) {
+            mTemporaryGrantUploader = uploader;
+            showLoadingDialog(R.string.wait_for_shared_files_upload);
+            uploader.observeTemporaryGrantUploads(this::finishTemporaryGrantUploads);
         } else if (resultCode != UriUploader.UriUploaderResultCode.COPY_THEN_UPLOAD) {
 
             int messageResTitle = R.string.uploader_error_title_file_cannot_be_uploaded;
@@ -876,6 +893,20 @@ public class ReceiveExternalFilesActivity extends FileActivity
         finish();
     }
 
+    /**
+     * Copies the shared files whose upload did not succeed yet, if any, and finishes the activity once they are copied.
+     */
+    private void finishTemporaryGrantUploads() {
+        if (mTemporaryGrantUploader == null) {
+            return;
+        }
+        UriUploader uploader = mTemporaryGrantUploader;
+        mTemporaryGrantUploader = null;
+        if (!uploader.copyPendingTemporaryGrantUploads()) {
+            onTmpFilesCopied(ResultCode.OK);
+        }
+    }
+
     /**
      * Show an error dialog, forcing the user to click a single button to exit the activity
      *
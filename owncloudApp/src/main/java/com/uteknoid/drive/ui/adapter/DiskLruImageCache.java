@@ -126,6 +126,26 @@ public class DiskLruImageCache {
 
     }
 
+    /**
+     * Checks if an entry is in the cache without decoding it
+     *
+     * @param key
+     */
+    public boolean containsKey(String key) {
+        DiskLruCache.Snapshot snapshot = null;
+        try {
+            snapshot = mDiskCache.get(convertToValidKey(key));
+            return snapshot != null;
+        } catch (IOException e) {
+            Timber.e(e);
+            return false;
+        } finally {
+            if (snapshot != null) {
+                snapshot.close();
+            }
+        }
+    }
+
     private String convertToValidKey(String key) {
         return Integer.toString(key.hashCode());
     }
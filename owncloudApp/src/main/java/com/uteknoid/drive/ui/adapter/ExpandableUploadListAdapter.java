@@ -25,7 +25,6 @@ import android.accounts.Account;
 import android.content.Context;
 import android.database.DataSetObserver;
 import android.graphics.Bitmap;
-import android.net.Uri;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -39,7 +38,6 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.appcompat.widget.AppCompatButton;
-import androidx.documentfile.provider.DocumentFile;
 import androidx.work.WorkManager;
 import com.google.android.material.snackbar.Snackbar;
 import com.uteknoid.drive.MainApp;
@@ -63,6 +61,7 @@ import com.uteknoid.drive.usecases.RetryUploadFromContentUriUseCase;
 import com.uteknoid.drive.utils.DisplayUtils;
 import com.uteknoid.drive.utils.MimetypeIconUtil;
 import com.uteknoid.drive.utils.PreferenceUtils;
+import com.uteknoid.drive.utils.UriUtils;
 import timber.log.Timber;
 
 import java.io.File;
@@ -352,9 +351,7 @@ public class ExpandableUploadListAdapter extends BaseExpandableListAdapter imple
                 rightButton.setImageResource(R.drawable.ic_action_cancel_grey);
                 rightButton.setVisibility(View.VISIBLE);
                 rightButton.setOnClickListener(v -> {
-                    String localPath = upload.getLocalPath();
-                    boolean isDocumentUri = DocumentFile.isDocumentUri(parent.getContext(), Uri.parse(localPath));
-                    if (isDocumentUri) {
+                    if (UriUtils.isContentUri(upload.getLocalPath())) {
                         CancelUploadWithIdUseCase cancelUploadWithIdUseCase =
                                 new CancelUploadWithIdUseCase(WorkManager.getInstance(parent.getContext()));
                         cancelUploadWithIdUseCase.execute(new CancelUploadWithIdUseCase.Params(upload));
@@ -373,6 +370,7 @@ public class ExpandableUploadListAdapter extends BaseExpandableListAdapter imple
                 rightButton.setImageResource(R.drawable.ic_action_delete_grey);
                 rightButton.setVisibility(View.VISIBLE);
                 rightButton.setOnClickListener(v -> {
+                    CancelUploadWithIdUseCase.Companion.releasePersistedReadPermission(upload);
                     mUploadsStorageManager.removeUpload(upload);
                     refreshView();
                 });
@@ -398,7 +396,7 @@ public class ExpandableUploadListAdapter extends BaseExpandableListAdapter imple
                                 TransferRequester requester = new TransferRequester();
                                 requester.retry(mParentActivity, upload, false);
                                 refreshView();
-                            } else if (DocumentFile.isDocumentUri(v.getContext(), Uri.parse(upload.getLocalPath()))) {
+                            } else if (UriUtils.isContentUri(upload.getLocalPath())) {
                                 WorkManager workManager = WorkManager.getInstance(MainApp.Companion.getAppContext());
                                 RetryUploadFromContentUriUseCase retryUploadFromContentUriUseCase = new RetryUploadFromContentUriUseCase(workManager);
                                 RetryUploadFromContentUriUseCase.Params useCaseParams = new RetryUploadFromContentUriUseCase.Params(
@@ -110,7 +110,7 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
                 FileStorageUtils.FILE_DISPLAY_SORT);
 
         // initialise thumbnails cache on background thread
-        new ThumbnailsCacheManager.InitDiskCacheTask().execute();
+        ThumbnailsCacheManager.initDiskCache();
     }
 
     @Override
@@ -295,7 +295,7 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
                     if (thumbnail != null) {
                         fileIcon.setImageBitmap(thumbnail);
                     }
-                    if (file.needsUpdateThumbnail()) {
+                    if (ThumbnailsCacheManager.isThumbnailOutdated(file)) {
                         // generate new Thumbnail
                         if (ThumbnailsCacheManager.cancelPotentialThumbnailWork(file, fileIcon)) {
                             final ThumbnailsCacheManager.ThumbnailGenerationTask task =
@@ -310,7 +310,7 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
                             if (asyncDrawable.getMinimumHeight() > 0 && asyncDrawable.getMinimumWidth() > 0) {
                                 fileIcon.setImageDrawable(asyncDrawable);
                             }
-                            task.execute(file);
+                            task.executeForPosition(position, file);
                         }
                     }
 
@@ -447,6 +447,30 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
         return ret;
     }
 
+    /**
+     * Keeps thumbnail requests focused on the rows on screen: pending requests far from the
+     * viewport are dropped and thumbnails for the next screen in the scroll direction are fetched
+     * in advance.
+     *
+     * @param firstVisible First visible position
+     * @param visibleCount Number of visible positions
+     * @param scrollingDown True if the list is moving towards its end
+     */
+    public void onVisibleRangeChanged(int firstVisible, int visibleCount, boolean scrollingDown) {
+        if (mFiles == null || visibleCount <= 0) {
+            return;
+        }
+        ThumbnailsCacheManager.setVisibleRange(firstVisible, visibleCount);
+
+        int from = scrollingDown ? firstVisible + visibleCount : firstVisible - visibleCount;
+        int to = scrollingDown ? firstVisible + 2 * visibleCount : firstVisible;
+        from = Math.max(0, from);
+        to = Math.min(mFiles.size(), to);
+        if (from < to) {
+            ThumbnailsCacheManager.prefetchThumbnails(mFiles.subList(from, to), mAccount, from);
+        }
+    }
+
     public void setSortOrder(Integer order, boolean ascending) {
 
         PreferenceManager.setSortOrder(order, mContext, FileStorageUtils.FILE_DISPLAY_SORT);
@@ -462,7 +486,7 @@ public class FileListListAdapter extends BaseAdapter implements ListAdapter {
 
     public ArrayList<OCFile> getCheckedItems(AbsListView parentList) {
         SparseBooleanArray checkedPositions = parentList.getCheckedItemPositions();
-        ArrayList<OCFile> files = new ArrayList<>();
+        ArrayList<OCFile> files = new ArrayList<>(parentList.getCheckedItemCount());
         Object item;
         for (int i = 0; i < checkedPositions.size(); i++) {
             if (checkedPositions.valueAt(i)) {
@@ -46,6 +46,8 @@ import java.lang.ref.WeakReference;
  */
 public class CopyAndUploadContentUrisTask extends AsyncTask<Object, Void, ResultCode> {
 
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
     /**
      * Helper method building a correct array of parameters to be passed to {@link #execute(Object[])} )}
      *
@@ -151,7 +153,7 @@ public class CopyAndUploadContentUrisTask extends AsyncTask<Object, Void, Result
                 }
                 cacheFile.createNewFile();
                 outputStream = new FileOutputStream(fullTempPath);
-                byte[] buffer = new byte[4096];
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
 
                 int count;
                 while ((count = inputStream.read(buffer)) > 0) {
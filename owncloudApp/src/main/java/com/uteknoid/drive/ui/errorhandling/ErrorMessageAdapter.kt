@@ -29,10 +29,13 @@ import com.uteknoid.drive.lib.common.operations.RemoteOperation
 import com.uteknoid.drive.lib.common.operations.RemoteOperationResult
 import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode
 import com.uteknoid.drive.operations.CopyFileOperation
+import com.uteknoid.drive.operations.CopyFilesOperation
 import com.uteknoid.drive.operations.CreateFolderOperation
 import com.uteknoid.drive.operations.DownloadFileOperation
 import com.uteknoid.drive.operations.MoveFileOperation
+import com.uteknoid.drive.operations.MoveFilesOperation
 import com.uteknoid.drive.operations.RemoveFileOperation
+import com.uteknoid.drive.operations.RemoveFilesOperation
 import com.uteknoid.drive.operations.RenameFileOperation
 import com.uteknoid.drive.operations.SynchronizeFileOperation
 import com.uteknoid.drive.operations.SynchronizeFolderOperation
@@ -101,7 +104,7 @@ class ErrorMessageAdapter {
                         R.string.downloader_download_succeeded_content,
                         File(operation.savePath).name
                     )
-                    is RemoveFileOperation -> return f.format(R.string.remove_success_msg)
+                    is RemoveFileOperation, is RemoveFilesOperation -> return f.format(R.string.remove_success_msg)
                 }
             }
 
@@ -230,15 +233,15 @@ class ErrorMessageAdapter {
                     R.string.downloader_download_failed_content,
                     File(operation.savePath).name
                 )
-                is RemoveFileOperation -> f.format(R.string.remove_fail_msg)
+                is RemoveFileOperation, is RemoveFilesOperation -> f.format(R.string.remove_fail_msg)
                 is RenameFileOperation -> f.format(R.string.rename_server_fail_msg)
                 is CreateFolderOperation -> f.format(R.string.create_dir_fail_msg)
-                is MoveFileOperation -> f.format(R.string.move_file_error)
+                is MoveFileOperation, is MoveFilesOperation -> f.format(R.string.move_file_error)
                 is SynchronizeFolderOperation -> f.format(
                     R.string.sync_folder_failed_content,
                     File(operation.folderPath).name
                 )
-                is CopyFileOperation -> f.format(R.string.copy_file_error)
+                is CopyFileOperation, is CopyFilesOperation -> f.format(R.string.copy_file_error)
                 // if everything else fails
                 else -> if (result.isSuccess) f.format(android.R.string.ok) else f.format(R.string.common_error_unknown)
             }
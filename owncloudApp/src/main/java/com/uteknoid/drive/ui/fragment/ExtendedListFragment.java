@@ -94,6 +94,28 @@ public class ExtendedListFragment extends Fragment
 
     private ListAdapter mAdapter;
 
+    private final AbsListView.OnScrollListener mVisibleRangeListener = new AbsListView.OnScrollListener() {
+        private int mLastFirstVisible = -1;
+        private int mLastVisibleCount = 0;
+
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            // Nothing to do, visible range is tracked in onScroll
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+            if (view != mCurrentListView || visibleItemCount == 0 ||
+                    (firstVisibleItem == mLastFirstVisible && visibleItemCount == mLastVisibleCount)) {
+                return;
+            }
+            boolean scrollingDown = firstVisibleItem >= mLastFirstVisible;
+            mLastFirstVisible = firstVisibleItem;
+            mLastVisibleCount = visibleItemCount;
+            onVisibleRangeChanged(firstVisibleItem, visibleItemCount, scrollingDown);
+        }
+    };
+
     void setListAdapter(ListAdapter listAdapter) {
         mAdapter = listAdapter;
         mCurrentListView.setAdapter(listAdapter);
@@ -183,6 +205,9 @@ public class ExtendedListFragment extends Fragment
         mFabUpload = v.findViewById(R.id.fab_upload);
         mFabMkdir = v.findViewById(R.id.fab_mkdir);
 
+        mListView.setOnScrollListener(mVisibleRangeListener);
+        mGridView.setOnScrollListener(mVisibleRangeListener);
+
         mCurrentListView = mListView;   // list by default
         if (savedInstanceState != null) {
             if (savedInstanceState.getBoolean(KEY_IS_GRID_VISIBLE, false)) {
@@ -235,6 +260,17 @@ public class ExtendedListFragment extends Fragment
         savedInstanceState.putString(KEY_EMPTY_LIST_MESSAGE, getEmptyViewText());
     }
 
+    /**
+     * Called when the range of visible positions in the current list or grid changes.
+     *
+     * @param firstVisible  First visible position
+     * @param visibleCount  Number of visible positions
+     * @param scrollingDown True if the list is moving towards its end
+     */
+    protected void onVisibleRangeChanged(int firstVisible, int visibleCount, boolean scrollingDown) {
+        // Nothing to do by default
+    }
+
     /**
      * Calculates the position of the item that will be used as a reference to
      * reposition the visible items in the list when the device is turned to
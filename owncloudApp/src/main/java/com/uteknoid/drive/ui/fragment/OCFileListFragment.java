@@ -475,7 +475,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
     }
 
     public boolean isSingleItemChecked() {
-        return mFileListAdapter.getCheckedItems(getListView()).size() == 1;
+        return getListView().getCheckedItemCount() == 1;
     }
 
     @Override
@@ -540,6 +540,26 @@ public class OCFileListFragment extends ExtendedListFragment implements
          */
         private SparseBooleanArray mSelectionWhenActionModeClosedByDrawer = null;
 
+        /**
+         * True while a refresh of the list and the action mode is waiting for the next frame
+         */
+        private boolean mSelectionRefreshPending = false;
+
+        /**
+         * Redraws the visible rows and updates the action mode with the current selection. Checking every item of a
+         * large folder would otherwise do it once per item.
+         */
+        private final Runnable mSelectionRefresh = () -> {
+            mSelectionRefreshPending = false;
+            if (getView() == null) {
+                return;
+            }
+            getListView().invalidateViews();
+            if (mActiveActionMode != null) {
+                mActiveActionMode.invalidate();
+            }
+        };
+
         @Override
         public void onDrawerSlide(@NonNull View drawerView, float slideOffset) {
             // nothing to do
@@ -587,13 +607,15 @@ public class OCFileListFragment extends ExtendedListFragment implements
         }
 
         /**
-         * Update action mode bar when an item is selected / unselected in the list
+         * Update action mode bar when an item is selected / unselected in the list, at most once per frame
          */
         @Override
         public void onItemCheckedStateChanged(ActionMode mode, int position, long id, boolean checked) {
-            getListView().invalidateViews();
-            mode.invalidate();
-            if (mFileListAdapter.getCheckedItems(getListView()).size() == mFileListAdapter.getCount()) {
+            if (!mSelectionRefreshPending) {
+                mSelectionRefreshPending = true;
+                getListView().postOnAnimation(mSelectionRefresh);
+            }
+            if (getListView().getCheckedItemCount() == mFileListAdapter.getCount()) {
                 mEnableSelectAll = false;
             } else {
                 if (!checked) {
@@ -844,6 +866,13 @@ public class OCFileListFragment extends ExtendedListFragment implements
         }
     }
 
+    @Override
+    protected void onVisibleRangeChanged(int firstVisible, int visibleCount, boolean scrollingDown) {
+        if (mFileListAdapter != null) {
+            mFileListAdapter.onVisibleRangeChanged(firstVisible, visibleCount, scrollingDown);
+        }
+    }
+
     @Override
     public void onItemClick(AdapterView<?> l, View v, int position, long id) {
         OCFile file = (OCFile) mFileListAdapter.getItem(position);
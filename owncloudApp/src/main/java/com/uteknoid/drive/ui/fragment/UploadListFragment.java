@@ -32,6 +32,7 @@ import com.uteknoid.drive.datamodel.UploadsStorageManager;
 import com.uteknoid.drive.files.services.TransferRequester;
 import com.uteknoid.drive.ui.activity.FileActivity;
 import com.uteknoid.drive.ui.adapter.ExpandableUploadListAdapter;
+import com.uteknoid.drive.usecases.CancelUploadWithIdUseCase;
 import timber.log.Timber;
 
 /**
@@ -121,6 +122,9 @@ public class UploadListFragment extends ExpandableListFragment implements Option
                 break;
             case CLEAR_FAILED:
                 storageManager = new UploadsStorageManager(requireActivity().getContentResolver());
+                for (OCUpload failedUpload : storageManager.getFailedButNotDelayedForWifiUploads()) {
+                    CancelUploadWithIdUseCase.Companion.releasePersistedReadPermission(failedUpload);
+                }
                 storageManager.clearFailedButNotDelayedForWifiUploads();
                 break;
             case CLEAR_SUCCESSFUL:
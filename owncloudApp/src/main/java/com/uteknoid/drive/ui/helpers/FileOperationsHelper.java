@@ -41,9 +41,12 @@ import com.uteknoid.drive.files.services.FileDownloader.FileDownloaderBinder;
 import com.uteknoid.drive.files.services.FileUploader.FileUploaderBinder;
 import com.uteknoid.drive.lib.common.accounts.AccountUtils;
 import com.uteknoid.drive.presentation.ui.sharing.ShareActivity;
+import com.uteknoid.drive.providers.WorkManagerProvider;
 import com.uteknoid.drive.services.OperationsService;
 import com.uteknoid.drive.ui.activity.FileActivity;
 import com.uteknoid.drive.ui.dialog.ShareLinkToDialog;
+import kotlin.Lazy;
+import org.jetbrains.annotations.NotNull;
 import timber.log.Timber;
 
 import java.util.ArrayList;
@@ -51,6 +54,7 @@ import java.util.Collection;
 import java.util.List;
 
 import static com.uteknoid.drive.services.OperationsService.EXTRA_SYNC_REGULAR_FILES;
+import static org.koin.java.KoinJavaComponent.inject;
 
 public class FileOperationsHelper {
 
@@ -89,6 +93,7 @@ public class FileOperationsHelper {
 
     public void openFile(OCFile ocFile) {
         if (ocFile != null) {
+            mFileActivity.getStorageManager().updateLastUsageInBackground(ocFile);
             Intent intentForSavedMimeType = getIntentForSavedMimeType(ocFile.getExposedFileUri(mFileActivity), ocFile.getMimetype());
 
             Intent intentForGuessedMimeType = getIntentForGuessedMimeType(ocFile.getStoragePath(), ocFile.getMimetype(),
@@ -206,6 +211,7 @@ public class FileOperationsHelper {
 
     public void sendDownloadedFile(OCFile ocFile) {
         if (ocFile != null) {
+            mFileActivity.getStorageManager().updateLastUsageInBackground(ocFile);
             Intent sendIntent = makeActionSendIntent(ocFile);
             // Show dialog, without the own app
             String[] packagesToExclude = new String[]{mFileActivity.getPackageName()};
@@ -282,44 +288,75 @@ public class FileOperationsHelper {
     }
 
     public void toggleAvailableOffline(Collection<OCFile> files, boolean isAvailableOffline) {
+        boolean anyToggled = false;
         for (OCFile file : files) {
-            toggleAvailableOffline(file, isAvailableOffline);
+            anyToggled |= setAvailableOffline(file, isAvailableOffline);
+        }
+        if (anyToggled) {
+            scheduleAvailableOfflineJob();
         }
     }
 
     public void toggleAvailableOffline(OCFile file, boolean isAvailableOffline) {
+        if (setAvailableOffline(file, isAvailableOffline)) {
+            scheduleAvailableOfflineJob();
+        }
+    }
+
+    /**
+     * @return 'true' if the available offline status of the file was changed.
+     */
+    private boolean setAvailableOffline(OCFile file, boolean isAvailableOffline) {
         if (OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE_PARENT == file.getAvailableOfflineStatus()) {
             /// files descending of an av-offline folder can't be toggled
             mFileActivity.showSnackMessage(
                     mFileActivity.getString(R.string.available_offline_inherited_msg)
             );
+            return false;
+        }
 
-        } else {
-            /// update local property, for file and all its descendents (if folder)
-            OCFile.AvailableOfflineStatus targetAvailableOfflineStatus = isAvailableOffline ?
-                    OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE :
-                    OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE;
-            file.setAvailableOfflineStatus(targetAvailableOfflineStatus);
-            boolean success = mFileActivity.getStorageManager().saveLocalAvailableOfflineStatus(file);
-
-            if (success) {
-                // Schedule job to check to watch for local changes in available offline files and sync them
-                AvailableOfflineHandler availableOfflineHandler = new AvailableOfflineHandler(mFileActivity);
-                availableOfflineHandler.scheduleAvailableOfflineJob(mFileActivity);
-
-                /// immediate content synchronization
-                if (OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE == file.getAvailableOfflineStatus()) {
-                    syncFile(file);
+        /// update local property, for file and all its descendents (if folder)
+        OCFile.AvailableOfflineStatus targetAvailableOfflineStatus = isAvailableOffline ?
+                OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE :
+                OCFile.AvailableOfflineStatus.NOT_AVAILABLE_OFFLINE;
+        file.setAvailableOfflineStatus(targetAvailableOfflineStatus);
+        boolean success = mFileActivity.getStorageManager().saveLocalAvailableOfflineStatus(file);
+
+        if (success) {
+            /// immediate content synchronization; the content of folders is downloaded in a single job
+            String accountName = mFileActivity.getAccount().name;
+            if (OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE == file.getAvailableOfflineStatus()) {
+                if (file.isFolder()) {
+                    getWorkManagerProvider().enqueueAvailableOfflineFolderWorker(accountName, file.getRemotePath());
                 } else {
-                    cancelTransference(file);
+                    syncFile(file);
                 }
             } else {
-                /// unexpected error
-                mFileActivity.showSnackMessage(
-                        mFileActivity.getString(R.string.common_error_unknown)
-                );
+                if (file.isFolder()) {
+                    getWorkManagerProvider().cancelAvailableOfflineFolderWorker(accountName, file.getRemotePath());
+                }
+                cancelTransference(file);
             }
+        } else {
+            /// unexpected error
+            mFileActivity.showSnackMessage(
+                    mFileActivity.getString(R.string.common_error_unknown)
+            );
         }
+        return success;
+    }
+
+    /**
+     * Schedules the job that watches for local changes in available offline files and syncs them.
+     */
+    private void scheduleAvailableOfflineJob() {
+        AvailableOfflineHandler availableOfflineHandler = new AvailableOfflineHandler(mFileActivity);
+        availableOfflineHandler.scheduleAvailableOfflineJob(mFileActivity);
+    }
+
+    private WorkManagerProvider getWorkManagerProvider() {
+        @NotNull Lazy<WorkManagerProvider> workManagerProvider = inject(WorkManagerProvider.class);
+        return workManagerProvider.getValue();
     }
 
     public void renameFile(OCFile file, String newFilename) {
@@ -342,22 +379,19 @@ public class FileOperationsHelper {
      *                      in the server.
      */
     public void removeFiles(Collection<OCFile> files, boolean onlyLocalCopy) {
-        int countOfFilesToRemove = 0;
-        boolean isLastFileToRemove = false;
-        for (OCFile file : files) {
-            countOfFilesToRemove++;
-            // RemoveFile
-            Intent service = new Intent(mFileActivity, OperationsService.class);
+        Intent service = new Intent(mFileActivity, OperationsService.class);
+        service.putExtra(OperationsService.EXTRA_ACCOUNT, mFileActivity.getAccount());
+        service.putExtra(OperationsService.EXTRA_REMOVE_ONLY_LOCAL, onlyLocalCopy);
+        if (files.size() == 1) {
             service.setAction(OperationsService.ACTION_REMOVE);
-            service.putExtra(OperationsService.EXTRA_ACCOUNT, mFileActivity.getAccount());
-            service.putExtra(OperationsService.EXTRA_REMOTE_PATH, file.getRemotePath());
-            service.putExtra(OperationsService.EXTRA_REMOVE_ONLY_LOCAL, onlyLocalCopy);
-            if (countOfFilesToRemove == files.size()) {
-                isLastFileToRemove = true;
-            }
-            service.putExtra(OperationsService.EXTRA_IS_LAST_FILE_TO_REMOVE, isLastFileToRemove);
-            mWaitingForOpId = mFileActivity.getOperationsServiceBinder().queueNewOperation(service);
+            service.putExtra(OperationsService.EXTRA_REMOTE_PATH, files.iterator().next().getRemotePath());
+            service.putExtra(OperationsService.EXTRA_IS_LAST_FILE_TO_REMOVE, true);
+        } else {
+            // The whole selection in a single operation
+            service.setAction(OperationsService.ACTION_REMOVE_FILES);
+            service.putStringArrayListExtra(OperationsService.EXTRA_REMOTE_PATHS, getRemotePaths(files));
         }
+        mWaitingForOpId = mFileActivity.getOperationsServiceBinder().queueNewOperation(service);
 
         mFileActivity.showLoadingDialog(R.string.wait_a_moment);
     }
@@ -407,14 +441,17 @@ public class FileOperationsHelper {
      * @param targetFolder Folder where the files while be moved into
      */
     public void moveFiles(Collection<OCFile> files, OCFile targetFolder) {
-        for (OCFile file : files) {
-            Intent service = new Intent(mFileActivity, OperationsService.class);
+        Intent service = new Intent(mFileActivity, OperationsService.class);
+        service.putExtra(OperationsService.EXTRA_NEW_PARENT_PATH, targetFolder.getRemotePath());
+        service.putExtra(OperationsService.EXTRA_ACCOUNT, mFileActivity.getAccount());
+        if (files.size() == 1) {
             service.setAction(OperationsService.ACTION_MOVE_FILE);
-            service.putExtra(OperationsService.EXTRA_NEW_PARENT_PATH, targetFolder.getRemotePath());
-            service.putExtra(OperationsService.EXTRA_REMOTE_PATH, file.getRemotePath());
-            service.putExtra(OperationsService.EXTRA_ACCOUNT, mFileActivity.getAccount());
-            mWaitingForOpId = mFileActivity.getOperationsServiceBinder().queueNewOperation(service);
+            service.putExtra(OperationsService.EXTRA_REMOTE_PATH, files.iterator().next().getRemotePath());
+        } else {
+            service.setAction(OperationsService.ACTION_MOVE_FILES);
+            service.putStringArrayListExtra(OperationsService.EXTRA_REMOTE_PATHS, getRemotePaths(files));
         }
+        mWaitingForOpId = mFileActivity.getOperationsServiceBinder().queueNewOperation(service);
         mFileActivity.showLoadingDialog(R.string.wait_a_moment);
     }
 
@@ -425,17 +462,28 @@ public class FileOperationsHelper {
      * @param targetFolder Folder where the files while be copied into
      */
     public void copyFiles(Collection<OCFile> files, OCFile targetFolder) {
-        for (OCFile file : files) {
-            Intent service = new Intent(mFileActivity, OperationsService.class);
+        Intent service = new Intent(mFileActivity, OperationsService.class);
+        service.putExtra(OperationsService.EXTRA_NEW_PARENT_PATH, targetFolder.getRemotePath());
+        service.putExtra(OperationsService.EXTRA_ACCOUNT, mFileActivity.getAccount());
+        if (files.size() == 1) {
             service.setAction(OperationsService.ACTION_COPY_FILE);
-            service.putExtra(OperationsService.EXTRA_NEW_PARENT_PATH, targetFolder.getRemotePath());
-            service.putExtra(OperationsService.EXTRA_REMOTE_PATH, file.getRemotePath());
-            service.putExtra(OperationsService.EXTRA_ACCOUNT, mFileActivity.getAccount());
-            mWaitingForOpId = mFileActivity.getOperationsServiceBinder().queueNewOperation(service);
+            service.putExtra(OperationsService.EXTRA_REMOTE_PATH, files.iterator().next().getRemotePath());
+        } else {
+            service.setAction(OperationsService.ACTION_COPY_FILES);
+            service.putStringArrayListExtra(OperationsService.EXTRA_REMOTE_PATHS, getRemotePaths(files));
         }
+        mWaitingForOpId = mFileActivity.getOperationsServiceBinder().queueNewOperation(service);
         mFileActivity.showLoadingDialog(R.string.wait_a_moment);
     }
 
+    private ArrayList<String> getRemotePaths(Collection<OCFile> files) {
+        ArrayList<String> remotePaths = new ArrayList<>(files.size());
+        for (OCFile file : files) {
+            remotePaths.add(file.getRemotePath());
+        }
+        return remotePaths;
+    }
+
     public long getOpIdWaitingFor() {
         return mWaitingForOpId;
     }
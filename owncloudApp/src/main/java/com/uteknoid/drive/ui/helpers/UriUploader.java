@@ -19,22 +19,31 @@ package com.uteknoid.drive.ui.helpers;
 
 import android.accounts.Account;
 import android.content.ContentResolver;
+import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Parcelable;
 
 import androidx.fragment.app.FragmentManager;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import androidx.work.WorkQuery;
 import com.uteknoid.drive.R;
+import com.uteknoid.drive.datamodel.OCUpload;
 import com.uteknoid.drive.files.services.FileUploader;
 import com.uteknoid.drive.files.services.TransferRequester;
 import com.uteknoid.drive.operations.UploadFileOperation;
 import com.uteknoid.drive.ui.activity.FileActivity;
 import com.uteknoid.drive.ui.asynctasks.CopyAndUploadContentUrisTask;
 import com.uteknoid.drive.ui.fragment.TaskRetainerFragment;
+import com.uteknoid.drive.usecases.CancelUploadWithIdUseCase;
 import com.uteknoid.drive.utils.UriUtils;
 import timber.log.Timber;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This class examines URIs pointing to files to upload and then requests {@link FileUploader} to upload them.
@@ -42,12 +51,19 @@ import java.util.List;
  * URIs with scheme file:// do not require any previous processing, their path is sent to {@link FileUploader}
  * to find the source file.
  *
- * URIs with scheme content:// are handling assuming that file is in private storage owned by a different app,
- * and that persistency permission is not granted. Due to this, contents of the file are temporary copied by
- * the OC app, and then passed {@link FileUploader}.
+ * URIs with scheme content:// whose read permission can be persisted are uploaded straight from the URI, so that
+ * the transfer starts right away and no local copy is made. The rest are handled assuming that the file is in
+ * private storage owned by a different app, and that the permission will be lost once the user leaves the app.
+ * When allowed by the caller, they are uploaded straight from the URI too while the permission lasts, and only those
+ * still pending when the caller is about to finish are copied; otherwise, contents of those files are temporary
+ * copied by the OC app, and then passed {@link FileUploader}.
  */
 public class UriUploader {
 
+    private static final int MAX_PERSISTED_PERMISSIONS_BEFORE_R = 128;
+    private static final int MAX_PERSISTED_PERMISSIONS_SINCE_R = 512;
+    private static final int RESERVED_PERSISTED_PERMISSIONS = 16;
+
     private FileActivity mActivity;
     private ArrayList<Uri> mUrisToUpload;
     private CopyAndUploadContentUrisTask.OnCopyTmpFilesTaskListener mCopyTmpTaskListener;
@@ -57,12 +73,17 @@ public class UriUploader {
     private String mUploadPath;
     private Account mAccount;
     private boolean mShowWaitingDialog;
+    private boolean mStreamFromTemporaryGrant;
+
+    private final List<OCUpload> mTemporaryGrantUploads = new ArrayList<>();
+    private final Set<Long> mSucceededUploadIds = new HashSet<>();
 
     private UriUploaderResultCode mCode = UriUploaderResultCode.OK;
 
     public enum UriUploaderResultCode {
         OK,
         COPY_THEN_UPLOAD,
+        STREAM_FROM_TEMPORARY_GRANT,
         ERROR_UNKNOWN,
         ERROR_NO_FILE_TO_UPLOAD,
         ERROR_READ_PERMISSION_NOT_GRANTED
@@ -86,6 +107,14 @@ public class UriUploader {
         mCopyTmpTaskListener = copyTmpTaskListener;
     }
 
+    /**
+     * Lets content:// URIs whose read permission cannot be persisted be uploaded straight from the URI while the
+     * caller is alive. The caller has to call {@link #copyPendingTemporaryGrantUploads()} before finishing.
+     */
+    public void setStreamFromTemporaryGrant(boolean streamFromTemporaryGrant) {
+        mStreamFromTemporaryGrant = streamFromTemporaryGrant;
+    }
+
     public UriUploaderResultCode uploadUris() {
 
         try {
@@ -94,6 +123,8 @@ public class UriUploader {
             List<String> contentRemotePaths = new ArrayList<>();
 
             int schemeFileCounter = 0;
+            int streamedContentCounter = 0;
+            int persistedPermissionsCounter = mActivity.getContentResolver().getPersistedUriPermissions().size();
 
             for (Parcelable sourceStream : mUrisToUpload) {
                 Uri sourceUri = (Uri) sourceStream;
@@ -102,8 +133,18 @@ public class UriUploader {
                     String remotePath = mUploadPath + displayName;
 
                     if (ContentResolver.SCHEME_CONTENT.equals(sourceUri.getScheme())) {
-                        contentUris.add(sourceUri);
-                        contentRemotePaths.add(remotePath);
+                        if (persistedPermissionsCounter < getMaxPersistedPermissions() &&
+                                takePersistableReadPermission(sourceUri)) {
+                            requestUploadFromContentUri(sourceUri, remotePath);
+                            streamedContentCounter++;
+                            persistedPermissionsCounter++;
+                        } else if (mStreamFromTemporaryGrant) {
+                            mTemporaryGrantUploads.add(requestUploadFromContentUri(sourceUri, remotePath));
+                            streamedContentCounter++;
+                        } else {
+                            contentUris.add(sourceUri);
+                            contentRemotePaths.add(remotePath);
+                        }
 
                     } else if (ContentResolver.SCHEME_FILE.equals(sourceUri.getScheme())) {
                         /// file: uris should point to a local file, should be safe let FileUploader handle them
@@ -115,13 +156,17 @@ public class UriUploader {
 
             if (!contentUris.isEmpty()) {
                 /// content: uris will be copied to temporary files before calling {@link FileUploader}
-                copyThenUpload(contentUris.toArray(new Uri[0]), contentRemotePaths.toArray(new String[0]));
+                copyThenUpload(contentUris.toArray(new Uri[0]), contentRemotePaths.toArray(new String[0]), mShowWaitingDialog);
 
                 // Listen to CopyAndUploadContentUrisTask before killing the app or a SecurityException may appear.
                 // At least when receiving files to upload.
                 mCode = UriUploaderResultCode.COPY_THEN_UPLOAD;
 
-            } else if (schemeFileCounter == 0) {
+            } else if (!mTemporaryGrantUploads.isEmpty()) {
+                // Keep the caller alive while they are uploaded, the permission to read them is lost when it finishes
+                mCode = UriUploaderResultCode.STREAM_FROM_TEMPORARY_GRANT;
+
+            } else if (schemeFileCounter == 0 && streamedContentCounter == 0) {
                 mCode = UriUploaderResultCode.ERROR_NO_FILE_TO_UPLOAD;
             }
 
@@ -162,13 +207,125 @@ public class UriUploader {
         );
     }
 
+    /**
+     * Keeps the permission to read a content:// URI after the user leaves the app, when its owner allows it.
+     *
+     * @param contentUri    content:// URI received to upload.
+     * @return              'true' if the permission is kept, 'false' if the URI has to be copied before leaving.
+     */
+    private boolean takePersistableReadPermission(Uri contentUri) {
+        if ((mActivity.getIntent().getFlags() & Intent.FLAG_GRANT_PERSISTABLE_URI_PERMISSION) == 0) {
+            return false;
+        }
+        try {
+            mActivity.getContentResolver().takePersistableUriPermission(contentUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            return true;
+        } catch (SecurityException e) {
+            Timber.d(e, "Read permission for %s cannot be persisted", contentUri);
+            return false;
+        }
+    }
+
+    /**
+     * The OS caps the persisted permissions an app can hold, and taking one more drops the oldest, which may be in
+     * use by camera uploads or a pending upload. Some room is left under the cap for them; the URIs received when
+     * it is reached are copied instead.
+     *
+     * @return              Number of persisted permissions the app may hold, before copying the URIs to upload.
+     */
+    private static int getMaxPersistedPermissions() {
+        int osLimit = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ?
+                MAX_PERSISTED_PERMISSIONS_SINCE_R :
+                MAX_PERSISTED_PERMISSIONS_BEFORE_R;
+        return osLimit - RESERVED_PERSISTED_PERMISSIONS;
+    }
+
+    /**
+     * Requests the upload of a content:// URI that can be read for now, reading it while uploading.
+     *
+     * @param contentUri    content:// URI to the file to upload.
+     * @param remotePath    Absolute path in the current OC account to set to the uploaded file.
+     * @return              The upload requested.
+     */
+    private OCUpload requestUploadFromContentUri(Uri contentUri, String remotePath) {
+        TransferRequester requester = new TransferRequester();
+        return requester.uploadNewFileFromContentUri(
+                mActivity,
+                mAccount,
+                contentUri,
+                remotePath,
+                UploadFileOperation.CREATED_BY_USER
+        );
+    }
+
+    /**
+     * Calls back while the caller is alive, once all the uploads read from a temporary grant are finished.
+     *
+     * @param onFinished        Called when none of the uploads is running nor enqueued.
+     */
+    public void observeTemporaryGrantUploads(Runnable onFinished) {
+        List<String> uploadTags = new ArrayList<>();
+        for (OCUpload upload : mTemporaryGrantUploads) {
+            uploadTags.add(String.valueOf(upload.getUploadId()));
+        }
+        WorkManager.getInstance(mActivity).getWorkInfosLiveData(WorkQuery.Builder.fromTags(uploadTags).build())
+                .observe(mActivity, workInfos -> {
+                    boolean allFinished = !workInfos.isEmpty();
+                    for (WorkInfo workInfo : workInfos) {
+                        if (workInfo.getState() == WorkInfo.State.SUCCEEDED) {
+                            for (OCUpload upload : mTemporaryGrantUploads) {
+                                if (workInfo.getTags().contains(String.valueOf(upload.getUploadId()))) {
+                                    mSucceededUploadIds.add(upload.getUploadId());
+                                }
+                            }
+                        }
+                        allFinished &= workInfo.getState().isFinished();
+                    }
+                    if (allFinished) {
+                        onFinished.run();
+                    }
+                });
+    }
+
+    /**
+     * Cancels the uploads read from a temporary grant that did not succeed yet, and uploads a copy of them instead,
+     * since the permission to read them is lost once the caller finishes. Failed ones are copied too, so that they
+     * can be retried later.
+     *
+     * @return                  'true' if some of them are being copied, and the listener will be called when done.
+     */
+    public boolean copyPendingTemporaryGrantUploads() {
+        List<Uri> contentUris = new ArrayList<>();
+        List<String> contentRemotePaths = new ArrayList<>();
+        CancelUploadWithIdUseCase cancelUploadWithIdUseCase =
+                new CancelUploadWithIdUseCase(WorkManager.getInstance(mActivity));
+
+        for (OCUpload upload : mTemporaryGrantUploads) {
+            if (!mSucceededUploadIds.contains(upload.getUploadId())) {
+                cancelUploadWithIdUseCase.execute(new CancelUploadWithIdUseCase.Params(upload));
+                contentUris.add(Uri.parse(upload.getLocalPath()));
+                contentRemotePaths.add(upload.getRemotePath());
+            }
+        }
+        mTemporaryGrantUploads.clear();
+
+        if (contentUris.isEmpty()) {
+            return false;
+        }
+        Timber.d("Copying %d shared files whose upload is still pending", contentUris.size());
+        // The waiting dialog of the caller is already shown while streaming
+        copyThenUpload(contentUris.toArray(new Uri[0]), contentRemotePaths.toArray(new String[0]), false);
+        return true;
+    }
+
     /**
      *
      * @param sourceUris        Array of content:// URIs to the files to upload
      * @param remotePaths       Array of absolute paths to set to the uploaded files
+     * @param showWaitingDialog Whether to show the waiting dialog while copying
      */
-    private void copyThenUpload(Uri[] sourceUris, String[] remotePaths) {
-        if (mShowWaitingDialog) {
+    private void copyThenUpload(Uri[] sourceUris, String[] remotePaths, boolean showWaitingDialog) {
+        if (showWaitingDialog) {
             mActivity.showLoadingDialog(R.string.wait_for_tmp_copy_from_private_storage);
         }
 
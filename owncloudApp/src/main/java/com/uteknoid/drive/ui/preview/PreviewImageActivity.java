@@ -68,6 +68,7 @@ public class PreviewImageActivity extends FileActivity implements
         ViewPager.OnPageChangeListener, OnRemoteOperationListener {
 
     private static final int INITIAL_HIDE_DELAY = 0; // immediate hide
+    private static final int PREFETCH_DISTANCE = 2; // pages at each side of the current one
 
     private ViewPager mViewPager;
     private PreviewImagePagerAdapter mPreviewImagePagerAdapter;
@@ -334,9 +335,11 @@ public class PreviewImageActivity extends FileActivity implements
 
             OCFile currentFile = mPreviewImagePagerAdapter.getFileAt(position);
             updateActionBarTitle(currentFile.getFileName());
-            if (!mPreviewImagePagerAdapter.pendingErrorAt(position)) {
+            // Not downloaded images are shown with a server preview; the original is downloaded on demand
+            if (currentFile.isDown() && !mPreviewImagePagerAdapter.pendingErrorAt(position)) {
                 getFileOperationsHelper().syncFile(currentFile);
             }
+            mPreviewImagePagerAdapter.prefetchScreenPreviews(position, PREFETCH_DISTANCE);
 
             // Call to reset image zoom to initial state
             ((PreviewImagePagerAdapter) mViewPager.getAdapter()).resetZoom();
@@ -28,6 +28,7 @@ package com.uteknoid.drive.ui.preview
 import android.accounts.Account
 import android.graphics.Bitmap
 import android.graphics.Color
+import android.graphics.drawable.BitmapDrawable
 import android.graphics.drawable.Drawable
 import android.os.Bundle
 import android.view.LayoutInflater
@@ -38,17 +39,20 @@ import android.view.View
 import android.view.ViewGroup
 import android.widget.ProgressBar
 import androidx.core.view.isVisible
+import androidx.lifecycle.lifecycleScope
 import com.bumptech.glide.Glide
 import com.bumptech.glide.load.DataSource
 import com.bumptech.glide.load.engine.DiskCacheStrategy
 import com.bumptech.glide.load.engine.GlideException
 import com.bumptech.glide.request.RequestListener
 import com.bumptech.glide.request.target.Target
+import com.bumptech.glide.signature.ObjectKey
 import com.github.chrisbanes.photoview.PhotoView
 import com.uteknoid.drive.R
 import com.uteknoid.drive.databinding.PreviewImageFragmentBinding
 import com.uteknoid.drive.databinding.TopProgressBarBinding
 import com.uteknoid.drive.datamodel.OCFile
+import com.uteknoid.drive.datamodel.ThumbnailsCacheManager
 import com.uteknoid.drive.domain.files.MIME_SVG
 import com.uteknoid.drive.files.FileMenuFilter
 import com.uteknoid.drive.ui.controller.TransferProgressController
@@ -56,17 +60,20 @@ import com.uteknoid.drive.ui.dialog.ConfirmationDialogFragment
 import com.uteknoid.drive.ui.dialog.RemoveFilesDialogFragment
 import com.uteknoid.drive.ui.fragment.FileFragment
 import com.uteknoid.drive.utils.PreferenceUtils
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import timber.log.Timber
 import java.io.File
 
 /**
- * This fragment shows a preview of a downloaded image.
+ * This fragment shows a preview of an image.
  *
  * Trying to get an instance with a NULL [OCFile] will produce an
  * [IllegalStateException].
  *
- * If the [OCFile] passed is not downloaded, an [IllegalStateException] is generated on
- * instantiation too.
+ * If the [OCFile] passed is not downloaded, a screen-sized preview generated by the server is shown
+ * until the original is downloaded, which happens only when the user zooms in or asks for it.
  * MUST BE KEPT: the system uses it when tries to reinstantiate a fragment automatically
  * (for instance, when the device is turned a aside).
  *
@@ -77,6 +84,8 @@ import java.io.File
 class PreviewImageFragment : FileFragment() {
 
     private var progressController: TransferProgressController? = null
+    private var regionLoader: PreviewImageRegionLoader? = null
+    private var originalRequested = false
     private val bitmap: Bitmap? = null
     private var account: Account? = null
     private var ignoreFirstSavedState = false
@@ -116,6 +125,8 @@ class PreviewImageFragment : FileFragment() {
 
     override fun onDestroyView() {
         super.onDestroyView()
+        regionLoader?.release()
+        regionLoader = null
         _binding = null
         _bindingTopProgress = null
     }
@@ -148,7 +159,6 @@ class PreviewImageFragment : FileFragment() {
         account = requireArguments().getParcelable(PreviewAudioFragment.EXTRA_ACCOUNT)
         checkNotNull(account) { "Instanced with a NULL ownCloud Account" }
         checkNotNull(file) { "Instanced with a NULL OCFile" }
-        check(file.isDown) { "There is no local file to preview" }
 
         binding.message.isVisible = false
         binding.progressWheel.isVisible = true
@@ -260,6 +270,10 @@ class PreviewImageFragment : FileFragment() {
                 mContainerActivity.fileOperationsHelper.syncFile(file)
                 true
             }
+            R.id.action_download_file -> {
+                requestOriginal()
+                true
+            }
             R.id.action_set_available_offline -> {
                 mContainerActivity.fileOperationsHelper.toggleAvailableOffline(file, true)
                 true
@@ -317,10 +331,26 @@ class PreviewImageFragment : FileFragment() {
     }
 
     private fun loadAndShowImage() {
+        if (!file.isDown) {
+            loadAndShowServerPreview()
+            return
+        }
+        binding.photoView.setOnScaleChangeListener(null)
+
+        regionLoader?.release()
+        regionLoader = if (isSVGFile(file)) null else PreviewImageRegionLoader(
+            photoView = binding.photoView,
+            regionView = binding.regionView,
+            storagePath = file.storagePath,
+            scope = viewLifecycleOwner.lifecycleScope,
+        ).apply { start() }
+
+        // Downloaded content may change in the same path; the sync date identifies each version
         Glide.with(requireContext())
             .load(File(file.storagePath))
-            .diskCacheStrategy(DiskCacheStrategy.NONE)
-            .skipMemoryCache(true)
+            .signature(ObjectKey(file.lastSyncDateForData))
+            .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+            .placeholder(ThumbnailsCacheManager.getScreenPreviewFromMemoryCache(file)?.let { BitmapDrawable(resources, it) })
             .listener(object : RequestListener<Drawable?> {
                 override fun onLoadFailed(
                     e: GlideException?, model: Any, target: Target<Drawable?>, isFirstResource: Boolean
@@ -345,6 +375,68 @@ class PreviewImageFragment : FileFragment() {
         binding.photoView.isVisible = true
     }
 
+    /**
+     * Shows the screen-sized preview generated by the server, and downloads the original if the server
+     * can't provide it.
+     */
+    private fun loadAndShowServerPreview() {
+        binding.photoView.isVisible = true
+        val cachedPreview = ThumbnailsCacheManager.getScreenPreviewFromMemoryCache(file)
+        if (cachedPreview != null) {
+            showServerPreview(cachedPreview)
+            return
+        }
+
+        if (ThumbnailsCacheManager.hasScreenPreviewFailed(file)) {
+            showServerPreviewError()
+            return
+        }
+
+        val previewedFile = file
+        viewLifecycleOwner.lifecycleScope.launch {
+            val preview = withContext(Dispatchers.IO) {
+                ThumbnailsCacheManager.getScreenPreview(previewedFile, account)
+            }
+            if (preview != null) {
+                showServerPreview(preview)
+            } else {
+                showServerPreviewError()
+            }
+        }
+    }
+
+    /**
+     * The server could not provide a preview; tell the user and download the original instead.
+     */
+    private fun showServerPreviewError() {
+        Timber.d("No server preview for %s, downloading it", file.remotePath)
+        binding.progressWheel.isVisible = false
+        binding.errorText.setText(R.string.preview_image_server_preview_failed)
+        binding.errorGroup.isVisible = true
+        requestOriginal()
+    }
+
+    private fun showServerPreview(preview: Bitmap) {
+        binding.progressWheel.isVisible = false
+        binding.photoView.setImageBitmap(preview)
+        // The preview is only screen-sized; zooming in needs the original
+        binding.photoView.setOnScaleChangeListener { _, _, _ ->
+            if (binding.photoView.scale > ZOOM_FOR_ORIGINAL) {
+                requestOriginal()
+            }
+        }
+    }
+
+    /**
+     * Downloads the original image. The pager replaces this fragment when the download finishes.
+     */
+    private fun requestOriginal() {
+        if (!originalRequested && !file.isDown) {
+            originalRequested = true
+            mContainerActivity.fileOperationsHelper.syncFile(file)
+        }
+    }
+
     private fun isSVGFile(file: OCFile): Boolean = file.mimetype == MIME_SVG
 
     private fun getBackgroundColor(file: OCFile): Int {
@@ -362,6 +454,7 @@ class PreviewImageFragment : FileFragment() {
         private const val ARG_FILE = "FILE"
         private const val ARG_ACCOUNT = "ACCOUNT"
         private const val ARG_IGNORE_FIRST = "IGNORE_FIRST"
+        private const val ZOOM_FOR_ORIGINAL = 1.5f
 
         /**
          * Public factory method to create a new fragment that previews an image.
@@ -28,6 +28,7 @@ import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentStatePagerAdapter;
 import com.uteknoid.drive.datamodel.FileDataStorageManager;
 import com.uteknoid.drive.datamodel.OCFile;
+import com.uteknoid.drive.datamodel.ThumbnailsCacheManager;
 import com.uteknoid.drive.files.services.FileDownloader;
 import com.uteknoid.drive.ui.fragment.FileFragment;
 import com.uteknoid.drive.utils.FileStorageUtils;
@@ -104,21 +105,17 @@ public class PreviewImagePagerAdapter extends FragmentStatePagerAdapter {
     public Fragment getItem(int i) {
         OCFile file = mImageFiles.get(i);
         Fragment fragment;
-        if (file.isDown()) {
-            fragment = PreviewImageFragment.newInstance(
-                    file,
-                    mAccount,
-                    mObsoletePositions.contains(i)
-            );
-
-        } else if (mDownloadErrors.contains(i)) {
+        if (mDownloadErrors.contains(i) && !file.isDown()) {
             fragment = FileDownloadFragment.newInstance(file, mAccount, true);
             ((FileDownloadFragment) fragment).setError(true);
             mDownloadErrors.remove(i);
 
         } else {
-            fragment = FileDownloadFragment.newInstance(
-                    file, mAccount, mObsoletePositions.contains(i)
+            // Not downloaded images show a server preview until the original is downloaded
+            fragment = PreviewImageFragment.newInstance(
+                    file,
+                    mAccount,
+                    mObsoletePositions.contains(i)
             );
         }
         mObsoletePositions.remove(i);
@@ -129,6 +126,19 @@ public class PreviewImagePagerAdapter extends FragmentStatePagerAdapter {
         return mImageFiles.indexOf(file);
     }
 
+    /**
+     * Fetches server previews of the images around the given position, beyond the pages already
+     * kept by the pager, so swiping through not downloaded images doesn't wait for the network.
+     *
+     * @param position Position of the current page
+     * @param distance Number of pages to prefetch at each side
+     */
+    public void prefetchScreenPreviews(int position, int distance) {
+        int from = Math.max(0, position - distance);
+        int to = Math.min(mImageFiles.size(), position + distance + 1);
+        ThumbnailsCacheManager.prefetchScreenPreviews(mImageFiles.subList(from, to), mAccount);
+    }
+
     @Override
     public int getCount() {
         return mImageFiles.size();
@@ -223,9 +233,10 @@ public class PreviewImagePagerAdapter extends FragmentStatePagerAdapter {
                 }
             }
             FileFragment fragment = mCachedFragments.get(position);
-            if (fragment instanceof FileDownloadFragment && success) {
+            boolean showingServerPreview = fragment instanceof PreviewImageFragment && !fragment.getFile().isDown();
+            if ((fragment instanceof FileDownloadFragment || showingServerPreview) && success) {
                 // trigger the creation of new PreviewImageFragment to replace current FileDownloadFragment
-                // only if the download succeeded. If not trigger an error
+                // or server preview only if the download succeeded. If not trigger an error
                 notifyDataSetChanged();
             } else if (fragment != null) {
                 fragment.onSyncEvent(action, success, null);
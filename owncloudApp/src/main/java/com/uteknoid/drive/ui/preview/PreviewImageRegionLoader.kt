@@ -0,0 +1,187 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.ui.preview
+
+import android.graphics.Bitmap
+import android.graphics.BitmapRegionDecoder
+import android.graphics.Matrix
+import android.graphics.Rect
+import android.graphics.RectF
+import android.media.ExifInterface
+import android.widget.ImageView
+import androidx.core.view.isVisible
+import com.github.chrisbanes.photoview.PhotoView
+import com.uteknoid.drive.utils.BitmapUtils
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import timber.log.Timber
+import java.io.IOException
+
+/**
+ * Shows the visible part of a zoomed image at full detail, decoding only that region of the source.
+ *
+ * The [PhotoView] keeps the screen-sized bitmap loaded for the whole image. When zoomed beyond its
+ * resolution, the visible region is decoded from the local file, subsampled to the size of the
+ * screen, and drawn over it in [regionView]. Memory used never depends on the size of the source
+ * image, so huge panoramas and scans can be zoomed in without loading them completely.
+ */
+class PreviewImageRegionLoader(
+    private val photoView: PhotoView,
+    private val regionView: ImageView,
+    private val storagePath: String,
+    private val scope: CoroutineScope,
+) {
+
+    private var decoder: BitmapRegionDecoder? = null
+    private var released = false
+    private var orientation = ExifInterface.ORIENTATION_NORMAL
+    private var sourceToOriented: Matrix? = null
+    private var orientedWidth = 0f
+    private var orientedHeight = 0f
+
+    private var loadJob: Job? = null
+    private var regionBitmap: Bitmap? = null
+
+    fun start() {
+        regionView.scaleType = ImageView.ScaleType.MATRIX
+        photoView.setOnMatrixChangeListener { displayRect -> onDisplayRectChanged(RectF(displayRect)) }
+    }
+
+    fun release() {
+        loadJob?.cancel()
+        photoView.setOnMatrixChangeListener(null)
+        clearRegion()
+        recycleDecoder()
+    }
+
+    /**
+     * Takes the same lock as [getDecoder], so a job that was cancelled while opening the decoder can
+     * not leave a new one behind. Safe even if that job is still decoding; the decoder serializes both calls.
+     */
+    @Synchronized
+    private fun recycleDecoder() {
+        released = true
+        decoder?.recycle()
+        decoder = null
+    }
+
+    private fun onDisplayRectChanged(displayRect: RectF) {
+        // The current region no longer matches the image position; show the base image meanwhile
+        loadJob?.cancel()
+        clearRegion()
+
+        val loadedWidth = photoView.drawable?.intrinsicWidth ?: return
+        if (loadedWidth <= 0 || displayRect.width() <= loadedWidth * MIN_UPSCALE_FOR_REGION) {
+            return
+        }
+
+        loadJob = scope.launch {
+            delay(SETTLE_DELAY_MS)
+            val viewRect = RectF(0f, 0f, photoView.width.toFloat(), photoView.height.toFloat())
+            val visibleRect = RectF(displayRect)
+            if (!visibleRect.intersect(viewRect)) return@launch
+
+            val region = withContext(Dispatchers.IO) { decodeVisibleRegion(displayRect, visibleRect) } ?: return@launch
+            regionBitmap = region.first
+            regionView.setImageBitmap(region.first)
+            regionView.imageMatrix = region.second
+            regionView.isVisible = true
+        }
+    }
+
+    /**
+     * @return decoded bitmap of the visible region, in storage orientation, and the matrix to draw it
+     * in view coordinates
+     */
+    private fun decodeVisibleRegion(displayRect: RectF, visibleRect: RectF): Pair<Bitmap, Matrix>? {
+        val regionDecoder = getDecoder() ?: return null
+        val toOriented = sourceToOriented ?: return null
+
+        // Visible area in coordinates of the image as displayed, then as stored
+        val displayToOriented = Matrix().apply {
+            setTranslate(-displayRect.left, -displayRect.top)
+            postScale(orientedWidth / displayRect.width(), orientedHeight / displayRect.height())
+        }
+        val orientedToSource = Matrix().apply { toOriented.invert(this) }
+        val sourceRectF = RectF(visibleRect)
+        displayToOriented.mapRect(sourceRectF)
+        orientedToSource.mapRect(sourceRectF)
+
+        val sourceRect = Rect()
+        sourceRectF.roundOut(sourceRect)
+        if (!sourceRect.intersect(0, 0, regionDecoder.width, regionDecoder.height)) return null
+
+        val reqWidth = visibleRect.width().toInt()
+        val reqHeight = visibleRect.height().toInt()
+        val bitmap = if (BitmapUtils.isRotatedByQuarter(orientation)) {
+            BitmapUtils.decodeSampledRegion(regionDecoder, sourceRect, reqHeight, reqWidth)
+        } else {
+            BitmapUtils.decodeSampledRegion(regionDecoder, sourceRect, reqWidth, reqHeight)
+        } ?: return null
+
+        // Region bitmap -> source -> oriented image -> view, applying orientation while drawing
+        val drawMatrix = Matrix().apply {
+            setScale(sourceRect.width().toFloat() / bitmap.width, sourceRect.height().toFloat() / bitmap.height)
+            postTranslate(sourceRect.left.toFloat(), sourceRect.top.toFloat())
+            postConcat(toOriented)
+            val orientedToDisplay = Matrix().apply { displayToOriented.invert(this) }
+            postConcat(orientedToDisplay)
+        }
+        return Pair(bitmap, drawMatrix)
+    }
+
+    @Synchronized
+    private fun getDecoder(): BitmapRegionDecoder? {
+        if (released) return null
+        decoder?.let { return it }
+        return try {
+            @Suppress("DEPRECATION")
+            BitmapRegionDecoder.newInstance(storagePath, false).also { regionDecoder ->
+                orientation = BitmapUtils.getExifOrientation(storagePath)
+                val toOriented = BitmapUtils.getOrientationMatrix(orientation)
+                val orientedBounds = RectF(0f, 0f, regionDecoder.width.toFloat(), regionDecoder.height.toFloat())
+                toOriented.mapRect(orientedBounds)
+                toOriented.postTranslate(-orientedBounds.left, -orientedBounds.top)
+                orientedWidth = orientedBounds.width()
+                orientedHeight = orientedBounds.height()
+                sourceToOriented = toOriented
+                decoder = regionDecoder
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "Region decoding not supported for %s", storagePath)
+            null
+        }
+    }
+
+    private fun clearRegion() {
+        regionView.isVisible = false
+        regionView.setImageDrawable(null)
+        regionBitmap?.recycle()
+        regionBitmap = null
+    }
+
+    companion object {
+        private const val MIN_UPSCALE_FOR_REGION = 1.25f
+        private const val SETTLE_DELAY_MS = 150L
+    }
+}
@@ -21,7 +21,6 @@
 package com.uteknoid.drive.ui.preview;
 
 import android.accounts.Account;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -30,31 +29,23 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ProgressBar;
-import android.widget.TextView;
 
-import androidx.fragment.app.Fragment;
-import androidx.fragment.app.FragmentManager;
-import androidx.fragment.app.FragmentTransaction;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.google.android.material.snackbar.Snackbar;
 import com.uteknoid.drive.R;
 import com.uteknoid.drive.datamodel.FileDataStorageManager;
 import com.uteknoid.drive.datamodel.OCFile;
 import com.uteknoid.drive.files.FileMenuFilter;
 import com.uteknoid.drive.ui.controller.TransferProgressController;
 import com.uteknoid.drive.ui.dialog.ConfirmationDialogFragment;
-import com.uteknoid.drive.ui.dialog.LoadingDialog;
 import com.uteknoid.drive.ui.dialog.RemoveFilesDialogFragment;
 import com.uteknoid.drive.ui.fragment.FileFragment;
 import com.uteknoid.drive.utils.PreferenceUtils;
 import timber.log.Timber;
 
-import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.StringWriter;
-import java.lang.ref.WeakReference;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Scanner;
 
 public class PreviewTextFragment extends FileFragment {
     private static final String EXTRA_FILE = "FILE";
@@ -63,8 +54,8 @@ public class PreviewTextFragment extends FileFragment {
     private Account mAccount;
     private ProgressBar mProgressBar;
     private TransferProgressController mProgressController;
-    private TextView mTextPreview;
-    private TextLoadAsyncTask mTextLoadTask;
+    private RecyclerView mTextPreview;
+    private PreviewTextLineIndex mLineIndex;
 
     /**
      * Public factory method to create new PreviewTextFragment instances.
@@ -115,6 +106,7 @@ public class PreviewTextFragment extends FileFragment {
 
         mProgressBar = ret.findViewById(R.id.syncProgressBar);
         mTextPreview = ret.findViewById(R.id.text_preview);
+        mTextPreview.setLayoutManager(new LinearLayoutManager(getContext()));
 
         return ret;
     }
@@ -171,110 +163,39 @@ public class PreviewTextFragment extends FileFragment {
     }
 
     private void loadAndShowTextPreview() {
-        mTextLoadTask = new TextLoadAsyncTask(new WeakReference<>(mTextPreview));
-        mTextLoadTask.execute(getFile().getStoragePath());
-    }
-
-    /**
-     * Reads the file to preview and shows its contents. Too critical to be anonymous.
-     */
-    private class TextLoadAsyncTask extends AsyncTask<Object, Void, StringWriter> {
-        private final String DIALOG_WAIT_TAG = "DIALOG_WAIT";
-        private final WeakReference<TextView> mTextViewReference;
-
-        private TextLoadAsyncTask(WeakReference<TextView> textView) {
-            mTextViewReference = textView;
-        }
-
-        @Override
-        protected void onPreExecute() {
-            showLoadingDialog();
-        }
-
-        @Override
-        protected StringWriter doInBackground(java.lang.Object... params) {
-            if (params.length != 1) {
-                throw new IllegalArgumentException("The parameter to " + TextLoadAsyncTask.class.getName() + " must " +
-                        "be (1) the file location");
-            }
-            final String location = (String) params[0];
-
-            FileInputStream inputStream = null;
-            Scanner sc = null;
-            StringWriter source = new StringWriter();
-            BufferedWriter bufferedWriter = new BufferedWriter(source);
-            try {
-                inputStream = new FileInputStream(location);
-                sc = new Scanner(inputStream);
-                while (sc.hasNextLine()) {
-                    bufferedWriter.append(sc.nextLine());
-                    if (sc.hasNextLine()) {
-                        bufferedWriter.append("\n");
-                    }
-                }
-                bufferedWriter.close();
-                IOException exc = sc.ioException();
-                if (exc != null) {
-                    throw exc;
-                }
-            } catch (IOException e) {
-                Timber.e(e);
-            } finally {
-                if (inputStream != null) {
-                    try {
-                        inputStream.close();
-                    } catch (IOException e) {
-                        Timber.e(e);
-                    }
-                }
-                if (sc != null) {
-                    sc.close();
-                }
+        closeLineIndex();
+        mLineIndex = new PreviewTextLineIndex(getFile().getStoragePath());
+        final PreviewTextLinesAdapter adapter = new PreviewTextLinesAdapter(mLineIndex);
+        mTextPreview.setAdapter(adapter);
+        mTextPreview.setVisibility(View.VISIBLE);
+
+        // Lines are shown as soon as they are indexed; no need to wait for the whole file
+        mLineIndex.startIndexing(new PreviewTextLineIndex.Listener() {
+            @Override
+            public void onLinesIndexed(int lineCount) {
+                adapter.updateLineCount(lineCount);
             }
-            return source;
-        }
 
-        @Override
-        protected void onPostExecute(final StringWriter stringWriter) {
-            final TextView textView = mTextViewReference.get();
-
-            if (textView != null) {
-                textView.setText(new String(stringWriter.getBuffer()));
-                textView.setVisibility(View.VISIBLE);
+            @Override
+            public void onIndexingFinished(int lineCount, boolean success) {
+                adapter.updateLineCount(lineCount);
+                Timber.d("Indexed %d lines of %s, success: %b", lineCount, getFile().getStoragePath(), success);
             }
 
-            dismissLoadingDialog();
-        }
-
-        /**
-         * Show loading dialog
-         */
-        public void showLoadingDialog() {
-            // only once
-            Fragment frag = getActivity().getSupportFragmentManager().findFragmentByTag(DIALOG_WAIT_TAG);
-            LoadingDialog loading = null;
-            if (frag == null) {
-                // Construct dialog
-                loading = LoadingDialog.newInstance(R.string.wait_a_moment, false);
-                FragmentManager fm = getActivity().getSupportFragmentManager();
-                FragmentTransaction ft = fm.beginTransaction();
-                loading.show(ft, DIALOG_WAIT_TAG);
-            } else {
-                loading = (LoadingDialog) frag;
-                loading.setShowsDialog(true);
+            @Override
+            public void onIndexingTruncated(int lineCount) {
+                adapter.updateLineCount(lineCount);
+                if (getView() != null) {
+                    Snackbar.make(getView(), R.string.preview_text_truncated, Snackbar.LENGTH_LONG).show();
+                }
             }
+        });
+    }
 
-        }
-
-        /**
-         * Dismiss loading dialog
-         */
-        public void dismissLoadingDialog() {
-            final Fragment frag = getActivity().getSupportFragmentManager().findFragmentByTag(DIALOG_WAIT_TAG);
-            if (frag != null) {
-                LoadingDialog loading = (LoadingDialog) frag;
-                loading.dismiss();
-            }
+    private void closeLineIndex() {
+        if (mLineIndex != null) {
+            mLineIndex.close();
+            mLineIndex = null;
         }
     }
 
@@ -396,10 +317,7 @@ public class PreviewTextFragment extends FileFragment {
     public void onStop() {
         super.onStop();
         Timber.v("onStop");
-        if (mTextLoadTask != null) {
-            mTextLoadTask.cancel(Boolean.TRUE);
-            mTextLoadTask.dismissLoadingDialog();
-        }
+        closeLineIndex();
         mProgressController.stopListeningProgressFor(getFile(), mAccount);
     }
 
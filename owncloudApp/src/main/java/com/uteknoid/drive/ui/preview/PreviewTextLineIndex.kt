@@ -0,0 +1,250 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.ui.preview
+
+import android.os.Handler
+import android.os.Looper
+import timber.log.Timber
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import kotlin.math.min
+
+/**
+ * Line-oriented access to a local text file of any size.
+ *
+ * The file is memory-mapped in segments and indexed in a background thread. Only sparse checkpoints
+ * are kept, at the start of every [CHECKPOINT_LINES]-th line or after [CHECKPOINT_BYTES] without one,
+ * and lines are found by scanning forward from the nearest checkpoint. Lines are decoded one by one
+ * when requested, so only the lines on screen are ever held in memory as text, and the first ones are
+ * available as soon as the first block of the file is indexed.
+ */
+class PreviewTextLineIndex(private val storagePath: String) {
+
+    interface Listener {
+        /**
+         * Called in the main thread every time a new block of lines has been indexed.
+         */
+        fun onLinesIndexed(lineCount: Int)
+
+        /**
+         * Called in the main thread when the whole file has been indexed, or could not be read.
+         */
+        fun onIndexingFinished(lineCount: Int, success: Boolean)
+
+        /**
+         * Called in the main thread instead of [onIndexingFinished] when memory ran out while indexing.
+         * Only the first [lineCount] lines are available.
+         */
+        fun onIndexingTruncated(lineCount: Int)
+    }
+
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    private var file: RandomAccessFile? = null
+    private var segments: Array<MappedByteBuffer> = emptyArray()
+    private var fileLength = 0L
+
+    /**
+     * Checkpoints as pairs of (line number, start offset of that line), sorted by line; only the
+     * first [checkpointCount] pairs are valid.
+     */
+    @Volatile
+    private var checkpoints = LongArray(INITIAL_CHECKPOINT_CAPACITY * 2)
+
+    @Volatile
+    private var checkpointCount = 0
+
+    @Volatile
+    var lineCount = 0
+        private set
+
+    @Volatile
+    private var indexingFinished = false
+
+    @Volatile
+    private var cancelled = false
+
+    private var indexingThread: Thread? = null
+
+    // Last line found, to continue from it when rows are bound in order; main thread only
+    private var lastLine = -1
+    private var lastLineStart = 0L
+
+    fun startIndexing(listener: Listener) {
+        indexingThread = Thread({ buildIndex(listener) }, "PreviewTextLineIndex").apply { start() }
+    }
+
+    /**
+     * Stops indexing and releases the file. Lines can't be read afterwards.
+     */
+    fun close() {
+        cancelled = true
+        indexingThread?.interrupt()
+        indexingThread = null
+        try {
+            file?.close()
+        } catch (e: IOException) {
+            Timber.w(e, "Could not close %s", storagePath)
+        }
+        file = null
+    }
+
+    /**
+     * Decodes a single line, without its line terminator. Lines longer than [MAX_LINE_BYTES] are truncated.
+     *
+     * @param position index of the line, lower than [lineCount]
+     */
+    fun getLine(position: Int): String {
+        if (position < 0 || position >= lineCount) return ""
+        val start = lineStart(position)
+        lastLine = position
+        lastLineStart = start
+
+        var end = start
+        val limit = min(fileLength, start + MAX_LINE_BYTES)
+        while (end < limit && byteAt(end) != LF) end++
+        if (end > start && byteAt(end - 1) == CR) end--
+
+        val length = (end - start).toInt()
+        val bytes = ByteArray(length)
+        for (i in 0 until length) {
+            bytes[i] = byteAt(start + i)
+        }
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    /**
+     * Scans forward from the closest known line start before [position]. Checkpoints are close enough
+     * that this never goes over more than [CHECKPOINT_LINES] lines or [CHECKPOINT_BYTES].
+     */
+    private fun lineStart(position: Int): Long {
+        val count = checkpointCount
+        val points = checkpoints
+        var low = 0
+        var high = count - 1
+        while (low < high) {
+            val middle = (low + high + 1) ushr 1
+            if (points[middle * 2] <= position) low = middle else high = middle - 1
+        }
+        var line = points[low * 2].toInt()
+        var offset = points[low * 2 + 1]
+        if (lastLine in line..position) {
+            line = lastLine
+            offset = lastLineStart
+        }
+        while (line < position) {
+            while (byteAt(offset) != LF) offset++
+            offset++
+            line++
+        }
+        return offset
+    }
+
+    private fun byteAt(offset: Long): Byte =
+        segments[(offset / SEGMENT_SIZE).toInt()].get((offset % SEGMENT_SIZE).toInt())
+
+    private fun buildIndex(listener: Listener) {
+        var success = true
+        try {
+            openAndMap()
+            if (fileLength > 0) addLineStart(0)
+
+            var offset = 0L
+            var nextPublish = FIRST_PUBLISH_BYTES
+            for (segment in segments) {
+                val segmentStart = offset
+                for (i in 0 until segment.limit()) {
+                    if (segment.get(i) == LF && segmentStart + i + 1 < fileLength) {
+                        addLineStart(segmentStart + i + 1)
+                    }
+                    if (segmentStart + i >= nextPublish) {
+                        if (cancelled) return
+                        publish(listener)
+                        nextPublish += PUBLISH_BYTES
+                    }
+                }
+                offset += segment.limit()
+            }
+        } catch (e: IOException) {
+            Timber.e(e, "Could not index text file %s", storagePath)
+            success = false
+        } catch (e: OutOfMemoryError) {
+            // Lines indexed so far stay readable; show them instead of failing the whole preview
+            Timber.e(e, "Out of memory indexing %s, preview truncated", storagePath)
+            indexingFinished = true
+            val count = lineCount
+            mainHandler.post { if (!cancelled) listener.onIndexingTruncated(count) }
+            return
+        }
+        indexingFinished = true
+        val count = lineCount
+        mainHandler.post { if (!cancelled) listener.onIndexingFinished(count, success) }
+    }
+
+    private fun openAndMap() {
+        val randomAccessFile = RandomAccessFile(storagePath, "r")
+        file = randomAccessFile
+        fileLength = randomAccessFile.length()
+        val channel = randomAccessFile.channel
+        val segmentCount = ((fileLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE).toInt()
+        segments = Array(segmentCount) { i ->
+            val position = i * SEGMENT_SIZE
+            channel.map(FileChannel.MapMode.READ_ONLY, position, min(SEGMENT_SIZE, fileLength - position))
+        }
+    }
+
+    private fun addLineStart(offset: Long) {
+        val line = lineCount
+        val count = checkpointCount
+        if (count == 0 || line % CHECKPOINT_LINES == 0 || offset - checkpoints[count * 2 - 1] >= CHECKPOINT_BYTES) {
+            var points = checkpoints
+            if (count * 2 == points.size) {
+                points = points.copyOf(points.size * 2)
+                checkpoints = points
+            }
+            points[count * 2] = line.toLong()
+            points[count * 2 + 1] = offset
+            checkpointCount = count + 1
+        }
+        // Published after the checkpoint is written, so readers never scan from an unset position
+        lineCount = line + 1
+    }
+
+    private fun publish(listener: Listener) {
+        val count = lineCount
+        mainHandler.post { if (!cancelled) listener.onLinesIndexed(count) }
+    }
+
+    companion object {
+        private const val LF = '\n'.code.toByte()
+        private const val CR = '\r'.code.toByte()
+
+        private const val SEGMENT_SIZE = 64L * 1024 * 1024
+        private const val INITIAL_CHECKPOINT_CAPACITY = 1024
+        private const val CHECKPOINT_LINES = 64
+        private const val CHECKPOINT_BYTES = 64L * 1024
+        private const val MAX_LINE_BYTES = 16 * 1024
+
+        // Enough for the first screen, then updates in bigger steps to keep the UI work low
+        private const val FIRST_PUBLISH_BYTES = 64L * 1024
+        private const val PUBLISH_BYTES = 8L * 1024 * 1024
+    }
+}
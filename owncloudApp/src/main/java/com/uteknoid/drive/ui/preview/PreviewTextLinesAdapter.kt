@@ -0,0 +1,61 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.ui.preview
+
+import android.view.LayoutInflater
+import android.view.ViewGroup
+import android.widget.TextView
+import androidx.recyclerview.widget.RecyclerView
+import com.uteknoid.drive.R
+
+/**
+ * Shows the lines of a [PreviewTextLineIndex], decoding only those bound to visible rows.
+ */
+class PreviewTextLinesAdapter(private val lineIndex: PreviewTextLineIndex) :
+    RecyclerView.Adapter<PreviewTextLinesAdapter.ViewHolder>() {
+
+    private var lineCount = 0
+
+    class ViewHolder(val textView: TextView) : RecyclerView.ViewHolder(textView)
+
+    override fun onCreateViewHolder(viewGroup: ViewGroup, viewType: Int): ViewHolder {
+        val view = LayoutInflater.from(viewGroup.context)
+            .inflate(R.layout.preview_text_line, viewGroup, false) as TextView
+        return ViewHolder(view)
+    }
+
+    override fun onBindViewHolder(viewHolder: ViewHolder, position: Int) {
+        viewHolder.textView.text = lineIndex.getLine(position)
+    }
+
+    override fun getItemCount() = lineCount
+
+    /**
+     * Shows the lines indexed since the last update. The last line shown may have grown, so it is refreshed too.
+     */
+    fun updateLineCount(newLineCount: Int) {
+        if (newLineCount <= lineCount) return
+        val previousCount = lineCount
+        lineCount = newLineCount
+        if (previousCount > 0) {
+            notifyItemChanged(previousCount - 1)
+        }
+        notifyItemRangeInserted(previousCount, newLineCount - previousCount)
+    }
+}
@@ -22,6 +22,7 @@ import androidx.work.WorkManager
 import com.uteknoid.drive.MainApp
 import com.uteknoid.drive.datamodel.UploadsStorageManager
 import com.uteknoid.drive.domain.BaseUseCase
+import com.uteknoid.drive.workers.UploadFileFromContentUriWorker
 import timber.log.Timber
 
 class CancelUploadFromAccountUseCase(
@@ -32,6 +33,14 @@ class CancelUploadFromAccountUseCase(
         workManager.cancelAllWorkByTag(params.accountName)
 
         val uploadsStorageManager = UploadsStorageManager(MainApp.appContext.contentResolver)
+        uploadsStorageManager.allStoredUploads
+            .filter { it.accountName == params.accountName }
+            .forEach { upload ->
+                CancelUploadWithIdUseCase.releasePersistedReadPermission(upload)
+                UploadFileFromContentUriWorker.discardChunkedUpload(
+                    MainApp.appContext, upload.accountName, upload.uploadId
+                )
+            }
         uploadsStorageManager.removeUploads(params.accountName)
 
         Timber.i("Uploads of ${params.accountName} has been cancelled.")
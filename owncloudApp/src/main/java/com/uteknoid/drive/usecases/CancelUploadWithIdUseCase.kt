@@ -18,11 +18,15 @@
  */
 package com.uteknoid.drive.usecases
 
+import android.content.ContentResolver
+import androidx.core.net.toUri
 import androidx.work.WorkManager
 import com.uteknoid.drive.MainApp
 import com.uteknoid.drive.datamodel.OCUpload
 import com.uteknoid.drive.datamodel.UploadsStorageManager
 import com.uteknoid.drive.domain.BaseUseCase
+import com.uteknoid.drive.utils.UriUtils
+import com.uteknoid.drive.workers.UploadFileFromContentUriWorker
 import timber.log.Timber
 
 class CancelUploadWithIdUseCase(
@@ -31,6 +35,10 @@ class CancelUploadWithIdUseCase(
 
     override fun run(params: Params) {
         workManager.cancelAllWorkByTag(params.upload.uploadId.toString())
+        releasePersistedReadPermission(params.upload)
+        UploadFileFromContentUriWorker.discardChunkedUpload(
+            MainApp.appContext, params.upload.accountName, params.upload.uploadId
+        )
 
         val uploadsStorageManager = UploadsStorageManager(MainApp.appContext.contentResolver)
         uploadsStorageManager.removeUpload(params.upload)
@@ -38,6 +46,19 @@ class CancelUploadWithIdUseCase(
         Timber.i("Upload with id ${params.upload.uploadId} has been cancelled.")
     }
 
+    companion object {
+        /**
+         * Uploads from content URIs keep the permission to read them until they succeed, so that failed ones can be
+         * retried. Once the user cancels or deletes one, it won't be read anymore.
+         */
+        fun releasePersistedReadPermission(upload: OCUpload) {
+            val localUri = upload.localPath?.toUri() ?: return
+            if (localUri.scheme == ContentResolver.SCHEME_CONTENT) {
+                UriUtils.releasePersistedReadPermission(MainApp.appContext, localUri)
+            }
+        }
+    }
+
     data class Params(
         val upload: OCUpload,
     )
@@ -49,7 +49,8 @@ class RetryUploadFromContentUriUseCase(
                 uploadPath = uploadToRetry.remotePath,
                 uploadIdInStorageManager = uploadToRetry.uploadId,
                 wifiOnly = false,
-                chargingOnly = false
+                chargingOnly = false,
+                createdBy = uploadToRetry.createdBy
             )
         )
         uploadsStorageManager.updateUpload(uploadToRetry.apply { uploadStatus = UploadsStorageManager.UploadStatus.UPLOAD_IN_PROGRESS })
@@ -39,7 +39,8 @@ class UploadFileFromContentUriUseCase(
             UploadFileFromContentUriWorker.KEY_PARAM_CONTENT_URI to params.contentUri.toString(),
             UploadFileFromContentUriWorker.KEY_PARAM_LAST_MODIFIED to params.lastModifiedInSeconds,
             UploadFileFromContentUriWorker.KEY_PARAM_UPLOAD_PATH to params.uploadPath,
-            UploadFileFromContentUriWorker.KEY_PARAM_UPLOAD_ID to params.uploadIdInStorageManager
+            UploadFileFromContentUriWorker.KEY_PARAM_UPLOAD_ID to params.uploadIdInStorageManager,
+            UploadFileFromContentUriWorker.KEY_PARAM_CREATED_BY to params.createdBy
         )
 
         val networkRequired = if (params.wifiOnly) NetworkType.UNMETERED else NetworkType.CONNECTED
@@ -69,5 +70,6 @@ class UploadFileFromContentUriUseCase(
         val uploadIdInStorageManager: Long,
         val wifiOnly: Boolean,
         val chargingOnly: Boolean,
+        val createdBy: Int,
     )
 }
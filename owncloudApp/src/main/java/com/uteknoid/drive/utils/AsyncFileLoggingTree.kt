@@ -0,0 +1,260 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.utils
+
+import android.util.Log
+import timber.log.Timber
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.OutputStreamWriter
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+/**
+ * Timber tree writing logs to files without blocking the callers.
+ *
+ * Lines are queued in a bounded buffer and written by a background thread; if the buffer is full, lines are
+ * dropped instead of waiting, and the number of dropped lines is written once there is room again. Files are
+ * rotated when they reach [maxSegmentBytes], closed ones are compressed, and the oldest compressed ones are
+ * deleted to keep the folder under [maxTotalBytes]. Viewers get a plain copy of compressed ones from [uncompressed].
+ */
+class AsyncFileLoggingTree(
+    private val directory: File,
+    private val maxSegmentBytes: Long = DEFAULT_MAX_SEGMENT_BYTES,
+    private val maxTotalBytes: Long = DEFAULT_MAX_TOTAL_BYTES,
+    capacity: Int = DEFAULT_CAPACITY
+) : Timber.DebugTree() {
+
+    private class LogLine(val timestamp: Long, val priority: Int, val tag: String?, val message: String)
+
+    private val buffer = ArrayBlockingQueue<LogLine>(capacity)
+    private val droppedLines = AtomicInteger(0)
+
+    @Volatile
+    private var running = true
+
+    private val writerThread = Thread({ writeLoop() }, "AsyncFileLoggingTree").apply {
+        isDaemon = true
+        priority = Thread.MIN_PRIORITY
+        start()
+    }
+
+    override fun log(priority: Int, tag: String?, message: String, t: Throwable?) {
+        // The stack trace of t, if any, is already appended to the message
+        if (!buffer.offer(LogLine(System.currentTimeMillis(), priority, tag, message))) {
+            droppedLines.incrementAndGet()
+        }
+    }
+
+    /**
+     * Stops the writer after writing the lines already in the buffer.
+     */
+    fun stop() {
+        running = false
+        writerThread.interrupt()
+        try {
+            // So that a tree started right after does not compress the segment still being closed
+            writerThread.join(STOP_TIMEOUT_MILLIS)
+        } catch (interruptedException: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    private fun writeLoop() {
+        directory.mkdirs()
+        compressClosedSegments()
+
+        val dateFormat = SimpleDateFormat(LINE_DATE_FORMAT, Locale.US)
+        val batch = ArrayList<LogLine>(BATCH_SIZE)
+        var segment = newSegment()
+        var writer = openWriter(segment)
+        var segmentBytes = 0L
+
+        while (running || buffer.isNotEmpty()) {
+            try {
+                buffer.poll(FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS)?.let { batch.add(it) } ?: continue
+            } catch (interruptedException: InterruptedException) {
+                continue
+            }
+            buffer.drainTo(batch, BATCH_SIZE - 1)
+            try {
+                val dropped = droppedLines.getAndSet(0)
+                if (dropped > 0) {
+                    writer.write("$dropped log lines were dropped because the buffer was full\n")
+                }
+                batch.forEach { line ->
+                    val text = "${dateFormat.format(Date(line.timestamp))} ${priorityLetter(line.priority)}/${line.tag}: ${line.message}\n"
+                    writer.write(text)
+                    segmentBytes += utf8Length(text)
+
+                    if (segmentBytes >= maxSegmentBytes) {
+                        writer.close()
+                        compress(segment)
+                        deleteOldestSegments()
+                        segment = newSegment()
+                        writer = openWriter(segment)
+                        segmentBytes = 0
+                    }
+                }
+                // Written to disk once per batch, instead of once per line
+                writer.flush()
+            } catch (ioException: IOException) {
+                Log.e(TAG, "Logs could not be written to ${segment.name}", ioException)
+            } finally {
+                batch.clear()
+            }
+        }
+        try {
+            writer.close()
+        } catch (ioException: IOException) {
+            Log.e(TAG, "Log ${segment.name} could not be closed", ioException)
+        }
+    }
+
+    private fun newSegment(): File {
+        val name = SimpleDateFormat(SEGMENT_DATE_FORMAT, Locale.US).format(Date())
+        var segment = File(directory, "$SEGMENT_PREFIX$name$SEGMENT_EXTENSION")
+        var index = 1
+        while (segment.exists() || File(segment.path + COMPRESSED_EXTENSION).exists()) {
+            segment = File(directory, "$SEGMENT_PREFIX${name}_${index++}$SEGMENT_EXTENSION")
+        }
+        return segment
+    }
+
+    private fun openWriter(segment: File) =
+        BufferedWriter(OutputStreamWriter(FileOutputStream(segment, true), Charsets.UTF_8), WRITER_BUFFER_SIZE)
+
+    /**
+     * Compresses the segments left by previous processes; none of them is written anymore.
+     */
+    private fun compressClosedSegments() {
+        directory.listFiles { file -> file.name.endsWith(SEGMENT_EXTENSION) }?.forEach { compress(it) }
+        deleteOldestSegments()
+    }
+
+    private fun compress(segment: File) {
+        val compressed = File(segment.path + COMPRESSED_EXTENSION)
+        try {
+            FileInputStream(segment).use { input ->
+                GZIPOutputStream(FileOutputStream(compressed)).use { output -> input.copyTo(output) }
+            }
+            segment.delete()
+        } catch (ioException: IOException) {
+            Log.e(TAG, "Log ${segment.name} could not be compressed", ioException)
+            compressed.delete()
+        }
+    }
+
+    private fun deleteOldestSegments() {
+        val compressedSegments = directory.listFiles { file -> file.name.endsWith(COMPRESSED_EXTENSION) } ?: return
+        var totalBytes = compressedSegments.sumOf { it.length() }
+        compressedSegments.sortedBy { it.lastModified() }.forEach { segment ->
+            if (totalBytes <= maxTotalBytes) return
+            totalBytes -= segment.length()
+            segment.delete()
+        }
+    }
+
+    private fun priorityLetter(priority: Int) = when (priority) {
+        Log.VERBOSE -> "V"
+        Log.DEBUG -> "D"
+        Log.INFO -> "I"
+        Log.WARN -> "W"
+        Log.ERROR -> "E"
+        else -> "A"
+    }
+
+    companion object {
+        private const val TAG = "AsyncFileLoggingTree"
+
+        const val COMPRESSED_MIME_TYPE = "application/gzip"
+
+        fun isCompressed(segment: File) = segment.name.endsWith(COMPRESSED_EXTENSION)
+
+        /**
+         * @return the segment itself if it is not compressed, or a plain copy of it in [targetDirectory], which is
+         * reused while the segment does not change.
+         */
+        @Throws(IOException::class)
+        fun uncompressed(segment: File, targetDirectory: File): File {
+            if (!isCompressed(segment)) return segment
+
+            val plainCopy = File(targetDirectory, segment.name.removeSuffix(COMPRESSED_EXTENSION))
+            if (plainCopy.exists() && plainCopy.lastModified() >= segment.lastModified()) return plainCopy
+
+            targetDirectory.mkdirs()
+            try {
+                GZIPInputStream(FileInputStream(segment)).use { input ->
+                    FileOutputStream(plainCopy).use { output -> input.copyTo(output) }
+                }
+            } catch (ioException: IOException) {
+                plainCopy.delete()
+                throw ioException
+            }
+            return plainCopy
+        }
+
+        /**
+         * Bytes [text] takes in UTF-8, without encoding it.
+         */
+        internal fun utf8Length(text: String): Int {
+            var length = 0
+            var i = 0
+            while (i < text.length) {
+                val char = text[i]
+                length += when {
+                    char.code < 0x80 -> 1
+                    char.code < 0x800 -> 2
+                    char.isHighSurrogate() && i + 1 < text.length && text[i + 1].isLowSurrogate() -> {
+                        // Both chars of the pair are a single 4 bytes code point
+                        i++
+                        4
+                    }
+                    else -> 3
+                }
+                i++
+            }
+            return length
+        }
+
+        private const val DEFAULT_CAPACITY = 10_000
+        private const val DEFAULT_MAX_SEGMENT_BYTES = 5L * 1024 * 1024
+        private const val DEFAULT_MAX_TOTAL_BYTES = 50L * 1024 * 1024
+
+        private const val BATCH_SIZE = 500
+        private const val FLUSH_INTERVAL_SECONDS = 1L
+        private const val WRITER_BUFFER_SIZE = 64 * 1024
+        private const val STOP_TIMEOUT_MILLIS = 2_000L
+
+        private const val SEGMENT_PREFIX = "owncloud."
+        private const val SEGMENT_EXTENSION = ".log"
+        private const val COMPRESSED_EXTENSION = ".gz"
+        private const val SEGMENT_DATE_FORMAT = "yyyy-MM-dd_HH-mm-ss"
+        private const val LINE_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss.SSS"
+    }
+}
@@ -23,7 +23,9 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.BitmapFactory.Options;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.media.ExifInterface;
 import android.net.Uri;
 import android.webkit.MimeTypeMap;
@@ -48,7 +50,11 @@ public class BitmapUtils {
 
     /**
      * Decodes a bitmap from a file containing it minimizing the memory use, known that the bitmap
-     * will be drawn in a surface of reqWidth x reqHeight
+     * will be drawn in a surface of reqWidth x reqHeight.
+     *
+     * The result is scaled by the decoder itself to the smallest size covering the surface, so no
+     * intermediate bitmap larger than that is ever allocated. EXIF orientation is taken into account
+     * to compute the size, but not applied; see {@link #rotateImage(Bitmap, String)}.
      *
      * @param srcPath       Absolute path to the file containing the image.
      * @param reqWidth      Width of the surface where the Bitmap will be drawn on, in pixels.
@@ -69,12 +75,54 @@ public class BitmapUtils {
 
         BitmapFactory.decodeFile(srcPath, options);
 
-        // calculate factor to subsample the bitmap
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // the surface is given in display orientation, the decoder works in storage orientation
+        if (isRotatedByQuarter(getExifOrientation(srcPath))) {
+            final int swap = reqWidth;
+            reqWidth = reqHeight;
+            reqHeight = swap;
+        }
+
+        // calculate factor to subsample the bitmap, and scale the rest of the way while decoding
         options.inSampleSize = calculateSampleFactor(options, reqWidth, reqHeight);
+        setTargetDensity(options, reqWidth, reqHeight);
 
         // decode bitmap with inSampleSize set
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(srcPath, options);
+        final Bitmap bitmap = BitmapFactory.decodeFile(srcPath, options);
+        if (bitmap != null && options.inTargetDensity != 0) {
+            // the decoder leaves inTargetDensity as the bitmap density, so drawables would scale it
+            // again on screen; the pixels already have the requested size
+            bitmap.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes a region of a large image, subsampled so that it covers a target surface of
+     * reqWidth x reqHeight. Memory use depends on the size of the surface, not on the size of the
+     * source image.
+     *
+     * @param decoder       Region decoder opened on the source image.
+     * @param region        Region to decode, in source image coordinates.
+     * @param reqWidth      Width of the surface where the region will be drawn on, in pixels.
+     * @param reqHeight     Height of the surface where the region will be drawn on, in pixels.
+     * @return Decoded region, or null if it could not be decoded.
+     */
+    public static Bitmap decodeSampledRegion(BitmapRegionDecoder decoder, Rect region, int reqWidth, int reqHeight) {
+        final Options options = new Options();
+        options.outWidth = region.width();
+        options.outHeight = region.height();
+        options.inSampleSize = calculateSampleFactor(options, reqWidth, reqHeight);
+        try {
+            return decoder.decodeRegion(region, options);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Timber.w(e, "Could not decode region %s", region);
+            return null;
+        }
     }
 
     /**
@@ -110,45 +158,105 @@ public class BitmapUtils {
         return inSampleSize;
     }
 
+    /**
+     * Sets density options so that the decoder scales the subsampled bitmap down to the smallest
+     * size covering reqWidth x reqHeight, instead of stopping at the closest power of 2.
+     */
+    private static void setTargetDensity(Options options, int reqWidth, int reqHeight) {
+        final int sampledWidth = options.outWidth / options.inSampleSize;
+        final int sampledHeight = options.outHeight / options.inSampleSize;
+        if (sampledWidth <= reqWidth || sampledHeight <= reqHeight) {
+            return;
+        }
+        // keep the dimension that needs less reduction, so the other one still covers the surface
+        if ((long) reqWidth * sampledHeight > (long) reqHeight * sampledWidth) {
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = reqWidth;
+        } else {
+            options.inDensity = sampledHeight;
+            options.inTargetDensity = reqHeight;
+        }
+        options.inScaled = true;
+    }
+
+    /**
+     * @param storagePath Path to an image file.
+     * @return EXIF orientation of the image, or {@link ExifInterface#ORIENTATION_NORMAL} if unknown.
+     */
+    public static int getExifOrientation(final String storagePath) {
+        try {
+            ExifInterface exifInterface = new ExifInterface(storagePath);
+            return exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (Exception exception) {
+            Timber.w("Could not read the EXIF orientation of %s", storagePath);
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * @return true if the EXIF orientation swaps width and height.
+     */
+    public static boolean isRotatedByQuarter(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_TRANSPOSE
+                || orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_TRANSVERSE
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * Cf. http://www.daveperrett.com/articles/2012/07/28/exif-orientation-handling-is-a-ghetto/
+     *
+     * @param orientation EXIF orientation.
+     * @return Matrix that transforms an image as stored into its display orientation.
+     */
+    public static Matrix getOrientationMatrix(int orientation) {
+        Matrix matrix = new Matrix();
+        // 1: nothing to do
+
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.postScale(-1.0f, 1.0f);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.postRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.postScale(1.0f, -1.0f);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.postRotate(-90);
+                matrix.postScale(1.0f, -1.0f);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.postRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.postRotate(90);
+                matrix.postScale(1.0f, -1.0f);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.postRotate(270);
+                break;
+        }
+        return matrix;
+    }
+
     /**
      * Rotate bitmap according to EXIF orientation. 
      * Cf. http://www.daveperrett.com/articles/2012/07/28/exif-orientation-handling-is-a-ghetto/ 
+     *
+     * Meant for bitmaps already decoded to their display size; the source is recycled when a
+     * rotated copy is needed, and returned as is when no rotation is needed.
+     *
      * @param bitmap Bitmap to be rotated
      * @param storagePath Path to source file of bitmap. Needed for EXIF information.
      * @return correctly EXIF-rotated bitmap
      */
     public static Bitmap rotateImage(final Bitmap bitmap, final String storagePath) {
         try {
-            ExifInterface exifInterface = new ExifInterface(storagePath);
-            final int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, 1);
-
-            Matrix matrix = new Matrix();
-            // 1: nothing to do
-
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
-                    matrix.postScale(-1.0f, 1.0f);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case ExifInterface.ORIENTATION_FLIP_VERTICAL:
-                    matrix.postScale(1.0f, -1.0f);
-                    break;
-                case ExifInterface.ORIENTATION_TRANSPOSE:
-                    matrix.postRotate(-90);
-                    matrix.postScale(1.0f, -1.0f);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case ExifInterface.ORIENTATION_TRANSVERSE:
-                    matrix.postRotate(90);
-                    matrix.postScale(1.0f, -1.0f);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    matrix.postRotate(270);
-                    break;
+            final Matrix matrix = getOrientationMatrix(getExifOrientation(storagePath));
+            if (matrix.isIdentity()) {
+                return bitmap;
             }
 
             // Rotate the bitmap
@@ -81,6 +81,13 @@ public class FileStorageUtils {
         return getLocalStorageProvider().getTemporalPath(accountName);
     }
 
+    /**
+     * Get absolute path to the folder where removed local folders of an account wait to be deleted.
+     */
+    public static String getTrashPath(String accountName) {
+        return getLocalStorageProvider().getTrashPath(accountName);
+    }
+
     /**
      * Optimistic number of bytes available on sd-card.
      *
@@ -33,6 +33,7 @@ import android.os.HandlerThread
 import android.os.Process
 import androidx.core.app.NotificationCompat
 import androidx.core.content.ContextCompat
+import com.uteknoid.drive.MainApp
 import com.uteknoid.drive.R
 import com.uteknoid.drive.datamodel.OCFile
 import com.uteknoid.drive.presentation.ui.authentication.ACTION_UPDATE_EXPIRED_TOKEN
@@ -55,6 +56,7 @@ object NotificationUtils {
 
     @JvmStatic
     fun newNotificationBuilder(context: Context, channelId: String): NotificationCompat.Builder {
+        MainApp.createNotificationChannels()
         return NotificationCompat.Builder(context, channelId).apply {
             color = ContextCompat.getColor(context, R.color.primary)
             setSmallIcon(R.drawable.notification_icon)
@@ -19,8 +19,13 @@
 
 package com.uteknoid.drive.utils
 
+import androidx.annotation.VisibleForTesting
 import com.uteknoid.drive.lib.common.OwnCloudClient
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode
 import com.uteknoid.drive.lib.resources.files.CheckPathExistenceRemoteOperation
+import com.uteknoid.drive.lib.resources.files.ReadRemoteFolderOperation
+import timber.log.Timber
+import java.util.concurrent.TimeUnit
 
 class RemoteFileUtils {
     companion object {
@@ -30,10 +35,17 @@ class RemoteFileUtils {
          *
          * @param ownCloudClient
          * @param remotePath
+         * @param reservedPaths paths not in the server yet, but already picked for other files
          * @return
          */
-        fun getAvailableRemotePath(ownCloudClient: OwnCloudClient, remotePath: String): String? {
-            var checkExistsFile = existsFile(ownCloudClient, remotePath)
+        @JvmOverloads
+        fun getAvailableRemotePath(
+            ownCloudClient: OwnCloudClient,
+            remotePath: String,
+            reservedPaths: Set<String> = emptySet()
+        ): String? {
+            val isTaken = { path: String -> path in reservedPaths || existsFile(ownCloudClient, path) }
+            var checkExistsFile = isTaken(remotePath)
             if (!checkExistsFile) {
                 return remotePath
             }
@@ -50,9 +62,9 @@ class RemoteFileUtils {
             do {
                 suffix = " ($count)"
                 checkExistsFile = if (pos >= 0) {
-                    existsFile(ownCloudClient, "${remotePath.substringBeforeLast('.', "")}$suffix.$extension")
+                    isTaken("${remotePath.substringBeforeLast('.', "")}$suffix.$extension")
                 } else {
-                    existsFile(ownCloudClient, remotePath + suffix)
+                    isTaken(remotePath + suffix)
                 }
                 count++
             } while (checkExistsFile)
@@ -63,6 +75,139 @@ class RemoteFileUtils {
             }
         }
 
+        /**
+         * Same as [getAvailableRemotePath], but cheaper for uploads. The name is probed first, and only if it is
+         * taken the target folder is listed once to pick a free name, instead of probing every candidate. The
+         * picked name is probed again before returning it, in case the listing was outdated.
+         *
+         * The listing and the names picked are kept in [uploadBatch], if any, so that the uploads of the same batch
+         * do not list the folder again nor pick each other's names. A name not in the listing of the batch is
+         * reserved without probing it. Nothing is kept beyond the batch.
+         *
+         * Falls back to [getAvailableRemotePath] if the folder cannot be listed.
+         */
+        @JvmOverloads
+        fun getAvailableRemotePathForUpload(
+            ownCloudClient: OwnCloudClient,
+            remotePath: String,
+            uploadBatch: UploadBatch? = null
+        ): String? = getAvailableRemotePathForUpload(
+            remotePath = remotePath,
+            uploadBatch = uploadBatch ?: UploadBatch(),
+            existsFile = { existsFile(ownCloudClient, it) },
+            listFolder = { listFolder(ownCloudClient, it) },
+            probeEveryName = { path, reservedPaths -> getAvailableRemotePath(ownCloudClient, path, reservedPaths) }
+        )
+
+        /**
+         * Requests to the server are done out of the lock of [uploadBatch], which is only held to reserve names.
+         */
+        @VisibleForTesting
+        fun getAvailableRemotePathForUpload(
+            remotePath: String,
+            uploadBatch: UploadBatch,
+            existsFile: (String) -> Boolean,
+            listFolder: (String) -> List<String>?,
+            probeEveryName: (String, Set<String>) -> String?
+        ): String? {
+            val folderPath = remotePath.substringBeforeLast(PATH_SEPARATOR) + PATH_SEPARATOR
+            val fileName = remotePath.substringAfterLast(PATH_SEPARATOR)
+
+            val wasListed = uploadBatch.isListed(folderPath)
+            if (uploadBatch.reserve(folderPath, fileName) && (wasListed || !existsFile(remotePath))) {
+                return remotePath
+            }
+
+            if (!uploadBatch.isListed(folderPath)) {
+                val folderNames = listFolder(folderPath)
+                    ?: return reserveFromProbes(remotePath, folderPath, uploadBatch, probeEveryName)
+                uploadBatch.addListing(folderPath, folderNames)
+            }
+
+            repeat(MAX_NAME_VERIFICATIONS) {
+                val availableName = uploadBatch.reserveAvailableName(folderPath, fileName)
+                if (!existsFile(folderPath + availableName)) {
+                    return folderPath + availableName
+                }
+                Timber.d("%s was created in the server after listing %s", availableName, folderPath)
+            }
+            return reserveFromProbes(remotePath, folderPath, uploadBatch, probeEveryName)
+        }
+
+        /**
+         * Same as [getAvailableRemotePath], for a selection of files moved or copied into the same folder. The
+         * folder is listed once for the whole selection, kept in [uploadBatch] with the names already picked, and
+         * names are picked from the listing without probing them. Falls back to [getAvailableRemotePath] if the
+         * folder cannot be listed.
+         */
+        fun getAvailableRemotePathInFolder(
+            ownCloudClient: OwnCloudClient,
+            remotePath: String,
+            uploadBatch: UploadBatch
+        ): String? {
+            val folderPath = remotePath.substringBeforeLast(PATH_SEPARATOR) + PATH_SEPARATOR
+            if (!uploadBatch.isListed(folderPath)) {
+                val folderNames = listFolder(ownCloudClient, folderPath)
+                    ?: return reserveFromProbes(remotePath, folderPath, uploadBatch) { path, reservedPaths ->
+                        getAvailableRemotePath(ownCloudClient, path, reservedPaths)
+                    }
+                uploadBatch.addListing(folderPath, folderNames)
+            }
+            val fileName = remotePath.substringAfterLast(PATH_SEPARATOR)
+            return folderPath + uploadBatch.reserveAvailableName(folderPath, fileName)
+        }
+
+        /**
+         * Probes every candidate name, skipping those reserved in the batch, and tries again if another upload of
+         * the batch reserved the picked one meanwhile.
+         */
+        private fun reserveFromProbes(
+            remotePath: String,
+            folderPath: String,
+            uploadBatch: UploadBatch,
+            probeEveryName: (String, Set<String>) -> String?
+        ): String? {
+            while (true) {
+                val reservedPaths = uploadBatch.getTakenNames(folderPath).mapTo(HashSet()) { folderPath + it }
+                val availablePath = probeEveryName(remotePath, reservedPaths) ?: return null
+                if (uploadBatch.reserve(folderPath, availablePath.substringAfterLast(PATH_SEPARATOR))) {
+                    return availablePath
+                }
+            }
+        }
+
+        private fun listFolder(ownCloudClient: OwnCloudClient, folderPath: String): List<String>? {
+            val result = ReadRemoteFolderOperation(folderPath).execute(ownCloudClient)
+            return when {
+                // The first element is the folder itself
+                result.isSuccess -> result.data.drop(1).map {
+                    it.remotePath.trimEnd('/').substringAfterLast(PATH_SEPARATOR)
+                }
+                result.code == ResultCode.FILE_NOT_FOUND -> emptyList()
+                else -> {
+                    Timber.w("Could not list %s to check name collisions: %s", folderPath, result.code)
+                    null
+                }
+            }
+        }
+
+        /**
+         * Returns [fileName] if it is not taken, or the first of "name (2).ext", "name (3).ext"... that is not.
+         */
+        @VisibleForTesting
+        fun getAvailableFileName(fileName: String, takenNames: Set<String>): String {
+            if (fileName !in takenNames) return fileName
+
+            val pos = fileName.lastIndexOf('.')
+            val baseName = if (pos > 0) fileName.substring(0, pos) else fileName
+            val extension = if (pos > 0) fileName.substring(pos) else ""
+            var count = 2
+            while ("$baseName ($count)$extension" in takenNames) {
+                count++
+            }
+            return "$baseName ($count)$extension"
+        }
+
         private fun existsFile(ownCloudClient: OwnCloudClient, remotePath: String): Boolean {
             val existsOperation =
                 CheckPathExistenceRemoteOperation(
@@ -71,5 +216,65 @@ class RemoteFileUtils {
                 )
             return existsOperation.execute(ownCloudClient).isSuccess
         }
+
+        private const val PATH_SEPARATOR = "/"
+        private const val MAX_NAME_VERIFICATIONS = 3
+    }
+
+    /**
+     * Names known to be taken in the target folders of a batch of uploads to the same account, either in the server
+     * or by uploads of the batch. It can be used from several threads.
+     */
+    class UploadBatch {
+        private val takenNames = HashMap<String, MutableSet<String>>()
+        private val listedFolders = HashSet<String>()
+        private val createdAt = System.nanoTime()
+
+        @Synchronized
+        internal fun getTakenNames(folderPath: String): Set<String> = HashSet(takenNamesIn(folderPath))
+
+        @Synchronized
+        internal fun isListed(folderPath: String) = folderPath in listedFolders
+
+        @Synchronized
+        internal fun addListing(folderPath: String, folderNames: List<String>) {
+            takenNamesIn(folderPath).addAll(folderNames)
+            listedFolders.add(folderPath)
+        }
+
+        /**
+         * @return 'true' if [fileName] was not taken yet, and now it is.
+         */
+        @Synchronized
+        internal fun reserve(folderPath: String, fileName: String): Boolean = takenNamesIn(folderPath).add(fileName)
+
+        @Synchronized
+        internal fun reserveAvailableName(folderPath: String, fileName: String): String {
+            val takenNames = takenNamesIn(folderPath)
+            return getAvailableFileName(fileName, takenNames).also { takenNames.add(it) }
+        }
+
+        private fun takenNamesIn(folderPath: String): MutableSet<String> = takenNames.getOrPut(folderPath) { HashSet() }
+
+        private fun isExpired() = System.nanoTime() - createdAt > ACCOUNT_BATCH_TTL_NANOS
+
+        companion object {
+            private val ACCOUNT_BATCH_TTL_NANOS = TimeUnit.SECONDS.toNanos(30)
+            private val accountBatches = HashMap<String, UploadBatch>()
+
+            /**
+             * Uploads run by separate workers share the batch of their account for a while, so that a burst of
+             * them to the same folder lists it once. It is renewed after a short time, to not trust an old listing.
+             */
+            @JvmStatic
+            @Synchronized
+            fun forAccount(accountName: String): UploadBatch {
+                val batch = accountBatches[accountName]
+                if (batch != null && !batch.isExpired()) {
+                    return batch
+                }
+                return UploadBatch().also { accountBatches[accountName] = it }
+            }
+        }
     }
 }
@@ -20,6 +20,8 @@ package com.uteknoid.drive.utils;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.UriPermission;
 import android.database.Cursor;
 import android.net.Uri;
 import android.provider.MediaStore;
@@ -78,6 +80,31 @@ public class UriUtils {
         return displayName.replaceAll("/", "-");
     }
 
+    /**
+     * Uploads read straight from a content URI keep it as their local path, instead of a path in the file system.
+     */
+    public static boolean isContentUri(String localPath) {
+        return localPath != null && localPath.startsWith(URI_CONTENT_SCHEME);
+    }
+
+    /**
+     * Gives back the persisted permission to read the given URI, if the app holds one for that exact URI. Permissions
+     * on whole folders, like those of camera uploads, are not affected.
+     */
+    public static void releasePersistedReadPermission(Context context, Uri uri) {
+        ContentResolver contentResolver = context.getContentResolver();
+        for (UriPermission permission : contentResolver.getPersistedUriPermissions()) {
+            if (permission.getUri().equals(uri)) {
+                try {
+                    contentResolver.releasePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                } catch (SecurityException e) {
+                    Timber.w(e, "Read permission for %s could not be released", uri);
+                }
+                return;
+            }
+        }
+    }
+
     private static String getDisplayNameFromContentResolver(Uri uri, Context context) {
         String displayName = null;
         String mimeType = context.getContentResolver().getType(uri);
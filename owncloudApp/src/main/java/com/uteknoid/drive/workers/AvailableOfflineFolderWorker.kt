@@ -0,0 +1,296 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.uteknoid.drive.workers
+
+import android.accounts.Account
+import android.app.Notification
+import android.app.NotificationManager
+import android.content.Context
+import android.os.SystemClock
+import androidx.work.CoroutineWorker
+import androidx.work.ForegroundInfo
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import com.uteknoid.drive.R
+import com.uteknoid.drive.authentication.AccountUtils
+import com.uteknoid.drive.datamodel.FileDataStorageManager
+import com.uteknoid.drive.datamodel.OCFile
+import com.uteknoid.drive.files.services.FileDownloader
+import com.uteknoid.drive.lib.common.OwnCloudAccount
+import com.uteknoid.drive.lib.common.OwnCloudClient
+import com.uteknoid.drive.lib.common.SingleSessionManager
+import com.uteknoid.drive.lib.common.operations.RemoteOperationResult
+import com.uteknoid.drive.operations.DownloadFileOperation
+import com.uteknoid.drive.operations.SynchronizeFolderOperation
+import com.uteknoid.drive.utils.DOWNLOAD_NOTIFICATION_CHANNEL_ID
+import com.uteknoid.drive.utils.DisplayUtils
+import com.uteknoid.drive.utils.NotificationUtils
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.sync.withPermit
+import timber.log.Timber
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Makes the content of a folder available offline in a single job.
+ *
+ * First it refreshes the folder and its subfolders one listing at a time, skipping the subtrees that did not change
+ * in the server, to build the list of files whose contents are missing or outdated. Then it downloads them, a few
+ * at a time, as a foreground job, publishing the number of files and bytes left as progress. The downloads are
+ * registered in [FileDownloader], so the file list shows them as any other download. Files already queued there
+ * are left to it. If the job is stopped, or cancelled because the folder is not available offline anymore, the
+ * downloads in progress are cancelled too.
+ *
+ * If the job is interrupted, WorkManager runs it again and the list is built again from the database, where the
+ * files already downloaded are up to date, so it goes on where it was left.
+ */
+class AvailableOfflineFolderWorker(
+    val appContext: Context,
+    workerParameters: WorkerParameters
+) : CoroutineWorker(
+    appContext,
+    workerParameters
+) {
+
+    private lateinit var account: Account
+    private lateinit var storageManager: FileDataStorageManager
+    private var lastProgressTime = 0L
+    private val downloadsInProgress = ConcurrentHashMap.newKeySet<DownloadFileOperation>()
+
+    override suspend fun doWork(): Result {
+        val accountName = inputData.getString(KEY_ACCOUNT_NAME) ?: return Result.failure()
+        val remotePath = inputData.getString(KEY_REMOTE_PATH) ?: return Result.failure()
+        account = AccountUtils.getOwnCloudAccountByName(appContext, accountName) ?: return Result.failure()
+        storageManager = FileDataStorageManager(appContext, account, appContext.contentResolver)
+
+        return try {
+            val filesToDownload = getFilesToDownload(remotePath) ?: return retryOrFail()
+            if (filesToDownload.isEmpty()) return Result.success()
+
+            val failed = downloadFiles(remotePath, filesToDownload)
+            if (!isStillAvailableOffline(remotePath)) {
+                cancelNotification(remotePath)
+                Result.success()
+            } else if (failed > 0) {
+                cancelNotification(remotePath)
+                retryOrFail()
+            } else {
+                showFinishedNotification(remotePath)
+                Result.success()
+            }
+        } catch (securityException: SecurityException) {
+            Timber.e(securityException, "$remotePath of $accountName could not be made available offline")
+            Result.failure()
+        }
+    }
+
+    /**
+     * Refreshes the folder and its descendants, collecting the files that need to be downloaded.
+     *
+     * @return files to download, or null if some folder could not be refreshed.
+     */
+    private fun getFilesToDownload(remotePath: String): List<OCFile>? {
+        val filesToDownload = ArrayList<OCFile>()
+        val syncTime = System.currentTimeMillis()
+        // The folder itself is always listed; below it, only subfolders changed in the server
+        val foldersToVisit = ArrayDeque(listOf(remotePath to true))
+        while (foldersToVisit.isNotEmpty()) {
+            if (isStopped || !isStillAvailableOffline(remotePath)) return emptyList()
+
+            val (folderPath, changedInServer) = foldersToVisit.removeFirst()
+            val synchronizeFolderOperation = SynchronizeFolderOperation(
+                appContext, folderPath, account, syncTime, !changedInServer, true, false, true
+            )
+            val result = synchronizeFolderOperation.execute(storageManager, appContext)
+            if (!result.isSuccess) {
+                Timber.w("Folder $folderPath could not be refreshed: ${result.logMessage}")
+                return null
+            }
+            synchronizeFolderOperation.foldersToVisit?.forEach { foldersToVisit.add(it.first.remotePath to it.second) }
+            filesToDownload.addAll(synchronizeFolderOperation.filesToDownload)
+        }
+        return filesToDownload
+    }
+
+    /**
+     * @return number of files that could not be downloaded.
+     */
+    private suspend fun downloadFiles(remotePath: String, files: List<OCFile>): Int = coroutineScope {
+        var filesLeft = files.size
+        var bytesLeft = files.sumOf { it.fileLength }
+        val progressLock = Mutex()
+        startForeground(remotePath, filesLeft, bytesLeft)
+        publishProgress(remotePath, filesLeft, bytesLeft)
+
+        val client = getClient()
+        val parallelDownloads = Semaphore(MAX_PARALLEL_DOWNLOADS)
+        val downloads = files.map { file ->
+            async(Dispatchers.IO) {
+                val downloaded = parallelDownloads.withPermit { downloadFile(client, remotePath, file) }
+                progressLock.withLock {
+                    filesLeft--
+                    bytesLeft -= file.fileLength
+                    publishProgress(remotePath, filesLeft, bytesLeft)
+                }
+                downloaded
+            }
+        }
+        try {
+            downloads.awaitAll().count { downloaded -> !downloaded }
+        } catch (cancellationException: CancellationException) {
+            // Downloads block their threads, they do not notice the job was stopped until they are cancelled
+            downloadsInProgress.forEach { it.cancel() }
+            throw cancellationException
+        }
+    }
+
+    private fun downloadFile(client: OwnCloudClient, remotePath: String, file: OCFile): Boolean {
+        if (isStopped || !isStillAvailableOffline(remotePath)) return false
+
+        // Files new in the folder got their id when the listing was saved
+        val currentFile = storageManager.getFileByPath(file.remotePath) ?: return true
+        val downloadFileOperation = DownloadFileOperation(account, currentFile)
+        var result: RemoteOperationResult<*>? = null
+        if (!FileDownloader.registerExternalDownload(appContext, downloadFileOperation)) {
+            Timber.d("${file.remotePath} is already being downloaded")
+            return true
+        }
+        downloadsInProgress.add(downloadFileOperation)
+        try {
+            if (isStopped) return false
+            val downloadResult = downloadFileOperation.execute(client)
+            result = downloadResult
+            if (downloadResult.isSuccess) {
+                downloadFileOperation.saveDownloadedFile(storageManager)
+            } else {
+                Timber.w("${file.remotePath} could not be downloaded: ${downloadResult.logMessage}")
+            }
+            return downloadResult.isSuccess
+        } finally {
+            downloadsInProgress.remove(downloadFileOperation)
+            FileDownloader.unregisterExternalDownload(
+                appContext,
+                downloadFileOperation,
+                result ?: RemoteOperationResult<Any>(RemoteOperationResult.ResultCode.CANCELLED)
+            )
+        }
+    }
+
+    /**
+     * Keeps the job alive while the files are downloaded, even if the app goes to background.
+     */
+    private suspend fun startForeground(remotePath: String, filesLeft: Int, bytesLeft: Long) {
+        try {
+            val notification = buildProgressNotification(remotePath, filesLeft, bytesLeft)
+            setForeground(ForegroundInfo(getProgressNotificationId(remotePath), notification))
+        } catch (illegalStateException: IllegalStateException) {
+            Timber.w(illegalStateException, "$remotePath will be made available offline in background")
+        }
+    }
+
+    /**
+     * Progress is published at most once every [PROGRESS_INTERVAL], except for the first and the last one.
+     */
+    private suspend fun publishProgress(remotePath: String, filesLeft: Int, bytesLeft: Long) {
+        val now = SystemClock.elapsedRealtime()
+        if (lastProgressTime != 0L && filesLeft > 0 && now - lastProgressTime < PROGRESS_INTERVAL) return
+        lastProgressTime = now
+
+        setProgress(workDataOf(KEY_FILES_LEFT to filesLeft, KEY_BYTES_LEFT to bytesLeft))
+        if (filesLeft > 0) {
+            val notificationManager = appContext.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+            notificationManager.notify(
+                getProgressNotificationId(remotePath),
+                buildProgressNotification(remotePath, filesLeft, bytesLeft)
+            )
+        }
+    }
+
+    private fun buildProgressNotification(remotePath: String, filesLeft: Int, bytesLeft: Long): Notification =
+        NotificationUtils.newNotificationBuilder(appContext, DOWNLOAD_NOTIFICATION_CHANNEL_ID).apply {
+            setContentTitle(
+                appContext.getString(R.string.available_offline_download_in_progress_title, OCFile(remotePath).fileName)
+            )
+            setContentText(
+                appContext.resources.getQuantityString(
+                    R.plurals.available_offline_download_in_progress_content,
+                    filesLeft,
+                    filesLeft,
+                    DisplayUtils.bytesToHumanReadable(bytesLeft, appContext)
+                )
+            )
+            setOngoing(true)
+            setOnlyAlertOnce(true)
+        }.build()
+
+    private fun showFinishedNotification(remotePath: String) {
+        cancelNotification(remotePath)
+        NotificationUtils.createBasicNotification(
+            context = appContext,
+            contentTitle = appContext.getString(
+                R.string.available_offline_download_finished,
+                OCFile(remotePath).fileName
+            ),
+            contentText = "",
+            notificationChannelId = DOWNLOAD_NOTIFICATION_CHANNEL_ID,
+            notificationId = getNotificationId(remotePath),
+            intent = null,
+            timeOut = NOTIFICATION_TIMEOUT
+        )
+    }
+
+    private fun cancelNotification(remotePath: String) {
+        val notificationManager = appContext.getSystemService(Context.NOTIFICATION_SERVICE) as NotificationManager
+        notificationManager.cancel(getProgressNotificationId(remotePath))
+    }
+
+    private fun getNotificationId(remotePath: String) = (account.name + remotePath).hashCode()
+
+    // Apart from the finished one, which must outlive the foreground job
+    private fun getProgressNotificationId(remotePath: String) = getNotificationId(remotePath) + 1
+
+    /**
+     * The user may unset the folder as available offline while it is being downloaded.
+     */
+    private fun isStillAvailableOffline(remotePath: String): Boolean =
+        storageManager.getFileByPath(remotePath)?.availableOfflineStatus == OCFile.AvailableOfflineStatus.AVAILABLE_OFFLINE
+
+    private fun retryOrFail(): Result = if (runAttemptCount < MAX_ATTEMPTS) Result.retry() else Result.failure()
+
+    private fun getClient(): OwnCloudClient = SingleSessionManager.getDefaultSingleton()
+        .getClientFor(OwnCloudAccount(account, appContext), appContext, SingleSessionManager.getConnectionValidator())
+
+    companion object {
+        const val AVAILABLE_OFFLINE_FOLDER_WORKER = "AVAILABLE_OFFLINE_FOLDER_WORKER"
+        const val KEY_ACCOUNT_NAME = "KEY_ACCOUNT_NAME"
+        const val KEY_REMOTE_PATH = "KEY_REMOTE_PATH"
+        const val KEY_FILES_LEFT = "KEY_FILES_LEFT"
+        const val KEY_BYTES_LEFT = "KEY_BYTES_LEFT"
+
+        private const val MAX_PARALLEL_DOWNLOADS = 3
+        private const val MAX_ATTEMPTS = 5
+        private const val NOTIFICATION_TIMEOUT = 5_000L
+        private const val PROGRESS_INTERVAL = 1_000L
+    }
+}
@@ -136,16 +136,17 @@ class CameraUploadsWorker(
 
         showNotification(syncType, localPicturesDocumentFiles.size)
 
+        val createdByWorker = when (syncType) {
+            SyncType.PICTURE_UPLOADS -> CREATED_AS_CAMERA_UPLOAD_PICTURE
+            SyncType.VIDEO_UPLOADS -> CREATED_AS_CAMERA_UPLOAD_VIDEO
+        }
         for (documentFile in localPicturesDocumentFiles) {
             val uploadId = storeInUploadsDatabase(
                 documentFile = documentFile,
                 uploadPath = folderBackUpConfiguration.uploadPath.plus(File.separator).plus(documentFile.name),
                 accountName = folderBackUpConfiguration.accountName,
                 behavior = folderBackUpConfiguration.behavior,
-                createdByWorker = when (syncType) {
-                    SyncType.PICTURE_UPLOADS -> CREATED_AS_CAMERA_UPLOAD_PICTURE
-                    SyncType.VIDEO_UPLOADS -> CREATED_AS_CAMERA_UPLOAD_VIDEO
-                }
+                createdByWorker = createdByWorker
             )
             enqueueSingleUpload(
                 contentUri = documentFile.uri,
@@ -155,7 +156,8 @@ class CameraUploadsWorker(
                 accountName = folderBackUpConfiguration.accountName,
                 uploadId = uploadId,
                 wifiOnly = folderBackUpConfiguration.wifiOnly,
-                chargingOnly = folderBackUpConfiguration.chargingOnly
+                chargingOnly = folderBackUpConfiguration.chargingOnly,
+                createdByWorker = createdByWorker
             )
         }
         updateTimestamp(folderBackUpConfiguration, syncType, currentTimestamp)
@@ -261,7 +263,8 @@ class CameraUploadsWorker(
         accountName: String,
         uploadId: Long,
         wifiOnly: Boolean,
-        chargingOnly: Boolean
+        chargingOnly: Boolean,
+        createdByWorker: Int
     ) {
         val lastModifiedInSeconds = (lastModified / 1000L).toString()
 
@@ -274,7 +277,8 @@ class CameraUploadsWorker(
                 uploadPath = uploadPath,
                 uploadIdInStorageManager = uploadId,
                 wifiOnly = wifiOnly,
-                chargingOnly = chargingOnly
+                chargingOnly = chargingOnly,
+                createdBy = createdByWorker
             )
         )
     }
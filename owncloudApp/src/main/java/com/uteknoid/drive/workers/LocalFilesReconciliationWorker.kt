@@ -0,0 +1,78 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.uteknoid.drive.workers
+
+import android.content.Context
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import com.uteknoid.drive.authentication.AccountUtils
+import com.uteknoid.drive.data.preferences.datasources.SharedPreferencesProvider
+import com.uteknoid.drive.datamodel.FileDataStorageManager
+import org.koin.core.component.KoinComponent
+import org.koin.core.component.inject
+import timber.log.Timber
+import java.util.concurrent.TimeUnit
+
+/**
+ * Binds local copies of files that are present in the storage of an account but not registered in the
+ * database, so that listings don't need to look for them in the file system.
+ *
+ * It is requested on every account change, but the folder of an account is scanned at most once every
+ * [RECONCILIATION_INTERVAL_MILLIS]; copies are only orphaned after reinstalling the app or losing the database.
+ */
+class LocalFilesReconciliationWorker(
+    val appContext: Context,
+    workerParameters: WorkerParameters
+) : CoroutineWorker(
+    appContext,
+    workerParameters
+), KoinComponent {
+
+    private val preferencesProvider: SharedPreferencesProvider by inject()
+
+    override suspend fun doWork(): Result {
+        val accountName = inputData.getString(KEY_ACCOUNT_NAME) ?: return Result.failure()
+        val account = AccountUtils.getOwnCloudAccountByName(appContext, accountName) ?: return Result.failure()
+
+        val lastReconciliationKey = KEY_LAST_RECONCILIATION + accountName
+        val now = System.currentTimeMillis()
+        if (now - preferencesProvider.getLong(lastReconciliationKey, 0) < RECONCILIATION_INTERVAL_MILLIS) {
+            Timber.d("Local files of $accountName were reconciled recently, skipping")
+            return Result.success()
+        }
+
+        return try {
+            val storageManager = FileDataStorageManager(appContext, account, appContext.contentResolver)
+            val bound = storageManager.bindOrphanedLocalFiles()
+            Timber.i("$bound local files bound for $accountName")
+            preferencesProvider.putLong(lastReconciliationKey, now)
+            Result.success()
+        } catch (securityException: SecurityException) {
+            Timber.e(securityException, "Local files of $accountName could not be reconciled")
+            Result.failure()
+        }
+    }
+
+    companion object {
+        const val LOCAL_FILES_RECONCILIATION_WORKER = "LOCAL_FILES_RECONCILIATION_WORKER"
+        const val KEY_ACCOUNT_NAME = "KEY_ACCOUNT_NAME"
+
+        private const val KEY_LAST_RECONCILIATION = "LAST_LOCAL_FILES_RECONCILIATION_"
+        private val RECONCILIATION_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(6)
+    }
+}
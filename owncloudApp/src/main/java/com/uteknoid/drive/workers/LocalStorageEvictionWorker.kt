@@ -0,0 +1,97 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.uteknoid.drive.workers
+
+import android.content.Context
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import com.uteknoid.drive.authentication.AccountUtils
+import com.uteknoid.drive.datamodel.FileDataStorageManager
+import com.uteknoid.drive.datamodel.OCFile
+import com.uteknoid.drive.datamodel.UploadsStorageManager
+import com.uteknoid.drive.files.services.LocalStorageBudget
+import timber.log.Timber
+import java.util.concurrent.TimeUnit
+
+/**
+ * Removes the local copies of the least recently used files of an account until its downloaded files fit in
+ * the storage limit. Files available offline, in conflict, with local changes not uploaded yet, or used in the
+ * last minutes are kept.
+ */
+class LocalStorageEvictionWorker(
+    val appContext: Context,
+    workerParameters: WorkerParameters
+) : CoroutineWorker(
+    appContext,
+    workerParameters
+) {
+
+    override suspend fun doWork(): Result {
+        val accountName = inputData.getString(KEY_ACCOUNT_NAME) ?: return Result.failure()
+        val account = AccountUtils.getOwnCloudAccountByName(appContext, accountName) ?: return Result.failure()
+
+        return try {
+            val storageManager = FileDataStorageManager(appContext, account, appContext.contentResolver)
+            val usage = storageManager.getDownloadedFilesSize()
+            val limit = LocalStorageBudget.getLimit()
+            if (limit <= 0 || usage <= limit) {
+                LocalStorageBudget.setUsage(accountName, usage)
+                return Result.success()
+            }
+
+            val evictedLength = evict(storageManager, usage - limit)
+            LocalStorageBudget.setUsage(accountName, usage - evictedLength)
+            Timber.i("$evictedLength bytes of downloaded files evicted for $accountName")
+            Result.success()
+        } catch (securityException: SecurityException) {
+            Timber.e(securityException, "Downloaded files of $accountName could not be evicted")
+            Result.failure()
+        }
+    }
+
+    /**
+     * @return bytes freed, which may be less than [bytesToFree] if there are not enough files to evict.
+     */
+    private fun evict(storageManager: FileDataStorageManager, bytesToFree: Long): Long {
+        val uploadingPaths = UploadsStorageManager(appContext.contentResolver).currentAndPendingUploads
+            .mapNotNullTo(HashSet()) { it.localPath }
+        val usedBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(MINUTES_SINCE_LAST_USAGE)
+
+        val candidates = ArrayList<OCFile>()
+        var candidatesLength = 0L
+        for (file in storageManager.getEvictableFiles(usedBefore)) {
+            if (candidatesLength >= bytesToFree) break
+            if (file.storagePath in uploadingPaths || hasLocalChanges(file)) continue
+            candidates.add(file)
+            candidatesLength += file.fileLength
+        }
+        return storageManager.removeLocalCopies(candidates).sumOf { it.fileLength }
+    }
+
+    /**
+     * Same check as the synchronization of files, which would upload the local copy.
+     */
+    private fun hasLocalChanges(file: OCFile) = file.localModificationTimestamp > file.lastSyncDateForData
+
+    companion object {
+        const val LOCAL_STORAGE_EVICTION_WORKER = "LOCAL_STORAGE_EVICTION_WORKER"
+        const val KEY_ACCOUNT_NAME = "KEY_ACCOUNT_NAME"
+
+        private const val MINUTES_SINCE_LAST_USAGE = 10L
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.workers
+
+import android.content.Context
+import androidx.work.CoroutineWorker
+import androidx.work.WorkerParameters
+import androidx.work.workDataOf
+import com.uteknoid.drive.utils.FileStorageUtils
+import timber.log.Timber
+import java.io.File
+
+/**
+ * Deletes the local folders moved to the trash of an account when they were removed, publishing the number of
+ * files deleted and bytes freed as progress. What is left if it is interrupted is deleted the next time it runs.
+ */
+class TrashCleanupWorker(
+    val appContext: Context,
+    workerParameters: WorkerParameters
+) : CoroutineWorker(
+    appContext,
+    workerParameters
+) {
+
+    override suspend fun doWork(): Result {
+        val accountName = inputData.getString(KEY_ACCOUNT_NAME) ?: return Result.failure()
+        val trashFolder = File(FileStorageUtils.getTrashPath(accountName))
+
+        var deletedFiles = 0
+        var freedBytes = 0L
+        var failed = 0
+        return try {
+            // Bottom up, so that folders are already empty when they are reached
+            for (file in trashFolder.walkBottomUp()) {
+                if (isStopped) break
+                if (file == trashFolder) continue
+
+                val isFile = file.isFile
+                val length = if (isFile) file.length() else 0
+                if (!file.delete()) {
+                    failed++
+                    continue
+                }
+                if (isFile) {
+                    deletedFiles++
+                    freedBytes += length
+                    if (deletedFiles % PROGRESS_INTERVAL == 0) {
+                        setProgress(workDataOf(KEY_DELETED_FILES to deletedFiles, KEY_FREED_BYTES to freedBytes))
+                    }
+                }
+            }
+            Timber.i("$deletedFiles files and $freedBytes bytes deleted from the trash of $accountName, $failed failed")
+            Result.success()
+        } catch (securityException: SecurityException) {
+            Timber.e(securityException, "Trash of $accountName could not be deleted")
+            Result.failure()
+        }
+    }
+
+    companion object {
+        const val TRASH_CLEANUP_WORKER = "TRASH_CLEANUP_WORKER"
+        const val KEY_ACCOUNT_NAME = "KEY_ACCOUNT_NAME"
+        const val KEY_DELETED_FILES = "KEY_DELETED_FILES"
+        const val KEY_FREED_BYTES = "KEY_FREED_BYTES"
+
+        private const val PROGRESS_INTERVAL = 500
+    }
+}
@@ -27,18 +27,27 @@ import androidx.work.CoroutineWorker
 import androidx.work.WorkerParameters
 import com.uteknoid.drive.R
 import com.uteknoid.drive.authentication.AccountUtils
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentDao
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentEntity
+import com.uteknoid.drive.data.preferences.datasources.SharedPreferencesProvider
+import com.uteknoid.drive.data.preferences.datasources.implementation.SharedPreferencesProviderImpl
 import com.uteknoid.drive.data.executeRemoteOperation
 import com.uteknoid.drive.datamodel.OCUpload
 import com.uteknoid.drive.datamodel.UploadsStorageManager
 import com.uteknoid.drive.db.UploadResult
 import com.uteknoid.drive.domain.camerauploads.model.FolderBackUpConfiguration
+import com.uteknoid.drive.domain.capabilities.usecases.GetStoredCapabilitiesUseCase
 import com.uteknoid.drive.domain.exceptions.ConflictException
 import com.uteknoid.drive.domain.exceptions.FileNotFoundException
 import com.uteknoid.drive.domain.exceptions.ForbiddenException
 import com.uteknoid.drive.domain.exceptions.LocalFileNotFoundException
 import com.uteknoid.drive.domain.exceptions.NoConnectionWithServerException
+import com.uteknoid.drive.domain.exceptions.NoNetworkConnectionException
 import com.uteknoid.drive.domain.exceptions.QuotaExceededException
 import com.uteknoid.drive.domain.exceptions.SSLRecoverablePeerUnverifiedException
+import com.uteknoid.drive.domain.exceptions.ServerConnectionTimeoutException
+import com.uteknoid.drive.domain.exceptions.ServerNotReachableException
+import com.uteknoid.drive.domain.exceptions.ServerResponseTimeoutException
 import com.uteknoid.drive.domain.exceptions.ServiceUnavailableException
 import com.uteknoid.drive.domain.exceptions.SpecificUnsupportedMediaTypeException
 import com.uteknoid.drive.domain.exceptions.UnauthorizedException
@@ -50,13 +59,34 @@ import com.uteknoid.drive.lib.common.operations.RemoteOperationResult.ResultCode
 import com.uteknoid.drive.lib.resources.files.CheckPathExistenceRemoteOperation
 import com.uteknoid.drive.lib.resources.files.ContentUriRequestBody
 import com.uteknoid.drive.lib.resources.files.CreateRemoteFolderOperation
+import com.uteknoid.drive.lib.resources.files.FileUtils
+import com.uteknoid.drive.lib.resources.files.ReadRemoteFileOperation
 import com.uteknoid.drive.lib.resources.files.UploadFileFromContentUriOperation
+import com.uteknoid.drive.lib.resources.files.chunks.ChunkedUploadRemoteFileOperation
+import com.uteknoid.drive.lib.resources.files.chunks.CreateRemoteChunkFolderOperation
+import com.uteknoid.drive.lib.resources.files.chunks.MoveRemoteChunksFileOperation
+import com.uteknoid.drive.lib.resources.files.chunks.RemoveRemoteChunksFolderOperation
+import com.uteknoid.drive.operations.ContentUriChunkRequestBody
+import com.uteknoid.drive.operations.HashingRequestBody
+import com.uteknoid.drive.operations.UploadFileOperation
+import com.uteknoid.drive.operations.UploadChunkFromContentUriOperation
+import com.uteknoid.drive.operations.UploadHashedContentUriOperation
+import com.uteknoid.drive.presentation.ui.settings.fragments.SettingsAdvancedFragment.Companion.PREF_SKIP_ALREADY_UPLOADED_CONTENTS
 import com.uteknoid.drive.utils.NotificationUtils
-import com.uteknoid.drive.utils.RemoteFileUtils.Companion.getAvailableRemotePath
+import com.uteknoid.drive.utils.RemoteFileUtils
+import com.uteknoid.drive.utils.RemoteFileUtils.Companion.getAvailableRemotePathForUpload
+import com.uteknoid.drive.utils.SecurityUtils
 import com.uteknoid.drive.utils.UPLOAD_NOTIFICATION_CHANNEL_ID
+import com.uteknoid.drive.utils.UriUtils
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.launch
 import org.koin.core.component.KoinComponent
+import org.koin.core.component.inject
 import timber.log.Timber
 import java.io.File
+import java.security.MessageDigest
+import kotlin.math.min
 
 class UploadFileFromContentUriWorker(
     private val appContext: Context,
@@ -72,26 +102,54 @@ class UploadFileFromContentUriWorker(
     private lateinit var behavior: FolderBackUpConfiguration.Behavior
     private lateinit var uploadPath: String
     private var uploadIdInStorageManager: Long = -1
+    private var createdBy: Int = UploadFileOperation.CREATED_BY_USER
+    private var contentHash: String? = null
+    private var contentLength: Long = 0
+
+    private val preferencesProvider: SharedPreferencesProvider by inject()
+    private val uploadedContentDao: UploadedContentDao by inject()
+    private val getStoredCapabilitiesUseCase: GetStoredCapabilitiesUseCase by inject()
 
     override suspend fun doWork(): Result {
 
         if (!areParametersValid()) return Result.failure()
 
-        return try {
-            checkDocumentFileExists()
-            checkPermissionsToReadDocumentAreGranted()
+        return upload().also { result ->
+            // Failed uploads may be retried from the uploads list, so the permission is kept until the upload
+            // succeeds; cancelling it releases the permission too
+            if (result is Result.Success) {
+                UriUtils.releasePersistedReadPermission(appContext, contentUri)
+            }
+        }
+    }
+
+    private fun upload(): Result =
+        try {
+            checkDocumentFileCanBeRead()
             checkParentFolderExistence()
-            checkNameCollisionAndGetAnAvailableOneInCase()
-            uploadDocument()
+            contentLength = DocumentFile.fromSingleUri(appContext, contentUri)?.length() ?: 0
+            if (!isContentAlreadyUploaded()) {
+                checkNameCollisionAndGetAnAvailableOneInCase()
+                uploadDocument()
+                recordUploadedContent()
+            }
             updateUploadsDatabaseWithResult(null)
             Result.success()
         } catch (throwable: Throwable) {
             Timber.e(throwable)
-            showNotification(throwable)
-            updateUploadsDatabaseWithResult(throwable)
-            Result.failure()
+            if (isStopped) {
+                // Cancelled, or to be run again by WorkManager; whoever cancels it discards its state and chunks
+                Result.failure()
+            } else if (isChunkedUploadResumable(throwable)) {
+                Timber.d("Chunked upload of %s interrupted, it will be resumed", contentUri)
+                Result.retry()
+            } else {
+                if (!isNetworkError(throwable)) clearChunkedUploadState()
+                showNotification(throwable)
+                updateUploadsDatabaseWithResult(throwable)
+                Result.failure()
+            }
         }
-    }
 
     private fun areParametersValid(): Boolean {
         val paramAccountName = workerParameters.inputData.getString(KEY_PARAM_ACCOUNT_NAME)
@@ -107,23 +165,25 @@ class UploadFileFromContentUriWorker(
         behavior = paramBehavior?.let { FolderBackUpConfiguration.Behavior.fromString(it) } ?: return false
         lastModified = paramLastModified ?: return false
         uploadIdInStorageManager = paramUploadId
+        createdBy = workerParameters.inputData.getInt(KEY_PARAM_CREATED_BY, UploadFileOperation.CREATED_BY_USER)
 
         return true
     }
 
-    private fun checkPermissionsToReadDocumentAreGranted() {
-        val documentFile = DocumentFile.fromSingleUri(appContext, contentUri)
-        if (documentFile?.canRead() != true) {
-            // Permissions not granted. Throw an exception to ask for them.
-            throw Throwable("Cannot read the file")
-        }
-    }
-
-    private fun checkDocumentFileExists() {
-        val documentFile = DocumentFile.fromSingleUri(appContext, contentUri)
-        if (documentFile?.exists() != true && documentFile?.isFile != true) {
+    /**
+     * Shared files often come from MediaStore or other apps' FileProviders, which are not documents, so the URI is
+     * checked by opening it.
+     */
+    private fun checkDocumentFileCanBeRead() {
+        try {
+            appContext.contentResolver.openFileDescriptor(contentUri, "r")?.close()
+                ?: throw LocalFileNotFoundException()
+        } catch (fileNotFoundException: java.io.FileNotFoundException) {
             // File does not exists anymore. Throw an exception to tell the user
             throw LocalFileNotFoundException()
+        } catch (securityException: SecurityException) {
+            // Permissions not granted. Throw an exception to ask for them.
+            throw Throwable("Cannot read the file")
         }
     }
 
@@ -139,9 +199,85 @@ class UploadFileFromContentUriWorker(
         }
     }
 
+    /**
+     * Skips the transfer if the same bytes were already uploaded by this account to the target folder, and are
+     * still in the server.
+     *
+     * Only camera uploads are checked; what the user uploads on purpose is always sent.
+     */
+    private fun isContentAlreadyUploaded(): Boolean {
+        if (!isContentRecorded()) return false
+
+        val uploadedContentChecker = UploadedContentChecker(uploadedContentDao) { remotePath, length ->
+            val result = ReadRemoteFileOperation(remotePath).execute(getClientForThisUpload())
+            when {
+                result.isSuccess && result.data.length == length -> true
+                result.code == ResultCode.FILE_NOT_FOUND -> false
+                else -> null
+            }
+        }
+        val uploadedContent = uploadedContentChecker.skipIfAlreadyUploaded(
+            accountName = account.name,
+            uploadPath = uploadPath,
+            length = contentLength,
+            behavior = behavior,
+            computeHash = { computeContentHash().also { contentHash = it } },
+            removeLocalFile = ::removeLocalFile
+        ) ?: return false
+
+        Timber.d("Content of %s already uploaded to %s, skipping the transfer", contentUri, uploadedContent.remotePath)
+        uploadPath = uploadedContent.remotePath
+        return true
+    }
+
+    private fun isContentRecorded(): Boolean =
+        createdBy != UploadFileOperation.CREATED_BY_USER &&
+                preferencesProvider.getBoolean(PREF_SKIP_ALREADY_UPLOADED_CONTENTS, false)
+
+    /**
+     * The hash of the uploaded contents is computed while sending them, unless it was already needed before.
+     */
+    private fun isHashNeededWhileUploading(): Boolean = isContentRecorded() && contentHash == null
+
+    /**
+     * Hex encoded SHA-1 of the document, read in a single streaming pass before uploading it.
+     */
+    private fun computeContentHash(): String? = try {
+        appContext.contentResolver.openInputStream(contentUri)?.use { inputStream ->
+            val digest = MessageDigest.getInstance(CONTENT_HASH_ALGORITHM)
+            val buffer = ByteArray(HASH_BUFFER_SIZE)
+            var read = inputStream.read(buffer)
+            while (read != -1) {
+                digest.update(buffer, 0, read)
+                read = inputStream.read(buffer)
+            }
+            toHex(digest)
+        }
+    } catch (exception: Exception) {
+        Timber.w(exception, "Could not compute the hash of %s, it will be uploaded", contentUri)
+        null
+    }
+
+    private fun toHex(digest: MessageDigest): String = digest.digest().joinToString("") { "%02x".format(it) }
+
+    private fun recordUploadedContent() {
+        val hash = contentHash ?: return
+        uploadedContentDao.upsert(
+            UploadedContentEntity(
+                accountName = account.name,
+                contentHash = hash,
+                remotePath = uploadPath,
+                length = contentLength,
+                uploadTimestamp = System.currentTimeMillis()
+            )
+        )
+    }
+
     private fun checkNameCollisionAndGetAnAvailableOneInCase() {
         Timber.d("Checking name collision in server")
-        val remotePath = getAvailableRemotePath(getClientForThisUpload(), uploadPath)
+        val remotePath = getAvailableRemotePathForUpload(
+            getClientForThisUpload(), uploadPath, RemoteFileUtils.UploadBatch.forAccount(account.name)
+        )
         if (remotePath != null && remotePath != uploadPath) {
             uploadPath = remotePath
             Timber.d("Name collision detected, let's rename it to %s", remotePath)
@@ -150,17 +286,132 @@ class UploadFileFromContentUriWorker(
 
     private fun uploadDocument() {
         val client = getClientForThisUpload()
-        val requestBody = ContentUriRequestBody(appContext.contentResolver, contentUri)
 
-        val uploadFileFromContentUriOperation = UploadFileFromContentUriOperation(uploadPath, lastModified, requestBody)
+        val result = if (contentLength > ChunkedUploadRemoteFileOperation.CHUNK_SIZE && isChunkingAllowed()) {
+            uploadDocumentInChunks(client, contentLength)
+        } else if (contentLength > 0 && isHashNeededWhileUploading()) {
+            val requestBody = HashingRequestBody(
+                ContentUriChunkRequestBody(appContext.contentResolver, contentUri, 0, contentLength),
+                MessageDigest.getInstance(CONTENT_HASH_ALGORITHM)
+            )
+            val uploadHashedContentUriOperation = UploadHashedContentUriOperation(uploadPath, lastModified, requestBody)
+
+            executeRemoteOperation { uploadHashedContentUriOperation.execute(client) }.also {
+                contentHash = requestBody.digest?.let { digest -> toHex(digest) }
+            }
+        } else {
+            val requestBody = ContentUriRequestBody(appContext.contentResolver, contentUri)
 
-        val result = executeRemoteOperation { uploadFileFromContentUriOperation.execute(client) }
+            val uploadFileFromContentUriOperation = UploadFileFromContentUriOperation(uploadPath, lastModified, requestBody)
+
+            executeRemoteOperation { uploadFileFromContentUriOperation.execute(client) }
+        }
 
         if (result == Unit && behavior == FolderBackUpConfiguration.Behavior.MOVE) {
             removeLocalFile()
         }
     }
 
+    private fun isChunkingAllowed(): Boolean =
+        getStoredCapabilitiesUseCase.execute(GetStoredCapabilitiesUseCase.Params(account.name))?.isChunkingAllowed() == true
+
+    /**
+     * Sends the document in chunks to a transfer folder in the server, and moves it to its final path when all
+     * of them are there. The chunks accepted so far are remembered, so that a retry of this worker only sends
+     * the missing ones. A transfer is started over if the document changed or the server lost its chunks.
+     */
+    private fun uploadDocumentInChunks(client: OwnCloudClient, documentLength: Long) {
+        val chunkSize = ChunkedUploadRemoteFileOperation.CHUNK_SIZE
+        val chunkCount = (documentLength + chunkSize - 1) / chunkSize
+        val fingerprint = "$documentLength:$lastModified"
+
+        val storedTransferId = preferencesProvider.getString(chunkedUploadKey(KEY_CHUNKED_UPLOAD_TRANSFER_ID), null)
+        val storedFingerprint = preferencesProvider.getString(chunkedUploadKey(KEY_CHUNKED_UPLOAD_FINGERPRINT), null)
+
+        val transferId: String
+        val acceptedChunks: Long
+        if (storedTransferId != null && storedFingerprint == fingerprint) {
+            transferId = storedTransferId
+            acceptedChunks = preferencesProvider.getLong(chunkedUploadKey(KEY_CHUNKED_UPLOAD_ACCEPTED_CHUNKS), 0)
+            Timber.d("Resuming chunked upload of %s from chunk %d of %d", contentUri, acceptedChunks, chunkCount)
+        } else {
+            transferId = SecurityUtils.stringToMD5Hash(uploadPath) + System.currentTimeMillis()
+            acceptedChunks = 0
+            executeRemoteOperation { CreateRemoteChunkFolderOperation(transferId, false).execute(client) }
+            preferencesProvider.putString(chunkedUploadKey(KEY_CHUNKED_UPLOAD_TRANSFER_ID), transferId)
+            preferencesProvider.putString(chunkedUploadKey(KEY_CHUNKED_UPLOAD_FINGERPRINT), fingerprint)
+            preferencesProvider.putLong(chunkedUploadKey(KEY_CHUNKED_UPLOAD_ACCEPTED_CHUNKS), acceptedChunks)
+        }
+
+        // The chunks sent by a previous run of this worker were not hashed, a resumed upload is not recorded
+        var contentDigest = if (acceptedChunks == 0L && isHashNeededWhileUploading()) {
+            MessageDigest.getInstance(CONTENT_HASH_ALGORITHM)
+        } else {
+            null
+        }
+
+        for (chunkIndex in acceptedChunks until chunkCount) {
+            val offset = chunkIndex * chunkSize
+            val chunkRequestBody = ContentUriChunkRequestBody(
+                appContext.contentResolver, contentUri, offset, min(chunkSize, documentLength - offset)
+            )
+            val requestBody = contentDigest?.let { HashingRequestBody(chunkRequestBody, it) } ?: chunkRequestBody
+            val uploadChunkOperation = UploadChunkFromContentUriOperation(
+                transferId, chunkIndex, chunkIndex == chunkCount - 1, requestBody
+            )
+            try {
+                executeRemoteOperation { uploadChunkOperation.execute(client) }
+            } catch (exception: FileNotFoundException) {
+                // The chunks folder is not in the server anymore
+                clearChunkedUploadState()
+                throw exception
+            } catch (exception: ConflictException) {
+                clearChunkedUploadState()
+                throw exception
+            }
+            preferencesProvider.putLong(chunkedUploadKey(KEY_CHUNKED_UPLOAD_ACCEPTED_CHUNKS), chunkIndex + 1)
+            contentDigest = (requestBody as? HashingRequestBody)?.digest
+        }
+
+        val moveChunksFileOperation = MoveRemoteChunksFileOperation(
+            transferId + File.separator + FileUtils.FINAL_CHUNKS_FILE, uploadPath, false, lastModified, documentLength
+        )
+        try {
+            executeRemoteOperation { moveChunksFileOperation.execute(client) }
+        } catch (exception: FileNotFoundException) {
+            // A previous run may have moved the chunks, and lost the response
+            if (runAttemptCount == 0 || !isInServerWithLength(client, documentLength)) {
+                clearChunkedUploadState()
+                throw exception
+            }
+            Timber.d("Chunks of %s were already moved to %s", contentUri, uploadPath)
+        }
+        clearChunkedUploadState()
+        contentDigest?.let { contentHash = toHex(it) }
+    }
+
+    private fun isInServerWithLength(client: OwnCloudClient, length: Long): Boolean {
+        val result = ReadRemoteFileOperation(uploadPath).execute(client)
+        return result.isSuccess && result.data.length == length
+    }
+
+    private fun isChunkedUploadResumable(throwable: Throwable): Boolean =
+        isNetworkError(throwable) &&
+                runAttemptCount < MAX_CHUNKED_UPLOAD_ATTEMPTS &&
+                preferencesProvider.contains(chunkedUploadKey(KEY_CHUNKED_UPLOAD_TRANSFER_ID))
+
+    private fun isNetworkError(throwable: Throwable): Boolean =
+        throwable is NoConnectionWithServerException ||
+                throwable is NoNetworkConnectionException ||
+                throwable is ServerConnectionTimeoutException ||
+                throwable is ServerResponseTimeoutException ||
+                throwable is ServerNotReachableException ||
+                throwable is ServiceUnavailableException
+
+    private fun clearChunkedUploadState() = clearChunkedUploadState(preferencesProvider, uploadIdInStorageManager)
+
+    private fun chunkedUploadKey(key: String) = chunkedUploadKey(key, uploadIdInStorageManager)
+
     private fun removeLocalFile() {
         val documentFile = DocumentFile.fromSingleUri(appContext, contentUri)
         documentFile?.delete()
@@ -237,11 +488,50 @@ class UploadFileFromContentUriWorker(
     companion object {
         const val TRANSFER_TAG_CAMERA_UPLOAD = "TRANSFER_TAG_CAMERA_UPLOAD"
 
+        /**
+         * Forgets the chunked transfer of a cancelled upload, if any, and removes its chunks folder in the server
+         * in the background.
+         */
+        fun discardChunkedUpload(context: Context, accountName: String, uploadId: Long) {
+            val preferencesProvider = SharedPreferencesProviderImpl(context)
+            val transferIdKey = chunkedUploadKey(KEY_CHUNKED_UPLOAD_TRANSFER_ID, uploadId)
+            val transferId = preferencesProvider.getString(transferIdKey, null) ?: return
+            clearChunkedUploadState(preferencesProvider, uploadId)
+
+            CoroutineScope(Dispatchers.IO).launch {
+                val account = AccountUtils.getOwnCloudAccountByName(context, accountName) ?: return@launch
+                val client = SingleSessionManager.getDefaultSingleton().getClientFor(
+                    OwnCloudAccount(account, context), context, SingleSessionManager.getConnectionValidator()
+                )
+                val result = RemoveRemoteChunksFolderOperation(transferId).execute(client)
+                if (!result.isSuccess) {
+                    Timber.w("Chunks folder %s of a cancelled upload could not be removed: %s", transferId, result.code)
+                }
+            }
+        }
+
+        private fun clearChunkedUploadState(preferencesProvider: SharedPreferencesProvider, uploadId: Long) {
+            preferencesProvider.removePreference(chunkedUploadKey(KEY_CHUNKED_UPLOAD_TRANSFER_ID, uploadId))
+            preferencesProvider.removePreference(chunkedUploadKey(KEY_CHUNKED_UPLOAD_FINGERPRINT, uploadId))
+            preferencesProvider.removePreference(chunkedUploadKey(KEY_CHUNKED_UPLOAD_ACCEPTED_CHUNKS, uploadId))
+        }
+
+        private fun chunkedUploadKey(key: String, uploadId: Long) = "${key}_$uploadId"
+
         const val KEY_PARAM_ACCOUNT_NAME = "KEY_PARAM_ACCOUNT_NAME"
         const val KEY_PARAM_BEHAVIOR = "KEY_PARAM_BEHAVIOR"
         const val KEY_PARAM_CONTENT_URI = "KEY_PARAM_CONTENT_URI"
         const val KEY_PARAM_LAST_MODIFIED = "KEY_PARAM_LAST_MODIFIED"
         const val KEY_PARAM_UPLOAD_PATH = "KEY_PARAM_UPLOAD_PATH"
         const val KEY_PARAM_UPLOAD_ID = "KEY_PARAM_UPLOAD_ID"
+        const val KEY_PARAM_CREATED_BY = "KEY_PARAM_CREATED_BY"
+
+        private const val KEY_CHUNKED_UPLOAD_TRANSFER_ID = "content_uri_upload_transfer_id"
+        private const val KEY_CHUNKED_UPLOAD_FINGERPRINT = "content_uri_upload_fingerprint"
+        private const val KEY_CHUNKED_UPLOAD_ACCEPTED_CHUNKS = "content_uri_upload_accepted_chunks"
+        private const val MAX_CHUNKED_UPLOAD_ATTEMPTS = 5
+
+        private const val CONTENT_HASH_ALGORITHM = "SHA-1"
+        private const val HASH_BUFFER_SIZE = 64 * 1024
     }
 }
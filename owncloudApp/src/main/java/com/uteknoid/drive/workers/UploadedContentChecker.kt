@@ -0,0 +1,78 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.workers
+
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentDao
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentEntity
+import com.uteknoid.drive.domain.camerauploads.model.FolderBackUpConfiguration
+import java.io.File
+
+/**
+ * Looks for the same bytes among the contents already uploaded by an account to the target folder of an
+ * automatic upload. They are looked up by length first, so that a document is only read beforehand to hash
+ * it when some content may match; otherwise it is hashed while uploading it.
+ *
+ * @param isInServer    'true' if the remote path is in the server with the given length, 'false' if it is not
+ *                      in the server anymore, or null if it could not be checked.
+ */
+class UploadedContentChecker(
+    private val uploadedContentDao: UploadedContentDao,
+    private val isInServer: (remotePath: String, length: Long) -> Boolean?,
+) {
+
+    /**
+     * If the content is still in the server with the same size, the upload is done against the existing file,
+     * and the document is removed if it was to be moved. Recorded files that are not in the server anymore are
+     * forgotten.
+     *
+     * @param computeHash   Hash of the document, only called if some uploaded content has its length.
+     * @return              The uploaded content, or null if the document has to be uploaded.
+     */
+    fun skipIfAlreadyUploaded(
+        accountName: String,
+        uploadPath: String,
+        length: Long,
+        behavior: FolderBackUpConfiguration.Behavior,
+        computeHash: () -> String?,
+        removeLocalFile: () -> Unit,
+    ): UploadedContentEntity? {
+        if (length <= 0) return null
+
+        val targetFolder = File(uploadPath).parent
+        val candidates = uploadedContentDao.getUploadedContentsByLength(accountName, length)
+            .filter { File(it.remotePath).parent == targetFolder }
+        if (candidates.isEmpty()) return null
+
+        val hash = computeHash() ?: return null
+        val uploadedContent = candidates
+            .filter { it.contentHash == hash }
+            .firstOrNull { candidate ->
+                val inServer = isInServer(candidate.remotePath, candidate.length)
+                if (inServer == false) {
+                    uploadedContentDao.deleteByRemotePath(accountName, candidate.remotePath)
+                }
+                inServer == true
+            } ?: return null
+
+        if (behavior == FolderBackUpConfiguration.Behavior.MOVE) {
+            removeLocalFile()
+        }
+        return uploadedContent
+    }
+}
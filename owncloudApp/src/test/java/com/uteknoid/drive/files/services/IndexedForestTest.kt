@@ -0,0 +1,129 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.files.services
+
+import com.uteknoid.drive.datamodel.OCFile
+import com.uteknoid.drive.testutil.OC_ACCOUNT_NAME
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+class IndexedForestTest {
+
+    private val forest = IndexedForest<String>()
+
+    @Test
+    fun `folders count the values of all their descendants`() {
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg", "a")
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/b.jpg", "b")
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/c.jpg", "c")
+
+        assertEquals(1, forest.getPendingCount(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg"))
+        assertEquals(2, forest.getPendingCount(OC_ACCOUNT_NAME, "/Photos/2022/"))
+        assertEquals(3, forest.getPendingCount(OC_ACCOUNT_NAME, "/Photos/"))
+        assertEquals(3, forest.getPendingCount(OC_ACCOUNT_NAME, "/"))
+        assertEquals(0, forest.getPendingCount(OC_ACCOUNT_NAME, "/Documents/"))
+    }
+
+    @Test
+    fun `removing a value updates the counts of its ancestors`() {
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg", "a")
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/c.jpg", "c")
+
+        forest.removePayload(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg")
+
+        assertFalse(forest.contains(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg"))
+        assertFalse(forest.contains(OC_ACCOUNT_NAME, "/Photos/2022/"))
+        assertEquals(1, forest.getPendingCount(OC_ACCOUNT_NAME, "/Photos/"))
+        assertEquals("c", forest.get(OC_ACCOUNT_NAME, "/Photos/c.jpg"))
+    }
+
+    @Test
+    fun `removing a folder discounts its whole subtree`() {
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg", "a")
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/b.jpg", "b")
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/c.jpg", "c")
+
+        forest.remove(OC_ACCOUNT_NAME, "/Photos/")
+
+        assertNull(forest.get(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg"))
+        assertEquals(0, forest.getPendingCount(OC_ACCOUNT_NAME, "/Photos/2022/"))
+        assertEquals(1, forest.getPendingCount(OC_ACCOUNT_NAME, "/"))
+    }
+
+    @Test
+    fun `a folder with its own value is kept when its descendants are removed`() {
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/", "folder")
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg", "a")
+
+        forest.removePayload(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg")
+
+        assertEquals("folder", forest.get(OC_ACCOUNT_NAME, "/Photos/2022/"))
+        assertEquals(1, forest.getPendingCount(OC_ACCOUNT_NAME, "/Photos/"))
+    }
+
+    @Test
+    fun `contains any of a selection`() {
+        forest.putIfAbsent(OC_ACCOUNT_NAME, "/Photos/2022/a.jpg", "a")
+
+        assertTrue(forest.containsAny(OC_ACCOUNT_NAME, listOf(OCFile("/Documents/"), OCFile("/Photos/"))))
+        assertFalse(forest.containsAny(OC_ACCOUNT_NAME, listOf(OCFile("/Documents/"), OCFile("/b.jpg"))))
+        assertFalse(forest.containsAny("other@server", listOf(OCFile("/Photos/"))))
+    }
+
+    @Test
+    fun `counts stay consistent while values are added and removed from several threads`() {
+        val writers = 4
+        val filesPerWriter = 500
+        val executor = Executors.newFixedThreadPool(writers + 1)
+        val start = CountDownLatch(1)
+        val reading = AtomicBoolean(true)
+
+        executor.execute {
+            start.await()
+            while (reading.get()) {
+                assertTrue(forest.getPendingCount(OC_ACCOUNT_NAME, "/") >= 0)
+            }
+        }
+        val writes = (0 until writers).map { writer ->
+            executor.submit {
+                start.await()
+                for (i in 0 until filesPerWriter) {
+                    forest.putIfAbsent(OC_ACCOUNT_NAME, "/Folder$writer/Sub${i % 10}/file$i", "value")
+                }
+                for (i in 0 until filesPerWriter step 2) {
+                    forest.removePayload(OC_ACCOUNT_NAME, "/Folder$writer/Sub${i % 10}/file$i")
+                }
+            }
+        }
+        start.countDown()
+        writes.forEach { it.get(30, TimeUnit.SECONDS) }
+        reading.set(false)
+        executor.shutdown()
+
+        assertEquals(writers * filesPerWriter / 2, forest.getPendingCount(OC_ACCOUNT_NAME, "/"))
+        assertEquals(filesPerWriter / 2, forest.getPendingCount(OC_ACCOUNT_NAME, "/Folder0/"))
+    }
+}
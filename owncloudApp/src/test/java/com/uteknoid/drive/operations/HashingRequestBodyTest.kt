@@ -0,0 +1,70 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations
+
+import okhttp3.RequestBody.Companion.toRequestBody
+import okio.Buffer
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+import java.security.MessageDigest
+
+class HashingRequestBodyTest {
+
+    private val content = ByteArray(200_000) { (it % 251).toByte() }
+
+    @Test
+    fun `bytes sent are hashed`() {
+        val requestBody = HashingRequestBody(content.toRequestBody(), sha1())
+        assertNull(requestBody.digest)
+
+        val sent = Buffer()
+        requestBody.writeTo(sent)
+
+        assertArrayEquals(content, sent.readByteArray())
+        assertArrayEquals(sha1().digest(content), requestBody.digest!!.digest())
+    }
+
+    @Test
+    fun `chunks hashed one after the other hash the whole content`() {
+        val initialDigest = sha1()
+        val firstChunk = HashingRequestBody(content.copyOfRange(0, 70_000).toRequestBody(), initialDigest)
+        firstChunk.writeTo(Buffer())
+        val secondChunk =
+            HashingRequestBody(content.copyOfRange(70_000, content.size).toRequestBody(), firstChunk.digest!!)
+        secondChunk.writeTo(Buffer())
+
+        assertArrayEquals(sha1().digest(content), secondChunk.digest!!.digest())
+        // The digest it goes on from is not modified
+        assertArrayEquals(sha1().digest(), initialDigest.digest())
+    }
+
+    @Test
+    fun `written again, the hash starts over`() {
+        val requestBody = HashingRequestBody(content.toRequestBody(), sha1())
+        requestBody.writeTo(Buffer())
+        requestBody.writeTo(Buffer())
+
+        assertArrayEquals(sha1().digest(content), requestBody.digest!!.digest())
+        assertEquals(content.size.toLong(), requestBody.contentLength())
+    }
+
+    private fun sha1() = MessageDigest.getInstance("SHA-1")
+}
@@ -0,0 +1,111 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.operations
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class UploadRemoteFileKeepingMetadataOperationTest {
+
+    @Rule
+    @JvmField
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var localFile: File
+    private lateinit var operation: UploadRemoteFileKeepingMetadataOperation
+
+    @Before
+    fun setUp() {
+        localFile = temporaryFolder.newFile("photo.jpg").apply {
+            writeBytes(ByteArray(LENGTH))
+            setLastModified(LAST_MODIFIED)
+        }
+        operation = UploadRemoteFileKeepingMetadataOperation(
+            localFile.path, "/Photos/photo.jpg", "image/jpeg", null, (LAST_MODIFIED / 1000).toString()
+        )
+    }
+
+    @Test
+    fun `response with every header has metadata`() {
+        operation.keepResponseHeaders("\"5f3a\"", null, "00000123oc", "accepted")
+
+        assertTrue(operation.hasMetadata())
+        assertEquals("5f3a", operation.etag)
+        assertEquals("00000123oc", operation.remoteId)
+        assertEquals(LAST_MODIFIED, operation.modificationTimestamp)
+    }
+
+    @Test
+    fun `plain etag is used when the server sends no oc etag`() {
+        operation.keepResponseHeaders(null, "\"5f3a\"", "00000123oc", "accepted")
+
+        assertTrue(operation.hasMetadata())
+        assertEquals("5f3a", operation.etag)
+    }
+
+    @Test
+    fun `response without etag has no metadata`() {
+        operation.keepResponseHeaders(null, null, "00000123oc", "accepted")
+
+        assertFalse(operation.hasMetadata())
+        assertNull(operation.etag)
+    }
+
+    @Test
+    fun `response without file id has no metadata`() {
+        operation.keepResponseHeaders("\"5f3a\"", null, null, "accepted")
+
+        assertFalse(operation.hasMetadata())
+    }
+
+    @Test
+    fun `response without accepted mtime has no metadata`() {
+        operation.keepResponseHeaders("\"5f3a\"", null, "00000123oc", null)
+
+        assertFalse(operation.hasMetadata())
+    }
+
+    @Test
+    fun `response without any header has no metadata`() {
+        operation.keepResponseHeaders(null, null, null, null)
+
+        assertFalse(operation.hasMetadata())
+    }
+
+    @Test
+    fun `local file provides length, creation time and mime type`() {
+        operation.readLocalFile()
+
+        assertEquals(LENGTH.toLong(), operation.length)
+        assertTrue(operation.creationTimestamp > 0)
+        assertEquals("image/jpeg", operation.mimeType)
+    }
+
+    companion object {
+        private const val LENGTH = 1024
+        private const val LAST_MODIFIED = 1_600_000_000_000L
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.presentation.providers.sharing
+
+import com.uteknoid.drive.domain.sharing.sharees.model.OCSharee
+import com.uteknoid.drive.domain.sharing.shares.model.ShareType
+import com.uteknoid.drive.testutil.OC_ACCOUNT_NAME
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class ShareeSearchThrottlerTest {
+
+    private var now = 0L
+    private lateinit var throttler: ShareeSearchThrottler
+
+    private val alice = OCSharee("Alice", ShareType.USER, "alice", "alice@example.com", false)
+    private val alan = OCSharee("Alan", ShareType.USER, "alan", "", false)
+    private val admins = OCSharee("Admins", ShareType.GROUP, "admins", "", false)
+
+    @Before
+    fun setUp() {
+        now = 0L
+        throttler = ShareeSearchThrottler(
+            debounceMillis = DEBOUNCE,
+            cacheTtlMillis = TTL,
+            clock = { now },
+            sleep = { now += it }
+        )
+    }
+
+    @Test
+    fun `await quiet waits for the debounce time since the last keystroke`() {
+        throttler.onQueryTyped(OC_ACCOUNT_NAME, "ali")
+        now = 100
+
+        assertTrue(throttler.awaitQuiet(OC_ACCOUNT_NAME, "ali"))
+        assertEquals(DEBOUNCE, now)
+    }
+
+    @Test
+    fun `await quiet drops superseded queries`() {
+        throttler.onQueryTyped(OC_ACCOUNT_NAME, "alic")
+
+        assertFalse(throttler.awaitQuiet(OC_ACCOUNT_NAME, "ali"))
+        assertTrue(throttler.isSuperseded(OC_ACCOUNT_NAME, "ali"))
+        assertFalse(throttler.isSuperseded(OC_ACCOUNT_NAME, "ALIC"))
+    }
+
+    @Test
+    fun `await quiet does not wait without typed text`() {
+        assertTrue(throttler.awaitQuiet(OC_ACCOUNT_NAME, "ali"))
+        assertEquals(0L, now)
+    }
+
+    @Test
+    fun `complete results of a prefix are filtered locally`() {
+        throttler.putCached(OC_ACCOUNT_NAME, "a", listOf(alice, alan, admins), complete = true)
+
+        assertEquals(listOf(alice, alan), throttler.getCached(OC_ACCOUNT_NAME, "al"))
+        assertEquals(listOf(alice), throttler.getCached(OC_ACCOUNT_NAME, "alice@"))
+    }
+
+    @Test
+    fun `queries not extending a cached one need a request`() {
+        throttler.putCached(OC_ACCOUNT_NAME, "a", listOf(alice, alan, admins), complete = true)
+
+        assertNull(throttler.getCached(OC_ACCOUNT_NAME, "example"))
+    }
+
+    @Test
+    fun `incomplete results of a prefix are not used`() {
+        throttler.putCached(OC_ACCOUNT_NAME, "a", listOf(alice, alan, admins), complete = false)
+
+        assertNull(throttler.getCached(OC_ACCOUNT_NAME, "al"))
+        assertEquals(listOf(alice, alan, admins), throttler.getCached(OC_ACCOUNT_NAME, "a"))
+    }
+
+    @Test
+    fun `cached results expire`() {
+        throttler.putCached(OC_ACCOUNT_NAME, "a", listOf(alice), complete = true)
+        now = TTL + 1
+
+        assertNull(throttler.getCached(OC_ACCOUNT_NAME, "a"))
+    }
+
+    @Test
+    fun `cached results are per account`() {
+        throttler.putCached(OC_ACCOUNT_NAME, "a", listOf(alice), complete = true)
+
+        assertNull(throttler.getCached("other@server", "a"))
+    }
+
+    companion object {
+        private const val DEBOUNCE = 300L
+        private const val TTL = 60_000L
+    }
+}
@@ -20,9 +20,12 @@
 package com.uteknoid.drive.presentation.viewmodels.settings
 
 import com.uteknoid.drive.data.preferences.datasources.SharedPreferencesProvider
+import com.uteknoid.drive.presentation.ui.settings.fragments.SettingsAdvancedFragment.Companion.PREF_LOCAL_STORAGE_LIMIT
 import com.uteknoid.drive.presentation.ui.settings.fragments.SettingsAdvancedFragment.Companion.PREF_SHOW_HIDDEN_FILES
+import com.uteknoid.drive.providers.WorkManagerProvider
 import io.mockk.every
 import io.mockk.mockk
+import io.mockk.verify
 import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
@@ -30,12 +33,14 @@ import org.junit.Test
 class SettingsAdvancedViewModelTest {
     private lateinit var advancedViewModel: SettingsAdvancedViewModel
     private lateinit var preferencesProvider: SharedPreferencesProvider
+    private lateinit var workManagerProvider: WorkManagerProvider
 
     @Before
     fun setUp() {
-        preferencesProvider = mockk()
+        preferencesProvider = mockk(relaxUnitFun = true)
+        workManagerProvider = mockk(relaxUnitFun = true)
 
-        advancedViewModel = SettingsAdvancedViewModel(preferencesProvider)
+        advancedViewModel = SettingsAdvancedViewModel(preferencesProvider, workManagerProvider)
     }
 
     @Test
@@ -55,4 +60,23 @@ class SettingsAdvancedViewModelTest {
 
         Assert.assertFalse(shown)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `set local storage limit - ok - evicts files of every account`() {
+        advancedViewModel.setLocalStorageLimit("1024", listOf("user1@server", "user2@server"))
+
+        verify(exactly = 1) {
+            preferencesProvider.putString(PREF_LOCAL_STORAGE_LIMIT, "1024")
+            workManagerProvider.enqueueLocalStorageEvictionWorker("user1@server")
+            workManagerProvider.enqueueLocalStorageEvictionWorker("user2@server")
+        }
+    }
+
+    @Test
+    fun `set local storage limit - ok - no limit does not evict`() {
+        advancedViewModel.setLocalStorageLimit("0", listOf("user1@server"))
+
+        verify(exactly = 1) { preferencesProvider.putString(PREF_LOCAL_STORAGE_LIMIT, "0") }
+        verify(exactly = 0) { workManagerProvider.enqueueLocalStorageEvictionWorker(any()) }
+    }
+}
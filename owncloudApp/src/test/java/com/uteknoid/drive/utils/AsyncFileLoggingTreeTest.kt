@@ -0,0 +1,117 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.utils
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class AsyncFileLoggingTreeTest {
+
+    @Rule
+    @JvmField
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun `lines are written by the background writer`() {
+        val logsFolder = temporaryFolder.newFolder("logs")
+        val tree = AsyncFileLoggingTree(logsFolder)
+
+        tree.i("first line")
+        tree.e("second line")
+        tree.stop()
+
+        val logs = logsFolder.listFiles()!!
+        assertEquals(1, logs.size)
+        val lines = logs[0].readLines()
+        assertTrue(lines[0].endsWith("first line"))
+        assertTrue(lines[1].contains(" E/"))
+        assertTrue(lines[1].endsWith("second line"))
+    }
+
+    @Test
+    fun `full segments are compressed and the oldest deleted`() {
+        val logsFolder = temporaryFolder.newFolder("logs")
+        val tree = AsyncFileLoggingTree(logsFolder, maxSegmentBytes = 1_000, maxTotalBytes = 2_000)
+
+        repeat(2_000) { tree.d("line $it with some padding to fill the segments faster") }
+        tree.stop()
+
+        val compressedSegments = logsFolder.listFiles { file -> file.name.endsWith(".gz") }!!
+        assertTrue(compressedSegments.isNotEmpty())
+        assertTrue(compressedSegments.sumOf { it.length() } <= 2_000)
+        compressedSegments.forEach { segment ->
+            GZIPInputStream(segment.inputStream()).bufferedReader().use { reader ->
+                assertTrue(reader.readLine().contains("with some padding"))
+            }
+        }
+    }
+
+    @Test
+    fun `segments of previous runs are compressed at start`() {
+        val logsFolder = temporaryFolder.newFolder("logs")
+        File(logsFolder, "owncloud.2022-01-01_00-00-00.log").writeText("previous run\n")
+
+        val tree = AsyncFileLoggingTree(logsFolder)
+        tree.i("new run")
+        tree.stop()
+
+        val previousRun = File(logsFolder, "owncloud.2022-01-01_00-00-00.log.gz")
+        assertTrue(previousRun.exists())
+        GZIPInputStream(previousRun.inputStream()).bufferedReader().use { reader ->
+            assertEquals("previous run", reader.readLine())
+        }
+    }
+
+    @Test
+    fun `segment size is counted in bytes`() {
+        assertEquals(5, AsyncFileLoggingTree.utf8Length("ascii"))
+        assertEquals(2, AsyncFileLoggingTree.utf8Length("ñ"))
+        assertEquals(3, AsyncFileLoggingTree.utf8Length("€"))
+        assertEquals(4, AsyncFileLoggingTree.utf8Length("\uD83D\uDE00"))
+        val mixed = "aé€\uD83D\uDE00"
+        assertEquals(mixed.toByteArray(Charsets.UTF_8).size, AsyncFileLoggingTree.utf8Length(mixed))
+    }
+
+    @Test
+    fun `compressed segments are uncompressed to be viewed`() {
+        val logsFolder = temporaryFolder.newFolder("logs")
+        val viewFolder = temporaryFolder.newFolder("view")
+        val segment = File(logsFolder, "owncloud.2022-01-01_00-00-00.log.gz")
+        GZIPOutputStream(segment.outputStream()).bufferedWriter().use { it.write("compressed line\n") }
+
+        val uncompressed = AsyncFileLoggingTree.uncompressed(segment, viewFolder)
+
+        assertEquals(File(viewFolder, "owncloud.2022-01-01_00-00-00.log"), uncompressed)
+        assertEquals("compressed line", uncompressed.readLines().single())
+    }
+
+    @Test
+    fun `plain segments are viewed as they are`() {
+        val logsFolder = temporaryFolder.newFolder("logs")
+        val segment = File(logsFolder, "owncloud.2022-01-01_00-00-00.log").apply { writeText("plain line\n") }
+
+        assertEquals(segment, AsyncFileLoggingTree.uncompressed(segment, temporaryFolder.newFolder("view")))
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.utils
+
+import com.uteknoid.drive.utils.RemoteFileUtils.Companion.getAvailableFileName
+import com.uteknoid.drive.utils.RemoteFileUtils.Companion.getAvailableRemotePathForUpload
+import com.uteknoid.drive.utils.RemoteFileUtils.UploadBatch
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+class RemoteFileUtilsTest {
+
+    private val serverPaths = Collections.synchronizedSet(HashSet<String>())
+    private val probedPaths = Collections.synchronizedList(ArrayList<String>())
+    private val listedFolders = Collections.synchronizedList(ArrayList<String>())
+    private var listingFails = false
+
+    private fun availablePathForUpload(remotePath: String, uploadBatch: UploadBatch) =
+        getAvailableRemotePathForUpload(
+            remotePath = remotePath,
+            uploadBatch = uploadBatch,
+            existsFile = { path -> probedPaths.add(path); path in serverPaths },
+            listFolder = { folderPath ->
+                listedFolders.add(folderPath)
+                if (listingFails) null else serverPaths.filter { it.startsWith(folderPath) }
+                    .map { it.removePrefix(folderPath) }
+            },
+            probeEveryName = { path, reservedPaths ->
+                val fileName = path.substringAfterLast('/')
+                val takenNames = (serverPaths + reservedPaths).map { it.substringAfterLast('/') }.toSet()
+                path.substringBeforeLast('/') + "/" + getAvailableFileName(fileName, takenNames)
+            }
+        )
+
+    @Test
+    fun `name not taken is kept`() {
+        assertEquals("IMG_0001.jpg", getAvailableFileName("IMG_0001.jpg", setOf("IMG_0002.jpg")))
+    }
+
+    @Test
+    fun `taken name gets the first free suffix before the extension`() {
+        val takenNames = setOf("IMG_0001.jpg", "IMG_0001 (2).jpg", "IMG_0001 (3).jpg")
+
+        assertEquals("IMG_0001 (4).jpg", getAvailableFileName("IMG_0001.jpg", takenNames))
+    }
+
+    @Test
+    fun `taken name without extension gets the suffix at the end`() {
+        assertEquals("notes (2)", getAvailableFileName("notes", setOf("notes")))
+        assertEquals(".hidden (2)", getAvailableFileName(".hidden", setOf(".hidden")))
+    }
+
+    @Test
+    fun `free name is probed once without listing the folder`() {
+        assertEquals("/Photos/a.jpg", availablePathForUpload("/Photos/a.jpg", UploadBatch()))
+
+        assertEquals(listOf("/Photos/a.jpg"), probedPaths)
+        assertTrue(listedFolders.isEmpty())
+    }
+
+    @Test
+    fun `taken name lists the folder once and verifies the picked name`() {
+        serverPaths.addAll(listOf("/Photos/a.jpg", "/Photos/a (2).jpg"))
+        val uploadBatch = UploadBatch()
+
+        assertEquals("/Photos/a (3).jpg", availablePathForUpload("/Photos/a.jpg", uploadBatch))
+        assertEquals(listOf("/Photos/a.jpg", "/Photos/a (3).jpg"), probedPaths)
+
+        probedPaths.clear()
+        assertEquals("/Photos/a (4).jpg", availablePathForUpload("/Photos/a.jpg", uploadBatch))
+
+        assertEquals(listOf("/Photos/"), listedFolders)
+        assertEquals(listOf("/Photos/a (4).jpg"), probedPaths)
+    }
+
+    @Test
+    fun `name not in the listing of the batch is not probed`() {
+        serverPaths.add("/Photos/a.jpg")
+        val uploadBatch = UploadBatch()
+        availablePathForUpload("/Photos/a.jpg", uploadBatch)
+        probedPaths.clear()
+
+        assertEquals("/Photos/b.jpg", availablePathForUpload("/Photos/b.jpg", uploadBatch))
+        assertTrue(probedPaths.isEmpty())
+    }
+
+    @Test
+    fun `name created after listing is skipped`() {
+        serverPaths.add("/Photos/a.jpg")
+        val uploadBatch = UploadBatch()
+        availablePathForUpload("/Photos/a.jpg", uploadBatch)
+        serverPaths.add("/Photos/a (3).jpg")
+
+        assertEquals("/Photos/a (4).jpg", availablePathForUpload("/Photos/a.jpg", uploadBatch))
+    }
+
+    @Test
+    fun `failed listing falls back to probing every name`() {
+        serverPaths.add("/Photos/a.jpg")
+        listingFails = true
+        val uploadBatch = UploadBatch()
+
+        assertEquals("/Photos/a (2).jpg", availablePathForUpload("/Photos/a.jpg", uploadBatch))
+        assertEquals("/Photos/a (3).jpg", availablePathForUpload("/Photos/a.jpg", uploadBatch))
+
+        assertEquals(listOf("/Photos/", "/Photos/"), listedFolders)
+        assertFalse(uploadBatch.isListed("/Photos/"))
+    }
+
+    @Test
+    fun `concurrent uploads of the same batch get different names`() {
+        serverPaths.add("/Photos/a.jpg")
+        val uploadBatch = UploadBatch()
+        val uploads = 16
+        val start = CountDownLatch(1)
+        val executor = Executors.newFixedThreadPool(uploads)
+
+        val results = (1..uploads).map {
+            executor.submit(Callable {
+                start.await()
+                availablePathForUpload("/Photos/a.jpg", uploadBatch)
+            })
+        }
+        start.countDown()
+        val paths = results.map { it.get() }
+        executor.shutdown()
+
+        assertEquals(uploads, paths.toSet().size)
+        assertFalse("/Photos/a.jpg" in paths)
+    }
+
+    @Test
+    fun `uploads to the same account share the batch`() {
+        assertSame(UploadBatch.forAccount("user@server"), UploadBatch.forAccount("user@server"))
+        assertNotSame(UploadBatch.forAccount("user@server"), UploadBatch.forAccount("other@server"))
+    }
+}
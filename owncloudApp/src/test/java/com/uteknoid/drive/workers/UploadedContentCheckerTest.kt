@@ -0,0 +1,141 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.workers
+
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentDao
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentEntity
+import com.uteknoid.drive.domain.camerauploads.model.FolderBackUpConfiguration.Behavior
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+
+class UploadedContentCheckerTest {
+
+    private val uploadedContentDao = mockk<UploadedContentDao>(relaxed = true)
+    private val serverLengths = HashMap<String, Long>()
+    private val checker = UploadedContentChecker(uploadedContentDao) { remotePath, length ->
+        serverLengths[remotePath]?.let { it == length } ?: false
+    }
+
+    private var hashComputed = false
+    private var localFileRemoved = false
+
+    @Before
+    fun setUp() {
+        every { uploadedContentDao.getUploadedContentsByLength(ACCOUNT_NAME, any()) } returns emptyList()
+    }
+
+    private fun skipIfAlreadyUploaded(behavior: Behavior = Behavior.COPY) = checker.skipIfAlreadyUploaded(
+        accountName = ACCOUNT_NAME,
+        uploadPath = "/Camera/IMG_0002.jpg",
+        length = LENGTH,
+        behavior = behavior,
+        computeHash = { hashComputed = true; HASH },
+        removeLocalFile = { localFileRemoved = true }
+    )
+
+    private fun recordUploadedContent(remotePath: String, hash: String = HASH) =
+        UploadedContentEntity(ACCOUNT_NAME, hash, remotePath, LENGTH, 0).also { uploadedContent ->
+            every { uploadedContentDao.getUploadedContentsByLength(ACCOUNT_NAME, LENGTH) } returns
+                    listOf(uploadedContent)
+        }
+
+    @Test
+    fun `document is not read when no uploaded content has its length`() {
+        assertNull(skipIfAlreadyUploaded())
+
+        assertFalse(hashComputed)
+    }
+
+    @Test
+    fun `same bytes in the same folder skip the upload`() {
+        recordUploadedContent("/Camera/IMG_0001.jpg")
+        serverLengths["/Camera/IMG_0001.jpg"] = LENGTH
+
+        assertEquals("/Camera/IMG_0001.jpg", skipIfAlreadyUploaded()?.remotePath)
+        assertFalse(localFileRemoved)
+    }
+
+    @Test
+    fun `same bytes in another folder are uploaded again`() {
+        recordUploadedContent("/Backup/IMG_0001.jpg")
+        serverLengths["/Backup/IMG_0001.jpg"] = LENGTH
+
+        assertNull(skipIfAlreadyUploaded())
+        assertFalse(hashComputed)
+    }
+
+    @Test
+    fun `different bytes of the same length are uploaded`() {
+        recordUploadedContent("/Camera/IMG_0001.jpg", hash = "other")
+        serverLengths["/Camera/IMG_0001.jpg"] = LENGTH
+
+        assertNull(skipIfAlreadyUploaded())
+        assertTrue(hashComputed)
+    }
+
+    @Test
+    fun `content not in the server anymore is forgotten and uploaded`() {
+        recordUploadedContent("/Camera/IMG_0001.jpg")
+
+        assertNull(skipIfAlreadyUploaded())
+        verify { uploadedContentDao.deleteByRemotePath(ACCOUNT_NAME, "/Camera/IMG_0001.jpg") }
+    }
+
+    @Test
+    fun `content that could not be checked is kept and uploaded`() {
+        recordUploadedContent("/Camera/IMG_0001.jpg")
+        val checker = UploadedContentChecker(uploadedContentDao) { _, _ -> null }
+
+        assertNull(
+            checker.skipIfAlreadyUploaded(ACCOUNT_NAME, "/Camera/IMG_0002.jpg", LENGTH, Behavior.COPY, { HASH }, {})
+        )
+        verify(exactly = 0) { uploadedContentDao.deleteByRemotePath(any(), any()) }
+    }
+
+    @Test
+    fun `skipped upload removes the document when moving it`() {
+        recordUploadedContent("/Camera/IMG_0001.jpg")
+        serverLengths["/Camera/IMG_0001.jpg"] = LENGTH
+
+        skipIfAlreadyUploaded(Behavior.MOVE)
+
+        assertTrue(localFileRemoved)
+    }
+
+    @Test
+    fun `uploaded document is not removed by the check when moving it`() {
+        recordUploadedContent("/Camera/IMG_0001.jpg")
+
+        assertNull(skipIfAlreadyUploaded(Behavior.MOVE))
+        assertFalse(localFileRemoved)
+    }
+
+    companion object {
+        private const val ACCOUNT_NAME = "user@demo.owncloud.com"
+        private const val HASH = "2fd4e1c67a2d28fced849ee1bb76e7391b93eb12"
+        private const val LENGTH = 1024L
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.data.files.db
+
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule
+import androidx.test.filters.SmallTest
+import androidx.test.platform.app.InstrumentationRegistry
+import com.uteknoid.drive.data.OwncloudDatabase
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+
+@SmallTest
+class OCFileDaoTest {
+    private lateinit var ocFileDao: OCFileDao
+    private val user1 = "user1@server"
+    private val user2 = "user2@server"
+
+    @Rule
+    @JvmField
+    val instantExecutorRule = InstantTaskExecutorRule()
+
+    @Before
+    fun setUp() {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        OwncloudDatabase.switchToInMemory(context)
+        val db: OwncloudDatabase = OwncloudDatabase.getDatabase(context)
+        ocFileDao = db.fileDao()
+    }
+
+    @Test
+    fun insertFileAndReadByIdAndPath() {
+        val fileId = ocFileDao.insert(createFile(parentId = 1, name = "photo.jpg", remotePath = "/photo.jpg", owner = user1))
+
+        val fileById = ocFileDao.getFileById(fileId)
+        val fileByPath = ocFileDao.getFileByPath("/photo.jpg", user1)
+
+        assertNotNull(fileById)
+        assertEquals(fileById, fileByPath)
+        assertEquals("photo.jpg", fileById!!.name)
+    }
+
+    @Test
+    fun getFileByPathOfAnotherAccount() {
+        ocFileDao.insert(createFile(parentId = 1, name = "photo.jpg", remotePath = "/photo.jpg", owner = user1))
+
+        assertNull(ocFileDao.getFileByPath("/photo.jpg", user2))
+    }
+
+    @Test
+    fun getFolderContentSortedByNameIgnoringCase() {
+        ocFileDao.insert(
+            listOf(
+                createFile(parentId = 1, name = "b.txt", remotePath = "/b.txt", owner = user1),
+                createFile(parentId = 1, name = "C.txt", remotePath = "/C.txt", owner = user1),
+                createFile(parentId = 1, name = "a.txt", remotePath = "/a.txt", owner = user1),
+                createFile(parentId = 2, name = "other.txt", remotePath = "/Folder/other.txt", owner = user1)
+            )
+        )
+
+        val folderContent = ocFileDao.getFolderContent(1)
+
+        assertEquals(listOf("a.txt", "b.txt", "C.txt"), folderContent.map { it.name })
+        assertEquals(3, ocFileDao.getFolderContentCount(1))
+    }
+
+    @Test
+    fun getFolderContentAsFlow() {
+        ocFileDao.insert(createFile(parentId = 1, name = "a.txt", remotePath = "/a.txt", owner = user1))
+
+        val folderContent = runBlocking { ocFileDao.getFolderContentAsFlow(1).first() }
+
+        assertEquals(1, folderContent.size)
+        assertEquals("/a.txt", folderContent[0].remotePath)
+    }
+
+    @Test
+    fun deleteFileById() {
+        val fileId = ocFileDao.insert(createFile(parentId = 1, name = "a.txt", remotePath = "/a.txt", owner = user1))
+
+        assertEquals(1, ocFileDao.deleteFileById(fileId))
+        assertNull(ocFileDao.getFileById(fileId))
+    }
+
+    private fun createFile(parentId: Long, name: String, remotePath: String, owner: String) = OCFileEntity(
+        parentId = parentId,
+        name = name,
+        remotePath = remotePath,
+        owner = owner,
+        creationTimestamp = 0,
+        modificationTimestamp = 0,
+        mimeType = "text/plain",
+        length = 0,
+        storagePath = null,
+        lastSyncDateForProperties = 0,
+        availableOfflineStatus = 0,
+        lastSyncDateForData = 0,
+        modifiedAtLastSyncForData = 0,
+        etag = "etag",
+        treeEtag = null,
+        sharedByLink = 0,
+        publicLink = null,
+        permissions = "RDNVW",
+        remoteId = null,
+        needsToUpdateThumbnail = 0,
+        isDownloading = 0,
+        etagInConflict = null,
+        sharedWithSharee = 0,
+        privateLink = null
+    )
+}
@@ -69,6 +69,9 @@ open class MigrationTest {
         const val DB_VERSION_34 = 34
         const val DB_VERSION_35 = 35
         const val DB_VERSION_36 = 36
+        const val DB_VERSION_37 = 37
+        const val DB_VERSION_38 = 38
+        const val DB_VERSION_39 = 39
 
     }
 }
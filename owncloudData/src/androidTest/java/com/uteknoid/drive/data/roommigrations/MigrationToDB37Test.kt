@@ -0,0 +1,55 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.uteknoid.drive.data.roommigrations
+
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.test.filters.SmallTest
+import com.uteknoid.drive.data.OwncloudDatabase
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta.FILES_TABLE_NAME
+import org.junit.Assert
+import org.junit.Test
+
+@SmallTest
+class MigrationToDB37Test : MigrationTest() {
+
+    @Test
+    fun migrationFrom36to37_createsFilesTable() {
+        performMigrationTest(
+            previousVersion = DB_VERSION_36,
+            currentVersion = DB_VERSION_37,
+            insertData = { },
+            recoverPreviousData = false,
+            validateMigration = { database -> validateMigrationTo37(database) },
+            listOfMigrations = OwncloudDatabase.ALL_MIGRATIONS
+        )
+    }
+
+    private fun validateMigrationTo37(database: SupportSQLiteDatabase) {
+        // Files are copied afterwards from the old database, so the table starts empty
+        Assert.assertEquals(0, getCount(database, FILES_TABLE_NAME))
+
+        database.execSQL(
+            "INSERT INTO `$FILES_TABLE_NAME` (parent, filename, path, file_owner, content_type) VALUES (?,?,?,?,?)",
+            arrayOf(1, "photo.jpg", "/photo.jpg", "admin@server", "image/jpeg")
+        )
+        Assert.assertEquals(1, getCount(database, FILES_TABLE_NAME))
+        database.close()
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.uteknoid.drive.data.roommigrations
+
+import android.content.ContentValues
+import android.database.sqlite.SQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.test.filters.SmallTest
+import com.uteknoid.drive.data.OwncloudDatabase
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta.FILES_TABLE_NAME
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta.FILE_PATH
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta.UPLOADED_CONTENTS_TABLE_NAME
+import org.junit.Assert
+import org.junit.Test
+
+@SmallTest
+class MigrationToDB39Test : MigrationTest() {
+
+    @Test
+    fun migrationFrom38to39_keepsFilesAndCreatesUploadedContents() {
+        performMigrationTest(
+            previousVersion = DB_VERSION_38,
+            currentVersion = DB_VERSION_39,
+            insertData = { database -> insertDataToTest(database) },
+            validateMigration = { database -> validateMigrationTo39(database) },
+            listOfMigrations = OwncloudDatabase.ALL_MIGRATIONS
+        )
+    }
+
+    private fun insertDataToTest(database: SupportSQLiteDatabase) {
+        database.run {
+            insert(
+                FILES_TABLE_NAME,
+                SQLiteDatabase.CONFLICT_NONE,
+                ContentValues().apply {
+                    put("parent", 1)
+                    put("filename", "photo.jpg")
+                    put(FILE_PATH, "/photo.jpg")
+                    put("file_owner", "admin@server")
+                    put("content_type", "image/jpeg")
+                }
+            )
+            close()
+        }
+    }
+
+    private fun validateMigrationTo39(database: SupportSQLiteDatabase) {
+        val filesCursor = database.query("SELECT $FILE_PATH FROM $FILES_TABLE_NAME")
+        Assert.assertTrue(filesCursor.moveToFirst())
+        Assert.assertEquals("/photo.jpg", filesCursor.getString(0))
+        filesCursor.close()
+
+        val uploadedContentsCursor = database.query("SELECT * FROM $UPLOADED_CONTENTS_TABLE_NAME")
+        Assert.assertEquals(0, uploadedContentsCursor.count)
+        uploadedContentsCursor.close()
+        database.close()
+    }
+}
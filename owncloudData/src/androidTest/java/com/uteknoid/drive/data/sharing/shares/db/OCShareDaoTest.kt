@@ -507,6 +507,45 @@ class OCShareDaoTest {
         assertEquals(0, textShares.size) // List of textShares empty after deleting the existing share
     }
 
+    @Test
+    fun replaceSharesOfFolderContentOnlyWritesChanges() {
+        val unchangedShare = createDefaultPublicShareEntity(path = "/Texts/text1.txt").copy(remoteId = "1")
+        val modifiedShare = createDefaultPublicShareEntity(path = "/Texts/text2.txt").copy(remoteId = "2")
+        val removedShare = createDefaultPublicShareEntity(path = "/Texts/text3.txt").copy(remoteId = "3")
+        val shareInSubfolder = createDefaultPublicShareEntity(path = "/Texts/Old/text4.txt").copy(remoteId = "4")
+        val shareInOtherFolder = createDefaultPublicShareEntity(path = "/Photos/image1.jpg").copy(remoteId = "5")
+        ocShareDao.insert(listOf(unchangedShare, modifiedShare, removedShare, shareInSubfolder, shareInOtherFolder))
+
+        val newShare = createDefaultPublicShareEntity(path = "/Texts/New/", name = "New folder link").copy(remoteId = "6")
+        val writtenRows = ocShareDao.replaceSharesOfFolderContent(
+            "/Texts/",
+            unchangedShare.accountOwner,
+            listOf(unchangedShare, modifiedShare.copy(name = "Text 2 link"), newShare)
+        )
+
+        // Modified share deleted and inserted again, removed one deleted, new one inserted
+        assertEquals(4, writtenRows)
+        val storedShares = ocShareDao.getSharesUnderFolder("/", unchangedShare.accountOwner).associateBy { it.remoteId }
+        assertEquals(setOf("1", "2", "4", "5", "6"), storedShares.keys)
+        assertEquals("Text 2 link", storedShares["2"]!!.name)
+    }
+
+    @Test
+    fun replaceSharesOfFolderContentWithManyShares() {
+        val sharesCount = 5_000
+        val shares = (0 until sharesCount).map { index ->
+            createDefaultPublicShareEntity(path = "/Big/file$index.txt", name = "Link $index").copy(remoteId = "$index")
+        }
+
+        ocShareDao.replaceSharesOfFolderContent("/Big/", shares[0].accountOwner, shares)
+
+        // One in every hundred shares changed in the server
+        val changedShares = shares.map { if (it.remoteId.toInt() % 100 == 0) it.copy(name = "Changed") else it }
+        val writtenRows = ocShareDao.replaceSharesOfFolderContent("/Big/", shares[0].accountOwner, changedShares)
+
+        assertEquals(2 * sharesCount / 100, writtenRows)
+    }
+
     private fun createDefaultPublicShareEntity(
         path: String = "/Texts/text1.txt",
         expirationDate: Long = 1000,
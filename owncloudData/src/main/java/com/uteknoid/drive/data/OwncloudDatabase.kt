@@ -27,10 +27,15 @@ import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 import com.uteknoid.drive.data.capabilities.db.OCCapabilityDao
 import com.uteknoid.drive.data.capabilities.db.OCCapabilityEntity
+import com.uteknoid.drive.data.files.db.OCFileDao
+import com.uteknoid.drive.data.files.db.OCFileEntity
 import com.uteknoid.drive.data.folderbackup.db.FolderBackUpEntity
 import com.uteknoid.drive.data.folderbackup.db.FolderBackupDao
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentDao
+import com.uteknoid.drive.data.folderbackup.db.UploadedContentEntity
 import com.uteknoid.drive.data.migrations.MIGRATION_27_28
 import com.uteknoid.drive.data.migrations.MIGRATION_28_29
 import com.uteknoid.drive.data.migrations.MIGRATION_29_30
@@ -40,6 +45,9 @@ import com.uteknoid.drive.data.migrations.MIGRATION_32_33
 import com.uteknoid.drive.data.migrations.MIGRATION_33_34
 import com.uteknoid.drive.data.migrations.MIGRATION_34_35
 import com.uteknoid.drive.data.migrations.MIGRATION_35_36
+import com.uteknoid.drive.data.migrations.MIGRATION_36_37
+import com.uteknoid.drive.data.migrations.MIGRATION_37_38
+import com.uteknoid.drive.data.migrations.MIGRATION_38_39
 import com.uteknoid.drive.data.sharing.shares.db.OCShareDao
 import com.uteknoid.drive.data.sharing.shares.db.OCShareEntity
 import com.uteknoid.drive.data.user.db.UserDao
@@ -51,6 +59,8 @@ import com.uteknoid.drive.data.user.db.UserQuotaEntity
         OCCapabilityEntity::class,
         UserQuotaEntity::class,
         FolderBackUpEntity::class,
+        OCFileEntity::class,
+        UploadedContentEntity::class,
     ],
     version = ProviderMeta.DB_VERSION,
     exportSchema = true
@@ -60,6 +70,8 @@ abstract class OwncloudDatabase : RoomDatabase() {
     abstract fun capabilityDao(): OCCapabilityDao
     abstract fun userDao(): UserDao
     abstract fun folderBackUpDao(): FolderBackupDao
+    abstract fun fileDao(): OCFileDao
+    abstract fun uploadedContentDao(): UploadedContentDao
 
     companion object {
         @Volatile
@@ -75,6 +87,9 @@ abstract class OwncloudDatabase : RoomDatabase() {
             MIGRATION_33_34,
             MIGRATION_34_35,
             MIGRATION_35_36,
+            MIGRATION_36_37,
+            MIGRATION_37_38,
+            MIGRATION_38_39,
         )
 
         fun getDatabase(
@@ -88,12 +103,31 @@ abstract class OwncloudDatabase : RoomDatabase() {
                     OwncloudDatabase::class.java,
                     ProviderMeta.NEW_DB_NAME
                 ).addMigrations(*ALL_MIGRATIONS)
+                    .addCallback(ConnectionTuningCallback)
                     .build()
                 INSTANCE = instance
                 instance
             }
         }
 
+        /**
+         * Same connection settings as the legacy files database had, now that the files table lives here.
+         */
+        private object ConnectionTuningCallback : RoomDatabase.Callback() {
+            override fun onOpen(db: SupportSQLiteDatabase) {
+                super.onOpen(db)
+                // Safe with write-ahead logging; only the last commits may be lost on a power failure
+                db.execSQL("PRAGMA synchronous = NORMAL")
+                db.execSQL("PRAGMA cache_size = -$CACHE_SIZE_KIB")
+                db.execSQL("PRAGMA temp_store = MEMORY")
+                // Returns the new value, so it can't go through execSQL
+                db.query("PRAGMA mmap_size = $MMAP_SIZE_BYTES").use { it.moveToFirst() }
+            }
+        }
+
+        private const val CACHE_SIZE_KIB = 8 * 1024
+        private const val MMAP_SIZE_BYTES = 32L * 1024 * 1024
+
         @VisibleForTesting
         fun switchToInMemory(context: Context, vararg migrations: Migration) {
             INSTANCE = Room.inMemoryDatabaseBuilder(
@@ -0,0 +1,83 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.data.files.db
+
+import androidx.paging.PagingSource
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta
+import kotlinx.coroutines.flow.Flow
+
+@Dao
+abstract class OCFileDao {
+    @Query(SELECT_FILE_BY_ID)
+    abstract fun getFileById(fileId: Long): OCFileEntity?
+
+    @Query(SELECT_FILE_BY_PATH)
+    abstract fun getFileByPath(remotePath: String, owner: String): OCFileEntity?
+
+    @Query(SELECT_FOLDER_CONTENT)
+    abstract fun getFolderContent(folderId: Long): List<OCFileEntity>
+
+    /**
+     * Content of a folder, emitted again every time any file changes.
+     */
+    @Query(SELECT_FOLDER_CONTENT)
+    abstract fun getFolderContentAsFlow(folderId: Long): Flow<List<OCFileEntity>>
+
+    /**
+     * Content of a folder, loaded in pages in name order and invalidated every time any file changes.
+     */
+    @Query(SELECT_FOLDER_CONTENT)
+    abstract fun getFolderContentAsPagingSource(folderId: Long): PagingSource<Int, OCFileEntity>
+
+    @Query(COUNT_FOLDER_CONTENT)
+    abstract fun getFolderContentCount(folderId: Long): Int
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract fun insert(ocFile: OCFileEntity): Long
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    abstract fun insert(ocFiles: List<OCFileEntity>): List<Long>
+
+    @Query(DELETE_FILE_BY_ID)
+    abstract fun deleteFileById(fileId: Long): Int
+
+    companion object {
+        private const val SELECT_FILE_BY_ID =
+            "SELECT * FROM ${ProviderTableMeta.FILES_TABLE_NAME} WHERE ${ProviderTableMeta._ID} = :fileId"
+
+        private const val SELECT_FILE_BY_PATH =
+            "SELECT * FROM ${ProviderTableMeta.FILES_TABLE_NAME} WHERE " +
+                    "${ProviderTableMeta.FILE_ACCOUNT_OWNER} = :owner AND ${ProviderTableMeta.FILE_PATH} = :remotePath"
+
+        // Served by the (parent, filename) index, without sorting the whole folder
+        private const val SELECT_FOLDER_CONTENT =
+            "SELECT * FROM ${ProviderTableMeta.FILES_TABLE_NAME} WHERE ${ProviderTableMeta.FILE_PARENT} = :folderId " +
+                    "ORDER BY ${ProviderTableMeta.FILE_NAME}"
+
+        private const val COUNT_FOLDER_CONTENT =
+            "SELECT COUNT(*) FROM ${ProviderTableMeta.FILES_TABLE_NAME} WHERE ${ProviderTableMeta.FILE_PARENT} = :folderId"
+
+        private const val DELETE_FILE_BY_ID =
+            "DELETE FROM ${ProviderTableMeta.FILES_TABLE_NAME} WHERE ${ProviderTableMeta._ID} = :fileId"
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.data.files.db
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta
+
+/**
+ * Represents one record of the Files table.
+ *
+ * Columns keep the names and types of the table previously owned by the FileContentProvider, which still
+ * reads and writes them through content values.
+ */
+@Entity(
+    tableName = ProviderTableMeta.FILES_TABLE_NAME,
+    indices = [
+        Index(value = [ProviderTableMeta.FILE_PARENT, ProviderTableMeta.FILE_NAME]),
+        Index(value = [ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_PATH]),
+    ]
+)
+data class OCFileEntity(
+    @ColumnInfo(name = ProviderTableMeta.FILE_PARENT)
+    val parentId: Long?,
+    // Case insensitive, so that listings sorted by name are read in index order
+    @ColumnInfo(name = ProviderTableMeta.FILE_NAME, collate = ColumnInfo.NOCASE)
+    val name: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_PATH)
+    val remotePath: String,
+    @ColumnInfo(name = ProviderTableMeta.FILE_ACCOUNT_OWNER)
+    val owner: String,
+    @ColumnInfo(name = ProviderTableMeta.FILE_CREATION)
+    val creationTimestamp: Long?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_MODIFIED)
+    val modificationTimestamp: Long?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_CONTENT_TYPE)
+    val mimeType: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_CONTENT_LENGTH)
+    val length: Long?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_STORAGE_PATH)
+    val storagePath: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_LAST_SYNC_DATE)
+    val lastSyncDateForProperties: Long?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_KEEP_IN_SYNC)
+    val availableOfflineStatus: Int?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA)
+    val lastSyncDateForData: Long?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)
+    val modifiedAtLastSyncForData: Long?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_ETAG)
+    val etag: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_TREE_ETAG)
+    val treeEtag: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_SHARED_VIA_LINK)
+    val sharedByLink: Int?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_PUBLIC_LINK)
+    val publicLink: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_PERMISSIONS)
+    val permissions: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_REMOTE_ID)
+    val remoteId: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_UPDATE_THUMBNAIL)
+    val needsToUpdateThumbnail: Int?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_IS_DOWNLOADING)
+    val isDownloading: Int?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_ETAG_IN_CONFLICT)
+    val etagInConflict: String?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_SHARED_WITH_SHAREE)
+    val sharedWithSharee: Int?,
+    @ColumnInfo(name = ProviderTableMeta.FILE_PRIVATE_LINK)
+    val privateLink: String?,
+    // Last time the local copy was downloaded or opened, to evict the least recently used ones first
+    @ColumnInfo(name = ProviderTableMeta.FILE_LAST_USAGE)
+    val lastUsage: Long? = null
+) {
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = ProviderTableMeta._ID)
+    var id: Long = 0
+}
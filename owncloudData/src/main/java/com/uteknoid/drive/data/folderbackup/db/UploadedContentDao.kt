@@ -0,0 +1,59 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.data.folderbackup.db
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.Query
+import androidx.room.Transaction
+import com.uteknoid.drive.data.ProviderMeta
+
+@Dao
+abstract class UploadedContentDao {
+    @Query(
+        "SELECT * from " + ProviderMeta.ProviderTableMeta.UPLOADED_CONTENTS_TABLE_NAME + " WHERE " +
+                "accountName = :accountName AND contentHash = :contentHash"
+    )
+    abstract fun getUploadedContentsByHash(accountName: String, contentHash: String): List<UploadedContentEntity>
+
+    @Query(
+        "SELECT * from " + ProviderMeta.ProviderTableMeta.UPLOADED_CONTENTS_TABLE_NAME + " WHERE " +
+                "accountName = :accountName AND length = :length"
+    )
+    abstract fun getUploadedContentsByLength(accountName: String, length: Long): List<UploadedContentEntity>
+
+    @Insert
+    abstract fun insert(uploadedContentEntity: UploadedContentEntity): Long
+
+    /**
+     * Records an uploaded content, replacing whatever was recorded before for the same remote path.
+     */
+    @Transaction
+    open fun upsert(uploadedContentEntity: UploadedContentEntity): Long {
+        deleteByRemotePath(uploadedContentEntity.accountName, uploadedContentEntity.remotePath)
+        return insert(uploadedContentEntity)
+    }
+
+    @Query(
+        "DELETE from " + ProviderMeta.ProviderTableMeta.UPLOADED_CONTENTS_TABLE_NAME + " WHERE " +
+                "accountName = :accountName AND remotePath = :remotePath"
+    )
+    abstract fun deleteByRemotePath(accountName: String, remotePath: String): Int
+}
@@ -0,0 +1,42 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.data.folderbackup.db
+
+import androidx.room.Entity
+import androidx.room.Index
+import androidx.room.PrimaryKey
+import com.uteknoid.drive.data.ProviderMeta
+
+/**
+ * Content already uploaded by the automatic uploads of an account, identified by the hash of its bytes.
+ */
+@Entity(
+    tableName = ProviderMeta.ProviderTableMeta.UPLOADED_CONTENTS_TABLE_NAME,
+    indices = [Index(value = ["accountName", "contentHash"])]
+)
+data class UploadedContentEntity(
+    val accountName: String,
+    val contentHash: String,
+    val remotePath: String,
+    val length: Long,
+    val uploadTimestamp: Long,
+) {
+    @PrimaryKey(autoGenerate = true) var id: Long = 0
+}
@@ -0,0 +1,38 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+
+package com.uteknoid.drive.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta.FILES_TABLE_NAME
+
+/**
+ * Creates the table of files. Existing files are copied from the old database by the FileContentProvider
+ * when it is upgraded to the same version.
+ */
+val MIGRATION_36_37 = object : Migration(36, 37) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.run {
+            execSQL("CREATE TABLE IF NOT EXISTS `$FILES_TABLE_NAME` (`parent` INTEGER, `filename` TEXT COLLATE NOCASE, `path` TEXT NOT NULL, `file_owner` TEXT NOT NULL, `created` INTEGER, `modified` INTEGER, `content_type` TEXT, `content_length` INTEGER, `media_path` TEXT, `last_sync_date` INTEGER, `keep_in_sync` INTEGER, `last_sync_date_for_data` INTEGER, `modified_at_last_sync_for_data` INTEGER, `etag` TEXT, `tree_etag` TEXT, `share_by_link` INTEGER, `public_link` TEXT, `permissions` TEXT, `remote_id` TEXT, `update_thumbnail` INTEGER, `is_downloading` INTEGER, `etag_in_conflict` TEXT, `shared_via_users` INTEGER, `private_link` TEXT, `_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL)")
+            execSQL("CREATE INDEX IF NOT EXISTS `index_${FILES_TABLE_NAME}_parent_filename` ON `$FILES_TABLE_NAME` (`parent`, `filename`)")
+            execSQL("CREATE INDEX IF NOT EXISTS `index_${FILES_TABLE_NAME}_file_owner_path` ON `$FILES_TABLE_NAME` (`file_owner`, `path`)")
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.uteknoid.drive.data.migrations
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.uteknoid.drive.data.ProviderMeta.ProviderTableMeta.UPLOADED_CONTENTS_TABLE_NAME
+
+val MIGRATION_38_39 = object : Migration(38, 39) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.run {
+            execSQL("CREATE TABLE IF NOT EXISTS `$UPLOADED_CONTENTS_TABLE_NAME` (`accountName` TEXT NOT NULL, `contentHash` TEXT NOT NULL, `remotePath` TEXT NOT NULL, `length` INTEGER NOT NULL, `uploadTimestamp` INTEGER NOT NULL, `id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL)")
+            execSQL("CREATE INDEX IF NOT EXISTS `index_${UPLOADED_CONTENTS_TABLE_NAME}_accountName_contentHash` ON `$UPLOADED_CONTENTS_TABLE_NAME` (`accountName`, `contentHash`)")
+        }
+    }
+}
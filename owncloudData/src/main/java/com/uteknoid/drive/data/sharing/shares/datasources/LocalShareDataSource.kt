@@ -42,6 +42,8 @@ interface LocalShareDataSource {
 
     fun replaceShares(ocShares: List<OCShare>): List<Long>
 
+    fun replaceSharesOfFolderContent(folderPath: String, accountName: String, ocShares: List<OCShare>): Int
+
     fun deleteShare(remoteId: String): Int
 
     fun deleteSharesForFile(filePath: String, accountName: String)
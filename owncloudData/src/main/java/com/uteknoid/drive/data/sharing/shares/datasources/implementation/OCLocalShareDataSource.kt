@@ -68,6 +68,13 @@ class OCLocalShareDataSource(
             ocShares.map { ocShare -> ocShare.toEntity() }
         )
 
+    override fun replaceSharesOfFolderContent(folderPath: String, accountName: String, ocShares: List<OCShare>): Int =
+        ocShareDao.replaceSharesOfFolderContent(
+            folderPath,
+            accountName,
+            ocShares.map { ocShare -> ocShare.toEntity() }
+        )
+
     override fun deleteShare(remoteId: String): Int = ocShareDao.deleteShare(remoteId)
 
     override fun deleteSharesForFile(filePath: String, accountName: String) =
@@ -67,16 +67,63 @@ abstract class OCShareDao {
         return insert(ocShares)
     }
 
+    /**
+     * Replaces the shares of the files directly inside a folder with the received ones, writing only the rows that
+     * changed. Shares not received anymore are deleted, new or modified ones are inserted, and the rest are kept.
+     *
+     * @return number of rows written, deleted plus inserted.
+     */
+    @Transaction
+    open fun replaceSharesOfFolderContent(folderPath: String, accountOwner: String, ocShares: List<OCShareEntity>): Int {
+        val storedShares = getSharesUnderFolder(folderPath, accountOwner).filter { isDirectChild(folderPath, it.path) }
+        val receivedSharesByRemoteId = ocShares.associateBy { it.remoteId }
+        val storedSharesSet = storedShares.toHashSet()
+
+        // Entities are equal if all their columns but the local id are, so unchanged shares are skipped
+        val sharesToInsert = ocShares.filter { it !in storedSharesSet }
+        val idsToDelete = storedShares.filter { it != receivedSharesByRemoteId[it.remoteId] }.map { it.id }
+
+        idsToDelete.chunked(MAX_BIND_ARGS).forEach { deleteSharesById(it) }
+        insert(sharesToInsert)
+        return idsToDelete.size + sharesToInsert.size
+    }
+
+    private fun isDirectChild(folderPath: String, path: String): Boolean {
+        val name = path.removePrefix(folderPath).removeSuffix(PATH_SEPARATOR)
+        return name.isNotEmpty() && !name.contains(PATH_SEPARATOR)
+    }
+
+    // Compares the prefix instead of using LIKE, whose wildcards may be part of the names
+    @Query(
+        "SELECT * from " + ProviderTableMeta.OCSHARES_TABLE_NAME + " WHERE " +
+                "substr(" + ProviderTableMeta.OCSHARES_PATH + ", 1, length(:folderPath)) = :folderPath AND " +
+                ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + " = :accountOwner"
+    )
+    abstract fun getSharesUnderFolder(folderPath: String, accountOwner: String): List<OCShareEntity>
+
     @Query(
         "DELETE from " + ProviderTableMeta.OCSHARES_TABLE_NAME + " WHERE " +
                 ProviderTableMeta.OCSHARES_ID_REMOTE_SHARED + " = :remoteId"
     )
     abstract fun deleteShare(remoteId: String): Int
 
+    @Query(
+        "DELETE from " + ProviderTableMeta.OCSHARES_TABLE_NAME + " WHERE " +
+                "id IN (:ids)"
+    )
+    abstract fun deleteSharesById(ids: List<Int>): Int
+
     @Query(
         "DELETE from " + ProviderTableMeta.OCSHARES_TABLE_NAME + " WHERE " +
                 ProviderTableMeta.OCSHARES_PATH + " = :filePath AND " +
                 ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + " = :accountOwner"
     )
     abstract fun deleteSharesForFile(filePath: String, accountOwner: String)
+
+    companion object {
+        private const val PATH_SEPARATOR = "/"
+
+        // Below the limit of variables of a statement in old versions of SQLite
+        private const val MAX_BIND_ARGS = 900
+    }
 }
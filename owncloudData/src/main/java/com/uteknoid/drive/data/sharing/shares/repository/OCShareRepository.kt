@@ -146,6 +146,20 @@ class OCShareRepository(
         }
     }
 
+    override fun refreshSharesOfFolderFromNetwork(
+        folderPath: String,
+        accountName: String
+    ) {
+        remoteShareDataSource.getShares(
+            folderPath,
+            reshares = true,
+            subfiles = true,
+            accountName = accountName
+        ).also { sharesFromNetwork ->
+            localShareDataSource.replaceSharesOfFolderContent(folderPath, accountName, sharesFromNetwork)
+        }
+    }
+
     private fun insertShare(
         filePath: String,
         shareType: ShareType,
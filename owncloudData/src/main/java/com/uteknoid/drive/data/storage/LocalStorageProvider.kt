@@ -66,6 +66,13 @@ sealed class LocalStorageProvider(private val rootFolderName: String) {
         accountName: String?
     ): String = getRootFolderPath() + File.separator + TEMPORAL_FOLDER_NAME + File.separator + getEncodedAccountName(accountName)
 
+    /**
+     * Get absolute path to the folder where removed local folders of an account wait to be deleted.
+     */
+    fun getTrashPath(
+        accountName: String?
+    ): String = getRootFolderPath() + File.separator + TRASH_FOLDER_NAME + File.separator + getEncodedAccountName(accountName)
+
     fun getLogsPath(): String = getRootFolderPath() + LOGS_FOLDER_NAME
 
     /**
@@ -84,7 +91,7 @@ sealed class LocalStorageProvider(private val rootFolderName: String) {
         val danglingDirs = mutableListOf<File>()
         rootFolder.listFiles()?.forEach { dir ->
             var dirIsOk = false
-            if (dir.name.equals(TEMPORAL_FOLDER_NAME)) {
+            if (dir.name.equals(TEMPORAL_FOLDER_NAME) || dir.name.equals(TRASH_FOLDER_NAME)) {
                 dirIsOk = true
             } else {
                 remainingAccounts.forEach { account ->
@@ -163,5 +170,6 @@ sealed class LocalStorageProvider(private val rootFolderName: String) {
     companion object {
         private const val LOGS_FOLDER_NAME = "/logs/"
         private const val TEMPORAL_FOLDER_NAME = "tmp"
+        private const val TRASH_FOLDER_NAME = "trash"
     }
 }
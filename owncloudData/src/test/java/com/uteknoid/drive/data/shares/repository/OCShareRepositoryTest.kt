@@ -118,6 +118,37 @@ class OCShareRepositoryTest {
         }
     }
 
+    @Test
+    fun refreshSharesOfFolderFromNetworkOk() {
+        every { remoteShareDataSource.getShares(any(), any(), any(), any()) } returns shares
+
+        ocShareRepository.refreshSharesOfFolderFromNetwork(filePath, accountName)
+
+        verify(exactly = 1) {
+            remoteShareDataSource.getShares(
+                remoteFilePath = filePath,
+                reshares = true,
+                subfiles = true,
+                accountName = accountName
+            )
+        }
+
+        verify(exactly = 1) {
+            localShareDataSource.replaceSharesOfFolderContent(filePath, accountName, shares)
+        }
+    }
+
+    @Test
+    fun refreshSharesOfFolderFromNetworkEmptyShares() {
+        every { remoteShareDataSource.getShares(any(), any(), any(), any()) } returns listOf()
+
+        ocShareRepository.refreshSharesOfFolderFromNetwork(filePath, accountName)
+
+        verify(exactly = 1) {
+            localShareDataSource.replaceSharesOfFolderContent(filePath, accountName, listOf())
+        }
+    }
+
     @Test
     fun getSharesAsLiveDataOk() {
         val sharesLiveData = MutableLiveData<List<OCShare>>()
@@ -77,5 +77,10 @@ interface ShareRepository {
 
     fun refreshSharesFromNetwork(filePath: String, accountName: String)
 
+    /**
+     * Refreshes the shares of all the files directly inside a folder with a single request.
+     */
+    fun refreshSharesOfFolderFromNetwork(folderPath: String, accountName: String)
+
     fun deleteShare(remoteId: String)
 }
@@ -0,0 +1,38 @@
+/**
+ * ownCloud Android client application
+ *
+ * Copyright (C) 2022 ownCloud GmbH.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 2,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.uteknoid.drive.domain.sharing.shares.usecases
+
+import com.uteknoid.drive.domain.BaseUseCaseWithResult
+import com.uteknoid.drive.domain.sharing.shares.ShareRepository
+
+class RefreshSharesOfFolderFromServerAsyncUseCase(
+    private val shareRepository: ShareRepository
+) : BaseUseCaseWithResult<Unit, RefreshSharesOfFolderFromServerAsyncUseCase.Params>() {
+
+    override fun run(params: Params) =
+        shareRepository.refreshSharesOfFolderFromNetwork(
+            params.folderPath,
+            params.accountName
+        )
+
+    data class Params(
+        val folderPath: String,
+        val accountName: String
+    )
+}